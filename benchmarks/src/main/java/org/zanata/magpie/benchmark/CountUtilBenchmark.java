@@ -0,0 +1,55 @@
+package org.zanata.magpie.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.zanata.magpie.util.CountUtil;
+
+/**
+ * Word counting throughput with one and with many threads. Before each
+ * thread had its own tokenizer, all the threads waited on a single lock and
+ * the throughput did not grow with the number of threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CountUtilBenchmark {
+
+    @Param({ "en-US", "de", "ja" })
+    public String localeCode;
+
+    private String content;
+
+    @Setup
+    public void setup() {
+        content = "ja".equals(localeCode) ?
+                "これは機械翻訳のための単語数を数えるテスト文です。" :
+                "The quick brown fox jumps over the lazy dog, twice a day.";
+    }
+
+    @Benchmark
+    @Threads(1)
+    public long countWordsSingleThread() {
+        return CountUtil.countWords(content, localeCode);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public long countWordsAllThreads() {
+        return CountUtil.countWords(content, localeCode);
+    }
+}
@@ -0,0 +1,95 @@
+package org.zanata.magpie.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.transform.stream.StreamSource;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.zanata.magpie.backend.ms.internal.dto.MSString;
+import org.zanata.magpie.backend.ms.internal.dto.MSTranslateArrayResp;
+import org.zanata.magpie.backend.ms.internal.dto.MSTranslateArrayResponse;
+import org.zanata.magpie.util.DTOUtil;
+
+/**
+ * Handling of a Microsoft Translator response with 100 translations: parse
+ * the response, then marshal each translation as its raw translation, as
+ * {@link org.zanata.magpie.backend.ms.MicrosoftTranslatorBackend} does.
+ *
+ * {@link #legacy()} is the implementation before the JAXB contexts were
+ * cached, which created a new context for every call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DTOUtilBenchmark {
+    private static final int ITEMS = 100;
+
+    private final DTOUtil dtoUtil = new DTOUtil();
+    private byte[] response;
+
+    @Setup
+    public void setup() {
+        MSTranslateArrayResp resp = new MSTranslateArrayResp();
+        for (int i = 0; i < ITEMS; i++) {
+            MSTranslateArrayResponse item = new MSTranslateArrayResponse();
+            item.setSrcLanguage("en");
+            item.setTranslatedText(new MSString(
+                    "Der schnelle braune Fuchs springt über den faulen Hund " + i));
+            resp.getResponse().add(item);
+        }
+        response = dtoUtil.toXML(resp).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public List<String> current() throws JAXBException {
+        MSTranslateArrayResp resp = dtoUtil.toObject(
+                new ByteArrayInputStream(response), MSTranslateArrayResp.class);
+        List<String> raw = new ArrayList<>(ITEMS);
+        for (MSTranslateArrayResponse item : resp.getResponse()) {
+            raw.add(dtoUtil.toXML(item));
+        }
+        return raw;
+    }
+
+    @Benchmark
+    public List<String> legacy() throws JAXBException {
+        String xml = new String(response, StandardCharsets.UTF_8);
+        MSTranslateArrayResp resp = JAXBContext
+                .newInstance(MSTranslateArrayResp.class).createUnmarshaller()
+                .unmarshal(new StreamSource(new StringReader(xml)),
+                        MSTranslateArrayResp.class)
+                .getValue();
+        List<String> raw = new ArrayList<>(ITEMS);
+        for (MSTranslateArrayResponse item : resp.getResponse()) {
+            Marshaller m = JAXBContext.newInstance(item.getClass())
+                    .createMarshaller();
+            m.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
+            m.setProperty(Marshaller.JAXB_FRAGMENT, true);
+            StringWriter writer = new StringWriter();
+            m.marshal(item, writer);
+            raw.add(writer.toString());
+        }
+        return raw;
+    }
+}
@@ -0,0 +1,134 @@
+package org.zanata.magpie.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import javax.ws.rs.core.MediaType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.zanata.magpie.api.dto.DocumentContent;
+import org.zanata.magpie.api.dto.LocaleCode;
+import org.zanata.magpie.api.dto.TypeString;
+import org.zanata.magpie.backend.BackendCapabilities;
+import org.zanata.magpie.model.BackendID;
+import org.zanata.magpie.model.Document;
+import org.zanata.magpie.model.Locale;
+import org.zanata.magpie.service.DocumentContentTranslatorService;
+import org.zanata.magpie.service.PersistentTranslationService;
+import org.zanata.magpie.service.StringBatch;
+import org.zanata.magpie.service.TranslatableNodeList;
+import org.zanata.magpie.util.ArticleUtil;
+
+/**
+ * Handling of the HTML strings of a documentation article by
+ * {@link DocumentContentTranslatorService}, with an MT engine which returns
+ * the strings as is. Run with {@code -prof gc} to compare allocations.
+ *
+ * {@link #legacy()} repeats the parsing done before each string was parsed
+ * once per request: once to measure it, once more to send it, and once to
+ * restore the placeholders in the translation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DocumentParsingBenchmark {
+    private static final int SECTIONS = 20;
+    private static final int MAX_CHARS = 10000;
+
+    private final Document document = new Document("http://localhost",
+            new Locale(LocaleCode.EN, "English"),
+            new Locale(LocaleCode.DE, "German"));
+    private final DocumentContentTranslatorService service =
+            new DocumentContentTranslatorService(new EchoTranslationService(),
+                    "1", "");
+    private final List<String> strings = new ArrayList<>();
+
+    @Setup
+    public void setup() {
+        for (int i = 0; i < SECTIONS; i++) {
+            strings.add("<h2 id=\"section-" + i + "\">Configuring the " +
+                    "<code>magpie-" + i + "</code> service</h2>");
+            strings.add("<p>Install the <code>magpie-" + i + "</code> " +
+                    "package with <code>dnf install magpie</code>, then open " +
+                    "<a href=\"https://example.com/docs/" + i + "\">the " +
+                    "settings page</a> and set <span class=\"notranslate\">" +
+                    "MT_AZURE_KEY</span>. See <em>Configuration</em> for the " +
+                    "other variables, and <strong>restart</strong> the " +
+                    "server afterwards.</p>");
+            strings.add("<pre><code>export MT_AZURE_KEY=secret\n" +
+                    "export MT_DOCUMENT_PARALLELISM=" + i + "\n" +
+                    "./restart.sh</code></pre>");
+            strings.add("<ul><li>Requests are <em>batched</em> per locale " +
+                    "pair.</li><li>Translations are cached for " +
+                    "<code>MT_TRANSLATION_CACHE_EXPIRY</code> seconds." +
+                    "</li><li translate=\"no\">magpie " + i + "</li></ul>");
+        }
+    }
+
+    private DocumentContent newDocumentContent() {
+        // translateDocument replaces the values of the TypeStrings
+        return new DocumentContent(strings.stream()
+                .map(html -> new TypeString(html, MediaType.TEXT_HTML, "meta"))
+                .collect(Collectors.toList()), "http://localhost", "en");
+    }
+
+    @Benchmark
+    public DocumentContent current() {
+        return service.translateDocument(document, newDocumentContent(),
+                BackendID.MS);
+    }
+
+    @Benchmark
+    public List<String> legacy() {
+        List<String> results = new ArrayList<>(strings.size());
+        int index = 0;
+        for (String html : strings) {
+            // measured, then thrown away
+            if (ArticleUtil.replaceNonTranslatableNodeHTML(index, html)
+                    .getHtml().length() <= MAX_CHARS) {
+                TranslatableNodeList nodeList =
+                        ArticleUtil.replaceNonTranslatableNodeHTML(index, html);
+                String translation = nodeList.getHtml();
+                results.add(ArticleUtil.replacePlaceholderWithNode(
+                        nodeList.getPlaceholderIdMap(), translation,
+                        ArticleUtil::wrapHTML));
+            }
+            index++;
+        }
+        return results;
+    }
+
+    static class EchoTranslationService
+            extends PersistentTranslationService {
+
+        @Override
+        public BackendCapabilities getCapabilities(BackendID backendID) {
+            return new BackendCapabilities(MAX_CHARS, 2000,
+                    BackendCapabilities.UNLIMITED);
+        }
+
+        @Override
+        public List<List<String>> translateBatches(Document document,
+                List<StringBatch> batches, Locale fromLocale, Locale toLocale,
+                BackendID backendID, Optional<String> category,
+                int parallelism) {
+            return batches.stream().map(StringBatch::getStrings)
+                    .collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package org.zanata.magpie.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.core.MediaType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.zanata.magpie.api.dto.DocumentContent;
+import org.zanata.magpie.api.dto.LocaleCode;
+import org.zanata.magpie.api.dto.TypeString;
+import org.zanata.magpie.model.BackendID;
+import org.zanata.magpie.model.Document;
+import org.zanata.magpie.model.Locale;
+import org.zanata.magpie.service.DocumentContentTranslatorService;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Translation of one multi-megabyte HTML string, parsed into a DOM or
+ * streamed, with an MT engine which returns the strings as is. Run with
+ * {@code -prof gc} to compare allocations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LargeHtmlBenchmark {
+    private static final int SECTIONS = 5000;
+
+    private final Document document = new Document("http://localhost",
+            new Locale(LocaleCode.EN, "English"),
+            new Locale(LocaleCode.DE, "German"));
+    private final DocumentContentTranslatorService dom =
+            new DocumentContentTranslatorService(
+                    new DocumentParsingBenchmark.EchoTranslationService(),
+                    "4", String.valueOf(Integer.MAX_VALUE));
+    private final DocumentContentTranslatorService streaming =
+            new DocumentContentTranslatorService(
+                    new DocumentParsingBenchmark.EchoTranslationService(),
+                    "4", "0");
+    private String html;
+
+    @Setup
+    public void setup() {
+        StringBuilder builder = new StringBuilder("<div class=\"article\">");
+        for (int i = 0; i < SECTIONS; i++) {
+            builder.append("<h2 id=\"section-").append(i)
+                    .append("\">Configuring the <code>magpie-").append(i)
+                    .append("</code> service</h2><p>Install the package ")
+                    .append("with <code>dnf install magpie</code>, then ")
+                    .append("open <a href=\"https://example.com/docs/")
+                    .append(i).append("\">the settings page</a> and set ")
+                    .append("<span class=\"notranslate\">MT_AZURE_KEY")
+                    .append("</span>.</p><pre><code>export MT_AZURE_KEY=")
+                    .append("secret\n./restart.sh</code></pre><ul><li>")
+                    .append("Requests are <em>batched</em>.</li>")
+                    .append("<li translate=\"no\">magpie ").append(i)
+                    .append("</li></ul>");
+        }
+        html = builder.append("</div>").toString();
+    }
+
+    private DocumentContent newDocumentContent() {
+        // translateDocument replaces the values of the TypeStrings
+        return new DocumentContent(ImmutableList.of(
+                new TypeString(html, MediaType.TEXT_HTML, "meta")),
+                "http://localhost", "en");
+    }
+
+    @Benchmark
+    public DocumentContent dom() {
+        return dom.translateDocument(document, newDocumentContent(),
+                BackendID.MS);
+    }
+
+    @Benchmark
+    public DocumentContent streaming() {
+        return streaming.translateDocument(document, newDocumentContent(),
+                BackendID.MS);
+    }
+}
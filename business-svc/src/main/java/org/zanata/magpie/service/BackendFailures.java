@@ -0,0 +1,57 @@
+/*
+ * Copyright 2019, Red Hat, Inc. and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.zanata.magpie.service;
+
+import static org.apache.commons.lang3.exception.ExceptionUtils.getThrowableList;
+
+import java.io.IOException;
+import java.util.concurrent.TimeoutException;
+
+import javax.ws.rs.ProcessingException;
+
+import org.zanata.magpie.exception.BackendOverloadedException;
+import org.zanata.magpie.exception.BackendUnavailableException;
+
+/**
+ * Tells failures of the MT provider apart from failures caused by the
+ * request itself, eg an unsupported locale.
+ */
+final class BackendFailures {
+
+    private BackendFailures() {
+    }
+
+    /**
+     * @return true if the provider timed out, was unreachable, overloaded or
+     *         unavailable. A
+     *         {@link org.zanata.magpie.exception.PartialTranslationException}
+     *         is judged by the failure of its failed sub-batches, which is
+     *         its cause.
+     */
+    static boolean isProviderFailure(Throwable failure) {
+        return getThrowableList(failure).stream()
+                .anyMatch(t -> t instanceof BackendOverloadedException ||
+                        t instanceof BackendUnavailableException ||
+                        t instanceof TimeoutException ||
+                        t instanceof IOException ||
+                        t instanceof ProcessingException);
+    }
+}
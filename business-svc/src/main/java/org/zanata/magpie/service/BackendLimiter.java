@@ -0,0 +1,311 @@
+/*
+ * Copyright 2019, Red Hat, Inc. and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.zanata.magpie.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.zanata.magpie.exception.BackendOverloadedException;
+import org.zanata.magpie.model.BackendID;
+
+import static org.apache.commons.lang3.exception.ExceptionUtils.getThrowableList;
+
+/**
+ * Limits the calls to one MT provider, so that it is not sent more than it
+ * can take.
+ *
+ * Calls are started in order, when all of these allow it:
+ * <ul>
+ * <li>a concurrency limit, which grows by one for every limit's worth of
+ * successful calls, and is cut by {@link #DECREASE_FACTOR} (at most once per
+ * average latency) when the provider answers with HTTP 429 or 5xx, or when
+ * a call takes more than {@link #SLOW_CALL_FACTOR} times the average
+ * latency</li>
+ * <li>a requests per second rate</li>
+ * <li>a characters per second rate. A call larger than what is left for the
+ * current second is let through, and the next calls wait until the
+ * characters are paid back.</li>
+ * </ul>
+ * Calls which can't start yet are queued instead of failing.
+ */
+class BackendLimiter implements BackendLimiterMXBean {
+    private static final Logger LOG =
+            LoggerFactory.getLogger(BackendLimiter.class);
+    static final double DECREASE_FACTOR = 0.7;
+    static final double SLOW_CALL_FACTOR = 2;
+    // weight of the latest call in the average latency
+    private static final double LATENCY_WEIGHT = 0.2;
+
+    private final BackendID backendID;
+    private final int maxConcurrency;
+    private final double requestsPerSecond;
+    private final double charsPerSecond;
+    private final ScheduledExecutorService scheduler;
+    private final LongSupplier nanoClock;
+
+    private final Deque<Pending<?>> queue = new ArrayDeque<>();
+    private double limit;
+    private int inFlight;
+    private double requestTokens;
+    private double charTokens;
+    private long lastRefill;
+    private double averageLatencyNanos;
+    private long lastDecrease;
+    private long throttledCount;
+    private @Nullable ScheduledFuture<?> wakeUp;
+
+    /**
+     * @param maxConcurrency
+     *            upper bound of the concurrency limit
+     * @param requestsPerSecond
+     *            0 or less for no limit
+     * @param charsPerSecond
+     *            0 or less for no limit
+     * @param scheduler
+     *            used to start queued calls when rate limited
+     * @param nanoClock
+     *            eg System::nanoTime
+     */
+    BackendLimiter(BackendID backendID, int maxConcurrency,
+            double requestsPerSecond, double charsPerSecond,
+            ScheduledExecutorService scheduler, LongSupplier nanoClock) {
+        this.backendID = backendID;
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.requestsPerSecond = requestsPerSecond;
+        this.charsPerSecond = charsPerSecond;
+        this.scheduler = scheduler;
+        this.nanoClock = nanoClock;
+        this.limit = this.maxConcurrency;
+        this.requestTokens = Math.max(1, requestsPerSecond);
+        this.charTokens = charsPerSecond;
+        this.lastRefill = nanoClock.getAsLong();
+        this.lastDecrease = lastRefill;
+    }
+
+    /**
+     * Starts the call now if the limits allow it, or later otherwise.
+     *
+     * @param chars
+     *            number of characters sent by the call
+     * @param call
+     *            starts the call to the provider
+     * @return the result of the call
+     */
+    <T> CompletionStage<T> submit(int chars,
+            Supplier<? extends CompletionStage<T>> call) {
+        Pending<T> pending = new Pending<>(chars, call);
+        synchronized (this) {
+            queue.add(pending);
+        }
+        drain();
+        return pending.result;
+    }
+
+    private void drain() {
+        List<Pending<?>> ready = new ArrayList<>();
+        synchronized (this) {
+            refill();
+            while (!queue.isEmpty() && inFlight < (int) limit) {
+                long waitNanos = nanosUntilAllowed();
+                if (waitNanos > 0) {
+                    scheduleWakeUp(waitNanos);
+                    break;
+                }
+                Pending<?> pending = queue.poll();
+                if (pending.result.isDone()) {
+                    // cancelled while queued
+                    continue;
+                }
+                inFlight++;
+                if (requestsPerSecond > 0) {
+                    requestTokens--;
+                }
+                if (charsPerSecond > 0) {
+                    charTokens -= pending.chars;
+                }
+                ready.add(pending);
+            }
+        }
+        ready.forEach(this::start);
+    }
+
+    private void refill() {
+        long now = nanoClock.getAsLong();
+        double seconds = (now - lastRefill) / 1e9;
+        lastRefill = now;
+        if (requestsPerSecond > 0) {
+            requestTokens = Math.min(Math.max(1, requestsPerSecond),
+                    requestTokens + seconds * requestsPerSecond);
+        }
+        if (charsPerSecond > 0) {
+            charTokens = Math.min(charsPerSecond,
+                    charTokens + seconds * charsPerSecond);
+        }
+    }
+
+    private long nanosUntilAllowed() {
+        double seconds = 0;
+        if (requestsPerSecond > 0 && requestTokens < 1) {
+            seconds = (1 - requestTokens) / requestsPerSecond;
+        }
+        if (charsPerSecond > 0 && charTokens < 0) {
+            seconds = Math.max(seconds, -charTokens / charsPerSecond);
+        }
+        return (long) Math.ceil(seconds * 1e9);
+    }
+
+    private void scheduleWakeUp(long waitNanos) {
+        if (wakeUp == null || wakeUp.isDone()) {
+            wakeUp = scheduler.schedule(this::drain, waitNanos,
+                    TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private <T> void start(Pending<T> pending) {
+        long startTime = nanoClock.getAsLong();
+        CompletionStage<T> calling;
+        try {
+            calling = pending.call.get();
+        } catch (RuntimeException | Error e) {
+            onComplete(startTime, e);
+            pending.result.completeExceptionally(e);
+            return;
+        }
+        calling.whenComplete((result, e) -> {
+            onComplete(startTime, e);
+            if (e != null) {
+                pending.result.completeExceptionally(
+                        e instanceof CompletionException &&
+                                e.getCause() != null ? e.getCause() : e);
+            } else {
+                pending.result.complete(result);
+            }
+        });
+    }
+
+    private void onComplete(long startTime, @Nullable Throwable failure) {
+        synchronized (this) {
+            inFlight--;
+            long now = nanoClock.getAsLong();
+            long latency = now - startTime;
+            if (failure != null) {
+                if (isOverloaded(failure)) {
+                    throttledCount++;
+                    decrease(now, "overloaded");
+                }
+            } else if (averageLatencyNanos > 0 &&
+                    latency > SLOW_CALL_FACTOR * averageLatencyNanos) {
+                decrease(now, "slow call");
+            } else {
+                limit = Math.min(maxConcurrency, limit + 1 / limit);
+            }
+            if (failure == null) {
+                averageLatencyNanos = averageLatencyNanos == 0 ? latency :
+                        (1 - LATENCY_WEIGHT) * averageLatencyNanos +
+                                LATENCY_WEIGHT * latency;
+            }
+        }
+        drain();
+    }
+
+    private void decrease(long now, String reason) {
+        // calls already in flight when the provider got overloaded are
+        // likely to fail too
+        if (now - lastDecrease < averageLatencyNanos) {
+            return;
+        }
+        lastDecrease = now;
+        limit = Math.max(1, limit * DECREASE_FACTOR);
+        LOG.info("{}: {}, concurrency limit lowered to {}", backendID, reason,
+                (int) limit);
+    }
+
+    private static boolean isOverloaded(Throwable failure) {
+        return getThrowableList(failure).stream()
+                .anyMatch(t -> t instanceof BackendOverloadedException);
+    }
+
+    @Override
+    public synchronized int getConcurrencyLimit() {
+        return (int) limit;
+    }
+
+    @Override
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    @Override
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    @Override
+    public synchronized int getQueueDepth() {
+        return queue.size();
+    }
+
+    @Override
+    public double getRequestsPerSecond() {
+        return requestsPerSecond;
+    }
+
+    @Override
+    public double getCharsPerSecond() {
+        return charsPerSecond;
+    }
+
+    @Override
+    public synchronized long getAverageLatencyMillis() {
+        return TimeUnit.NANOSECONDS.toMillis((long) averageLatencyNanos);
+    }
+
+    @Override
+    public synchronized long getThrottledCount() {
+        return throttledCount;
+    }
+
+    private static class Pending<T> {
+        private final int chars;
+        private final Supplier<? extends CompletionStage<T>> call;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+
+        private Pending(int chars,
+                Supplier<? extends CompletionStage<T>> call) {
+            this.chars = chars;
+            this.call = call;
+        }
+    }
+}
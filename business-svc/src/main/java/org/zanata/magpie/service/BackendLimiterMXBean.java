@@ -0,0 +1,51 @@
+/*
+ * Copyright 2019, Red Hat, Inc. and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.zanata.magpie.service;
+
+/**
+ * Current limits of the calls to one MT provider, see
+ * {@link BackendLimiter}. Registered as a JMX MXBean (and visible in the
+ * JavaMelody MBeans report).
+ */
+public interface BackendLimiterMXBean {
+
+    int getConcurrencyLimit();
+
+    int getMaxConcurrency();
+
+    int getInFlight();
+
+    /**
+     * @return number of calls waiting for the limits to allow them
+     */
+    int getQueueDepth();
+
+    double getRequestsPerSecond();
+
+    double getCharsPerSecond();
+
+    long getAverageLatencyMillis();
+
+    /**
+     * @return number of calls rejected with HTTP 429 or 5xx
+     */
+    long getThrottledCount();
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2019, Red Hat, Inc. and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.zanata.magpie.service;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.zanata.magpie.annotation.EnvVariable;
+import org.zanata.magpie.model.BackendID;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+import static org.zanata.magpie.api.APIConstant.GOOGLE_CHARS_PER_SECOND;
+import static org.zanata.magpie.api.APIConstant.GOOGLE_MAX_CONCURRENCY;
+import static org.zanata.magpie.api.APIConstant.GOOGLE_REQUESTS_PER_SECOND;
+import static org.zanata.magpie.api.APIConstant.MS_CHARS_PER_SECOND;
+import static org.zanata.magpie.api.APIConstant.MS_MAX_CONCURRENCY;
+import static org.zanata.magpie.api.APIConstant.MS_REQUESTS_PER_SECOND;
+
+/**
+ * Holds the {@link BackendLimiter} of each MT provider, and registers them
+ * as JMX MXBeans.
+ */
+@ApplicationScoped
+public class BackendLimiters {
+    private static final Logger LOG =
+            LoggerFactory.getLogger(BackendLimiters.class);
+    static final int DEFAULT_MAX_CONCURRENCY = 16;
+    static final String OBJECT_NAME =
+            "org.zanata.magpie:type=BackendLimiter,backend=";
+
+    private final Map<BackendID, BackendLimiter> limiters =
+            new EnumMap<>(BackendID.class);
+    private ScheduledExecutorService scheduler;
+
+    @SuppressWarnings("unused")
+    BackendLimiters() {
+    }
+
+    @Inject
+    public BackendLimiters(
+            @EnvVariable(MS_MAX_CONCURRENCY) String msMaxConcurrency,
+            @EnvVariable(MS_REQUESTS_PER_SECOND) String msRequestsPerSecond,
+            @EnvVariable(MS_CHARS_PER_SECOND) String msCharsPerSecond,
+            @EnvVariable(GOOGLE_MAX_CONCURRENCY) String googleMaxConcurrency,
+            @EnvVariable(GOOGLE_REQUESTS_PER_SECOND) String googleRequestsPerSecond,
+            @EnvVariable(GOOGLE_CHARS_PER_SECOND) String googleCharsPerSecond) {
+        scheduler = newScheduler();
+        limiters.put(BackendID.MS, newLimiter(BackendID.MS, msMaxConcurrency,
+                msRequestsPerSecond, msCharsPerSecond));
+        limiters.put(BackendID.GOOGLE, newLimiter(BackendID.GOOGLE,
+                googleMaxConcurrency, googleRequestsPerSecond,
+                googleCharsPerSecond));
+    }
+
+    /**
+     * Limits only the concurrency of every backend
+     */
+    @VisibleForTesting
+    BackendLimiters(int maxConcurrency) {
+        scheduler = newScheduler();
+        for (BackendID backendID : BackendID.values()) {
+            limiters.put(backendID, new BackendLimiter(backendID,
+                    maxConcurrency, 0, 0, scheduler, System::nanoTime));
+        }
+    }
+
+    private static ScheduledExecutorService newScheduler() {
+        ScheduledThreadPoolExecutor executor =
+                new ScheduledThreadPoolExecutor(1, new ThreadFactoryBuilder()
+                        .setNameFormat("backend-limiter-%d")
+                        .setDaemon(true).build());
+        executor.setRemoveOnCancelPolicy(true);
+        return Executors.unconfigurableScheduledExecutorService(executor);
+    }
+
+    private BackendLimiter newLimiter(BackendID backendID,
+            String maxConcurrency, String requestsPerSecond,
+            String charsPerSecond) {
+        return new BackendLimiter(backendID,
+                isBlank(maxConcurrency) ? DEFAULT_MAX_CONCURRENCY :
+                        Integer.parseInt(maxConcurrency.trim()),
+                parseRate(requestsPerSecond), parseRate(charsPerSecond),
+                scheduler, System::nanoTime);
+    }
+
+    private static double parseRate(String rate) {
+        return isBlank(rate) ? 0 : Double.parseDouble(rate.trim());
+    }
+
+    /**
+     * @return a backend sending its calls through the limiter of its
+     *         provider, or the backend itself if there is none
+     */
+    public TranslatorBackend limit(TranslatorBackend backend) {
+        BackendLimiter limiter = limiters.get(backend.getId());
+        return limiter == null ? backend :
+                new LimitedTranslatorBackend(backend, limiter);
+    }
+
+    @PostConstruct
+    public void registerMBeans() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        limiters.forEach((backendID, limiter) -> {
+            try {
+                ObjectName name = new ObjectName(OBJECT_NAME + backendID.name());
+                if (!server.isRegistered(name)) {
+                    server.registerMBean(limiter, name);
+                }
+            } catch (JMException e) {
+                LOG.warn("Cannot register backend limiter MBean", e);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        limiters.keySet().forEach(backendID -> {
+            try {
+                ObjectName name = new ObjectName(OBJECT_NAME + backendID.name());
+                if (server.isRegistered(name)) {
+                    server.unregisterMBean(name);
+                }
+            } catch (JMException e) {
+                LOG.warn("Cannot unregister backend limiter MBean", e);
+            }
+        });
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+}
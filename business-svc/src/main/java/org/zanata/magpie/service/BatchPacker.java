@@ -0,0 +1,108 @@
+/*
+ * Copyright 2019, Red Hat, Inc. and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.zanata.magpie.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.zanata.magpie.backend.BackendCapabilities;
+
+/**
+ * Packs strings into as few backend requests as possible, using first fit
+ * decreasing: the longest strings are placed first, each into the first
+ * request that still has room for it under all the
+ * {@link BackendCapabilities} limits.
+ *
+ * Each request lists the indices of its strings in ascending order, and the
+ * requests are ordered by their first index, so the results can be put back
+ * in the original order. A string which doesn't fit any request on its own
+ * is sent alone.
+ */
+final class BatchPacker {
+
+    private BatchPacker() {
+    }
+
+    /**
+     * @return indices (within strings) of the strings of each request
+     */
+    static List<List<Integer>> pack(List<String> strings,
+            BackendCapabilities capabilities) {
+        boolean countBytes =
+                capabilities.getMaxBytes() != BackendCapabilities.UNLIMITED;
+        int[] bytes = new int[strings.size()];
+        if (countBytes) {
+            for (int i = 0; i < strings.size(); i++) {
+                bytes[i] = BackendCapabilities.utf8Length(strings.get(i));
+            }
+        }
+        List<Integer> longestFirst = IntStream.range(0, strings.size())
+                .boxed()
+                .sorted(Comparator.comparingInt(
+                        (Integer i) -> -strings.get(i).length())
+                        .thenComparingInt(i -> i))
+                .collect(Collectors.toList());
+
+        List<Bin> bins = new ArrayList<>();
+        for (int index : longestFirst) {
+            int chars = strings.get(index).length();
+            Bin bin = null;
+            for (Bin candidate : bins) {
+                if (candidate.fits(chars, bytes[index], capabilities)) {
+                    bin = candidate;
+                    break;
+                }
+            }
+            if (bin == null) {
+                bin = new Bin();
+                bins.add(bin);
+            }
+            bin.add(index, chars, bytes[index]);
+        }
+        return bins.stream()
+                .map(bin -> bin.indices.stream().sorted()
+                        .collect(Collectors.toList()))
+                .sorted(Comparator.comparingInt(indices -> indices.get(0)))
+                .collect(Collectors.toList());
+    }
+
+    private static class Bin {
+        private final List<Integer> indices = new ArrayList<>();
+        private long chars;
+        private long bytes;
+
+        private boolean fits(int moreChars, int moreBytes,
+                BackendCapabilities capabilities) {
+            return indices.size() < capabilities.getMaxSegments() &&
+                    chars + moreChars <= capabilities.getMaxChars() &&
+                    bytes + moreBytes <= capabilities.getMaxBytes();
+        }
+
+        private void add(int index, int moreChars, int moreBytes) {
+            indices.add(index);
+            chars += moreChars;
+            bytes += moreBytes;
+        }
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2019, Red Hat, Inc. and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.zanata.magpie.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.zanata.magpie.model.BackendID;
+
+/**
+ * Stops calling an MT provider for a while when too many of its latest calls
+ * failed or were slow.
+ *
+ * <ul>
+ * <li>CLOSED: calls are permitted. The outcomes of the latest
+ * {@link #WINDOW_SIZE} calls are kept, and once there are at least
+ * {@link #MINIMUM_CALLS} of them, the circuit opens if the failure rate or
+ * the slow call rate reaches its threshold.</li>
+ * <li>OPEN: calls are not permitted, until the open duration has
+ * passed.</li>
+ * <li>HALF_OPEN: {@link #HALF_OPEN_CALLS} trial calls are permitted. The
+ * circuit closes if their rates are below the thresholds, and opens again
+ * otherwise.</li>
+ * </ul>
+ * Outcomes of calls started before the last change of state are ignored.
+ */
+class CircuitBreaker implements CircuitBreakerMXBean {
+    private static final Logger LOG =
+            LoggerFactory.getLogger(CircuitBreaker.class);
+    static final int WINDOW_SIZE = 20;
+    static final int MINIMUM_CALLS = 10;
+    static final int HALF_OPEN_CALLS = 3;
+
+    private final BackendID backendID;
+    private final double failureRateThreshold;
+    private final double slowCallRateThreshold;
+    private final long slowCallNanos;
+    private final long openNanos;
+    private final LongSupplier nanoClock;
+
+    private final boolean[] failed = new boolean[WINDOW_SIZE];
+    private final boolean[] slow = new boolean[WINDOW_SIZE];
+    private int count;
+    private int next;
+    private CircuitState state = CircuitState.CLOSED;
+    // incremented on each change of state
+    private long generation;
+    private long openedAt;
+    private int halfOpenPermits;
+    private long notPermittedCount;
+
+    /**
+     * @param failureRateThreshold
+     *            percentage of failed calls opening the circuit
+     * @param slowCallRateThreshold
+     *            percentage of slow calls opening the circuit
+     * @param slowCallMillis
+     *            calls slower than this are slow
+     * @param openMillis
+     *            time before trial calls are permitted once open
+     * @param nanoClock
+     *            eg System::nanoTime
+     */
+    CircuitBreaker(BackendID backendID, double failureRateThreshold,
+            double slowCallRateThreshold, long slowCallMillis,
+            long openMillis, LongSupplier nanoClock) {
+        this.backendID = backendID;
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(slowCallMillis);
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * @return a permit to pass to {@link #onComplete(long, long, boolean)}
+     *         or {@link #release(long)}, or -1 if the call is not permitted
+     */
+    synchronized long acquire() {
+        updateState();
+        if (state == CircuitState.OPEN ||
+                state == CircuitState.HALF_OPEN && halfOpenPermits == 0) {
+            notPermittedCount++;
+            return -1;
+        }
+        if (state == CircuitState.HALF_OPEN) {
+            halfOpenPermits--;
+        }
+        return generation;
+    }
+
+    /**
+     * Records the outcome of a permitted call.
+     */
+    synchronized void onComplete(long permit, long latencyNanos,
+            boolean failure) {
+        if (permit != generation) {
+            return;
+        }
+        failed[next] = failure;
+        slow[next] = latencyNanos > slowCallNanos;
+        next = (next + 1) % WINDOW_SIZE;
+        count = Math.min(count + 1, WINDOW_SIZE);
+        if (state == CircuitState.CLOSED && count >= MINIMUM_CALLS) {
+            if (isAboveThresholds()) {
+                open();
+            }
+        } else if (state == CircuitState.HALF_OPEN && count >= HALF_OPEN_CALLS) {
+            if (isAboveThresholds()) {
+                open();
+            } else {
+                transition(CircuitState.CLOSED);
+            }
+        }
+    }
+
+    /**
+     * Gives back a permit without an outcome, eg for a cancelled call.
+     */
+    synchronized void release(long permit) {
+        if (permit == generation && state == CircuitState.HALF_OPEN) {
+            halfOpenPermits++;
+        }
+    }
+
+    /**
+     * @return current time of the clock used for the open duration
+     */
+    long nanoTime() {
+        return nanoClock.getAsLong();
+    }
+
+    private boolean isAboveThresholds() {
+        return getFailureRate() >= failureRateThreshold ||
+                getSlowCallRate() >= slowCallRateThreshold;
+    }
+
+    private void updateState() {
+        if (state == CircuitState.OPEN && nanoClock.getAsLong() - openedAt >= openNanos) {
+            transition(CircuitState.HALF_OPEN);
+            halfOpenPermits = HALF_OPEN_CALLS;
+        }
+    }
+
+    private void open() {
+        LOG.warn("{}: {}% failed and {}% slow calls, circuit breaker open",
+                backendID, (int) getFailureRate(), (int) getSlowCallRate());
+        transition(CircuitState.OPEN);
+        openedAt = nanoClock.getAsLong();
+    }
+
+    private void transition(CircuitState newState) {
+        if (newState != CircuitState.OPEN) {
+            LOG.info("{}: circuit breaker {}", backendID, newState);
+        }
+        state = newState;
+        generation++;
+        count = 0;
+        next = 0;
+    }
+
+    CircuitState getCurrentState() {
+        synchronized (this) {
+            updateState();
+            return state;
+        }
+    }
+
+    @Override
+    public String getState() {
+        return getCurrentState().name();
+    }
+
+    @Override
+    public synchronized double getFailureRate() {
+        return rate(failed);
+    }
+
+    @Override
+    public synchronized double getSlowCallRate() {
+        return rate(slow);
+    }
+
+    private double rate(boolean[] outcomes) {
+        if (count == 0) {
+            return 0;
+        }
+        int matching = 0;
+        for (int i = 0; i < count; i++) {
+            if (outcomes[i]) {
+                matching++;
+            }
+        }
+        return 100.0 * matching / count;
+    }
+
+    @Override
+    public synchronized int getBufferedCalls() {
+        return count;
+    }
+
+    @Override
+    public synchronized long getNotPermittedCount() {
+        return notPermittedCount;
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2019, Red Hat, Inc. and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.zanata.magpie.service;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+
+import org.zanata.magpie.backend.BackendLocaleCode;
+import org.zanata.magpie.exception.BackendUnavailableException;
+import org.zanata.magpie.model.AugmentedTranslation;
+import org.zanata.magpie.model.StringType;
+
+/**
+ * Calls a {@link TranslatorBackend} only when its {@link CircuitBreaker}
+ * permits it, and fails fast with {@link BackendUnavailableException}
+ * otherwise. Only failures of the provider count against the circuit;
+ * calls failing because of the request itself just give back their permit.
+ */
+class CircuitBreakerBackend extends ForwardingTranslatorBackend {
+    private final CircuitBreaker circuitBreaker;
+
+    CircuitBreakerBackend(TranslatorBackend delegate,
+            CircuitBreaker circuitBreaker) {
+        super(delegate);
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    @Override
+    public CompletionStage<List<AugmentedTranslation>> translateAsync(
+            List<String> contents, BackendLocaleCode srcLocale,
+            BackendLocaleCode targetLocale, StringType stringType,
+            Optional<String> category) {
+        CompletableFuture<List<AugmentedTranslation>> result =
+                new CompletableFuture<>();
+        long permit = circuitBreaker.acquire();
+        if (permit < 0) {
+            result.completeExceptionally(new BackendUnavailableException(
+                    getId() + " is unavailable, circuit breaker open"));
+            return result;
+        }
+        long startTime = circuitBreaker.nanoTime();
+        CompletableFuture<List<AugmentedTranslation>> calling;
+        try {
+            calling = delegate.translateAsync(contents, srcLocale,
+                    targetLocale, stringType, category).toCompletableFuture();
+        } catch (RuntimeException e) {
+            onFailure(permit, startTime, e);
+            result.completeExceptionally(e);
+            return result;
+        }
+        calling.whenComplete((translations, e) -> {
+            Throwable cause = e instanceof CompletionException &&
+                    e.getCause() != null ? e.getCause() : e;
+            if (cause == null) {
+                circuitBreaker.onComplete(permit,
+                        circuitBreaker.nanoTime() - startTime, false);
+            } else {
+                onFailure(permit, startTime, cause);
+            }
+            if (cause != null) {
+                result.completeExceptionally(cause);
+            } else {
+                result.complete(translations);
+            }
+        });
+        // eg the losing call of a hedged request
+        result.whenComplete((translations, e) -> {
+            if (result.isCancelled()) {
+                calling.cancel(false);
+            }
+        });
+        return result;
+    }
+
+    private void onFailure(long permit, long startTime, Throwable cause) {
+        if (cause instanceof CancellationException ||
+                !BackendFailures.isProviderFailure(cause)) {
+            circuitBreaker.release(permit);
+        } else {
+            circuitBreaker.onComplete(permit,
+                    circuitBreaker.nanoTime() - startTime, true);
+        }
+    }
+}
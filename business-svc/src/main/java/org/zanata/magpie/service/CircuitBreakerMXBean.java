@@ -0,0 +1,54 @@
+/*
+ * Copyright 2019, Red Hat, Inc. and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.zanata.magpie.service;
+
+/**
+ * State of the circuit breaker of one MT provider, see
+ * {@link CircuitBreaker}. Registered as a JMX MXBean (and visible in the
+ * JavaMelody MBeans report).
+ */
+public interface CircuitBreakerMXBean {
+
+    /**
+     * @return CLOSED, OPEN or HALF_OPEN
+     */
+    String getState();
+
+    /**
+     * @return percentage of failed calls among the buffered ones
+     */
+    double getFailureRate();
+
+    /**
+     * @return percentage of slow calls among the buffered ones
+     */
+    double getSlowCallRate();
+
+    /**
+     * @return number of call outcomes used for the rates
+     */
+    int getBufferedCalls();
+
+    /**
+     * @return number of calls rejected while open
+     */
+    long getNotPermittedCount();
+}
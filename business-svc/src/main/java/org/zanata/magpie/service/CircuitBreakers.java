@@ -0,0 +1,171 @@
+/*
+ * Copyright 2019, Red Hat, Inc. and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.zanata.magpie.service;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.LongSupplier;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.zanata.magpie.annotation.BackEndProviders;
+import org.zanata.magpie.annotation.EnvVariable;
+import org.zanata.magpie.model.BackendID;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+import static org.zanata.magpie.api.APIConstant.CIRCUIT_BREAKER_FAILURE_RATE;
+import static org.zanata.magpie.api.APIConstant.CIRCUIT_BREAKER_FALLBACK;
+import static org.zanata.magpie.api.APIConstant.CIRCUIT_BREAKER_OPEN_DURATION;
+import static org.zanata.magpie.api.APIConstant.CIRCUIT_BREAKER_SLOW_CALL_DURATION;
+import static org.zanata.magpie.api.APIConstant.CIRCUIT_BREAKER_SLOW_CALL_RATE;
+
+/**
+ * Holds the {@link CircuitBreaker} of each MT provider, and registers them
+ * as JMX MXBeans.
+ *
+ * While the circuit of a provider is open, its calls fail fast, unless a
+ * fallback is enabled with {@link
+ * org.zanata.magpie.api.APIConstant#CIRCUIT_BREAKER_FALLBACK}: another
+ * available provider is used instead, see {@link #getFallback(BackendID)}.
+ */
+@ApplicationScoped
+public class CircuitBreakers {
+    private static final Logger LOG =
+            LoggerFactory.getLogger(CircuitBreakers.class);
+    static final double DEFAULT_FAILURE_RATE = 50;
+    static final double DEFAULT_SLOW_CALL_RATE = 100;
+    static final long DEFAULT_SLOW_CALL_MILLIS = 10_000;
+    static final long DEFAULT_OPEN_MILLIS = 30_000;
+    static final String OBJECT_NAME =
+            "org.zanata.magpie:type=CircuitBreaker,backend=";
+
+    private final Map<BackendID, CircuitBreaker> circuitBreakers =
+            new EnumMap<>(BackendID.class);
+    private Set<BackendID> availableProviders;
+    private boolean fallback;
+
+    @SuppressWarnings("unused")
+    CircuitBreakers() {
+    }
+
+    @Inject
+    public CircuitBreakers(
+            @EnvVariable(CIRCUIT_BREAKER_FAILURE_RATE) String failureRate,
+            @EnvVariable(CIRCUIT_BREAKER_SLOW_CALL_RATE) String slowCallRate,
+            @EnvVariable(CIRCUIT_BREAKER_SLOW_CALL_DURATION) String slowCallMillis,
+            @EnvVariable(CIRCUIT_BREAKER_OPEN_DURATION) String openSeconds,
+            @EnvVariable(CIRCUIT_BREAKER_FALLBACK) String fallback,
+            @BackEndProviders Set<BackendID> availableProviders) {
+        this(isBlank(failureRate) ? DEFAULT_FAILURE_RATE :
+                        Double.parseDouble(failureRate.trim()),
+                isBlank(slowCallRate) ? DEFAULT_SLOW_CALL_RATE :
+                        Double.parseDouble(slowCallRate.trim()),
+                isBlank(slowCallMillis) ? DEFAULT_SLOW_CALL_MILLIS :
+                        Long.parseLong(slowCallMillis.trim()),
+                isBlank(openSeconds) ? DEFAULT_OPEN_MILLIS :
+                        Long.parseLong(openSeconds.trim()) * 1000,
+                Boolean.parseBoolean(fallback), availableProviders,
+                System::nanoTime);
+    }
+
+    @VisibleForTesting
+    CircuitBreakers(double failureRate, double slowCallRate,
+            long slowCallMillis, long openMillis, boolean fallback,
+            Set<BackendID> availableProviders, LongSupplier nanoClock) {
+        this.fallback = fallback;
+        this.availableProviders = availableProviders;
+        for (BackendID backendID : BackendID.values()) {
+            circuitBreakers.put(backendID, new CircuitBreaker(backendID,
+                    failureRate, slowCallRate, slowCallMillis, openMillis,
+                    nanoClock));
+        }
+    }
+
+    /**
+     * @return a backend failing fast while the circuit of its provider is
+     *         open
+     */
+    public TranslatorBackend protect(TranslatorBackend backend) {
+        return new CircuitBreakerBackend(backend,
+                circuitBreakers.get(backend.getId()));
+    }
+
+    public CircuitState getState(BackendID backendID) {
+        return circuitBreakers.get(backendID).getCurrentState();
+    }
+
+    /**
+     * @return another available provider to call instead, if fallback is
+     *         enabled and the circuit of this provider is open
+     */
+    public Optional<BackendID> getFallback(BackendID backendID) {
+        if (!fallback || getState(backendID) != CircuitState.OPEN) {
+            return Optional.empty();
+        }
+        return availableProviders.stream()
+                .filter(id -> id != backendID && id != BackendID.DEV &&
+                        getState(id) != CircuitState.OPEN)
+                .sorted().findFirst();
+    }
+
+    @PostConstruct
+    public void registerMBeans() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        circuitBreakers.forEach((backendID, circuitBreaker) -> {
+            try {
+                ObjectName name = new ObjectName(OBJECT_NAME + backendID.name());
+                if (!server.isRegistered(name)) {
+                    server.registerMBean(circuitBreaker, name);
+                }
+            } catch (JMException e) {
+                LOG.warn("Cannot register circuit breaker MBean", e);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void unregisterMBeans() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        circuitBreakers.keySet().forEach(backendID -> {
+            try {
+                ObjectName name = new ObjectName(OBJECT_NAME + backendID.name());
+                if (server.isRegistered(name)) {
+                    server.unregisterMBean(name);
+                }
+            } catch (JMException e) {
+                LOG.warn("Cannot unregister circuit breaker MBean", e);
+            }
+        });
+    }
+}
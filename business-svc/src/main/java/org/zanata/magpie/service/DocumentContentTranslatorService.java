@@ -6,6 +6,7 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import javax.enterprise.context.ApplicationScoped;
@@ -20,17 +21,24 @@ import org.jsoup.nodes.Node;
 import org.jsoup.nodes.TextNode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.zanata.magpie.annotation.EnvVariable;
 import org.zanata.magpie.api.dto.APIResponse;
 import org.zanata.magpie.api.dto.DocumentContent;
 import org.zanata.magpie.api.dto.TypeString;
+import org.zanata.magpie.backend.BackendCapabilities;
 import org.zanata.magpie.model.Document;
 import org.zanata.magpie.model.StringType;
 import org.zanata.magpie.util.ArticleUtil;
 import org.zanata.magpie.exception.MTException;
 import org.zanata.magpie.model.BackendID;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import org.zanata.magpie.util.ShortString;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+import static org.zanata.magpie.api.APIConstant.DOCUMENT_PARALLELISM;
+import static org.zanata.magpie.api.APIConstant.STREAMING_HTML_THRESHOLD;
 import static org.zanata.magpie.util.SegmentStringKt.segmentBySentences;
 
 /**
@@ -45,7 +53,13 @@ public class DocumentContentTranslatorService {
     // set MT category for translation
     private static final String CATEGORY = "tech";
 
+    static final int DEFAULT_PARALLELISM = 4;
+
+    static final int DEFAULT_STREAMING_HTML_THRESHOLD = 1024 * 1024;
+
     private PersistentTranslationService persistentTranslationService;
+    private int parallelism;
+    private int streamingHtmlThreshold;
 
     @SuppressWarnings({"unused", "uninitialized"})
     public DocumentContentTranslatorService() {
@@ -53,15 +67,38 @@ public class DocumentContentTranslatorService {
 
     @Inject
     public DocumentContentTranslatorService(
-            PersistentTranslationService persistentTranslationService) {
+            PersistentTranslationService persistentTranslationService,
+            @EnvVariable(DOCUMENT_PARALLELISM) String parallelism,
+            @EnvVariable(STREAMING_HTML_THRESHOLD) String streamingHtmlThreshold) {
+        this(persistentTranslationService,
+                isBlank(parallelism) ? DEFAULT_PARALLELISM :
+                        Integer.parseInt(parallelism.trim()),
+                isBlank(streamingHtmlThreshold) ?
+                        DEFAULT_STREAMING_HTML_THRESHOLD :
+                        Integer.parseInt(streamingHtmlThreshold.trim()));
+    }
+
+    @VisibleForTesting
+    DocumentContentTranslatorService(
+            PersistentTranslationService persistentTranslationService,
+            int parallelism, int streamingHtmlThreshold) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException(
+                    DOCUMENT_PARALLELISM + " must be at least 1");
+        }
         this.persistentTranslationService = persistentTranslationService;
+        this.parallelism = parallelism;
+        this.streamingHtmlThreshold = streamingHtmlThreshold;
     }
 
     /**
      * Translate a Document and send in for machine translation request.
      *
      * If string is no longer than maxLength, it will be send as a batch according
-     * to the type.
+     * to the type. Batches are packed to fit the
+     * {@link BackendCapabilities} of the backend, see {@link BatchPacker},
+     * and the batches of all types are translated concurrently, see
+     * {@link PersistentTranslationService#translateBatches}.
      *
      * If a string is longer than maxLength,
      * Plain Text: try to segment it and send it as a single MT request. Will
@@ -69,6 +106,14 @@ public class DocumentContentTranslatorService {
      * HTML: try to run through the node tree and translate. Will be ignored if
      * cannot be broken down.
      *
+     * HTML strings longer than the streaming threshold are not parsed, they
+     * are translated from a stream of tokens, see
+     * {@link StreamingHtmlTranslator}.
+     *
+     * The batches of the long strings are translated in the same window as
+     * the batches of the short strings, see {@link PendingBatches}, and the
+     * short strings ride along with the first window of a streamed string.
+     *
      * {@link DocumentContent}
      **/
     public DocumentContent translateDocument(Document doc,
@@ -77,11 +122,20 @@ public class DocumentContentTranslatorService {
         Map<Integer, TypeString> indexTextMap = new LinkedHashMap<>();
         Map<Integer, TypeString> indexHTMLMap = new LinkedHashMap<>();
         Map<Integer, TypeString> indexXMLMap = new LinkedHashMap<>();
-        int maxLength = persistentTranslationService.getMaxLength(backendID);
+        BackendCapabilities capabilities =
+                persistentTranslationService.getCapabilities(backendID);
+        int maxLength = capabilities.getMaxChars();
 
         List<APIResponse> warnings = new ArrayList<>();
         List<TypeString> typeStrings =
                 new ArrayList<>(documentContent.getContents());
+        // html or xml nodes, parsed once and kept until the placeholders are
+        // restored
+        Map<Integer, TranslatableNodeList> nodeCache = new HashMap<>();
+        PendingBatches pending = new PendingBatches(
+                batches -> translateBatches(doc, backendID, batches));
+        // html strings over the streaming threshold, translated last
+        List<Integer> streamedIndices = new ArrayList<>();
 
         // counts short strings (less than maxLength) which are translated
         // in a batch at the end
@@ -94,12 +148,12 @@ public class DocumentContentTranslatorService {
                 if (source.length() <= maxLength) {
                     indexTextMap.put(index, typeString);
                 } else {
-                    StringTranslationResult result =
-                            translatePlainTextBySentences(doc, backendID,
-                                    source, maxLength);
-                    typeString.setValue(result.getTranslation());
-                    warnings.addAll(result.getWarnings());
+                    addPlainTextBySentences(pending, doc, source,
+                            capabilities, warnings, typeString::setValue);
                 }
+            } else if (mediaType.equals(MediaType.TEXT_HTML_TYPE) &&
+                    source.length() > streamingHtmlThreshold) {
+                streamedIndices.add(index);
             } else if (mediaType.equals(MediaType.TEXT_HTML_TYPE) ||
                     mediaType.equals(MediaType.TEXT_XML_TYPE)) {
                 boolean xml = mediaType.equals(MediaType.TEXT_XML_TYPE);
@@ -112,60 +166,74 @@ public class DocumentContentTranslatorService {
                 if (html.length() <= maxLength) {
                     Map<Integer, TypeString> indexMap = xml ? indexXMLMap : indexHTMLMap;
                     indexMap.put(index, typeString);
+                    nodeCache.put(index, translatableNodeList);
                 } else {
                     Function<String, Element> toElement = xml ? ArticleUtil::wrapXML : ArticleUtil::wrapHTML;
-                    StringTranslationResult result =
-                            translateLargeElement(doc, backendID, mediaType,
-                                    maxLength, html, toElement);
-                    String translationWithPlaceholders = result.getTranslation();
-
-                    // replace placeholder with original node
-                    String translatedString =
-                            removePlaceholders(translationWithPlaceholders,
-                                    translatableNodeList, toElement);
-                    typeString.setValue(translatedString);
-                    warnings.addAll(result.getWarnings());
+                    // the parsed nodes are translated in place, and the
+                    // placeholders replaced with the original nodes
+                    addLargeElement(pending, doc, mediaType, capabilities,
+                            translatableNodeList, toElement, warnings,
+                            typeString::setValue);
                 }
             }
             index++;
         }
 
-        translateAndMergeStringsInBatch(doc, backendID, StringType.TEXT_PLAIN,
-                maxLength, indexTextMap, typeStrings);
-        translateAndMergeStringsInBatch(doc, backendID, StringType.HTML,
-                maxLength, indexHTMLMap, typeStrings);
-        translateAndMergeStringsInBatch(doc, backendID, StringType.XML,
-                maxLength, indexXMLMap, typeStrings);
+        addBatches(pending, StringType.TEXT_PLAIN, capabilities, indexTextMap,
+                nodeCache);
+        addBatches(pending, StringType.HTML, capabilities, indexHTMLMap,
+                nodeCache);
+        addBatches(pending, StringType.XML, capabilities, indexXMLMap,
+                nodeCache);
+        for (int streamedIndex : streamedIndices) {
+            TypeString typeString = typeStrings.get(streamedIndex);
+            StringTranslationResult result = new StreamingHtmlTranslator(
+                    typeString.getValue(), streamedIndex, capabilities,
+                    parallelism, pending::translateWith,
+                    text -> translatePlainTextBySentences(pending, doc, text,
+                            capabilities)).translate();
+            typeString.setValue(result.getTranslation());
+            warnings.addAll(result.getWarnings());
+        }
+        pending.flush();
+        restorePlaceholders(nodeCache, typeStrings);
         return new DocumentContent(typeStrings, documentContent.getUrl(),
                 doc.getToLocale().getLocaleCode().getId(), backendID.getId(),
                 warnings);
     }
 
-    private String removePlaceholders(String translationWithPlaceholders,
-            TranslatableNodeList translatableNodeList,
-            Function<String, Element> toElement) {
-        return ArticleUtil.replacePlaceholderWithNode(
-                translatableNodeList.getPlaceholderIdMap(),
-                translationWithPlaceholders, toElement);
+    /**
+     * Same as {@link #addPlainTextBySentences}, translating the pending
+     * batches right away.
+     */
+    private StringTranslationResult translatePlainTextBySentences(
+            PendingBatches pending, Document doc, String sourceText,
+            BackendCapabilities capabilities) {
+        List<APIResponse> warnings = new ArrayList<>();
+        StringBuilder translation = new StringBuilder();
+        addPlainTextBySentences(pending, doc, sourceText, capabilities,
+                warnings, translation::append);
+        pending.flush();
+        return new StringTranslationResult(translation.toString(), warnings);
     }
 
     /**
-     * Translate strings with batch of maxLength
+     * Add the sentences of a long text to the pending batches, packed by
+     * {@link BatchPacker}. Sentences longer than the backend's char limit are
+     * left untranslated.
+     * @param onTranslated
+     *            receives the translated text once the batches are merged
      */
-    private StringTranslationResult translatePlainTextBySentences(Document doc,
-            BackendID backendID, String sourceText, int maxBatchLength) {
-        List<APIResponse> warnings = new ArrayList<>();
+    private void addPlainTextBySentences(PendingBatches pending, Document doc,
+            String sourceText, BackendCapabilities capabilities,
+            List<APIResponse> warnings, Consumer<String> onTranslated) {
+        int maxBatchLength = capabilities.getMaxChars();
         List<String> sourceSentences =
                 segmentBySentences(sourceText,
                         Optional.of(doc.getFromLocale().getLocaleCode()));
-        // source sentences which have been collected in a batch
-        List<String> batchSentences = new ArrayList<>();
-        // invariant: should equal total number of chars in batchSentences
-        int charsInBatch = 0;
         // the indices (within sourceSentences) of sentences short enough to translate
         List<Integer> translatableSentenceNums = new ArrayList<>();
-        // the translations of the translatable sentences. Same size as translatableSentenceNums?
-        List<String> translatedSentences = new ArrayList<>();
+        List<String> translatableSentences = new ArrayList<>();
         for (int sourceSentenceNum = 0; sourceSentenceNum < sourceSentences.size(); sourceSentenceNum++) {
             String sourceSentence = sourceSentences.get(sourceSentenceNum);
             // ignore string if length is longer than maxLength
@@ -173,225 +241,208 @@ public class DocumentContentTranslatorService {
                 warnings.add(maxLengthWarning(sourceSentence, maxBatchLength));
                 continue;
             }
-            if (charsInBatch + sourceSentence.length() > maxBatchLength) {
-                // Adding this sentence to the batch would take us over the
-                // limit, so process the previous batch now.
-                processBatchSentences(doc, backendID, batchSentences,
-                        translatedSentences);
-                charsInBatch = 0;
-            }
-            // add sentence to the batch (which may be brand new)
-            batchSentences.add(sourceSentence);
-            charsInBatch += sourceSentence.length();
             translatableSentenceNums.add(sourceSentenceNum);
-        }
-        if (!batchSentences.isEmpty()) {
-            // translate the leftovers in a last batch
-            processBatchSentences(doc, backendID, batchSentences, translatedSentences);
-            // just maintaining the invariant (for completeness):
-            //noinspection UnusedAssignment
-            charsInBatch = 0;
+            translatableSentences.add(sourceSentence);
         }
 
         List<String> results = new ArrayList<>(sourceSentences);
-        for (int index = 0; index < translatedSentences.size(); index++) {
-            results.set(translatableSentenceNums.get(index), translatedSentences.get(index));
+        for (List<Integer> batch : BatchPacker.pack(translatableSentences,
+                capabilities)) {
+            List<Integer> sentenceNums = batch.stream()
+                    .map(translatableSentenceNums::get)
+                    .collect(Collectors.toList());
+            pending.add(new StringBatch(batch.stream()
+                    .map(translatableSentences::get)
+                    .collect(Collectors.toList()), StringType.TEXT_PLAIN),
+                    translatedSentences -> {
+                        // Number of translations should match number of requests:
+                        assert sentenceNums.size() ==
+                                translatedSentences.size();
+                        for (int j = 0; j < translatedSentences.size(); j++) {
+                            results.set(sentenceNums.get(j),
+                                    translatedSentences.get(j));
+                        }
+                    });
         }
-        return new StringTranslationResult(String.join("", results), warnings);
-    }
-
-    private void processBatchSentences(Document doc, BackendID backendID,
-            List<String> batchSentences, List<String> translatedSentences) {
-        List<String> batchTranslatedSentences = persistentTranslationService
-                .translate(doc, batchSentences, doc.getFromLocale(),
-                        doc.getToLocale(), backendID,
-                        StringType.TEXT_PLAIN, Optional.of(CATEGORY));
-        // Number of translations should match number of requests:
-        assert batchSentences.size() == batchTranslatedSentences.size();
-        translatedSentences.addAll(batchTranslatedSentences);
-        // start a new batch
-        batchSentences.clear();
+        pending.whenMerged(() -> onTranslated.accept(String.join("", results)));
     }
 
     /**
-     * Translate strings with batch of maxLength
+     * Pack strings of one type into pending batches, see {@link BatchPacker}.
+     * HTML and XML strings are sent with placeholders in their
+     * non-translatable nodes, from nodeCache.
      * @param docStringType text/plain, text/html or text/xml
      */
-    private void translateAndMergeStringsInBatch(Document doc, BackendID backendID,
-            StringType docStringType, int maxLength,
+    private void addBatches(PendingBatches pending, StringType docStringType,
+            BackendCapabilities capabilities,
             Map<Integer, TypeString> indexTypeStringMap,
-            List<TypeString> results) {
+            Map<Integer, TranslatableNodeList> nodeCache) {
         if (indexTypeStringMap.isEmpty()) return;
-        List<String> batchedStrings = new ArrayList<>();
-        List<Integer> indexOrderList = new ArrayList<>();
-        // html or xml nodes
-        Map<Integer, TranslatableNodeList> nodeCache = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        List<TypeString> typeStrings = new ArrayList<>();
 
-        int charCount = 0;
         for (Map.Entry<Integer, TypeString> entry : indexTypeStringMap
                 .entrySet()) {
             int index = entry.getKey();
             TypeString typeString = entry.getValue();
-
-            String stringToTranslate = typeString.getValue();
-            String stringType = typeString.getType();
-            if (stringType.equals(MediaType.TEXT_HTML)) {
-                TranslatableNodeList translatableNodeList =
-                        ArticleUtil.replaceNonTranslatableNodeHTML(index,
-                                stringToTranslate);
-                nodeCache.put(index, translatableNodeList);
-                stringToTranslate = translatableNodeList.getHtml();
-            } else if (stringType.equals(MediaType.TEXT_XML)) {
-                TranslatableNodeList translatableNodeList =
-                        ArticleUtil.replaceNonTranslatableNodeXML(index,
-                                stringToTranslate);
-                nodeCache.put(index, translatableNodeList);
-                stringToTranslate = translatableNodeList.getHtml();
-            }
-
-            if (charCount + stringToTranslate.length() > maxLength) {
-                translateAndMergeStrings(doc, backendID,
-                        StringType.fromMediaType(stringType), batchedStrings,
-                        indexOrderList, results);
-                charCount = 0;
-                batchedStrings.clear();
-                indexOrderList.clear();
-            }
-            batchedStrings.add(stringToTranslate);
-            indexOrderList.add(entry.getKey());
-            charCount += stringToTranslate.length();
+            TranslatableNodeList translatableNodeList = nodeCache.get(index);
+            strings.add(translatableNodeList != null ?
+                    translatableNodeList.getHtml() : typeString.getValue());
+            typeStrings.add(typeString);
         }
-        translateAndMergeStrings(doc, backendID, docStringType, batchedStrings,
-                indexOrderList, results);
-
-        // restore placeholder nodes with original values in html/xml
-        if (!nodeCache.isEmpty()) {
-            for (Map.Entry<Integer, TranslatableNodeList> entry: nodeCache.entrySet()) {
-                int index = entry.getKey();
-                TypeString typeString = results.get(index);
-                Map<String, Node> placeholderIdMap =
-                        entry.getValue().getPlaceholderIdMap();
-                String translatedString;
-                switch (typeString.getType()) {
-                    case MediaType.TEXT_HTML:
-                        translatedString = ArticleUtil
-                                .replacePlaceholderWithNode(
-                                        placeholderIdMap,
-                                        typeString.getValue(),
-                                        ArticleUtil::wrapHTML);
-                        break;
-                    case MediaType.TEXT_XML:
-                        translatedString = ArticleUtil
-                                .replacePlaceholderWithNode(
-                                        placeholderIdMap,
-                                        typeString.getValue(),
-                                        ArticleUtil::wrapXML);
-                        break;
-                    default:
-                        throw new RuntimeException();
-                }
-
-                typeString.setValue(translatedString);
-                results.set(index, typeString);
-            }
+        for (List<Integer> batch : BatchPacker.pack(strings, capabilities)) {
+            pending.add(new StringBatch(batch.stream().map(strings::get)
+                    .collect(Collectors.toList()), docStringType),
+                    translatedStrings -> {
+                        assert translatedStrings.size() == batch.size();
+                        for (int i = 0; i < translatedStrings.size(); i++) {
+                            typeStrings.get(batch.get(i))
+                                    .setValue(translatedStrings.get(i));
+                        }
+                    });
         }
     }
 
-    // perform translation on list of string and merge into results
-    private void translateAndMergeStrings(Document doc, BackendID backendID,
-            StringType stringType, List<String> strings,
-            List<Integer> indexOrderList, List<TypeString> results) {
+    /**
+     * restore placeholder nodes with original values in html/xml
+     */
+    private void restorePlaceholders(
+            Map<Integer, TranslatableNodeList> nodeCache,
+            List<TypeString> results) {
+        for (Map.Entry<Integer, TranslatableNodeList> entry: nodeCache.entrySet()) {
+            int index = entry.getKey();
+            TypeString typeString = results.get(index);
+            Map<String, Node> placeholderIdMap =
+                    entry.getValue().getPlaceholderIdMap();
+            String translatedString;
+            switch (typeString.getType()) {
+                case MediaType.TEXT_HTML:
+                    translatedString = ArticleUtil
+                            .replacePlaceholderWithNode(
+                                    placeholderIdMap,
+                                    typeString.getValue(),
+                                    ArticleUtil::wrapHTML);
+                    break;
+                case MediaType.TEXT_XML:
+                    translatedString = ArticleUtil
+                            .replacePlaceholderWithNode(
+                                    placeholderIdMap,
+                                    typeString.getValue(),
+                                    ArticleUtil::wrapXML);
+                    break;
+                default:
+                    throw new RuntimeException();
+            }
 
-        List<String> translatedStrings = persistentTranslationService
-                .translate(doc, strings, doc.getFromLocale(),
-                        doc.getToLocale(), backendID, stringType,
-                        Optional.of(CATEGORY));
-        assert translatedStrings.size() == strings.size();
+            typeString.setValue(translatedString);
+            results.set(index, typeString);
+        }
+    }
 
-        for (int index = 0; index < translatedStrings.size(); index++) {
-            results.get(indexOrderList.get(index))
-                    .setValue(translatedStrings.get(index));
+    private List<List<String>> translateBatches(Document doc,
+            BackendID backendID, List<StringBatch> batches) {
+        if (batches.isEmpty()) {
+            return ImmutableList.of();
         }
+        return persistentTranslationService.translateBatches(doc, batches,
+                doc.getFromLocale(), doc.getToLocale(), backendID,
+                Optional.of(CATEGORY), parallelism);
     }
 
     /**
-     * Translate all html tree nodes from top to bottom.
-     * If parent node is being translated,
-     * its child nodes will not be translated again.
-     *
-     * root.getAllElements().size() changes once root is being translated.
+     * Add the nodes of a large html/xml string to the pending batches. The
+     * largest nodes which fit in a request are collected from the whole tree,
+     * and packed by {@link BatchPacker}. Large text nodes are translated by
+     * sentences. Other nodes too large to translate, without child nodes,
+     * are left as is. Once translated, the placeholders are replaced with the
+     * original nodes.
      * @param mediaType text/plain, text/html or text/xml
+     * @param onTranslated
+     *            receives the translated string once the batches are merged
      */
-    private StringTranslationResult translateLargeElement(Document doc, BackendID backendID,
-            MediaType mediaType, int maxLength, String source,
-            Function<String, Element> toElement) {
-
-        List<APIResponse> warnings = new ArrayList<>();
-        List<Node> contents =
-                ArticleUtil.unwrapAsElements(toElement.apply(source));
+    private void addLargeElement(PendingBatches pending, Document doc,
+            MediaType mediaType, BackendCapabilities capabilities,
+            TranslatableNodeList translatableNodeList,
+            Function<String, Element> toElement, List<APIResponse> warnings,
+            Consumer<String> onTranslated) {
+        List<Node> contents = translatableNodeList.getNodes();
+        List<Node> translatableNodes = new ArrayList<>();
+        List<TextNode> largeTextNodes = new ArrayList<>();
 
-        for (int contentIndex = 0; contentIndex < contents.size(); contentIndex++) {
-            Node content = contents.get(contentIndex);
+        for (Node content : contents) {
             // if content is a (large) TextNode, ie no child nodes, translate as large plain text
             if (content instanceof TextNode) {
-                TextNode textNode = (TextNode) content;
-                StringTranslationResult textResult =
-                        translatePlainTextBySentences(doc, backendID,
-                                textNode.getWholeText(), maxLength);
-                textNode.text(textResult.getTranslation());
-                warnings.addAll(textResult.getWarnings());
+                largeTextNodes.add((TextNode) content);
             } else {
-                translateChildNodes(doc, backendID, mediaType, maxLength,
-                        toElement, warnings, content);
+                collectTranslatableNodes(content, capabilities.getMaxChars(),
+                        translatableNodes, largeTextNodes, warnings);
             }
         }
-        String translation = contents.stream()
-                .map(Node::outerHtml)
-                .collect(Collectors.joining());
-        return new StringTranslationResult(translation, warnings);
+        addNodes(pending, mediaType, capabilities, toElement,
+                translatableNodes);
+        for (TextNode textNode : largeTextNodes) {
+            addPlainTextBySentences(pending, doc, textNode.getWholeText(),
+                    capabilities, warnings, textNode::text);
+        }
+        pending.whenMerged(() -> {
+            ArticleUtil.replacePlaceholderWithNode(
+                    translatableNodeList.getPlaceholderIdMap(), contents);
+            onTranslated.accept(contents.stream()
+                    .map(Node::outerHtml)
+                    .collect(Collectors.joining()));
+        });
     }
 
-    private void translateChildNodes(Document doc, BackendID backendID,
-            MediaType mediaType,
-            int maxLength, Function<String, Element> toElement,
-            List<APIResponse> warnings, Node content) {
-        int childCount = content.childNodeSize();
-        int childIndex = 0;
-
-        while (childIndex < childCount) {
-            Node child = content.childNode(childIndex);
+    /**
+     * Collect the child nodes of content which fit in a request. Larger
+     * child nodes are searched for smaller ones, down to the text nodes.
+     */
+    private void collectTranslatableNodes(Node content, int maxLength,
+            List<Node> translatableNodes, List<TextNode> largeTextNodes,
+            List<APIResponse> warnings) {
+        for (Node child : content.childNodes()) {
+            if (child instanceof TextNode && ((TextNode) child).isBlank()) {
+                continue;
+            }
             String html = child.outerHtml();
             if (html.length() <= maxLength) {
-                List<String> translated =
-                        persistentTranslationService
-                                .translate(doc, ImmutableList.of(html),
-                                        doc.getFromLocale(),
-                                        doc.getToLocale(), backendID,
-                                        StringType.fromMediaType(mediaType),
-                                        Optional.of(CATEGORY));
-                assert translated.size() == 1;
-                Node replacement = ArticleUtil
-                        .asElement(translated.get(0), toElement);
-                if (replacement != null) {
-                    child.replaceWith(replacement);
-                }
+                translatableNodes.add(child);
+            } else if (child instanceof TextNode) {
+                largeTextNodes.add((TextNode) child);
+            } else if (child.childNodeSize() > 0) {
+                collectTranslatableNodes(child, maxLength, translatableNodes,
+                        largeTextNodes, warnings);
             } else {
-                // if child is a (large) TextNode, ie no child nodes, translate as large plain text
-                if (child instanceof TextNode) {
-                    TextNode textNode = (TextNode) child;
-                    StringTranslationResult textResult =
-                            translatePlainTextBySentences(doc, backendID,
-                                    textNode.getWholeText(), maxLength);
-                    textNode.text(textResult.getTranslation());
-                    warnings.addAll(textResult.getWarnings());
-                } else {
-                    // show warning if there are no more children under this node
-                    warnings.add(maxLengthWarning(html, maxLength));
-                }
+                // show warning if there are no more children under this node
+                warnings.add(maxLengthWarning(html, maxLength));
             }
-            // size changes if child node is being translated
-            childCount = content.childNodeSize();
-            childIndex++;
+        }
+    }
+
+    /**
+     * Add the nodes to the pending batches, to be replaced with their
+     * translations.
+     */
+    private void addNodes(PendingBatches pending, MediaType mediaType,
+            BackendCapabilities capabilities,
+            Function<String, Element> toElement, List<Node> nodes) {
+        List<String> htmls = nodes.stream().map(Node::outerHtml)
+                .collect(Collectors.toList());
+        StringType stringType = StringType.fromMediaType(mediaType);
+        for (List<Integer> batch : BatchPacker.pack(htmls, capabilities)) {
+            pending.add(new StringBatch(batch.stream().map(htmls::get)
+                    .collect(Collectors.toList()), stringType),
+                    translated -> {
+                        assert translated.size() == batch.size();
+                        for (int j = 0; j < translated.size(); j++) {
+                            Node replacement = ArticleUtil
+                                    .asElement(translated.get(j), toElement);
+                            if (replacement != null) {
+                                nodes.get(batch.get(j))
+                                        .replaceWith(replacement);
+                            }
+                        }
+                    });
         }
     }
 
@@ -417,4 +468,60 @@ public class DocumentContentTranslatorService {
         return StringUtils.equalsAny(mediaType, MediaType.TEXT_HTML,
                 MediaType.TEXT_PLAIN, MediaType.TEXT_XML);
     }
+
+    /**
+     * Batches of a document waiting to be translated together in one window
+     * of {@link PersistentTranslationService#translateBatches}, each with the
+     * action merging its translations.
+     */
+    private static final class PendingBatches {
+        private final Function<List<StringBatch>, List<List<String>>> translator;
+        private final List<StringBatch> batches = new ArrayList<>();
+        private final List<Consumer<List<String>>> mergers = new ArrayList<>();
+        private final List<Runnable> completions = new ArrayList<>();
+
+        private PendingBatches(
+                Function<List<StringBatch>, List<List<String>>> translator) {
+            this.translator = translator;
+        }
+
+        private void add(StringBatch batch, Consumer<List<String>> merger) {
+            batches.add(batch);
+            mergers.add(merger);
+        }
+
+        /**
+         * @param completion
+         *            run once the batches added so far are merged
+         */
+        private void whenMerged(Runnable completion) {
+            completions.add(completion);
+        }
+
+        /**
+         * Translate the given batches together with the pending ones, which
+         * are merged.
+         *
+         * @return translations of the given batches
+         */
+        private List<List<String>> translateWith(List<StringBatch> others) {
+            List<StringBatch> all = new ArrayList<>(batches);
+            all.addAll(others);
+            List<Consumer<List<String>>> merging = new ArrayList<>(mergers);
+            List<Runnable> completing = new ArrayList<>(completions);
+            batches.clear();
+            mergers.clear();
+            completions.clear();
+            List<List<String>> translated = translator.apply(all);
+            for (int i = 0; i < merging.size(); i++) {
+                merging.get(i).accept(translated.get(i));
+            }
+            completing.forEach(Runnable::run);
+            return translated.subList(merging.size(), translated.size());
+        }
+
+        private void flush() {
+            translateWith(ImmutableList.of());
+        }
+    }
 }
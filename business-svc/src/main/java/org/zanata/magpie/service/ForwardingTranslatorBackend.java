@@ -0,0 +1,83 @@
+/*
+ * Copyright 2019, Red Hat, Inc. and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.zanata.magpie.service;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletionException;
+
+import org.zanata.magpie.api.dto.LocaleCode;
+import org.zanata.magpie.backend.BackendCapabilities;
+import org.zanata.magpie.backend.BackendLocaleCode;
+import org.zanata.magpie.exception.MTException;
+import org.zanata.magpie.model.AugmentedTranslation;
+import org.zanata.magpie.model.BackendID;
+import org.zanata.magpie.model.StringType;
+
+/**
+ * Base class of {@link TranslatorBackend} decorators, which change how
+ * {@link #translateAsync(List, BackendLocaleCode, BackendLocaleCode,
+ * StringType, Optional)} calls the backend. The blocking method waits for
+ * it.
+ */
+abstract class ForwardingTranslatorBackend implements TranslatorBackend {
+    protected final TranslatorBackend delegate;
+
+    ForwardingTranslatorBackend(TranslatorBackend delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public List<AugmentedTranslation> translate(List<String> contents,
+            BackendLocaleCode srcLocale, BackendLocaleCode targetLocale,
+            StringType stringType, Optional<String> category)
+            throws MTException {
+        try {
+            return translateAsync(contents, srcLocale, targetLocale,
+                    stringType, category).toCompletableFuture().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public BackendLocaleCode getMappedLocale(LocaleCode localeCode) {
+        return delegate.getMappedLocale(localeCode);
+    }
+
+    @Override
+    public int getCharLimitPerRequest() {
+        return delegate.getCharLimitPerRequest();
+    }
+
+    @Override
+    public BackendCapabilities getCapabilities() {
+        return delegate.getCapabilities();
+    }
+
+    @Override
+    public BackendID getId() {
+        return delegate.getId();
+    }
+}
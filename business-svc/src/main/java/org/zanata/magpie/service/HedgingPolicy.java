@@ -0,0 +1,365 @@
+/*
+ * Copyright 2019, Red Hat, Inc. and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.zanata.magpie.service;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import javax.annotation.Nullable;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.zanata.magpie.annotation.BackEndProviders;
+import org.zanata.magpie.annotation.EnvVariable;
+import org.zanata.magpie.model.AugmentedTranslation;
+import org.zanata.magpie.model.BackendID;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+import static org.zanata.magpie.api.APIConstant.HEDGE_MIN_DELAY;
+import static org.zanata.magpie.api.APIConstant.HEDGE_PERCENTILE;
+
+/**
+ * Sends a duplicate call to a secondary MT provider when the requested one
+ * is slower than usual, or fails.
+ *
+ * The duplicate call is sent once the requested backend has taken longer
+ * than the configured percentile of its recent latencies (and at least the
+ * minimum delay), or right away if it fails because of the provider, see
+ * {@link BackendFailures}. Failures caused by the request itself, eg an
+ * unsupported locale, are passed through. The first successful result
+ * wins and the other call is cancelled. Translations are tagged with the
+ * backend which produced them, so that they are stored under that backend.
+ *
+ * Hedging is disabled unless {@link
+ * org.zanata.magpie.api.APIConstant#HEDGE_PERCENTILE} is set, or if no other
+ * provider is available.
+ */
+@ApplicationScoped
+public class HedgingPolicy {
+    private static final Logger LOG =
+            LoggerFactory.getLogger(HedgingPolicy.class);
+    static final long DEFAULT_MIN_DELAY_MILLIS = 100;
+    // latencies needed before hedging by percentile
+    static final int MIN_SAMPLES = 20;
+    private static final int WINDOW_SIZE = 200;
+
+    private double percentile;
+    private long minDelayMillis;
+    private Set<BackendID> availableProviders;
+    private ScheduledExecutorService scheduler;
+    private final Map<BackendID, LatencyWindow> latencies =
+            new EnumMap<>(BackendID.class);
+
+    @SuppressWarnings("unused")
+    HedgingPolicy() {
+    }
+
+    @Inject
+    public HedgingPolicy(@EnvVariable(HEDGE_PERCENTILE) String percentile,
+            @EnvVariable(HEDGE_MIN_DELAY) String minDelayMillis,
+            @BackEndProviders Set<BackendID> availableProviders) {
+        this(isBlank(percentile) ? 0 : Double.parseDouble(percentile.trim()),
+                isBlank(minDelayMillis) ? DEFAULT_MIN_DELAY_MILLIS :
+                        Long.parseLong(minDelayMillis.trim()),
+                availableProviders, newScheduler());
+    }
+
+    /**
+     * @param percentile
+     *            0 or less to disable hedging
+     */
+    @VisibleForTesting
+    HedgingPolicy(double percentile, long minDelayMillis,
+            Set<BackendID> availableProviders,
+            ScheduledExecutorService scheduler) {
+        this.percentile = percentile;
+        this.minDelayMillis = minDelayMillis;
+        this.availableProviders = availableProviders;
+        this.scheduler = scheduler;
+        for (BackendID backendID : BackendID.values()) {
+            latencies.put(backendID, new LatencyWindow());
+        }
+    }
+
+    private static ScheduledExecutorService newScheduler() {
+        ScheduledThreadPoolExecutor executor =
+                new ScheduledThreadPoolExecutor(1, new ThreadFactoryBuilder()
+                        .setNameFormat("hedging-%d")
+                        .setDaemon(true).build());
+        executor.setRemoveOnCancelPolicy(true);
+        return Executors.unconfigurableScheduledExecutorService(executor);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * @return the provider to send duplicate calls to, if hedging is
+     *         enabled
+     */
+    public Optional<BackendID> getSecondary(BackendID primary) {
+        if (percentile <= 0 || primary == BackendID.DEV) {
+            return Optional.empty();
+        }
+        return availableProviders.stream()
+                .filter(id -> id != primary && id != BackendID.DEV)
+                .sorted().findFirst();
+    }
+
+    /**
+     * Calls the primary backend, and the secondary one as well if the
+     * primary is slow or fails.
+     *
+     * @param call
+     *            starts a call to the given backend
+     * @return translations of the first successful call, tagged with its
+     *         backend. If both fail, the failure of the primary backend.
+     */
+    public CompletionStage<List<BackendTranslation>> translateAsync(
+            BackendID primary, Optional<BackendID> secondary,
+            Function<BackendID, CompletionStage<List<AugmentedTranslation>>> call) {
+        if (!secondary.isPresent()) {
+            long startTime = System.nanoTime();
+            return call.apply(primary).thenApply(translations -> {
+                recordLatency(primary, startTime);
+                return tag(primary, translations);
+            });
+        }
+        return new Hedge(primary, secondary.get(), call).start();
+    }
+
+    @VisibleForTesting
+    long getDelayMillis(BackendID backendID) {
+        long latency = latencies.get(backendID).getPercentile(percentile);
+        return latency < 0 ? -1 : Math.max(minDelayMillis, latency);
+    }
+
+    private void recordLatency(BackendID backendID, long startTime) {
+        latencies.get(backendID).add(TimeUnit.NANOSECONDS
+                .toMillis(System.nanoTime() - startTime));
+    }
+
+    private static List<BackendTranslation> tag(BackendID backendID,
+            List<AugmentedTranslation> translations) {
+        return translations.stream()
+                .map(translation -> new BackendTranslation(backendID,
+                        translation))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Calls of one hedged request.
+     */
+    private class Hedge {
+        private final BackendID primary;
+        private final BackendID secondary;
+        private final Function<BackendID, CompletionStage<List<AugmentedTranslation>>> call;
+        private final CompletableFuture<List<BackendTranslation>> result =
+                new CompletableFuture<>();
+        // guarded by this
+        private @Nullable CompletableFuture<List<AugmentedTranslation>> primaryCall;
+        private @Nullable CompletableFuture<List<AugmentedTranslation>> secondaryCall;
+        private boolean secondaryStarted;
+        private @Nullable Throwable primaryFailure;
+        private @Nullable Throwable secondaryFailure;
+
+        private Hedge(BackendID primary, BackendID secondary,
+                Function<BackendID, CompletionStage<List<AugmentedTranslation>>> call) {
+            this.primary = primary;
+            this.secondary = secondary;
+            this.call = call;
+        }
+
+        private CompletionStage<List<BackendTranslation>> start() {
+            long delayMillis = getDelayMillis(primary);
+            CompletableFuture<List<AugmentedTranslation>> calling =
+                    startCall(primary);
+            synchronized (this) {
+                primaryCall = calling;
+            }
+            if (delayMillis >= 0 && !result.isDone()) {
+                scheduler.schedule(() -> {
+                    if (!result.isDone()) {
+                        LOG.debug("{} slower than {} ms, trying {}", primary,
+                                delayMillis, secondary);
+                        startSecondary();
+                    }
+                }, delayMillis, TimeUnit.MILLISECONDS);
+            }
+            if (result.isDone()) {
+                calling.cancel(false);
+            }
+            return result;
+        }
+
+        private CompletableFuture<List<AugmentedTranslation>> startCall(
+                BackendID backendID) {
+            long startTime = System.nanoTime();
+            CompletableFuture<List<AugmentedTranslation>> calling;
+            try {
+                calling = call.apply(backendID).toCompletableFuture();
+            } catch (RuntimeException e) {
+                calling = new CompletableFuture<>();
+                calling.completeExceptionally(e);
+            }
+            calling.whenComplete((translations, e) -> {
+                if (e == null) {
+                    recordLatency(backendID, startTime);
+                    onSuccess(backendID, translations);
+                } else {
+                    onFailure(backendID, unwrap(e));
+                }
+            });
+            return calling;
+        }
+
+        private void startSecondary() {
+            synchronized (this) {
+                if (secondaryStarted || result.isDone()) {
+                    return;
+                }
+                secondaryStarted = true;
+            }
+            CompletableFuture<List<AugmentedTranslation>> calling =
+                    startCall(secondary);
+            synchronized (this) {
+                secondaryCall = calling;
+            }
+            if (result.isDone()) {
+                // cancels the secondary call if the primary won meanwhile
+                calling.cancel(false);
+            }
+        }
+
+        private void onSuccess(BackendID backendID,
+                List<AugmentedTranslation> translations) {
+            if (!result.complete(tag(backendID, translations))) {
+                return;
+            }
+            CompletableFuture<List<AugmentedTranslation>> loser;
+            synchronized (this) {
+                loser = backendID == primary ? secondaryCall : primaryCall;
+            }
+            if (loser != null) {
+                loser.cancel(false);
+            }
+            if (backendID != primary) {
+                LOG.info("translations from {} used instead of {}",
+                        backendID, primary);
+            }
+        }
+
+        private void onFailure(BackendID backendID, Throwable failure) {
+            if (result.isDone()) {
+                // eg the cancelled loser
+                return;
+            }
+            boolean failover;
+            Throwable bothFailed = null;
+            // the secondary would reject the request as well
+            boolean clientError = backendID == primary &&
+                    !BackendFailures.isProviderFailure(failure);
+            CompletableFuture<List<AugmentedTranslation>> loser;
+            synchronized (this) {
+                loser = secondaryCall;
+                if (backendID == primary) {
+                    primaryFailure = failure;
+                } else {
+                    secondaryFailure = failure;
+                }
+                failover = backendID == primary && !secondaryStarted;
+                if (primaryFailure != null && secondaryFailure != null) {
+                    bothFailed = primaryFailure;
+                    if (secondaryFailure != primaryFailure) {
+                        bothFailed.addSuppressed(secondaryFailure);
+                    }
+                }
+            }
+            if (clientError) {
+                if (result.completeExceptionally(failure) && loser != null) {
+                    loser.cancel(false);
+                }
+            } else if (failover) {
+                LOG.info("{} failed, trying {}", primary, secondary);
+                startSecondary();
+            } else if (bothFailed != null) {
+                result.completeExceptionally(bothFailed);
+            }
+        }
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ?
+                e.getCause() : e;
+    }
+
+    /**
+     * Latest latencies of successful calls to one backend.
+     */
+    private static class LatencyWindow {
+        private final long[] samples = new long[WINDOW_SIZE];
+        private int count;
+        private int next;
+
+        private synchronized void add(long latencyMillis) {
+            samples[next] = latencyMillis;
+            next = (next + 1) % samples.length;
+            count = Math.min(count + 1, samples.length);
+        }
+
+        /**
+         * @return the latency in milliseconds, or -1 if there are not
+         *         enough samples yet
+         */
+        private synchronized long getPercentile(double percentile) {
+            if (count < MIN_SAMPLES) {
+                return -1;
+            }
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile / 100 * count) - 1;
+            return sorted[Math.max(0, Math.min(count - 1, index))];
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2019, Red Hat, Inc. and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.zanata.magpie.service;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletionStage;
+
+import org.zanata.magpie.backend.BackendLocaleCode;
+import org.zanata.magpie.model.AugmentedTranslation;
+import org.zanata.magpie.model.StringType;
+
+/**
+ * Sends the calls to a {@link TranslatorBackend} through its
+ * {@link BackendLimiter}.
+ */
+class LimitedTranslatorBackend extends ForwardingTranslatorBackend {
+    private final BackendLimiter limiter;
+
+    LimitedTranslatorBackend(TranslatorBackend delegate,
+            BackendLimiter limiter) {
+        super(delegate);
+        this.limiter = limiter;
+    }
+
+    @Override
+    public CompletionStage<List<AugmentedTranslation>> translateAsync(
+            List<String> contents, BackendLocaleCode srcLocale,
+            BackendLocaleCode targetLocale, StringType stringType,
+            Optional<String> category) {
+        int chars = contents.stream().mapToInt(String::length).sum();
+        return limiter.submit(chars,
+                () -> delegate.translateAsync(contents, srcLocale,
+                        targetLocale, stringType, category));
+    }
+}
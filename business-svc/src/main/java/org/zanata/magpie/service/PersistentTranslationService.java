@@ -25,10 +25,23 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.event.Event;
@@ -37,18 +50,16 @@ import javax.inject.Inject;
 import javax.validation.constraints.NotNull;
 import javax.ws.rs.BadRequestException;
 
-import org.apache.deltaspike.jpa.api.transaction.Transactional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.zanata.magpie.api.AuthenticatedAccount;
-import org.zanata.magpie.backend.BackendLocaleCode;
-import org.zanata.magpie.dao.DocumentDAO;
-import org.zanata.magpie.dao.TextFlowDAO;
-import org.zanata.magpie.dao.TextFlowTargetDAO;
+import org.zanata.magpie.backend.BackendCapabilities;
 import org.zanata.magpie.event.RequestedMTEvent;
 import org.zanata.magpie.exception.MTException;
+import org.zanata.magpie.exception.PartialTranslationException;
 import org.zanata.magpie.model.AugmentedTranslation;
 import org.zanata.magpie.model.BackendID;
+import org.zanata.magpie.model.ContentHash;
 import org.zanata.magpie.model.Document;
 import org.zanata.magpie.model.Locale;
 import org.zanata.magpie.model.StringType;
@@ -56,6 +67,7 @@ import org.zanata.magpie.model.TextFlow;
 import org.zanata.magpie.model.TextFlowTarget;
 import org.zanata.magpie.util.HashUtil;
 import org.zanata.magpie.util.ShortString;
+import org.zanata.magpie.util.SingleFlight;
 
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Lists;
@@ -73,14 +85,19 @@ public class PersistentTranslationService {
     private static final Logger LOG =
         LoggerFactory.getLogger(PersistentTranslationService.class);
 
-    private DocumentDAO documentDAO;
-    private TextFlowDAO textFlowDAO;
-    private TextFlowTargetDAO textFlowTargetDAO;
+    private TranslationMemoryService translationMemoryService;
+    private TranslationBatcher translationBatcher;
     private Event<RequestedMTEvent> requestedMTEvent;
     private AuthenticatedAccount authenticatedAccount;
+    private HedgingPolicy hedgingPolicy;
+    private CircuitBreakers circuitBreakers;
 
     private Map<BackendID, TranslatorBackend> translatorBackendMap;
 
+    // MT engine calls in progress on this node
+    private final SingleFlight<TranslationCacheKey, BackendTranslation>
+            inFlightTranslations = new SingleFlight<>();
+
     @SuppressWarnings("unused")
     public PersistentTranslationService() {
     }
@@ -93,21 +110,30 @@ public class PersistentTranslationService {
     // [2] https://developer.jboss.org/thread/252712
     // [3] http://weld.cdi-spec.org/news/2016/05/18/enhanced-instance/
     @Inject
-    public PersistentTranslationService(DocumentDAO documentDAO,
-            TextFlowDAO textFlowDAO,
-            TextFlowTargetDAO textFlowTargetDAO,
+    public PersistentTranslationService(
+            TranslationMemoryService translationMemoryService,
+            TranslationBatcher translationBatcher,
             Instance<TranslatorBackend> translatorBackends,
             Event<RequestedMTEvent> requestedMTEvent,
-            AuthenticatedAccount authenticatedAccount) {
-        this.documentDAO = documentDAO;
-        this.textFlowDAO = textFlowDAO;
-        this.textFlowTargetDAO = textFlowTargetDAO;
+            AuthenticatedAccount authenticatedAccount,
+            BackendLimiters backendLimiters,
+            HedgingPolicy hedgingPolicy,
+            CircuitBreakers circuitBreakers) {
+        this.translationMemoryService = translationMemoryService;
+        this.hedgingPolicy = hedgingPolicy;
+        this.circuitBreakers = circuitBreakers;
+        this.translationBatcher = translationBatcher;
         this.requestedMTEvent = requestedMTEvent;
         this.authenticatedAccount = authenticatedAccount;
 
         Map<BackendID, TranslatorBackend> backendMap = new HashMap<>();
         for (TranslatorBackend backend : translatorBackends) {
-            backendMap.put(backend.getId(), backend);
+            // calls are queued while the MT provider is busy, and fail fast
+            // while it is failing. The circuit breaker is inside the limiter
+            // so that time spent in our own queue isn't taken for latency
+            // of the provider.
+            backendMap.put(backend.getId(), backendLimiters
+                    .limit(circuitBreakers.protect(backend)));
         }
 
         translatorBackendMap = Collections.unmodifiableMap(backendMap);
@@ -119,17 +145,75 @@ public class PersistentTranslationService {
      * Get from database if exists (hash) from same document,
      * if not exist, get latest TF from DB with matching hash,
      * else from MT engine
+     *
+     * Database reads and writes run in separate short transactions, and the
+     * MT engine is called outside of any transaction.
      */
-    @Transactional
     public List<String> translate(@NotNull Document document,
             @NotNull List<String> sourceStrings,
             @NotNull Locale fromLocale, @NotNull Locale toLocale,
             @NotNull BackendID backendID, @NotNull StringType stringType,
             Optional<String> category)
             throws BadRequestException, MTException {
-        // fetch the text flows for later (as part of this new transaction)
-        document = documentDAO.reload(document);
-        document.getTextFlows();
+        return finish(start(document, sourceStrings, fromLocale, toLocale,
+                backendID, stringType, category));
+    }
+
+    /**
+     * Same as
+     * {@link #translate(Document, List, Locale, Locale, BackendID, StringType, Optional)}
+     * for several batches of strings. The MT engine calls of up to
+     * parallelism batches are in progress at the same time. Database reads
+     * and writes still run on the calling thread, which needs the request
+     * context.
+     *
+     * @return translations of each batch, in the order of the batches
+     */
+    public List<List<String>> translateBatches(@NotNull Document document,
+            @NotNull List<StringBatch> batches,
+            @NotNull Locale fromLocale, @NotNull Locale toLocale,
+            @NotNull BackendID backendID, Optional<String> category,
+            int parallelism)
+            throws BadRequestException, MTException {
+        List<List<String>> results =
+                new ArrayList<>(Collections.nCopies(batches.size(), null));
+        Map<Integer, PendingTranslation> inProgress = new LinkedHashMap<>();
+        int next = 0;
+        while (next < batches.size() || !inProgress.isEmpty()) {
+            while (next < batches.size() && inProgress.size() < parallelism) {
+                StringBatch batch = batches.get(next);
+                inProgress.put(next, start(document, batch.getStrings(),
+                        fromLocale, toLocale, backendID,
+                        batch.getStringType(), category));
+                next++;
+            }
+            // failures are thrown by finish
+            CompletableFuture.anyOf(inProgress.values().stream()
+                    .map(pending -> pending.engineResults)
+                    .toArray(CompletableFuture[]::new))
+                    .handle((result, e) -> result).join();
+            Iterator<Map.Entry<Integer, PendingTranslation>> it =
+                    inProgress.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<Integer, PendingTranslation> entry = it.next();
+                if (entry.getValue().engineResults.isDone()) {
+                    results.set(entry.getKey(), finish(entry.getValue()));
+                    it.remove();
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Look up the strings in database and start the MT engine call for the
+     * others.
+     */
+    private PendingTranslation start(@NotNull Document document,
+            @NotNull List<String> sourceStrings,
+            @NotNull Locale fromLocale, @NotNull Locale toLocale,
+            @NotNull BackendID backendID, @NotNull StringType stringType,
+            Optional<String> category) {
         if (sourceStrings == null || sourceStrings.isEmpty() || fromLocale == null
                 || toLocale == null || backendID == null) {
             throw new BadRequestException();
@@ -138,34 +222,40 @@ public class PersistentTranslationService {
             throw new MTException("not authenticated account trying to trigger MT translation");
         }
 
-        // get translator backend for MT engine by requested backend id
-        TranslatorBackend translatorBackend = getTranslatorBackend(backendID);
-
-        BackendLocaleCode mappedFromLocaleCode =
-                translatorBackend.getMappedLocale(fromLocale.getLocaleCode());
-        BackendLocaleCode mappedToLocaleCode =
-                translatorBackend.getMappedLocale(toLocale.getLocaleCode());
-
-        List<String> results = new ArrayList<>(sourceStrings);
-        Multimap<String, Integer> untranslatedIndexMap = ArrayListMultimap.create();
-
-        Map<Integer, TextFlow> indexTextFlowMap = Maps.newHashMap();
+        // check the requested backend id
+        getTranslatorBackend(backendID);
+
+        PendingTranslation pending =
+                new PendingTranslation(document, sourceStrings, fromLocale,
+                        toLocale);
+
+        // search from cache, then database for the rest
+        Map<String, ContentHash> contentHashes = Maps.newHashMap();
+        sourceStrings.forEach(string -> contentHashes
+                .computeIfAbsent(string, HashUtil::hash));
+        Map<ContentHash, TextFlow> matchedHashTfs =
+                translationMemoryService.findCachedTextFlows(fromLocale,
+                        toLocale, backendID, contentHashes);
+        Map<String, ContentHash> uncachedHashes = Maps.filterValues(
+                contentHashes, hash -> !matchedHashTfs.containsKey(hash));
+        if (!uncachedHashes.isEmpty()) {
+            matchedHashTfs.putAll(
+                    translationMemoryService.findTextFlowsByContentHash(
+                            document, fromLocale, toLocale, backendID,
+                            uncachedHashes));
+        }
 
-        // search from database
         int matchCount = 0;
         for (int sourceStringIndex = 0; sourceStringIndex < sourceStrings.size(); sourceStringIndex++) {
             String string = sourceStrings.get(sourceStringIndex);
-            String contentHash = HashUtil.generateHash(string);
-            Optional<TextFlow> matchedHashTf =
-                    tryFindTextFlowByContentHashFromDB(document, fromLocale, toLocale,
-                            backendID, contentHash);
+            TextFlow matchedTf = matchedHashTfs.get(contentHashes.get(string));
 
-            if (matchedHashTf.isPresent()) {
+            if (matchedTf != null) {
                 // we found a matching text flow in database
                 // now check to see if it has translation from the same provider
-                TextFlow matchedTf = matchedHashTf.get();
-                Optional<TextFlowTarget> matchedTarget = findTargetByLocaleAndProvider(
-                        toLocale, backendID, matchedTf);
+                Optional<TextFlowTarget> matchedTarget =
+                        TranslationMemoryService.findTargetByLocaleAndProvider(
+                                toLocale, backendID, matchedTf);
 
                 if (matchedTarget.isPresent()) {
                     TextFlowTarget matchedEntity = matchedTarget.get();
@@ -179,78 +269,249 @@ public class PersistentTranslationService {
                                 ShortString.shorten(matchedEntity.getContent()));
                     }
 
-                    results.set(sourceStringIndex, matchedEntity.getContent());
+                    pending.results.set(sourceStringIndex,
+                            matchedEntity.getContent());
                 } else {
-                    untranslatedIndexMap.put(string, sourceStringIndex);
-                    indexTextFlowMap.put(sourceStringIndex, matchedTf);
+                    pending.untranslatedIndexMap.put(string, sourceStringIndex);
+                    pending.indexTextFlowMap.put(sourceStringIndex, matchedTf);
                 }
             } else {
-                untranslatedIndexMap.put(string, sourceStringIndex);
+                pending.untranslatedIndexMap.put(string, sourceStringIndex);
             }
         }
         LOG.info("found {} of match sources and translations in database", matchCount);
 
+        // text flows created from cache entries are only linked to the
+        // document, their targets are never written from the cache
+        matchedHashTfs.values().stream().filter(tf -> tf.getId() == null)
+                .forEach(tf -> pending.cachedHashes.add(tf.getContentHash()));
+
         // see if we got all translations from database records
-        if (untranslatedIndexMap.isEmpty()) {
-            return results;
+        if (pending.untranslatedIndexMap.isEmpty()) {
+            return pending;
         }
 
-        // translate using requested MT engine
-        List<String> sourcesToTranslate = new ArrayList<>(untranslatedIndexMap.keySet());
-        Date engineInvokeTime = new Date();
-        List<AugmentedTranslation> translations =
-                translatorBackend.translate(sourcesToTranslate, mappedFromLocaleCode,
-                        mappedToLocaleCode, stringType, category);
-
-        LOG.info("triggered MT engine {} from {} to {}", backendID,
-                fromLocale.getLocaleCode(), toLocale.getLocaleCode());
-
-        List<String> requestedTextFlows = Lists.newLinkedList();
-        long wordCount = 0;
-        long charCount = 0;
-        for (int i = 0; i < sourcesToTranslate.size(); i++) {
-            String source = sourcesToTranslate.get(i);
-            AugmentedTranslation translation = translations.get(i);
+        // translate using requested MT engine. Strings already being
+        // translated by a concurrent request are not sent again, and the
+        // others may be sent along with those of concurrent requests.
+        // A slow or failing engine may be hedged with another one, or
+        // replaced while its circuit breaker is open, in which case the
+        // translations are stored under the engine which produced them.
+        Map<TranslationCacheKey, String> keyToSource = pending.keyToSource;
+        pending.untranslatedIndexMap.keySet().forEach(source -> keyToSource.put(
+                new TranslationCacheKey(fromLocale.getLocaleCode(),
+                        toLocale.getLocaleCode(), backendID,
+                        contentHashes.get(source)), source));
+        BackendID engineID = circuitBreakers.getFallback(backendID)
+                .filter(translatorBackendMap::containsKey)
+                .orElse(backendID);
+        Optional<BackendID> secondaryID = hedgingPolicy
+                .getSecondary(engineID)
+                .filter(translatorBackendMap::containsKey);
+        pending.engineInvokeTime = new Date();
+        // the engine call doesn't hold this thread, but the results are
+        // written in the request context, see finish
+        pending.engineResults = inFlightTranslations.loadAsync(
+                keyToSource.keySet(),
+                keys -> hedgingPolicy.translateAsync(engineID,
+                        secondaryID,
+                        id -> translateAsync(
+                                getTranslatorBackend(id),
+                                keys.stream()
+                                        .map(keyToSource::get)
+                                        .collect(Collectors.toList()),
+                                fromLocale, toLocale, stringType,
+                                category,
+                                partial -> pending.keepPartial(keys, id,
+                                        partial)))
+                        .thenApply(engineResults -> {
+                            LOG.info("triggered MT engine {} from {} to {}",
+                                    engineResults.get(0).getBackendID(),
+                                    fromLocale.getLocaleCode(),
+                                    toLocale.getLocaleCode());
+                            pending.engineTranslatedKeys.addAll(keys);
+                            return engineResults;
+                        }));
+        return pending;
+    }
+
+    /**
+     * Wait for the MT engine call, if any, and write the text flows and
+     * targets.
+     *
+     * @return translations of the strings
+     */
+    private List<String> finish(PendingTranslation pending) {
+        Map<TranslationCacheKey, BackendTranslation> translations;
+        PartialTranslationException failure = null;
+        try {
+            translations = join(pending.engineResults);
+        } catch (PartialTranslationException e) {
+            // the translations we got are paid for: keep them, then fail
+            failure = e;
+            translations = pending.partialTranslations;
+            pending.engineTranslatedKeys.addAll(translations.keySet());
+        }
+        Document document = pending.document;
+        Locale fromLocale = pending.fromLocale;
+        Locale toLocale = pending.toLocale;
+        List<String> results = pending.results;
+        List<TextFlow> newTextFlows = pending.newTextFlows;
+        List<TextFlowTarget> newTargets = pending.newTargets;
+
+        Multimap<BackendID, String> requestedTextFlows =
+                ArrayListMultimap.create();
+        // words are counted in the background, see EventRecordingService
+        Map<BackendID, Long> charCounts = new EnumMap<>(BackendID.class);
+        for (Map.Entry<TranslationCacheKey, String> entry : pending.keyToSource
+                .entrySet()) {
+            String source = entry.getValue();
+            BackendTranslation engineResult = translations.get(entry.getKey());
+            if (engineResult == null) {
+                // not translated, see PartialTranslationException
+                continue;
+            }
+            AugmentedTranslation translation = engineResult.getTranslation();
+            BackendID producedBy = engineResult.getBackendID();
             // same string may appear several times in a document therefore has several indexes
-            Collection<Integer> indexes = untranslatedIndexMap.get(source);
+            Collection<Integer> indexes =
+                    pending.untranslatedIndexMap.get(source);
             indexes.forEach(j -> results.set(j, translation.getPlainTranslation()));
+            translationMemoryService.cacheTranslation(fromLocale, toLocale,
+                    producedBy, entry.getKey().getContentHash(), translation);
 
             // see if we already have a matched text flow
             // (either in the same document or copied from other document)
-            TextFlow tf = indexTextFlowMap.get(indexes.iterator().next());
+            TextFlow tf = pending.indexTextFlowMap.get(indexes.iterator().next());
+            if (tf == null) {
+                tf = new TextFlow(source, fromLocale);
+                newTextFlows.add(tf);
+            }
+            // strings translated for a concurrent request are not counted
+            if (pending.engineTranslatedKeys.contains(entry.getKey())) {
+                charCounts.merge(producedBy, (long) tf.getCharCount(),
+                        Long::sum);
+                requestedTextFlows.put(producedBy,
+                        tf.getContentHash().toHex());
+            }
+            newTargets.add(new TextFlowTarget(translation.getPlainTranslation(),
+                    translation.getRawTranslation(), tf, toLocale, producedBy));
+        }
+        writeTextFlowsAndTargets(document, fromLocale, newTextFlows,
+                newTargets, pending.cachedHashes);
+        charCounts.forEach((producedBy, charCount) -> requestedMTEvent.fire(
+                new RequestedMTEvent(document,
+                        Lists.newLinkedList(requestedTextFlows.get(producedBy)),
+                        producedBy, pending.engineInvokeTime,
+                        authenticatedAccount.getAuthenticatedAccount().get(),
+                        charCount)));
+
+        if (failure != null) {
+            throw failure;
+        }
+        return results;
+    }
 
-            try {
-                if (tf == null) {
-                    tf = createTextFlow(document, source, fromLocale);
-                }
-                wordCount += tf.getWordCount();
-                charCount += tf.getCharCount();
-                requestedTextFlows.add(tf.getContentHash());
-                TextFlowTarget target =
-                        new TextFlowTarget(translation.getPlainTranslation(),
-                                translation.getRawTranslation(), tf,
-                                toLocale, backendID);
-                createOrUpdateTextFlowTarget(target);
-            } catch (Exception e) {
-                List<Throwable> causalChain = getThrowableList(e);
-                Optional<Throwable> duplicateKeyEx = causalChain.stream()
-                        .filter(t -> t instanceof SQLException &&
-                                t.getMessage() != null &&
-                                t.getMessage().contains(
-                                        "duplicate key value violates unique constraint"))
-                        .findAny();
-                if (duplicateKeyEx.isPresent()) {
-                    LOG.warn("concurrent requests for document {}", document.getUrl());
-                    // we ignore the failed update
-                    // TODO prevent duplicates from reaching DB: ZNTAMT-51
-                }
+    /**
+     * Call the backend, possibly along with concurrent requests. Strings
+     * which the backend failed to translate while translating others, see
+     * {@link PartialTranslationException}, are sent once more. If some are
+     * still missing, the translations are given to onPartialFailure before
+     * failing.
+     */
+    private CompletionStage<List<AugmentedTranslation>> translateAsync(
+            TranslatorBackend translatorBackend, List<String> sources,
+            Locale fromLocale, Locale toLocale, StringType stringType,
+            Optional<String> category,
+            Consumer<List<AugmentedTranslation>> onPartialFailure) {
+        CompletableFuture<List<AugmentedTranslation>> calling =
+                translateInBatchAsync(translatorBackend, sources, fromLocale,
+                        toLocale, stringType, category).toCompletableFuture();
+        CompletableFuture<List<AugmentedTranslation>> result = calling
+                .handle((translations, e) -> e == null ?
+                        CompletableFuture.completedFuture(translations) :
+                        retryMissing(translatorBackend, sources, unwrap(e),
+                                fromLocale, toLocale, stringType, category,
+                                onPartialFailure))
+                .thenCompose(Function.identity());
+        // eg the losing call of a hedge
+        result.whenComplete((translations, e) -> {
+            if (result.isCancelled()) {
+                calling.cancel(false);
             }
+        });
+        return result;
+    }
+
+    private CompletionStage<List<AugmentedTranslation>> retryMissing(
+            TranslatorBackend translatorBackend, List<String> sources,
+            Throwable failure, Locale fromLocale, Locale toLocale,
+            StringType stringType, Optional<String> category,
+            Consumer<List<AugmentedTranslation>> onPartialFailure) {
+        if (!(failure instanceof PartialTranslationException) ||
+                ((PartialTranslationException) failure).getTranslations()
+                        .size() != sources.size()) {
+            CompletableFuture<List<AugmentedTranslation>> failed =
+                    new CompletableFuture<>();
+            failed.completeExceptionally(failure);
+            return failed;
         }
-        requestedMTEvent.fire(new RequestedMTEvent(document,
-                requestedTextFlows, backendID, engineInvokeTime,
-                authenticatedAccount.getAuthenticatedAccount().get(), wordCount, charCount));
+        List<AugmentedTranslation> translations = new ArrayList<>(
+                ((PartialTranslationException) failure).getTranslations());
+        List<Integer> missing = IntStream.range(0, sources.size())
+                .filter(i -> translations.get(i) == null).boxed()
+                .collect(Collectors.toList());
+        LOG.warn("{} of {} strings not translated by {}, sending them again",
+                missing.size(), sources.size(), translatorBackend.getId());
+        return translateInBatchAsync(translatorBackend,
+                missing.stream().map(sources::get)
+                        .collect(Collectors.toList()),
+                fromLocale, toLocale, stringType, category)
+                .handle((retried, e) -> {
+                    Throwable retryFailure = e == null ? null : unwrap(e);
+                    if (retryFailure instanceof PartialTranslationException) {
+                        retried = ((PartialTranslationException) retryFailure)
+                                .getTranslations();
+                    }
+                    if (retried != null && retried.size() == missing.size()) {
+                        for (int i = 0; i < missing.size(); i++) {
+                            translations.set(missing.get(i), retried.get(i));
+                        }
+                    }
+                    if (retryFailure == null && !translations.contains(null)) {
+                        return translations;
+                    }
+                    onPartialFailure.accept(translations);
+                    throw new PartialTranslationException(failure.getMessage(),
+                            retryFailure != null ? retryFailure : failure,
+                            translations);
+                });
+    }
 
-        return results;
+    private CompletionStage<List<AugmentedTranslation>> translateInBatchAsync(
+            TranslatorBackend translatorBackend, List<String> sources,
+            Locale fromLocale, Locale toLocale, StringType stringType,
+            Optional<String> category) {
+        return translationBatcher.translateAsync(translatorBackend, sources,
+                translatorBackend.getMappedLocale(fromLocale.getLocaleCode()),
+                translatorBackend.getMappedLocale(toLocale.getLocaleCode()),
+                stringType, category);
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ?
+                e.getCause() : e;
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
     }
 
     private @NotNull
@@ -261,116 +522,99 @@ public class PersistentTranslationService {
         throw new BadRequestException("Unsupported backendId: " + backendID);
     }
 
-    /**
-     * See if the document has the text flow in database already. If not, try to
-     * search same content hash from other documents. If any is found, try to
-     * copy text flow and text flow target. If none is found, return empty.
-     *
-     * @param document
-     *            current document
-     * @param fromLocale
-     *            from locale
-     * @param toLocale
-     *            to locale
-     * @param backendID
-     *            translation provider
-     * @param contentHash
-     *            text flow content hash
-     * @return optional text flow that has the matching content hash
-     */
-    private Optional<TextFlow> tryFindTextFlowByContentHashFromDB(
-            @NotNull Document document,
-            @NotNull Locale fromLocale, @NotNull Locale toLocale,
-            @NotNull BackendID backendID, String contentHash) {
-        TextFlow matchedHashTf = document.getTextFlows().get(contentHash);
-        if (matchedHashTf == null) {
-            // we don't have text flow for this document yet,
-            // now try to search similar text flow from database
-            Optional<TextFlow> tfCopy =
-                    tryCopyTextFlowAndTargetFromDB(document, fromLocale,
-                            toLocale, contentHash, backendID);
-
-            matchedHashTf = tfCopy.orElse(null);
-        }
-        return Optional.ofNullable(matchedHashTf);
-    }
-
     public int getMaxLength(@NotNull BackendID backendID) {
         return getTranslatorBackend(backendID).getCharLimitPerRequest();
     }
 
+    public BackendCapabilities getCapabilities(@NotNull BackendID backendID) {
+        return getTranslatorBackend(backendID).getCapabilities();
+    }
+
 
     /**
-     * Find matching contentHash and create a new copy of TextFlow and
-     * TextFlowTarget if it is not from the same document. Otherwise, return the
-     * same copy. If there is not matching contentHash, return empty.
-     *
-     * TODO: refactor TextFlow to use pos to allow duplication of content
+     * Insert the new text flows and insert or update the targets in bulk, and
+     * link the text flows of cached translations to the document.
+     * Rows written concurrently by another request are skipped or updated
+     * instead of failing with a duplicate key. The duplicate key check is
+     * done here, after the failed transaction has been rolled back.
      */
-    private Optional<TextFlow> tryCopyTextFlowAndTargetFromDB(Document document,
-            Locale fromLocale, Locale toLocale, String contentHash,
-            BackendID backendID) {
-        Optional<TextFlow> textFlow =
-                textFlowDAO.getLatestByContentHash(fromLocale.getLocaleCode(),
-                        contentHash);
-        if (textFlow.isPresent()) {
-            if (textFlow.get().getDocument().equals(document)) {
-                // this document already has this text flow
-                return textFlow;
-            } else {
-                // found a matching text flow from different document
-                // copy textFlow and possible target textFlowTarget
-                TextFlow newTfCopy =
-                        new TextFlow(document, textFlow.get().getContent(),
-                                fromLocale);
-                Optional<TextFlowTarget> matchedTft =
-                        findTargetByLocaleAndProvider(toLocale, backendID,
-                                textFlow.get());
-                if (matchedTft.isPresent()) {
-                    TextFlowTarget tft = matchedTft.get();
-                    newTfCopy.getTargets()
-                            .add(new TextFlowTarget(tft.getContent(),
-                                    tft.getRawContent(), newTfCopy,
-                                    toLocale,
-                                    backendID));
-                }
-                newTfCopy = textFlowDAO.persist(newTfCopy);
-                document.getTextFlows()
-                        .put(newTfCopy.getContentHash(), newTfCopy);
-                return Optional.of(newTfCopy);
+    private void writeTextFlowsAndTargets(Document document, Locale locale,
+            List<TextFlow> textFlows, List<TextFlowTarget> targets,
+            Set<ContentHash> cachedHashes) {
+        if (textFlows.isEmpty() && targets.isEmpty()
+                && cachedHashes.isEmpty()) {
+            return;
+        }
+        try {
+            translationMemoryService.save(document, locale, textFlows,
+                    targets, cachedHashes);
+        } catch (RuntimeException e) {
+            List<Throwable> causalChain = getThrowableList(e);
+            Optional<Throwable> duplicateKeyEx = causalChain.stream()
+                    .filter(t -> t instanceof SQLException &&
+                            t.getMessage() != null &&
+                            t.getMessage().contains(
+                                    "duplicate key value violates unique constraint"))
+                    .findAny();
+            if (!duplicateKeyEx.isPresent()) {
+                throw e;
             }
+            // only databases without INSERT ... ON CONFLICT should get here
+            LOG.warn("concurrent requests for document {}", document.getUrl());
         }
-        return Optional.empty();
-    }
-
-    private TextFlow createTextFlow(Document document, String source,
-            Locale locale) {
-        TextFlow tf = new TextFlow(document, source, locale);
-        tf = textFlowDAO.persist(tf);
-        return tf;
     }
 
     /**
-     * If found matching TextFlowTarget (locale + backendId),
-     * update the content and rawContent, else create new TextFlowTarget
+     * State of a translation between {@link #start} and {@link #finish}.
      */
-    private void createOrUpdateTextFlowTarget(TextFlowTarget tft) {
-        TextFlow tf = tft.getTextFlow();
-        Optional<TextFlowTarget> existingTarget = textFlowTargetDAO
-                .findTarget(tf, tft.getLocale(), tft.getBackendId());
-        if (existingTarget.isPresent()) {
-            existingTarget.get()
-                    .updateContent(tft.getContent(), tft.getRawContent());
-        } else {
-            textFlowTargetDAO.persist(tft);
+    private static class PendingTranslation {
+        private final Document document;
+        private final Locale fromLocale;
+        private final Locale toLocale;
+        private final List<String> results;
+        private final Multimap<String, Integer> untranslatedIndexMap =
+                ArrayListMultimap.create();
+        private final Map<Integer, TextFlow> indexTextFlowMap =
+                Maps.newHashMap();
+        private final List<TextFlow> newTextFlows = Lists.newArrayList();
+        private final List<TextFlowTarget> newTargets = Lists.newArrayList();
+        private final Set<ContentHash> cachedHashes = new HashSet<>();
+        private final Map<TranslationCacheKey, String> keyToSource =
+                new LinkedHashMap<>();
+        // keys translated by the engine for this request, not a concurrent one
+        private final Set<TranslationCacheKey> engineTranslatedKeys =
+                new HashSet<>();
+        // translations kept from a failed engine call, see keepPartial
+        private final Map<TranslationCacheKey, BackendTranslation>
+                partialTranslations = new ConcurrentHashMap<>();
+        private Date engineInvokeTime;
+        // empty if all the strings were found in database
+        private CompletableFuture<Map<TranslationCacheKey, BackendTranslation>>
+                engineResults =
+                CompletableFuture.completedFuture(Collections.emptyMap());
+
+        private PendingTranslation(Document document,
+                List<String> sourceStrings, Locale fromLocale,
+                Locale toLocale) {
+            this.document = document;
+            this.fromLocale = fromLocale;
+            this.toLocale = toLocale;
+            this.results = new ArrayList<>(sourceStrings);
         }
-    }
 
-    private static Optional<TextFlowTarget> findTargetByLocaleAndProvider(
-            Locale toLocale, BackendID backendID, TextFlow textFlow) {
-        return textFlow.getTargets().stream()
-                .filter(target -> target.getLocale().equals(toLocale)
-                        && target.getBackendId().equals(backendID))
-                .findAny();
+        /**
+         * Keep the translations of an engine call which failed to translate
+         * some of the keys, so that they are stored anyway.
+         */
+        private void keepPartial(List<TranslationCacheKey> keys,
+                BackendID backendID, List<AugmentedTranslation> translations) {
+            for (int i = 0; i < keys.size(); i++) {
+                if (translations.get(i) != null) {
+                    partialTranslations.put(keys.get(i),
+                            new BackendTranslation(backendID,
+                                    translations.get(i)));
+                }
+            }
+        }
     }
 }
@@ -0,0 +1,502 @@
+/*
+ * Copyright 2019, Red Hat, Inc. and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.zanata.magpie.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.jsoup.nodes.Entities;
+import org.jsoup.parser.Parser;
+import org.zanata.magpie.api.dto.APIResponse;
+import org.zanata.magpie.backend.BackendCapabilities;
+import org.zanata.magpie.model.StringType;
+import org.zanata.magpie.util.ArticleUtil;
+import org.zanata.magpie.util.HtmlTokenizer;
+import org.zanata.magpie.util.HtmlTokenizer.TokenType;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Translates a large html string from a stream of tokens, see
+ * {@link HtmlTokenizer}, instead of a DOM.
+ *
+ * The text between two block elements (p, li, div...) is a run. Inline tags
+ * are kept in the run, and non-translatable elements in it (see
+ * {@link ArticleUtil#isNonTranslatableHTML}) are replaced with placeholders.
+ * Each run with some text is a segment, translated in batches packed by
+ * {@link BatchPacker}. Runs too large for one request are split at their
+ * tags, and large texts are translated by sentences. Everything else is
+ * copied from the source as is.
+ *
+ * Segments are translated once a window of about parallelism requests is
+ * full, and their output written right away, so the memory used besides the
+ * source and the output is bounded by the window and the largest run.
+ *
+ * Not thread safe, use a new instance for each string.
+ */
+final class StreamingHtmlTranslator {
+
+    // elements which start or end a run
+    private static final ImmutableSet<String> BLOCK_ELEMENTS = ImmutableSet
+            .of("address", "article", "aside", "blockquote", "body",
+                    "caption", "dd", "details", "dialog", "div", "dl", "dt",
+                    "fieldset", "figcaption", "figure", "footer", "form", "h1",
+                    "h2", "h3", "h4", "h5", "h6", "head", "header", "hgroup",
+                    "hr", "html", "legend", "li", "main", "nav", "ol",
+                    "option", "p", "pre", "section", "select", "summary",
+                    "table", "tbody", "td", "tfoot", "th", "thead", "title",
+                    "tr", "ul");
+
+    // block elements which may be closed by the next one of the same name
+    // or by the end of their parent
+    private static final ImmutableSet<String> OPTIONAL_END_TAG_ELEMENTS =
+            ImmutableSet.of("dd", "dt", "li", "option", "p", "td", "th",
+                    "tr");
+
+    private enum PartType {
+        TEXT, START_TAG, END_TAG, STANDALONE_TAG, NON_TRANSLATABLE
+    }
+
+    // a token of a run, as offsets in the source
+    private static final class Part {
+        private final PartType type;
+        private final int start;
+        private final int end;
+        private final String tagName;
+
+        private Part(PartType type, int start, int end, String tagName) {
+            this.type = type;
+            this.start = start;
+            this.end = end;
+            this.tagName = tagName;
+        }
+    }
+
+    // output waiting for the segments of the window to be translated:
+    // a source range, a segment or a translation
+    private static final class Piece {
+        private int start;
+        private int end;
+        private String segment;
+        private Map<String, Part> placeholders;
+        private String translation;
+    }
+
+    private final String html;
+    private final int prefix;
+    private final BackendCapabilities capabilities;
+    private final int windowChars;
+    private final Function<List<StringBatch>, List<List<String>>> batchTranslator;
+    private final Function<String, StringTranslationResult> textTranslator;
+
+    private final StringBuilder output;
+    private final List<APIResponse> warnings = new ArrayList<>();
+    private final List<Part> run = new ArrayList<>();
+    private final List<Piece> window = new ArrayList<>();
+    private int windowSegmentChars;
+    private int placeholderCounter;
+
+    /**
+     * @param html
+     *            html to translate
+     * @param prefix
+     *            index of the string, used to generate unique placeholder ids
+     * @param capabilities
+     *            limits of the backend
+     * @param parallelism
+     *            number of requests in a window
+     * @param batchTranslator
+     *            translates html batches
+     * @param textTranslator
+     *            translates a plain text too large for one request
+     */
+    StreamingHtmlTranslator(String html, int prefix,
+            BackendCapabilities capabilities, int parallelism,
+            Function<List<StringBatch>, List<List<String>>> batchTranslator,
+            Function<String, StringTranslationResult> textTranslator) {
+        this.html = html;
+        this.prefix = prefix;
+        this.capabilities = capabilities;
+        this.windowChars = (int) Math.min(Integer.MAX_VALUE,
+                (long) capabilities.getMaxChars() * parallelism);
+        this.batchTranslator = batchTranslator;
+        this.textTranslator = textTranslator;
+        this.output = new StringBuilder(html.length());
+    }
+
+    StringTranslationResult translate() {
+        HtmlTokenizer tokenizer = new HtmlTokenizer(html);
+        while (tokenizer.next()) {
+            int start = tokenizer.getStart();
+            String tagName = tokenizer.getTagName();
+            switch (tokenizer.getType()) {
+                case TEXT:
+                    run.add(new Part(PartType.TEXT, start, tokenizer.getEnd(),
+                            null));
+                    break;
+                case OTHER:
+                    run.add(new Part(PartType.NON_TRANSLATABLE, start,
+                            tokenizer.getEnd(), null));
+                    break;
+                case START_TAG:
+                    if (isNonTranslatable(tokenizer)) {
+                        int end = skipElement(tokenizer);
+                        if (BLOCK_ELEMENTS.contains(tagName)) {
+                            endRun();
+                            appendVerbatim(start, end);
+                        } else {
+                            run.add(new Part(PartType.NON_TRANSLATABLE,
+                                    start, end, tagName));
+                        }
+                    } else if (BLOCK_ELEMENTS.contains(tagName)) {
+                        endRun();
+                        appendVerbatim(start, tokenizer.getEnd());
+                    } else {
+                        run.add(new Part(tokenizer.isSelfClosing() ?
+                                PartType.STANDALONE_TAG : PartType.START_TAG,
+                                start, tokenizer.getEnd(), tagName));
+                    }
+                    break;
+                case END_TAG:
+                    if (BLOCK_ELEMENTS.contains(tagName)) {
+                        endRun();
+                        appendVerbatim(start, tokenizer.getEnd());
+                    } else {
+                        run.add(new Part(PartType.END_TAG, start,
+                                tokenizer.getEnd(), tagName));
+                    }
+                    break;
+            }
+        }
+        endRun();
+        flushWindow();
+        return new StringTranslationResult(output.toString(), warnings);
+    }
+
+    private static boolean isNonTranslatable(HtmlTokenizer tokenizer) {
+        // style contents are not html, they can't be sent as such
+        return tokenizer.getTagName().equals("style") ||
+                ArticleUtil.isNonTranslatableHTML(tokenizer.getTagName(),
+                        tokenizer::getAttribute);
+    }
+
+    /**
+     * Skip the tokens up to the end of the element of the current start tag.
+     *
+     * @return offset after the end of the element
+     */
+    private static int skipElement(HtmlTokenizer tokenizer) {
+        String tagName = tokenizer.getTagName();
+        int end = tokenizer.getEnd();
+        if (tokenizer.isSelfClosing()) {
+            return end;
+        }
+        boolean optionalEndTag = OPTIONAL_END_TAG_ELEMENTS.contains(tagName);
+        // open elements of the same name
+        int depth = 1;
+        // other open block elements, for optional end tag
+        int nested = 0;
+        while (tokenizer.next()) {
+            String name = tokenizer.getTagName();
+            boolean sameName = tagName.equals(name);
+            if (tokenizer.getType() == TokenType.START_TAG &&
+                    !tokenizer.isSelfClosing()) {
+                if (sameName && optionalEndTag && nested == 0) {
+                    tokenizer.pushBack();
+                    return end;
+                } else if (sameName) {
+                    depth++;
+                } else if (optionalEndTag && BLOCK_ELEMENTS.contains(name)) {
+                    nested++;
+                }
+            } else if (tokenizer.getType() == TokenType.END_TAG) {
+                if (sameName) {
+                    if (--depth == 0) {
+                        return tokenizer.getEnd();
+                    }
+                } else if (optionalEndTag && BLOCK_ELEMENTS.contains(name)) {
+                    if (nested == 0) {
+                        // end of the parent
+                        tokenizer.pushBack();
+                        return end;
+                    }
+                    nested--;
+                }
+            }
+            end = tokenizer.getEnd();
+        }
+        return end;
+    }
+
+    private void endRun() {
+        addRun(0, run.size());
+        run.clear();
+    }
+
+    /**
+     * Split the parts of the run at the tags without a matching tag, so that
+     * each segment is well-formed.
+     */
+    private void addRun(int from, int to) {
+        if (from >= to) {
+            return;
+        }
+        Deque<Integer> openTags = new ArrayDeque<>();
+        BitSet unmatched = new BitSet();
+        for (int i = from; i < to; i++) {
+            Part part = run.get(i);
+            if (part.type == PartType.START_TAG) {
+                openTags.push(i);
+            } else if (part.type == PartType.END_TAG) {
+                if (!openTags.isEmpty() && run.get(openTags.peek()).tagName
+                        .equals(part.tagName)) {
+                    openTags.pop();
+                } else {
+                    unmatched.set(i);
+                }
+            }
+        }
+        openTags.forEach(unmatched::set);
+        if (unmatched.isEmpty()) {
+            addSegment(from, to);
+            return;
+        }
+        int segmentFrom = from;
+        for (int i = unmatched.nextSetBit(from); i >= 0;
+                i = unmatched.nextSetBit(i + 1)) {
+            addRun(segmentFrom, i);
+            appendVerbatim(run.get(i).start, run.get(i).end);
+            segmentFrom = i + 1;
+        }
+        addRun(segmentFrom, to);
+    }
+
+    private void addSegment(int from, int to) {
+        int runStart = run.get(from).start;
+        int runEnd = run.get(to - 1).end;
+        // leading and trailing whitespace is not sent
+        int start = runStart;
+        int end = runEnd;
+        if (run.get(from).type == PartType.TEXT) {
+            while (start < run.get(from).end &&
+                    Character.isWhitespace(html.charAt(start))) {
+                start++;
+            }
+        }
+        if (run.get(to - 1).type == PartType.TEXT) {
+            while (end > Math.max(start, run.get(to - 1).start) &&
+                    Character.isWhitespace(html.charAt(end - 1))) {
+                end--;
+            }
+        }
+        if (!hasText(from, to, start, end)) {
+            appendVerbatim(runStart, runEnd);
+            return;
+        }
+
+        Map<String, Part> placeholders = new LinkedHashMap<>();
+        StringBuilder segment = new StringBuilder();
+        for (int i = from; i < to; i++) {
+            Part part = run.get(i);
+            int partStart = Math.max(part.start, start);
+            int partEnd = Math.min(part.end, end);
+            if (partStart >= partEnd) {
+                continue;
+            }
+            if (part.type == PartType.NON_TRANSLATABLE) {
+                String id = ArticleUtil.generatePlaceholderId(prefix,
+                        placeholderCounter++);
+                placeholders.put(id, part);
+                segment.append(
+                        ArticleUtil.generatePlaceholderNode(id).outerHtml());
+            } else {
+                segment.append(html, partStart, partEnd);
+            }
+        }
+        String source = segment.toString();
+        if (!capabilities.fits(ImmutableList.of(source)) && to - from > 1) {
+            // translate the texts between the tags instead
+            for (int i = from; i < to; i++) {
+                Part part = run.get(i);
+                if (part.type == PartType.TEXT) {
+                    addSegment(i, i + 1);
+                } else {
+                    appendVerbatim(part.start, part.end);
+                }
+            }
+            return;
+        }
+        appendVerbatim(runStart, start);
+        if (capabilities.fits(ImmutableList.of(source))) {
+            addPendingSegment(source, placeholders);
+        } else {
+            translateText(source);
+        }
+        appendVerbatim(end, runEnd);
+    }
+
+    private boolean hasText(int from, int to, int start, int end) {
+        for (int i = from; i < to; i++) {
+            Part part = run.get(i);
+            if (part.type != PartType.TEXT) {
+                continue;
+            }
+            for (int j = Math.max(part.start, start);
+                    j < Math.min(part.end, end); j++) {
+                if (!Character.isWhitespace(html.charAt(j))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // translate a large text by sentences
+    private void translateText(String text) {
+        StringTranslationResult result = textTranslator
+                .apply(Parser.unescapeEntities(text, false));
+        warnings.addAll(result.getWarnings());
+        Piece piece = new Piece();
+        piece.translation = Entities.escape(result.getTranslation());
+        if (window.isEmpty()) {
+            output.append(piece.translation);
+        } else {
+            window.add(piece);
+        }
+    }
+
+    private void addPendingSegment(String segment,
+            Map<String, Part> placeholders) {
+        Piece piece = new Piece();
+        piece.segment = segment;
+        piece.placeholders = placeholders;
+        window.add(piece);
+        windowSegmentChars += segment.length();
+        if (windowSegmentChars >= windowChars) {
+            flushWindow();
+        }
+    }
+
+    private void appendVerbatim(int start, int end) {
+        if (start >= end) {
+            return;
+        }
+        if (window.isEmpty()) {
+            output.append(html, start, end);
+            return;
+        }
+        Piece last = window.get(window.size() - 1);
+        if (last.segment == null && last.translation == null &&
+                last.end == start) {
+            last.end = end;
+        } else {
+            Piece piece = new Piece();
+            piece.start = start;
+            piece.end = end;
+            window.add(piece);
+        }
+    }
+
+    /**
+     * Translate the segments of the window and write the window to the
+     * output.
+     */
+    private void flushWindow() {
+        if (window.isEmpty()) {
+            return;
+        }
+        List<Piece> segments = window.stream()
+                .filter(piece -> piece.segment != null)
+                .collect(Collectors.toList());
+        List<String> sources = segments.stream().map(piece -> piece.segment)
+                .collect(Collectors.toList());
+        List<List<Integer>> packed = BatchPacker.pack(sources, capabilities);
+        List<StringBatch> batches = packed.stream()
+                .map(batch -> new StringBatch(batch.stream()
+                        .map(sources::get).collect(Collectors.toList()),
+                        StringType.HTML))
+                .collect(Collectors.toList());
+        List<List<String>> translatedBatches = batchTranslator.apply(batches);
+        for (int i = 0; i < packed.size(); i++) {
+            List<String> translated = translatedBatches.get(i);
+            assert translated.size() == packed.get(i).size();
+            for (int j = 0; j < translated.size(); j++) {
+                segments.get(packed.get(i).get(j)).translation =
+                        translated.get(j);
+            }
+        }
+        for (Piece piece : window) {
+            if (piece.segment != null) {
+                appendRestored(piece.translation, piece.placeholders);
+            } else if (piece.translation != null) {
+                output.append(piece.translation);
+            } else {
+                output.append(html, piece.start, piece.end);
+            }
+        }
+        window.clear();
+        windowSegmentChars = 0;
+    }
+
+    /**
+     * Append a translated segment, with its placeholders replaced by the
+     * original elements. Placeholders which can't be found are left out.
+     */
+    private void appendRestored(String translation,
+            Map<String, Part> placeholders) {
+        if (placeholders.isEmpty()) {
+            output.append(translation);
+            return;
+        }
+        HtmlTokenizer tokenizer = new HtmlTokenizer(translation);
+        int copied = 0;
+        while (tokenizer.next()) {
+            if (tokenizer.getType() != TokenType.START_TAG ||
+                    !"var".equals(tokenizer.getTagName())) {
+                continue;
+            }
+            Part original = placeholders.get(tokenizer.getAttribute("id"));
+            if (original == null) {
+                continue;
+            }
+            output.append(translation, copied, tokenizer.getStart());
+            output.append(html, original.start, original.end);
+            copied = tokenizer.getEnd();
+            if (!tokenizer.isSelfClosing() && tokenizer.next()) {
+                if (tokenizer.getType() == TokenType.END_TAG &&
+                        "var".equals(tokenizer.getTagName())) {
+                    copied = tokenizer.getEnd();
+                } else {
+                    tokenizer.pushBack();
+                }
+            }
+        }
+        output.append(translation, copied, translation.length());
+    }
+}
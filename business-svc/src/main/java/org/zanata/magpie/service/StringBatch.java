@@ -0,0 +1,47 @@
+/*
+ * Copyright 2019, Red Hat, Inc. and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.zanata.magpie.service;
+
+import java.util.List;
+
+import org.zanata.magpie.model.StringType;
+
+/**
+ * Strings of one type sent in one call to
+ * {@link PersistentTranslationService}.
+ */
+public final class StringBatch {
+    private final List<String> strings;
+    private final StringType stringType;
+
+    public StringBatch(List<String> strings, StringType stringType) {
+        this.strings = strings;
+        this.stringType = stringType;
+    }
+
+    public List<String> getStrings() {
+        return strings;
+    }
+
+    public StringType getStringType() {
+        return stringType;
+    }
+}
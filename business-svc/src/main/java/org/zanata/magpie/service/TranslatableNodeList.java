@@ -18,6 +18,7 @@ public class TranslatableNodeList {
     private final List<Node> nodes;
 
     private final Map<String, Node> placeholderIdMap;
+    private String html;
 
     public TranslatableNodeList(@NotNull List<Node> nodes,
             @NotNull Map<String, Node> placeholderIdMap) {
@@ -30,9 +31,17 @@ public class TranslatableNodeList {
         return placeholderIdMap;
     }
 
-    // html/xml string of {@link #nodes}
+    // Parsed nodes, with placeholders
+    public List<Node> getNodes() {
+        return nodes;
+    }
+
+    // html/xml string of {@link #nodes}, before they are changed
     public String getHtml() {
-        return nodes.stream().map(Node::outerHtml)
-                .collect(Collectors.joining());
+        if (html == null) {
+            html = nodes.stream().map(Node::outerHtml)
+                    .collect(Collectors.joining());
+        }
+        return html;
     }
 }
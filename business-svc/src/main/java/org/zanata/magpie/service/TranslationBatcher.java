@@ -0,0 +1,429 @@
+/*
+ * Copyright 2019, Red Hat, Inc. and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.zanata.magpie.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import javax.annotation.Nullable;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.zanata.magpie.annotation.EnvVariable;
+import org.zanata.magpie.backend.BackendCapabilities;
+import org.zanata.magpie.backend.BackendLocaleCode;
+import org.zanata.magpie.exception.MTException;
+import org.zanata.magpie.exception.PartialTranslationException;
+import org.zanata.magpie.model.AugmentedTranslation;
+import org.zanata.magpie.model.BackendID;
+import org.zanata.magpie.model.StringType;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+import static org.zanata.magpie.api.APIConstant.BATCH_DELAY;
+import static org.zanata.magpie.api.APIConstant.BATCH_MAX_SEGMENTS;
+
+/**
+ * Combines MT engine calls of concurrent requests for the same backend,
+ * locale pair, string type and category into one call.
+ *
+ * A batch stays open for other requests to join up to the configured delay
+ * after its first request, or until it reaches the backend's
+ * {@link TranslatorBackend#getCapabilities()} char or segment limit, or the
+ * segment cap. No calling thread waits for that: the batch is closed by a
+ * timer, or by the request which fills it. The backend is then called with
+ * all the strings, and each request gets its part of the results when the
+ * backend call completes. Strings of one request are never split across
+ * batches; a request too large for a batch is sent on its own.
+ */
+@ApplicationScoped
+public class TranslationBatcher {
+    private static final Logger LOG =
+            LoggerFactory.getLogger(TranslationBatcher.class);
+    static final long DEFAULT_DELAY_MILLIS = 5;
+    static final int DEFAULT_MAX_SEGMENTS = 100;
+
+    private final ConcurrentMap<BatchKey, Batch> openBatches =
+            new ConcurrentHashMap<>();
+    private long delayMillis;
+    private int maxSegments;
+    private ScheduledExecutorService scheduler;
+
+    @SuppressWarnings("unused")
+    TranslationBatcher() {
+    }
+
+    @Inject
+    public TranslationBatcher(@EnvVariable(BATCH_DELAY) String delayMillis,
+            @EnvVariable(BATCH_MAX_SEGMENTS) String maxSegments) {
+        this(isBlank(delayMillis) ? DEFAULT_DELAY_MILLIS :
+                        Long.parseLong(delayMillis.trim()),
+                isBlank(maxSegments) ? DEFAULT_MAX_SEGMENTS :
+                        Integer.parseInt(maxSegments.trim()));
+    }
+
+    @VisibleForTesting
+    TranslationBatcher(long delayMillis, int maxSegments) {
+        this(delayMillis, maxSegments, newScheduler());
+    }
+
+    @VisibleForTesting
+    TranslationBatcher(long delayMillis, int maxSegments,
+            ScheduledExecutorService scheduler) {
+        this.delayMillis = delayMillis;
+        this.maxSegments = maxSegments;
+        this.scheduler = scheduler;
+    }
+
+    // closes the batches at the end of their delay, and calls the backend
+    private static ScheduledExecutorService newScheduler() {
+        ScheduledThreadPoolExecutor executor =
+                new ScheduledThreadPoolExecutor(1, new ThreadFactoryBuilder()
+                        .setNameFormat("translation-batcher-%d")
+                        .setDaemon(true).build());
+        executor.setRemoveOnCancelPolicy(true);
+        return Executors.unconfigurableScheduledExecutorService(executor);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Same as {@link TranslatorBackend#translate(List, BackendLocaleCode,
+     * BackendLocaleCode, StringType, Optional)}, possibly in one call with
+     * the strings of concurrent requests.
+     */
+    public List<AugmentedTranslation> translate(TranslatorBackend backend,
+            List<String> contents, BackendLocaleCode srcLocale,
+            BackendLocaleCode targetLocale, StringType stringType,
+            Optional<String> category) throws MTException {
+        try {
+            return translateAsync(backend, contents, srcLocale, targetLocale,
+                    stringType, category).toCompletableFuture().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Same as {@link TranslatorBackend#translateAsync(List,
+     * BackendLocaleCode, BackendLocaleCode, StringType, Optional)}, possibly
+     * in one call with the strings of concurrent requests. Returns right
+     * away: the backend is called once the batch is closed, at most the batch
+     * delay after its first request.
+     */
+    public CompletionStage<List<AugmentedTranslation>> translateAsync(
+            TranslatorBackend backend, List<String> contents,
+            BackendLocaleCode srcLocale, BackendLocaleCode targetLocale,
+            StringType stringType, Optional<String> category) {
+        if (delayMillis <= 0) {
+            return backend.translateAsync(contents, srcLocale, targetLocale,
+                    stringType, category);
+        }
+        BackendCapabilities capabilities = backend.getCapabilities();
+        int charLimit = capabilities.getMaxChars();
+        int segmentLimit = Math.min(maxSegments, capabilities.getMaxSegments());
+        int charCount = countChars(contents);
+        if (contents.size() >= segmentLimit || charCount >= charLimit) {
+            return backend.translateAsync(contents, srcLocale, targetLocale,
+                    stringType, category);
+        }
+        BatchKey key = new BatchKey(backend.getId(), srcLocale,
+                targetLocale, stringType, category);
+        while (true) {
+            Batch batch = openBatches.computeIfAbsent(key,
+                    k -> new Batch(charLimit, segmentLimit, closed -> {
+                        openBatches.remove(key, closed);
+                        closed.dispatch(backend, srcLocale, targetLocale,
+                                stringType, category);
+                    }));
+            Part part = batch.add(contents, charCount);
+            if (part == null) {
+                // batch is full, start a new one
+                openBatches.remove(key, batch);
+                continue;
+            }
+            if (part.isLeader()) {
+                batch.scheduleClose(scheduler, delayMillis);
+            }
+            return part.result;
+        }
+    }
+
+    private static int countChars(List<String> contents) {
+        return contents.stream().mapToInt(String::length).sum();
+    }
+
+    /**
+     * Strings of one request in a batch.
+     */
+    private static class Part {
+        private final List<String> contents;
+        private final boolean leader;
+        private final CompletableFuture<List<AugmentedTranslation>> result =
+                new CompletableFuture<>();
+
+        private Part(List<String> contents, boolean leader) {
+            this.contents = contents;
+            this.leader = leader;
+        }
+
+        private boolean isLeader() {
+            return leader;
+        }
+    }
+
+    private static class Batch {
+        private final int charLimit;
+        private final int maxSegments;
+        // removes the batch from the open ones and dispatches it
+        private final Consumer<Batch> onClose;
+        private final List<Part> parts = new ArrayList<>();
+        private int charCount;
+        private int segmentCount;
+        private boolean closed;
+        private @Nullable ScheduledFuture<?> closeTimer;
+
+        private Batch(int charLimit, int maxSegments,
+                Consumer<Batch> onClose) {
+            this.charLimit = charLimit;
+            this.maxSegments = maxSegments;
+            this.onClose = onClose;
+        }
+
+        /**
+         * @return the new part, or null if the strings don't fit in this
+         *         batch anymore
+         */
+        private @Nullable Part add(List<String> contents, int chars) {
+            Part part = null;
+            boolean full;
+            synchronized (this) {
+                if (closed) {
+                    return null;
+                }
+                full = charCount + chars > charLimit ||
+                        segmentCount + contents.size() > maxSegments;
+                if (!full) {
+                    part = new Part(contents, parts.isEmpty());
+                    parts.add(part);
+                    charCount += chars;
+                    segmentCount += contents.size();
+                    full = charCount == charLimit ||
+                            segmentCount == maxSegments;
+                }
+            }
+            if (full) {
+                close();
+            }
+            return part;
+        }
+
+        /**
+         * Close the batch at the end of the delay, unless it is filled
+         * before.
+         */
+        private void scheduleClose(ScheduledExecutorService scheduler,
+                long delayMillis) {
+            ScheduledFuture<?> timer;
+            try {
+                timer = scheduler.schedule(this::close, delayMillis,
+                        TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // shutting down
+                close();
+                return;
+            }
+            synchronized (this) {
+                if (!closed) {
+                    closeTimer = timer;
+                    return;
+                }
+            }
+            timer.cancel(false);
+        }
+
+        /**
+         * Close the batch and dispatch it, on the first call only.
+         */
+        private void close() {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                if (closeTimer != null) {
+                    closeTimer.cancel(false);
+                }
+            }
+            onClose.accept(this);
+        }
+
+        private void dispatch(TranslatorBackend backend,
+                BackendLocaleCode srcLocale, BackendLocaleCode targetLocale,
+                StringType stringType, Optional<String> category) {
+            // no part can be added once closed
+            List<String> contents = new ArrayList<>(segmentCount);
+            parts.forEach(part -> contents.addAll(part.contents));
+            LOG.debug("translating {} strings of {} requests in one batch",
+                    contents.size(), parts.size());
+            CompletionStage<List<AugmentedTranslation>> translating;
+            try {
+                translating = backend.translateAsync(contents, srcLocale,
+                        targetLocale, stringType, category);
+            } catch (RuntimeException | Error e) {
+                fail(e);
+                return;
+            }
+            translating.whenComplete((translations, e) -> {
+                try {
+                    if (e == null) {
+                        complete(backend.getId(), contents.size(),
+                                translations);
+                        return;
+                    }
+                    Throwable cause = e instanceof CompletionException &&
+                            e.getCause() != null ? e.getCause() : e;
+                    if (cause instanceof PartialTranslationException) {
+                        completePartially(contents.size(),
+                                (PartialTranslationException) cause);
+                    } else {
+                        fail(cause);
+                    }
+                } catch (RuntimeException | Error t) {
+                    // no request of the batch is left waiting
+                    fail(t);
+                }
+            });
+        }
+
+        private void complete(BackendID backendID, int expected,
+                List<AugmentedTranslation> translations) {
+            if (translations.size() != expected) {
+                throw new MTException("Expected " + expected +
+                        " translations from " + backendID + " but got " +
+                        translations.size());
+            }
+            int start = 0;
+            for (Part part : parts) {
+                int end = start + part.contents.size();
+                part.result.complete(translations.subList(start, end));
+                start = end;
+            }
+        }
+
+        /**
+         * Complete the parts which were fully translated, and fail the others
+         * with their own translations.
+         */
+        private void completePartially(int expected,
+                PartialTranslationException failure) {
+            List<AugmentedTranslation> translations =
+                    failure.getTranslations();
+            if (translations.size() != expected) {
+                fail(failure);
+                return;
+            }
+            int start = 0;
+            for (Part part : parts) {
+                int end = start + part.contents.size();
+                List<AugmentedTranslation> partTranslations =
+                        translations.subList(start, end);
+                if (partTranslations.contains(null)) {
+                    part.result.completeExceptionally(
+                            new PartialTranslationException(
+                                    failure.getMessage(), failure.getCause(),
+                                    partTranslations));
+                } else {
+                    part.result.complete(partTranslations);
+                }
+                start = end;
+            }
+        }
+
+        // parts already completed are left as is
+        private void fail(Throwable cause) {
+            parts.forEach(part -> part.result.completeExceptionally(cause));
+        }
+    }
+
+    private static final class BatchKey {
+        private final BackendID backendID;
+        private final String srcLocale;
+        private final String targetLocale;
+        private final StringType stringType;
+        private final Optional<String> category;
+
+        private BatchKey(BackendID backendID, BackendLocaleCode srcLocale,
+                BackendLocaleCode targetLocale, StringType stringType,
+                Optional<String> category) {
+            this.backendID = backendID;
+            this.srcLocale = srcLocale.getLocaleCode();
+            this.targetLocale = targetLocale.getLocaleCode();
+            this.stringType = stringType;
+            this.category = category;
+        }
+
+        @Override
+        public boolean equals(@Nullable Object o) {
+            if (this == o) return true;
+            if (!(o instanceof BatchKey)) return false;
+            BatchKey that = (BatchKey) o;
+            return backendID == that.backendID &&
+                    Objects.equals(srcLocale, that.srcLocale) &&
+                    Objects.equals(targetLocale, that.targetLocale) &&
+                    stringType == that.stringType &&
+                    Objects.equals(category, that.category);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(backendID, srcLocale, targetLocale, stringType,
+                    category);
+        }
+    }
+}
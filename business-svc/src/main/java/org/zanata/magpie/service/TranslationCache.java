@@ -0,0 +1,198 @@
+/*
+ * Copyright 2019, Red Hat, Inc. and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.zanata.magpie.service;
+
+import java.lang.management.ManagementFactory;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Nullable;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.zanata.magpie.annotation.ClusteredCache;
+import org.zanata.magpie.annotation.EnvVariable;
+import org.zanata.magpie.model.AugmentedTranslation;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+import static org.zanata.magpie.api.APIConstant.TRANSLATION_CACHE_SIZE;
+
+/**
+ * Bounded in-memory cache of translated segments, keyed by locale pair,
+ * backend and content hash of the source. It is checked before searching the
+ * database for text flows from other documents, and filled from database
+ * reads and MT engine results.
+ *
+ * Local misses fall back to the cluster-wide cache {@link #CLUSTERED_CACHE}
+ * (if any), so that a translation computed on one node is served from memory
+ * on the others. Failures of the clustered cache are logged and treated as a
+ * miss.
+ *
+ * The maximum size can be set with {@link
+ * org.zanata.magpie.api.APIConstant#TRANSLATION_CACHE_SIZE}. A size of 0
+ * disables the local cache, and the clustered one with it.
+ */
+@ApplicationScoped
+public class TranslationCache implements TranslationCacheMXBean {
+    private static final Logger LOG =
+            LoggerFactory.getLogger(TranslationCache.class);
+    public static final long DEFAULT_MAX_SIZE = 100_000;
+    public static final String CLUSTERED_CACHE = "translations";
+    static final String OBJECT_NAME = "org.zanata.magpie:type=TranslationCache";
+
+    private Cache<TranslationCacheKey, AugmentedTranslation> cache;
+    private @Nullable
+    ConcurrentMap<TranslationCacheKey, AugmentedTranslation> clusteredCache;
+    private final AtomicLong clusteredHitCount = new AtomicLong();
+
+    @SuppressWarnings("unused")
+    TranslationCache() {
+    }
+
+    @Inject
+    public TranslationCache(
+            @EnvVariable(TRANSLATION_CACHE_SIZE) String maxSize,
+            @ClusteredCache(CLUSTERED_CACHE)
+            ConcurrentMap<TranslationCacheKey, AugmentedTranslation> clusteredCache) {
+        this(parseMaxSize(maxSize), clusteredCache);
+    }
+
+    @VisibleForTesting
+    TranslationCache(long maxSize) {
+        this(maxSize, null);
+    }
+
+    @VisibleForTesting
+    TranslationCache(long maxSize,
+            @Nullable ConcurrentMap<TranslationCacheKey, AugmentedTranslation> clusteredCache) {
+        cache = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .recordStats()
+                .build();
+        this.clusteredCache = maxSize > 0 ? clusteredCache : null;
+    }
+
+    /**
+     * @throws IllegalArgumentException
+     *             if the size is negative
+     */
+    public static long parseMaxSize(String maxSize) {
+        long size = isBlank(maxSize) ? DEFAULT_MAX_SIZE :
+                Long.parseLong(maxSize.trim());
+        if (size < 0) {
+            throw new IllegalArgumentException(
+                    TRANSLATION_CACHE_SIZE + " must not be negative");
+        }
+        return size;
+    }
+
+    @PostConstruct
+    public void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+            }
+        } catch (JMException e) {
+            LOG.warn("Cannot register translation cache MBean", e);
+        }
+    }
+
+    @PreDestroy
+    public void unregisterMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException e) {
+            LOG.warn("Cannot unregister translation cache MBean", e);
+        }
+    }
+
+    public Optional<AugmentedTranslation> get(TranslationCacheKey key) {
+        AugmentedTranslation translation = cache.getIfPresent(key);
+        if (translation == null && clusteredCache != null) {
+            try {
+                translation = clusteredCache.get(key);
+            } catch (RuntimeException e) {
+                LOG.warn("Cannot read from clustered translation cache", e);
+            }
+            if (translation != null) {
+                clusteredHitCount.incrementAndGet();
+                cache.put(key, translation);
+            }
+        }
+        return Optional.ofNullable(translation);
+    }
+
+    public void put(TranslationCacheKey key,
+            AugmentedTranslation translation) {
+        AugmentedTranslation previous = cache.asMap().put(key, translation);
+        // the clustered cache is likely up to date already
+        if (clusteredCache != null && !translation.equals(previous)) {
+            try {
+                clusteredCache.put(key, translation);
+            } catch (RuntimeException e) {
+                LOG.warn("Cannot write to clustered translation cache", e);
+            }
+        }
+    }
+
+    @Override
+    public long getSize() {
+        return cache.size();
+    }
+
+    @Override
+    public long getHitCount() {
+        return cache.stats().hitCount();
+    }
+
+    @Override
+    public long getMissCount() {
+        return cache.stats().missCount();
+    }
+
+    @Override
+    public long getClusteredHitCount() {
+        return clusteredHitCount.get();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return cache.stats().evictionCount();
+    }
+}
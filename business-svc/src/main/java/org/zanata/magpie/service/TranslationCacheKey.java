@@ -0,0 +1,84 @@
+/*
+ * Copyright 2019, Red Hat, Inc. and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.zanata.magpie.service;
+
+import java.io.Serializable;
+import javax.annotation.Nullable;
+
+import org.zanata.magpie.api.dto.LocaleCode;
+import org.zanata.magpie.model.BackendID;
+import org.zanata.magpie.model.ContentHash;
+
+/**
+ * Key of a translated segment in {@link TranslationCache}.
+ */
+public final class TranslationCacheKey implements Serializable {
+    private static final long serialVersionUID = 5036391578283519232L;
+
+    private final String fromLocale;
+    private final String toLocale;
+    private final BackendID backendID;
+    private final ContentHash contentHash;
+
+    public TranslationCacheKey(LocaleCode fromLocale, LocaleCode toLocale,
+            BackendID backendID, ContentHash contentHash) {
+        this.fromLocale = fromLocale.getId();
+        this.toLocale = toLocale.getId();
+        this.backendID = backendID;
+        this.contentHash = contentHash;
+    }
+
+    public ContentHash getContentHash() {
+        return contentHash;
+    }
+
+    @Override
+    public boolean equals(@Nullable Object o) {
+        if (this == o) return true;
+        if (!(o instanceof TranslationCacheKey)) return false;
+
+        TranslationCacheKey that = (TranslationCacheKey) o;
+
+        return fromLocale.equals(that.fromLocale) &&
+                toLocale.equals(that.toLocale) &&
+                backendID == that.backendID &&
+                contentHash.equals(that.contentHash);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = fromLocale.hashCode();
+        result = 31 * result + toLocale.hashCode();
+        result = 31 * result + backendID.hashCode();
+        result = 31 * result + contentHash.hashCode();
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "TranslationCacheKey{" +
+                "fromLocale='" + fromLocale + '\'' +
+                ", toLocale='" + toLocale + '\'' +
+                ", backendID=" + backendID +
+                ", contentHash='" + contentHash + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2017, Red Hat, Inc. and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.zanata.magpie.service;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.validation.constraints.NotNull;
+
+import org.apache.deltaspike.jpa.api.transaction.Transactional;
+import org.zanata.magpie.dao.DocumentDAO;
+import org.zanata.magpie.dao.TextFlowBulkWriter;
+import org.zanata.magpie.dao.TextFlowDAO;
+import org.zanata.magpie.model.AugmentedTranslation;
+import org.zanata.magpie.model.BackendID;
+import org.zanata.magpie.model.ContentHash;
+import org.zanata.magpie.model.Document;
+import org.zanata.magpie.model.Locale;
+import org.zanata.magpie.model.TextFlow;
+import org.zanata.magpie.model.TextFlowTarget;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+
+/**
+ * Reads and writes text flows and their targets, each call in its own short
+ * transaction. {@link PersistentTranslationService} calls the MT engine
+ * between the read and the write, so that no transaction or database
+ * connection is held while waiting for the engine.
+ */
+@ApplicationScoped
+public class TranslationMemoryService {
+    private DocumentDAO documentDAO;
+    private TextFlowDAO textFlowDAO;
+    private TextFlowBulkWriter textFlowBulkWriter;
+    private TranslationCache translationCache;
+
+    @SuppressWarnings("unused")
+    public TranslationMemoryService() {
+    }
+
+    @Inject
+    public TranslationMemoryService(DocumentDAO documentDAO,
+            TextFlowDAO textFlowDAO, TextFlowBulkWriter textFlowBulkWriter,
+            TranslationCache translationCache) {
+        this.documentDAO = documentDAO;
+        this.textFlowDAO = textFlowDAO;
+        this.textFlowBulkWriter = textFlowBulkWriter;
+        this.translationCache = translationCache;
+    }
+
+    /**
+     * Look for the content hashes in {@link TranslationCache}. This doesn't
+     * touch the database, so callers should do this before
+     * {@link #findTextFlowsByContentHash(Document, Locale, Locale, BackendID, Map)}
+     * and only search the database for the misses.
+     *
+     * The returned text flows are created from the cache entries and are not
+     * persisted. Their content hashes should only be linked to the document,
+     * see {@link #save(Document, Locale, List, List, Collection)}.
+     *
+     * @param fromLocale
+     *            from locale
+     * @param toLocale
+     *            to locale
+     * @param backendID
+     *            translation provider
+     * @param contentHashes
+     *            map of text flow content to its content hash
+     * @return map of content hash to a new text flow with the cached target
+     */
+    public Map<ContentHash, TextFlow> findCachedTextFlows(
+            @NotNull Locale fromLocale, @NotNull Locale toLocale,
+            @NotNull BackendID backendID,
+            Map<String, ContentHash> contentHashes) {
+        Map<ContentHash, TextFlow> cachedTfs = Maps.newHashMap();
+        for (Map.Entry<String, ContentHash> entry : contentHashes
+                .entrySet()) {
+            ContentHash contentHash = entry.getValue();
+            Optional<AugmentedTranslation> cached = translationCache.get(
+                    cacheKey(fromLocale, toLocale, backendID, contentHash));
+            if (cached.isPresent()) {
+                TextFlow newTfCopy = new TextFlow(entry.getKey(), fromLocale);
+                newTfCopy.getTargets().add(new TextFlowTarget(
+                        cached.get().getPlainTranslation(),
+                        cached.get().getRawTranslation(), newTfCopy,
+                        toLocale, backendID));
+                cachedTfs.put(contentHash, newTfCopy);
+            }
+        }
+        return cachedTfs;
+    }
+
+    /**
+     * See if the document has the text flows in database already. For those
+     * not found, search the same content hashes in the shared text flows in
+     * one query. Shared text flows found are linked to the document. Content
+     * hashes without any match are absent from the result. Targets found are
+     * put into {@link TranslationCache}.
+     *
+     * The returned text flows are detached, with their targets loaded.
+     *
+     * @param document
+     *            current document
+     * @param fromLocale
+     *            from locale
+     * @param toLocale
+     *            to locale
+     * @param backendID
+     *            translation provider
+     * @param contentHashes
+     *            map of text flow content to its content hash
+     * @return map of content hash to text flow that has the matching content
+     *         hash
+     * @see #findCachedTextFlows(Locale, Locale, BackendID, Map)
+     */
+    @Transactional
+    public Map<ContentHash, TextFlow> findTextFlowsByContentHash(
+            @NotNull Document document,
+            @NotNull Locale fromLocale, @NotNull Locale toLocale,
+            @NotNull BackendID backendID,
+            Map<String, ContentHash> contentHashes) {
+        // fetch the text flows (as part of this new transaction)
+        document = documentDAO.reload(document);
+        Map<ContentHash, TextFlow> matchedHashTfs = Maps.newHashMap();
+        Set<ContentHash> missingHashes = new HashSet<>();
+        for (ContentHash contentHash : contentHashes.values()) {
+            TextFlow matchedHashTf = document.getTextFlows().get(contentHash);
+            if (matchedHashTf != null) {
+                matchedHashTfs.put(contentHash, matchedHashTf);
+                cacheTarget(fromLocale, toLocale, backendID, matchedHashTf);
+            } else {
+                missingHashes.add(contentHash);
+            }
+        }
+        if (!missingHashes.isEmpty()) {
+            // we don't have text flows for this document yet,
+            // now try to search the same strings in database
+            Map<ContentHash, TextFlow> sharedTfs = textFlowDAO.getByContentHashes(
+                    fromLocale.getLocaleCode(), missingHashes);
+            sharedTfs.values().forEach(
+                    tf -> cacheTarget(fromLocale, toLocale, backendID, tf));
+            if (!sharedTfs.isEmpty()) {
+                textFlowBulkWriter.write(document, fromLocale,
+                        ImmutableList.copyOf(sharedTfs.values()),
+                        ImmutableList.of());
+            }
+            matchedHashTfs.putAll(sharedTfs);
+        }
+        return matchedHashTfs;
+    }
+
+    /**
+     * Insert the new text flows, link them to the document and insert or
+     * update the targets in bulk. Text flows of translations served from
+     * {@link TranslationCache} are only linked: the cached value may be older
+     * than the target in database, so it is never written back.
+     *
+     * @param cachedHashes
+     *            content hashes of the text flows found in the cache
+     * @see TextFlowBulkWriter#write(Document, Locale, Collection, Collection)
+     * @see TextFlowBulkWriter#link(Document, Locale, Collection)
+     */
+    @Transactional
+    public void save(Document document, Locale locale,
+            List<TextFlow> textFlows, List<TextFlowTarget> targets,
+            Collection<ContentHash> cachedHashes) {
+        if (!textFlows.isEmpty() || !targets.isEmpty()) {
+            textFlowBulkWriter.write(document, locale, textFlows, targets);
+        }
+        if (!cachedHashes.isEmpty()) {
+            textFlowBulkWriter.link(document, locale, cachedHashes);
+        }
+    }
+
+    /**
+     * Put a translation into {@link TranslationCache}, eg after calling the MT
+     * engine.
+     */
+    public void cacheTranslation(Locale fromLocale, Locale toLocale,
+            BackendID backendID, ContentHash contentHash,
+            AugmentedTranslation translation) {
+        translationCache.put(
+                cacheKey(fromLocale, toLocale, backendID, contentHash),
+                translation);
+    }
+
+    private void cacheTarget(Locale fromLocale, Locale toLocale,
+            BackendID backendID, TextFlow textFlow) {
+        findTargetByLocaleAndProvider(toLocale, backendID, textFlow)
+                .ifPresent(tft -> cacheTranslation(fromLocale, toLocale,
+                        backendID, textFlow.getContentHash(),
+                        new AugmentedTranslation(tft.getContent(),
+                                tft.getRawContent())));
+    }
+
+    private static TranslationCacheKey cacheKey(Locale fromLocale,
+            Locale toLocale, BackendID backendID, ContentHash contentHash) {
+        return new TranslationCacheKey(fromLocale.getLocaleCode(),
+                toLocale.getLocaleCode(), backendID, contentHash);
+    }
+
+    static Optional<TextFlowTarget> findTargetByLocaleAndProvider(
+            Locale toLocale, BackendID backendID, TextFlow textFlow) {
+        return textFlow.getTargets().stream()
+                .filter(target -> target.getLocale().equals(toLocale)
+                        && target.getBackendId().equals(backendID))
+                .findAny();
+    }
+}
@@ -1,9 +1,13 @@
 package org.zanata.magpie.util;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import javax.annotation.Nullable;
 import javax.validation.constraints.NotNull;
@@ -16,9 +20,12 @@ import org.jsoup.nodes.Element;
 import org.jsoup.nodes.Node;
 import org.jsoup.parser.Parser;
 import org.jsoup.parser.Tag;
-import org.jsoup.select.Elements;
+import org.jsoup.select.NodeFilter;
+import org.jsoup.select.NodeTraversor;
+import org.jsoup.select.NodeVisitor;
 import org.zanata.magpie.service.TranslatableNodeList;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import kotlin.Pair;
 
@@ -32,7 +39,7 @@ public final class ArticleUtil {
     private final static String WRAPPER_ID = "WRAP";
 
     // HTML tag that will not be translated
-    private final static ImmutableList<String> NON_TRANSLATABLE_HTML_NODE = ImmutableList
+    private final static ImmutableSet<String> NON_TRANSLATABLE_HTML_NODE = ImmutableSet
             .of("script", "#text", "code", "col", "colgroup", "embed",
                     "#comment", "image", "map", "media", "meta", "source",
                     "xml");
@@ -71,76 +78,75 @@ public final class ArticleUtil {
     @org.jetbrains.annotations.NotNull
     private static Map<String, Node> createPlaceholdersHTML(int prefix,
             Element document) {
-        Map<String, Node> placeholderIdMap = new HashMap<>();
-
-        int counter = 0;
-        counter = usePlaceholdersForAttributes(document,
-                placeholderIdMap, prefix, counter);
-        counter = usePlaceholdersForHTMLNodes(document,
-                placeholderIdMap, prefix, counter);
-        counter = usePlaceholdersForHTMLClass(document,
-                placeholderIdMap, prefix, counter);
-        usePlaceholdersForHtmlIds(document,
-                placeholderIdMap, prefix, counter);
-        return placeholderIdMap;
+        return createPlaceholders(prefix, document,
+                element -> isNonTranslatableHTML(element.tagName(),
+                        element::attr));
     }
 
     /**
-     * @param criteria a list of tags/attributes/ids/classes whose Elements want to find
-     * @param elementFinder takes one of the criteria and returns matching Elements
-     * @param <T> the type of element criteria (String or Pair&lt;String, String&gt;)
-     * @return the new placeholder counter
+     * Whether an HTML element is not to be translated, by its tag, its
+     * translate attribute, its css classes or its id.
+     *
+     * @param tagName - tag name of the element
+     * @param attributes - attribute value by name, empty if absent
      */
-    private static <T> int usePlaceholders(
-            Map<String, Node> placeholderIdMap, int prefix,
-            int counter, List<T> criteria,
-            Function<T, Elements> elementFinder) {
-        for (T criterion : criteria) {
-            for (Element element : elementFinder.apply(criterion)) {
-                replaceNodeWithPlaceholder(placeholderIdMap, prefix,
-                        counter, element);
-                counter++;
-            }
+    public static boolean isNonTranslatableHTML(String tagName,
+            Function<String, String> attributes) {
+        if (hasNonTranslatableAttribute(attributes) ||
+                NON_TRANSLATABLE_HTML_NODE.contains(lowerCase(tagName))) {
+            return true;
         }
-        return counter;
-    }
-
-    private static int usePlaceholdersForAttributes(
-            Element document, Map<String, Node> placeholderIdMap, int prefix,
-            int counter) {
-        return usePlaceholders(placeholderIdMap, prefix, counter,
-                NON_TRANSLATABLE_ATTRIBUTE, attr ->
-                        getElementsByAttributeValue(document, attr)
-        );
+        String classNames = lowerCase(attributes.apply("class"));
+        if (!classNames.isEmpty() && Arrays.stream(classNames.split("\\s+"))
+                .anyMatch(NON_TRANSLATABLE_HTML_CLASS::contains)) {
+            return true;
+        }
+        String id = lowerCase(attributes.apply("id"));
+        return NON_TRANSLATABLE_HTML_ID.stream().anyMatch(id::startsWith);
     }
 
-    private static Elements getElementsByAttributeValue(
-            Element document, Pair<String, String> attr) {
-        return document.getElementsByAttributeValueContaining(
-                attr.getFirst(), attr.getSecond());
-    }
+    /**
+     * Replace the elements matching isNonTranslatable with placeholders,
+     * in one traversal of the document. The children of a replaced element
+     * are not visited, they are kept in the original node.
+     *
+     * @return map of placeholder id to original node, in document order
+     */
+    private static Map<String, Node> createPlaceholders(int prefix,
+            Element document, Predicate<Element> isNonTranslatable) {
+        List<Element> nonTranslatable = new ArrayList<>();
+        NodeTraversor.filter(new NodeFilter() {
+            @Override
+            public FilterResult head(Node node, int depth) {
+                if (node instanceof Element && node.parent() != null &&
+                        isNonTranslatable.test((Element) node)) {
+                    nonTranslatable.add((Element) node);
+                    return FilterResult.SKIP_ENTIRELY;
+                }
+                return FilterResult.CONTINUE;
+            }
 
-    private static int usePlaceholdersForHTMLNodes(
-            Element document, Map<String, Node> placeholderIdMap, int prefix,
-            int counter) {
-        return usePlaceholders(placeholderIdMap, prefix,
-                counter, NON_TRANSLATABLE_HTML_NODE,
-                document::getElementsByTag);
-    }
+            @Override
+            public FilterResult tail(Node node, int depth) {
+                return FilterResult.CONTINUE;
+            }
+        }, document);
 
-    private static int usePlaceholdersForHTMLClass(
-            Element document, Map<String, Node> placeholderIdMap, int prefix,
-            int counter) {
-        return usePlaceholders(placeholderIdMap, prefix, counter,
-                NON_TRANSLATABLE_HTML_CLASS, document::getElementsByClass);
+        Map<String, Node> placeholderIdMap = new LinkedHashMap<>();
+        int counter = 0;
+        for (Element element : nonTranslatable) {
+            replaceNodeWithPlaceholder(placeholderIdMap, prefix, counter,
+                    element);
+            counter++;
+        }
+        return placeholderIdMap;
     }
 
-    private static int usePlaceholdersForHtmlIds(
-            Element document, Map<String, Node> placeholderIdMap, int prefix,
-            int counter) {
-        return usePlaceholders(placeholderIdMap, prefix, counter,
-                NON_TRANSLATABLE_HTML_ID,
-                id -> document.select("[id^='" + id + "']"));
+    private static boolean hasNonTranslatableAttribute(
+            Function<String, String> attributes) {
+        return NON_TRANSLATABLE_ATTRIBUTE.stream()
+                .anyMatch(attr -> lowerCase(attributes.apply(attr.getFirst()))
+                        .contains(attr.getSecond()));
     }
 
     /**
@@ -161,14 +167,9 @@ public final class ArticleUtil {
     @org.jetbrains.annotations.NotNull
     private static Map<String, Node> createPlaceholdersXML(int prefix,
             Element document) {
-        Map<String, Node> placeholderIdMap = new HashMap<>();
-
-        int counter = 0;
         // don't apply tag/css/id to XML contents
-        usePlaceholdersForAttributes(document,
-                placeholderIdMap, prefix,
-                counter);
-        return placeholderIdMap;
+        return createPlaceholders(prefix, document,
+                element -> hasNonTranslatableAttribute(element::attr));
     }
 
     /**
@@ -270,19 +271,52 @@ public final class ArticleUtil {
     public static String replacePlaceholderWithNode(
             Map<String, Node> nodeIdMap, String xml, Function<String, Element> toElement) {
         Element element = toElement.apply(xml);
-        for (Map.Entry<String, Node> entry : nodeIdMap.entrySet()) {
-            String id = entry.getKey();
-            Node replacementNode = entry.getValue();
-//            elements.stream()
-//                    .filter(el -> el.attr("id").equals(id))
-//                    .findFirst()
-//                    .ifPresent(it -> it.replaceWith(replacementNode));
-            element.select("#" + id).first().replaceWith(replacementNode);
-        }
+        replacePlaceholderWithNode(nodeIdMap, ImmutableList.of(element));
         return unwrapAsNodes(element).stream().map(Node::outerHtml)
                 .collect(Collectors.joining());
     }
 
+    /**
+     * Replace placeholders in already parsed nodes with the nodes from
+     * nodeIdMap. The placeholders are found in one traversal of the nodes;
+     * those which can't be found are left out.
+     */
+    public static void replacePlaceholderWithNode(
+            Map<String, Node> nodeIdMap, List<Node> nodes) {
+        if (nodeIdMap.isEmpty()) {
+            return;
+        }
+        List<Element> placeholders = new ArrayList<>();
+        NodeVisitor visitor = new NodeVisitor() {
+            @Override
+            public void head(Node node, int depth) {
+                if (node instanceof Element &&
+                        nodeIdMap.containsKey(((Element) node).id())) {
+                    placeholders.add((Element) node);
+                }
+            }
+
+            @Override
+            public void tail(Node node, int depth) {
+            }
+        };
+        for (Node node : nodes) {
+            NodeTraversor.traverse(visitor, node);
+        }
+        for (Element placeholder : placeholders) {
+            Node replacementNode = nodeIdMap.get(placeholder.id());
+            // placeholders are unique, unless the MT engine repeated one
+            if (replacementNode.parent() != null) {
+                replacementNode = replacementNode.clone();
+            }
+            placeholder.replaceWith(replacementNode);
+        }
+    }
+
+    private static String lowerCase(String string) {
+        return string.toLowerCase(Locale.ENGLISH);
+    }
+
     private static String getWrapperId() {
         return ID_PREFIX + "-" + WRAPPER_ID;
     }
@@ -0,0 +1,314 @@
+/*
+ * Copyright 2019, Red Hat, Inc. and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.zanata.magpie.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.jsoup.parser.Parser;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Splits html into a flat stream of tokens without building a DOM: text,
+ * start tags, end tags and other markup (comments, doctype, processing
+ * instructions). Tokens are reported as offsets into the source, so only the
+ * attributes of the current start tag are kept in memory.
+ *
+ * The contents of script and style elements are a single text token. Broken
+ * markup is reported as text.
+ *
+ * Usage:
+ * <pre>
+ * HtmlTokenizer tokenizer = new HtmlTokenizer(html);
+ * while (tokenizer.next()) {
+ *     switch (tokenizer.getType()) { ... }
+ * }
+ * </pre>
+ */
+public final class HtmlTokenizer {
+
+    public enum TokenType {
+        TEXT, START_TAG, END_TAG, OTHER
+    }
+
+    // elements without end tag
+    private static final ImmutableSet<String> VOID_ELEMENTS = ImmutableSet
+            .of("area", "base", "br", "col", "embed", "hr", "image", "img",
+                    "input", "link", "meta", "param", "source", "track",
+                    "wbr");
+
+    // elements with contents which are not parsed as html
+    private static final ImmutableSet<String> RAW_TEXT_ELEMENTS =
+            ImmutableSet.of("script", "style");
+
+    private final String html;
+    private int position;
+    private boolean pushedBack;
+    // name of the raw text element whose contents come next
+    private String rawTextElement;
+
+    private TokenType type;
+    private int start;
+    private int end;
+    private String tagName;
+    private boolean selfClosing;
+    private final List<String> attributeNames = new ArrayList<>();
+    private final List<String> attributeValues = new ArrayList<>();
+
+    public HtmlTokenizer(String html) {
+        this.html = html;
+    }
+
+    /**
+     * Advance to the next token.
+     *
+     * @return false at the end of the html
+     */
+    public boolean next() {
+        if (pushedBack) {
+            pushedBack = false;
+            return true;
+        }
+        if (position >= html.length()) {
+            return false;
+        }
+        start = position;
+        tagName = null;
+        selfClosing = false;
+        attributeNames.clear();
+        attributeValues.clear();
+        if (rawTextElement != null) {
+            readRawText();
+        } else if (!readMarkup()) {
+            readText();
+        }
+        position = end;
+        return true;
+    }
+
+    /**
+     * Make the next call to {@link #next()} return the current token again.
+     */
+    public void pushBack() {
+        pushedBack = true;
+    }
+
+    public TokenType getType() {
+        return type;
+    }
+
+    /**
+     * @return offset of the token in the html
+     */
+    public int getStart() {
+        return start;
+    }
+
+    /**
+     * @return offset after the token in the html
+     */
+    public int getEnd() {
+        return end;
+    }
+
+    /**
+     * @return lower case tag name of a start or end tag, otherwise null
+     */
+    public String getTagName() {
+        return tagName;
+    }
+
+    /**
+     * Whether the current start tag has no end tag, because it ends with
+     * "/&gt;" or it is a void element such as br or img.
+     */
+    public boolean isSelfClosing() {
+        return selfClosing || VOID_ELEMENTS.contains(tagName);
+    }
+
+    /**
+     * @param name
+     *            lower case attribute name
+     * @return unescaped value of the attribute of the current start tag, empty
+     *         if absent
+     */
+    public String getAttribute(String name) {
+        int index = attributeNames.indexOf(name);
+        return index < 0 ? "" : attributeValues.get(index);
+    }
+
+    private void readText() {
+        type = TokenType.TEXT;
+        int next = position + 1;
+        while (next < html.length()) {
+            next = html.indexOf('<', next);
+            if (next < 0 || isMarkupStart(next)) {
+                break;
+            }
+            next++;
+        }
+        end = next < 0 ? html.length() : Math.min(next, html.length());
+    }
+
+    private void readRawText() {
+        type = TokenType.TEXT;
+        String endTag = "</" + rawTextElement;
+        int next = position;
+        while (next >= 0) {
+            next = html.indexOf("</", next);
+            if (next < 0 || html.regionMatches(true, next, endTag, 0,
+                    endTag.length())) {
+                break;
+            }
+            next += 2;
+        }
+        end = next < 0 ? html.length() : next;
+        rawTextElement = null;
+        if (end == start) {
+            // empty element, read the end tag instead
+            readMarkup();
+        }
+    }
+
+    private boolean isMarkupStart(int index) {
+        if (index + 1 >= html.length()) {
+            return false;
+        }
+        char c = html.charAt(index + 1);
+        return isLetter(c) || c == '!' || c == '?' ||
+                (c == '/' && index + 2 < html.length() &&
+                        isLetter(html.charAt(index + 2)));
+    }
+
+    private boolean readMarkup() {
+        if (html.charAt(position) != '<' || !isMarkupStart(position)) {
+            return false;
+        }
+        char c = html.charAt(position + 1);
+        if (c == '!' || c == '?') {
+            String close = html.startsWith("<!--", position) ? "-->" : ">";
+            int closeAt = html.indexOf(close, position + 2);
+            type = TokenType.OTHER;
+            end = closeAt < 0 ? html.length() : closeAt + close.length();
+            return true;
+        }
+        boolean endTag = c == '/';
+        int index = readName(position + (endTag ? 2 : 1));
+        String name = html.substring(position + (endTag ? 2 : 1), index)
+                .toLowerCase(Locale.ENGLISH);
+        index = endTag ? html.indexOf('>', index) : readAttributes(index);
+        if (index < 0) {
+            // unterminated tag
+            attributeNames.clear();
+            attributeValues.clear();
+            selfClosing = false;
+            return false;
+        }
+        type = endTag ? TokenType.END_TAG : TokenType.START_TAG;
+        tagName = name;
+        end = index + 1;
+        if (!endTag && !selfClosing && RAW_TEXT_ELEMENTS.contains(name)) {
+            rawTextElement = name;
+        }
+        return true;
+    }
+
+    /**
+     * Read the attributes of a start tag, up to the closing '&gt;'.
+     *
+     * @return offset of the closing '&gt;', or -1 if the tag isn't closed
+     */
+    private int readAttributes(int index) {
+        while (index < html.length()) {
+            char c = html.charAt(index);
+            if (c == '>') {
+                return index;
+            }
+            if (c == '/' || Character.isWhitespace(c)) {
+                selfClosing = c == '/';
+                index++;
+                continue;
+            }
+            selfClosing = false;
+            int nameEnd = readName(index);
+            if (nameEnd == index) {
+                // unexpected character such as a quote
+                nameEnd++;
+            }
+            String name = html.substring(index, nameEnd)
+                    .toLowerCase(Locale.ENGLISH);
+            index = skipWhitespace(nameEnd);
+            String value = "";
+            if (index < html.length() && html.charAt(index) == '=') {
+                index = skipWhitespace(index + 1);
+                int valueStart = index;
+                int valueEnd;
+                if (index < html.length() && (html.charAt(index) == '"' ||
+                        html.charAt(index) == '\'')) {
+                    valueStart++;
+                    valueEnd = html.indexOf(html.charAt(index), valueStart);
+                    if (valueEnd < 0) {
+                        return -1;
+                    }
+                    index = valueEnd + 1;
+                } else {
+                    while (index < html.length() &&
+                            html.charAt(index) != '>' &&
+                            !Character.isWhitespace(html.charAt(index))) {
+                        index++;
+                    }
+                    valueEnd = index;
+                }
+                value = Parser.unescapeEntities(
+                        html.substring(valueStart, valueEnd), true);
+            }
+            attributeNames.add(name);
+            attributeValues.add(value);
+        }
+        return -1;
+    }
+
+    private int readName(int index) {
+        while (index < html.length()) {
+            char c = html.charAt(index);
+            if (c == '>' || c == '/' || c == '=' || c == '"' || c == '\'' ||
+                    Character.isWhitespace(c)) {
+                break;
+            }
+            index++;
+        }
+        return index;
+    }
+
+    private int skipWhitespace(int index) {
+        while (index < html.length() &&
+                Character.isWhitespace(html.charAt(index))) {
+            index++;
+        }
+        return index;
+    }
+
+    private static boolean isLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+}
@@ -0,0 +1,135 @@
+package org.zanata.magpie.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * Coalesces concurrent loads of the same keys: a key is only loaded by the
+ * first caller asking for it, and other callers asking for it in the meantime
+ * wait for that result instead of loading it again.
+ *
+ * If a load fails, the callers waiting for it get the same exception.
+ *
+ * @param <K>
+ *            key type
+ * @param <V>
+ *            value type
+ */
+public class SingleFlight<K, V> {
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight =
+            new ConcurrentHashMap<>();
+
+    /**
+     * @param keys
+     *            keys to load
+     * @param loader
+     *            loads the keys which are not in flight yet, returning one
+     *            value per key in the same order
+     * @return map of key to value, for all the keys
+     */
+    public Map<K, V> load(Collection<K> keys,
+            Function<List<K>, List<V>> loader) {
+        // the loader runs on this thread, so our own keys are done before
+        // waiting for the others, and this can't deadlock with another
+        // caller waiting for them
+        return join(loadAsync(keys, ownedKeys -> CompletableFuture
+                .completedFuture(loader.apply(ownedKeys))));
+    }
+
+    /**
+     * Same as {@link #load(Collection, Function)}, with a loader which
+     * doesn't hold the calling thread.
+     *
+     * @return map of key to value, for all the keys, completed once all the
+     *         keys are loaded
+     */
+    public CompletableFuture<Map<K, V>> loadAsync(Collection<K> keys,
+            Function<List<K>, ? extends CompletionStage<List<V>>> loader) {
+        Map<K, CompletableFuture<V>> owned = new LinkedHashMap<>();
+        Map<K, CompletableFuture<V>> all = new LinkedHashMap<>();
+        for (K key : keys) {
+            CompletableFuture<V> future = new CompletableFuture<>();
+            CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+            if (existing == null) {
+                owned.put(key, future);
+                all.put(key, future);
+            } else {
+                all.put(key, existing);
+            }
+        }
+        if (!owned.isEmpty()) {
+            List<K> ownedKeys = new ArrayList<>(owned.keySet());
+            CompletionStage<List<V>> loading;
+            try {
+                loading = loader.apply(ownedKeys);
+            } catch (RuntimeException | Error e) {
+                CompletableFuture<List<V>> failed = new CompletableFuture<>();
+                failed.completeExceptionally(e);
+                loading = failed;
+            }
+            loading.whenComplete((values, e) -> {
+                try {
+                    if (e != null) {
+                        Throwable cause = unwrap(e);
+                        owned.values().forEach(
+                                f -> f.completeExceptionally(cause));
+                    } else {
+                        for (int i = 0; i < ownedKeys.size(); i++) {
+                            owned.get(ownedKeys.get(i))
+                                    .complete(values.get(i));
+                        }
+                    }
+                } catch (RuntimeException | Error ex) {
+                    // eg fewer values than keys
+                    owned.values().forEach(f -> f.completeExceptionally(ex));
+                } finally {
+                    owned.forEach(inFlight::remove);
+                }
+            });
+        }
+        return CompletableFuture
+                .allOf(all.values().toArray(new CompletableFuture<?>[0]))
+                .thenApply(ignored -> {
+                    Map<K, V> result = new HashMap<>();
+                    all.forEach((key, future) -> result.put(key,
+                            future.join()));
+                    return result;
+                });
+    }
+
+    /**
+     * @return number of keys being loaded
+     */
+    public int size() {
+        return inFlight.size();
+    }
+
+    private static <V> V join(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ?
+                e.getCause() : e;
+    }
+}
@@ -0,0 +1,191 @@
+package org.zanata.magpie.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.zanata.magpie.exception.BackendOverloadedException;
+import org.zanata.magpie.exception.MTException;
+import org.zanata.magpie.model.BackendID;
+
+public class BackendLimiterTest {
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private ScheduledExecutorService scheduler;
+    private long now;
+    private final List<CompletableFuture<String>> calls = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        scheduler = mock(ScheduledExecutorService.class);
+        when(scheduler.schedule(any(Runnable.class), anyLong(), any()))
+                .thenAnswer(invocation -> mock(ScheduledFuture.class));
+    }
+
+    private BackendLimiter limiter(int maxConcurrency,
+            double requestsPerSecond, double charsPerSecond) {
+        return new BackendLimiter(BackendID.MS, maxConcurrency,
+                requestsPerSecond, charsPerSecond, scheduler, () -> now);
+    }
+
+    private CompletionStage<String> submit(BackendLimiter limiter,
+            int chars) {
+        return limiter.submit(chars, () -> {
+            CompletableFuture<String> call = new CompletableFuture<>();
+            calls.add(call);
+            return call;
+        });
+    }
+
+    @Test
+    public void queuesCallsOverConcurrencyLimit() {
+        BackendLimiter limiter = limiter(2, 0, 0);
+        CompletionStage<String> first = submit(limiter, 1);
+        submit(limiter, 1);
+        CompletionStage<String> third = submit(limiter, 1);
+
+        assertThat(calls).hasSize(2);
+        assertThat(limiter.getInFlight()).isEqualTo(2);
+        assertThat(limiter.getQueueDepth()).isEqualTo(1);
+
+        calls.get(0).complete("done");
+        assertThat(first.toCompletableFuture().join()).isEqualTo("done");
+        assertThat(calls).hasSize(3);
+        assertThat(limiter.getQueueDepth()).isEqualTo(0);
+
+        calls.get(2).complete("third");
+        assertThat(third.toCompletableFuture().join()).isEqualTo("third");
+    }
+
+    @Test
+    public void skipsCallsCancelledWhileQueued() {
+        BackendLimiter limiter = limiter(1, 0, 0);
+        submit(limiter, 1);
+        submit(limiter, 1).toCompletableFuture().cancel(false);
+        submit(limiter, 1);
+
+        calls.get(0).complete("done");
+        assertThat(calls).hasSize(2);
+        assertThat(limiter.getQueueDepth()).isEqualTo(0);
+    }
+
+    @Test
+    public void queuesCallsOverRequestRate() {
+        BackendLimiter limiter = limiter(10, 1, 0);
+        submit(limiter, 1);
+        submit(limiter, 1);
+
+        assertThat(calls).hasSize(1);
+        ArgumentCaptor<Runnable> wakeUp =
+                ArgumentCaptor.forClass(Runnable.class);
+        verify(scheduler).schedule(wakeUp.capture(),
+                eq(TimeUnit.SECONDS.toNanos(1)), eq(TimeUnit.NANOSECONDS));
+
+        now += TimeUnit.SECONDS.toNanos(1);
+        wakeUp.getValue().run();
+        assertThat(calls).hasSize(2);
+    }
+
+    @Test
+    public void largeCallWaitsForCharsToBePaidBack() {
+        BackendLimiter limiter = limiter(10, 0, 100);
+        // more than the rate, but let through
+        submit(limiter, 300);
+        submit(limiter, 1);
+
+        assertThat(calls).hasSize(1);
+        ArgumentCaptor<Runnable> wakeUp =
+                ArgumentCaptor.forClass(Runnable.class);
+        verify(scheduler).schedule(wakeUp.capture(),
+                eq(TimeUnit.SECONDS.toNanos(2)), eq(TimeUnit.NANOSECONDS));
+
+        now += TimeUnit.SECONDS.toNanos(2);
+        wakeUp.getValue().run();
+        assertThat(calls).hasSize(2);
+    }
+
+    @Test
+    public void lowersLimitWhenOverloaded() {
+        BackendLimiter limiter = limiter(10, 0, 0);
+        submit(limiter, 1);
+        now += 100 * MILLIS;
+        calls.get(0).complete("ok");
+        assertThat(limiter.getAverageLatencyMillis()).isEqualTo(100);
+
+        CompletionStage<String> failed = submit(limiter, 1);
+        submit(limiter, 1);
+        calls.get(1).completeExceptionally(
+                new BackendOverloadedException("busy", 429));
+        assertThat(limiter.getConcurrencyLimit()).isEqualTo(7);
+        assertThat(limiter.getThrottledCount()).isEqualTo(1);
+        assertThat(failed.toCompletableFuture())
+                .isCompletedExceptionally();
+
+        // same overload, within the average latency
+        calls.get(2).completeExceptionally(new MTException("wrapped",
+                new BackendOverloadedException("busy", 503)));
+        assertThat(limiter.getConcurrencyLimit()).isEqualTo(7);
+        assertThat(limiter.getThrottledCount()).isEqualTo(2);
+
+        now += 100 * MILLIS;
+        submit(limiter, 1);
+        calls.get(3).completeExceptionally(
+                new BackendOverloadedException("busy", 429));
+        assertThat(limiter.getConcurrencyLimit()).isEqualTo(4);
+    }
+
+    @Test
+    public void otherFailuresKeepLimit() {
+        BackendLimiter limiter = limiter(10, 0, 0);
+        submit(limiter, 1);
+        calls.get(0).completeExceptionally(new MTException("bad request"));
+        assertThat(limiter.getConcurrencyLimit()).isEqualTo(10);
+        assertThat(limiter.getInFlight()).isEqualTo(0);
+    }
+
+    @Test
+    public void lowersLimitOnSlowCallAndRaisesItBack() {
+        BackendLimiter limiter = limiter(10, 0, 0);
+        submit(limiter, 1);
+        now += 100 * MILLIS;
+        calls.get(0).complete("ok");
+
+        submit(limiter, 1);
+        now += 300 * MILLIS;
+        calls.get(1).complete("slow");
+        assertThat(limiter.getConcurrencyLimit()).isEqualTo(7);
+
+        // every success adds 1/limit
+        for (int i = 0; i < 8; i++) {
+            submit(limiter, 1);
+            calls.get(calls.size() - 1).complete("ok");
+        }
+        assertThat(limiter.getConcurrencyLimit()).isEqualTo(8);
+    }
+
+    @Test
+    public void failureToStartReleasesSlot() {
+        BackendLimiter limiter = limiter(1, 0, 0);
+        CompletionStage<String> failed = limiter.submit(1, () -> {
+            throw new MTException("cannot start");
+        });
+        assertThat(failed.toCompletableFuture()).isCompletedExceptionally();
+        submit(limiter, 1);
+        assertThat(calls).hasSize(1);
+    }
+}
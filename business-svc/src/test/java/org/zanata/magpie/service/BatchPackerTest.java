@@ -0,0 +1,64 @@
+package org.zanata.magpie.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.zanata.magpie.backend.BackendCapabilities.UNLIMITED;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.zanata.magpie.backend.BackendCapabilities;
+
+import com.google.common.collect.ImmutableList;
+
+public class BatchPackerTest {
+
+    @Test
+    public void packsLongestFirstAndKeepsOrder() {
+        // greedy batching in order needs 3 requests: [6] [5 4] [5]
+        List<List<Integer>> batches = BatchPacker.pack(
+                ImmutableList.of("aaaaaa", "bbbbb", "cccc", "ddddd"),
+                new BackendCapabilities(10, UNLIMITED, UNLIMITED));
+        assertThat(batches).containsExactly(ImmutableList.of(0, 2),
+                ImmutableList.of(1, 3));
+    }
+
+    @Test
+    public void respectsSegmentLimit() {
+        List<List<Integer>> batches = BatchPacker.pack(
+                ImmutableList.of("a", "b", "c", "d", "e"),
+                new BackendCapabilities(100, 2, UNLIMITED));
+        assertThat(batches).containsExactly(ImmutableList.of(0, 1),
+                ImmutableList.of(2, 3), ImmutableList.of(4));
+    }
+
+    @Test
+    public void respectsByteLimit() {
+        // 3 chars, but 9 bytes in UTF-8
+        List<List<Integer>> batches = BatchPacker.pack(
+                ImmutableList.of("日本語", "abc", "def"),
+                new BackendCapabilities(100, UNLIMITED, 12));
+        assertThat(batches).containsExactly(ImmutableList.of(0, 1),
+                ImmutableList.of(2));
+    }
+
+    @Test
+    public void oversizedStringIsSentAlone() {
+        List<List<Integer>> batches = BatchPacker.pack(
+                ImmutableList.of("ab", "too long", "cd"),
+                new BackendCapabilities(4, UNLIMITED, UNLIMITED));
+        assertThat(batches).containsExactly(ImmutableList.of(0, 2),
+                ImmutableList.of(1));
+    }
+
+    @Test
+    public void emptyInput() {
+        assertThat(BatchPacker.pack(ImmutableList.of(),
+                new BackendCapabilities(4, UNLIMITED, UNLIMITED))).isEmpty();
+    }
+
+    @Test
+    public void utf8Length() {
+        assertThat(BackendCapabilities.utf8Length("aé日😀"))
+                .isEqualTo(1 + 2 + 3 + 4);
+    }
+}
@@ -0,0 +1,272 @@
+package org.zanata.magpie.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.zanata.magpie.model.BackendID.DEV;
+import static org.zanata.magpie.model.BackendID.GOOGLE;
+import static org.zanata.magpie.model.BackendID.MS;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.zanata.magpie.api.dto.LocaleCode;
+import org.zanata.magpie.backend.BackendLocaleCode;
+import org.zanata.magpie.backend.BackendLocaleCodeImpl;
+import org.zanata.magpie.exception.BackendOverloadedException;
+import org.zanata.magpie.exception.BackendUnavailableException;
+import org.zanata.magpie.exception.MTException;
+import org.zanata.magpie.exception.PartialTranslationException;
+import org.zanata.magpie.model.AugmentedTranslation;
+import org.zanata.magpie.model.StringType;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+public class CircuitBreakerTest {
+    private static final BackendLocaleCode EN =
+            new BackendLocaleCodeImpl(LocaleCode.EN);
+    private static final BackendLocaleCode DE =
+            new BackendLocaleCodeImpl(LocaleCode.DE);
+
+    private long now;
+    private FaultInjectingBackend msBackend;
+    private CircuitBreakers circuitBreakers;
+    private TranslatorBackend protectedBackend;
+
+    @Before
+    public void setUp() {
+        msBackend = new FaultInjectingBackend(MS,
+                millis -> now += TimeUnit.MILLISECONDS.toNanos(millis));
+        circuitBreakers = new CircuitBreakers(50, 80, 1000, 30_000, true,
+                ImmutableSet.of(MS, GOOGLE, DEV), () -> now);
+        protectedBackend = circuitBreakers.protect(msBackend);
+    }
+
+    private List<AugmentedTranslation> translate() {
+        return protectedBackend.translate(ImmutableList.of("hello"), EN, DE,
+                StringType.TEXT_PLAIN, Optional.empty());
+    }
+
+    private void callFailing(int times) {
+        for (int i = 0; i < times; i++) {
+            try {
+                translate();
+            } catch (BackendOverloadedException | BackendUnavailableException e) {
+                // expected
+            }
+        }
+    }
+
+    private TranslatorBackend failingWith(RuntimeException failure) {
+        return circuitBreakers.protect(
+                new FaultInjectingBackend(GOOGLE, millis -> {}) {
+                    @Override
+                    public List<AugmentedTranslation> translate(
+                            List<String> contents, BackendLocaleCode srcLocale,
+                            BackendLocaleCode targetLocale,
+                            StringType stringType, Optional<String> category) {
+                        throw failure;
+                    }
+                });
+    }
+
+    private static void callFailing(TranslatorBackend backend, int times) {
+        for (int i = 0; i < times; i++) {
+            try {
+                backend.translate(ImmutableList.of("hello"), EN, DE,
+                        StringType.TEXT_PLAIN, Optional.empty());
+            } catch (MTException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void opensWhenFailureRateReached() {
+        for (int i = 0; i < 5; i++) {
+            translate();
+        }
+        msBackend.setFailing(true);
+        callFailing(4);
+        assertThat(circuitBreakers.getState(MS)).isEqualTo(CircuitState.CLOSED);
+
+        // 5 of 10 calls failed
+        callFailing(1);
+        assertThat(circuitBreakers.getState(MS)).isEqualTo(CircuitState.OPEN);
+
+        assertThatThrownBy(this::translate)
+                .isInstanceOf(BackendUnavailableException.class);
+        assertThat(msBackend.getCalls()).isEqualTo(10);
+    }
+
+    @Test
+    public void opensWhenSlowCallRateReached() {
+        msBackend.setLatencyMillis(2000);
+        for (int i = 0; i < CircuitBreaker.MINIMUM_CALLS; i++) {
+            assertThat(translate()).extracting(
+                    AugmentedTranslation::getPlainTranslation)
+                    .containsExactly("HELLO");
+        }
+        assertThat(circuitBreakers.getState(MS)).isEqualTo(CircuitState.OPEN);
+    }
+
+    @Test
+    public void closesAfterSuccessfulTrialCalls() {
+        msBackend.setFailing(true);
+        callFailing(CircuitBreaker.MINIMUM_CALLS);
+        assertThat(circuitBreakers.getState(MS)).isEqualTo(CircuitState.OPEN);
+
+        now += TimeUnit.SECONDS.toNanos(30);
+        assertThat(circuitBreakers.getState(MS))
+                .isEqualTo(CircuitState.HALF_OPEN);
+        msBackend.setFailing(false);
+        for (int i = 0; i < CircuitBreaker.HALF_OPEN_CALLS; i++) {
+            translate();
+        }
+        assertThat(circuitBreakers.getState(MS)).isEqualTo(CircuitState.CLOSED);
+    }
+
+    @Test
+    public void reopensWhenTrialCallsFail() {
+        msBackend.setFailing(true);
+        callFailing(CircuitBreaker.MINIMUM_CALLS);
+        now += TimeUnit.SECONDS.toNanos(30);
+
+        callFailing(CircuitBreaker.HALF_OPEN_CALLS);
+        assertThat(circuitBreakers.getState(MS)).isEqualTo(CircuitState.OPEN);
+        int calls = msBackend.getCalls();
+        callFailing(1);
+        assertThat(msBackend.getCalls()).isEqualTo(calls);
+    }
+
+    @Test
+    public void onlyTrialCallsPermittedWhenHalfOpen() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(MS, 50, 80, 1000,
+                30_000, () -> now);
+        for (int i = 0; i < CircuitBreaker.MINIMUM_CALLS; i++) {
+            circuitBreaker.onComplete(circuitBreaker.acquire(), 0, true);
+        }
+        now += TimeUnit.SECONDS.toNanos(30);
+        long trial = circuitBreaker.acquire();
+        circuitBreaker.acquire();
+        circuitBreaker.acquire();
+        assertThat(circuitBreaker.acquire()).isEqualTo(-1);
+
+        // a cancelled trial call gives back its permit
+        circuitBreaker.release(trial);
+        assertThat(circuitBreaker.acquire()).isNotEqualTo(-1);
+        assertThat(circuitBreaker.getNotPermittedCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void ignoresOutcomesOfCallsStartedBeforeOpening() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(MS, 50, 80, 1000,
+                30_000, () -> now);
+        long before = circuitBreaker.acquire();
+        for (int i = 0; i < CircuitBreaker.MINIMUM_CALLS; i++) {
+            circuitBreaker.onComplete(circuitBreaker.acquire(), 0, true);
+        }
+        now += TimeUnit.SECONDS.toNanos(30);
+        circuitBreaker.acquire();
+        circuitBreaker.onComplete(before, 0, false);
+        assertThat(circuitBreaker.getBufferedCalls()).isEqualTo(0);
+    }
+
+    @Test
+    public void fallbackOnlyWhileOpen() {
+        assertThat(circuitBreakers.getFallback(MS)).isEmpty();
+        msBackend.setFailing(true);
+        callFailing(CircuitBreaker.MINIMUM_CALLS);
+
+        assertThat(circuitBreakers.getFallback(MS)).contains(GOOGLE);
+        assertThat(new CircuitBreakers(50, 80, 1000, 30_000, false,
+                ImmutableSet.of(MS, GOOGLE), () -> now).getFallback(MS))
+                .isEmpty();
+    }
+
+    @Test
+    public void cancelledCallIsNotAFailure() {
+        CompletableFuture<List<AugmentedTranslation>> never =
+                new CompletableFuture<>();
+        TranslatorBackend hanging = circuitBreakers.protect(
+                new FaultInjectingBackend(GOOGLE, millis -> {}) {
+                    @Override
+                    public CompletableFuture<List<AugmentedTranslation>> translateAsync(
+                            List<String> contents, BackendLocaleCode srcLocale,
+                            BackendLocaleCode targetLocale,
+                            StringType stringType, Optional<String> category) {
+                        return never;
+                    }
+                });
+        hanging.translateAsync(ImmutableList.of("hello"), EN, DE,
+                StringType.TEXT_PLAIN, Optional.empty())
+                .toCompletableFuture().cancel(false);
+
+        assertThat(never).isCancelled();
+        assertThat(circuitBreakers.getState(GOOGLE))
+                .isEqualTo(CircuitState.CLOSED);
+    }
+
+    @Test
+    public void clientErrorIsNotAFailure() {
+        TranslatorBackend backend = failingWith(
+                new MTException("Unsupported locale: xx"));
+        callFailing(backend, CircuitBreaker.MINIMUM_CALLS);
+
+        assertThat(circuitBreakers.getState(GOOGLE))
+                .isEqualTo(CircuitState.CLOSED);
+    }
+
+    @Test
+    public void partialTranslationCountsItsFailedSubBatches() {
+        TranslatorBackend backend = failingWith(new PartialTranslationException(
+                "1 of 2 sub-batches failed",
+                new BackendOverloadedException("injected fault", 503),
+                ImmutableList.of()));
+        callFailing(backend, CircuitBreaker.MINIMUM_CALLS);
+
+        assertThat(circuitBreakers.getState(GOOGLE))
+                .isEqualTo(CircuitState.OPEN);
+    }
+
+    @Test
+    public void queueWaitIsNotProviderLatency() {
+        List<CompletableFuture<List<AugmentedTranslation>>> calls =
+                new ArrayList<>();
+        TranslatorBackend pending = new FaultInjectingBackend(MS, millis -> {}) {
+            @Override
+            public CompletableFuture<List<AugmentedTranslation>> translateAsync(
+                    List<String> contents, BackendLocaleCode srcLocale,
+                    BackendLocaleCode targetLocale, StringType stringType,
+                    Optional<String> category) {
+                CompletableFuture<List<AugmentedTranslation>> call =
+                        new CompletableFuture<>();
+                calls.add(call);
+                return call;
+            }
+        };
+        // rates are unlimited, so the limiter never schedules a wake up
+        BackendLimiter limiter = new BackendLimiter(MS, 1, 0, 0, null,
+                () -> now);
+        TranslatorBackend backend = new LimitedTranslatorBackend(
+                circuitBreakers.protect(pending), limiter);
+        for (int i = 0; i <= CircuitBreaker.MINIMUM_CALLS; i++) {
+            backend.translateAsync(ImmutableList.of("hello"), EN, DE,
+                    StringType.TEXT_PLAIN, Optional.empty());
+        }
+        assertThat(calls).hasSize(1);
+
+        // only the first call is slow, the others were waiting for it
+        now += TimeUnit.SECONDS.toNanos(2);
+        for (int i = 0; i < calls.size(); i++) {
+            calls.get(i).complete(ImmutableList.of());
+        }
+        assertThat(calls).hasSize(CircuitBreaker.MINIMUM_CALLS + 1);
+        assertThat(circuitBreakers.getState(MS)).isEqualTo(CircuitState.CLOSED);
+    }
+}
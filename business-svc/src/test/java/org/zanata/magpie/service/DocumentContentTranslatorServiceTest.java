@@ -3,6 +3,7 @@ package org.zanata.magpie.service;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.times;
@@ -13,6 +14,7 @@ import static org.zanata.magpie.util.SegmentStringKt.segmentBySentences;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 import javax.enterprise.inject.Produces;
 import javax.inject.Inject;
@@ -22,14 +24,17 @@ import javax.ws.rs.core.MediaType;
 import com.google.common.collect.Lists;
 import org.apache.commons.lang3.StringUtils;
 import org.jglue.cdiunit.CdiRunner;
-import org.junit.Ignore;
+import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
+import org.zanata.magpie.annotation.EnvVariable;
 import org.zanata.magpie.api.dto.APIResponse;
 import org.zanata.magpie.api.dto.DocumentContent;
 import org.zanata.magpie.api.dto.LocaleCode;
 import org.zanata.magpie.api.dto.TypeString;
+import org.zanata.magpie.backend.BackendCapabilities;
 import org.zanata.magpie.model.BackendID;
 import org.zanata.magpie.model.Document;
 import org.zanata.magpie.model.Locale;
@@ -51,6 +56,31 @@ public class DocumentContentTranslatorServiceTest {
     @Mock
     private PersistentTranslationService persistentTranslationService;
 
+    @Produces
+    @EnvVariable
+    private String envVariable = "";
+
+    @Before
+    public void setUp() {
+        // batches are translated one by one, see the translate stubs
+        when(persistentTranslationService.translateBatches(any(), anyList(),
+                any(), any(), any(), any(), anyInt())).thenAnswer(
+                invocation -> {
+                    List<StringBatch> batches = invocation.getArgument(1);
+                    List<List<String>> results = new ArrayList<>();
+                    for (StringBatch batch : batches) {
+                        results.add(persistentTranslationService.translate(
+                                invocation.getArgument(0),
+                                batch.getStrings(), invocation.getArgument(2),
+                                invocation.getArgument(3),
+                                invocation.getArgument(4),
+                                batch.getStringType(),
+                                invocation.getArgument(5)));
+                    }
+                    return results;
+                });
+    }
+
     @Test
     public void testEmptyConstructor() {
         assertThat(new DocumentContentTranslatorService()).isNotEqualTo(null);
@@ -82,8 +112,8 @@ public class DocumentContentTranslatorServiceTest {
         // Longer than maxLength; no sentences for segmentation.
         String html = "The quick brown fox jumps over the lazy dog.";
 
-        when(persistentTranslationService.getMaxLength(BackendID.MS))
-                .thenReturn(maxLength);
+        when(persistentTranslationService.getCapabilities(BackendID.MS))
+                .thenReturn(capabilities(maxLength));
 
         List<TypeString> contents = ImmutableList.of(
                 new TypeString(html, MediaType.TEXT_HTML, "meta"));
@@ -112,8 +142,8 @@ public class DocumentContentTranslatorServiceTest {
         String html = "The quick brown fox jumps over the lazy dog.";
         String expectedHtml = "Der schnelle braune Fuchs springt über den faulen Hund.";
 
-        when(persistentTranslationService.getMaxLength(BackendID.MS))
-                .thenReturn(maxLength);
+        when(persistentTranslationService.getCapabilities(BackendID.MS))
+                .thenReturn(capabilities(maxLength));
 
         when(persistentTranslationService.translate(any(),
                 any(), any(), any(), any(), any(), any()))
@@ -141,8 +171,8 @@ public class DocumentContentTranslatorServiceTest {
         String html = "<div><span>content1</span><span>content2</span></div>";
         String expectedHtml = "<div><span>translated</span><span>translated</span></div>";
 
-        when(persistentTranslationService.getMaxLength(BackendID.MS))
-                .thenReturn(maxLength);
+        when(persistentTranslationService.getCapabilities(BackendID.MS))
+                .thenReturn(capabilities(maxLength));
 
         when(persistentTranslationService.translate(any(),
                 any(), any(), any(), any(), any(), any()))
@@ -170,16 +200,14 @@ public class DocumentContentTranslatorServiceTest {
         String html = "<span>content1</span><span>content2</span>";
         String expectedHtml = "<span>translated1</span><span>translated2</span>";
 
-        when(persistentTranslationService.getMaxLength(BackendID.MS))
-                .thenReturn(maxLength);
-
-        when(persistentTranslationService.translate(any(),
-                eq(ImmutableList.of("content1")), any(), any(), any(), any(), any()))
-                .thenReturn(ImmutableList.of("translated1"));
+        when(persistentTranslationService.getCapabilities(BackendID.MS))
+                .thenReturn(capabilities(maxLength));
 
+        // short sibling nodes are sent together
         when(persistentTranslationService.translate(any(),
-                eq(ImmutableList.of("content2")), any(), any(), any(), any(), any()))
-                .thenReturn(ImmutableList.of("translated2"));
+                eq(ImmutableList.of("content1", "content2")), any(), any(),
+                any(), any(), any()))
+                .thenReturn(ImmutableList.of("translated1", "translated2"));
 
         List<TypeString> contents = ImmutableList.of(
                 new TypeString(html, MediaType.TEXT_HTML, "meta"));
@@ -204,8 +232,8 @@ public class DocumentContentTranslatorServiceTest {
         String html = "<div><span>content1</span><span>content too long cannot be translated</span></div>";
         String expectedHtml = "<div><span>translated</span><span>content too long cannot be translated</span></div>";
 
-        when(persistentTranslationService.getMaxLength(BackendID.MS))
-                .thenReturn(maxLength);
+        when(persistentTranslationService.getCapabilities(BackendID.MS))
+                .thenReturn(capabilities(maxLength));
 
         when(persistentTranslationService.translate(any(),
                 any(), any(), any(), any(), any(), any()))
@@ -225,7 +253,45 @@ public class DocumentContentTranslatorServiceTest {
                 .extracting(this::responseToString)
                 .containsExactly(
                         "Warning: translation skipped: String length is over 25\n" +
-                                "<span>content too long cannot be translated</span>");
+                                "content too long cannot be translated");
+    }
+
+    @Test
+    public void testNestedSiblingNodesAreTranslatedInBatches() {
+        int maxLength = 40;
+        Locale srcLocale = new Locale(LocaleCode.EN, "English");
+        Locale transLocale = new Locale(LocaleCode.DE, "German");
+        Document document =
+                new Document("http://localhost", srcLocale, transLocale);
+
+        String html = "<div><section>\n<p>one</p>\n<p>two</p>\n<p>three</p>\n" +
+                "</section><p>four</p></div>";
+        String expectedHtml = "<div><section>\n<p>eins</p>\n<p>zwei</p>\n" +
+                "<p>drei</p>\n</section><p>vier</p></div>";
+
+        when(persistentTranslationService.getCapabilities(BackendID.MS))
+                .thenReturn(capabilities(maxLength));
+        when(persistentTranslationService.translate(document,
+                ImmutableList.of("<p>one</p>", "<p>three</p>", "<p>four</p>"),
+                srcLocale, transLocale, BackendID.MS, StringType.HTML,
+                Optional.of("tech")))
+                .thenReturn(ImmutableList.of("<p>eins</p>", "<p>drei</p>",
+                        "<p>vier</p>"));
+        when(persistentTranslationService.translate(document,
+                ImmutableList.of("<p>two</p>"), srcLocale, transLocale,
+                BackendID.MS, StringType.HTML, Optional.of("tech")))
+                .thenReturn(ImmutableList.of("<p>zwei</p>"));
+
+        DocumentContent docContent = new DocumentContent(ImmutableList.of(
+                new TypeString(html, MediaType.TEXT_HTML, "meta")),
+                "http://localhost", "en");
+        DocumentContent translatedDocContent = documentContentTranslatorService
+                .translateDocument(document, docContent, BackendID.MS);
+
+        assertThat(getContentAt(translatedDocContent)).isEqualTo(expectedHtml);
+        assertThat(translatedDocContent.getWarnings()).isEmpty();
+        verify(persistentTranslationService, times(2)).translate(any(), any(),
+                any(), any(), any(), any(), any());
     }
 
     @Test
@@ -240,8 +306,8 @@ public class DocumentContentTranslatorServiceTest {
         String html = "<div>Hello World. Goodbye World.</div>";
         String expectedHtml = "<div>Hallo Welt. Auf Wiedersehen Welt.</div>";
 
-        when(persistentTranslationService.getMaxLength(BackendID.MS))
-                .thenReturn(maxLength);
+        when(persistentTranslationService.getCapabilities(BackendID.MS))
+                .thenReturn(capabilities(maxLength));
 
         when(persistentTranslationService.translate(document,
                 ImmutableList.of("Hello World. "), srcLocale, transLocale, BackendID.MS,
@@ -281,8 +347,8 @@ public class DocumentContentTranslatorServiceTest {
         String html = "Hello World. Goodbye World.";
         String expectedHtml = "Hallo Welt. Auf Wiedersehen Welt.";
 
-        when(persistentTranslationService.getMaxLength(BackendID.MS))
-                .thenReturn(maxLength);
+        when(persistentTranslationService.getCapabilities(BackendID.MS))
+                .thenReturn(capabilities(maxLength));
 
         when(persistentTranslationService.translate(document,
                 ImmutableList.of("Hello World. "), srcLocale, transLocale, BackendID.MS,
@@ -311,7 +377,6 @@ public class DocumentContentTranslatorServiceTest {
     }
 
     @Test
-    @Ignore("https://zanata.atlassian.net/browse/ZNTAMT-53")
     public void testInnerHTMLNodeWithMultipleSentences() {
         // force segmentation of the second span:
         int maxLength = 25;
@@ -323,8 +388,8 @@ public class DocumentContentTranslatorServiceTest {
         String html = "<div><span>content1</span><span>Hello World. Goodbye World.</span></div>";
         String expectedHtml = "<div><span>translated1</span><span>Hallo Welt. Auf Wiedersehen Welt.</span></div>";
 
-        when(persistentTranslationService.getMaxLength(BackendID.MS))
-                .thenReturn(maxLength);
+        when(persistentTranslationService.getCapabilities(BackendID.MS))
+                .thenReturn(capabilities(maxLength));
 
         when(persistentTranslationService.translate(document,
                 ImmutableList.of("<span>content1</span>"), srcLocale, transLocale, BackendID.MS,
@@ -368,8 +433,8 @@ public class DocumentContentTranslatorServiceTest {
         String html = "The <literal>@watch</literal> annotation is not working with accumulate in rules. [<link xlink:href=\"https://issues.jboss.org/browse/RHDM-509\">RHDM-509</link>]";
         String expectedHtml = "translated[网 The <literal>@watch</literal> annotation is not working with accumulate in rules. [<link xlink:href=\"https://issues.jboss.org/browse/RHDM-509\">RHDM-509</link>] 网]";
 
-        when(persistentTranslationService.getMaxLength(BackendID.MS))
-                .thenReturn(maxLength);
+        when(persistentTranslationService.getCapabilities(BackendID.MS))
+                .thenReturn(capabilities(maxLength));
 
         when(persistentTranslationService.translate(any(),
                 any(), any(), any(), any(), any(), any()))
@@ -398,23 +463,25 @@ public class DocumentContentTranslatorServiceTest {
                 new Document("http://localhost", fromLocale, toLocale);
         List<String> strings = segmentBySentences(text, Optional.empty());
 
-        when(persistentTranslationService.getMaxLength(BackendID.MS))
-                .thenReturn(maxLength);
+        when(persistentTranslationService.getCapabilities(BackendID.MS))
+                .thenReturn(capabilities(maxLength));
 
+        // packed longest first: the first sentence fits with the fourth
         when(persistentTranslationService.translate(document,
-                strings.subList(0, 2), fromLocale, toLocale, BackendID.MS,
-                StringType.TEXT_PLAIN, Optional.of("tech")))
-                .thenReturn(ImmutableList.of("Translated:Hurray!", "Translated:I am never at home on Sundays. "));
+                ImmutableList.of(strings.get(0), strings.get(3)), fromLocale,
+                toLocale, BackendID.MS, StringType.TEXT_PLAIN,
+                Optional.of("tech")))
+                .thenReturn(ImmutableList.of("Translated:Hurray! ", "Translated:She was too short to see over the fence. "));
 
         when(persistentTranslationService.translate(document,
-                strings.subList(2, 3), fromLocale, toLocale, BackendID.MS,
+                strings.subList(1, 2), fromLocale, toLocale, BackendID.MS,
                 StringType.TEXT_PLAIN, Optional.of("tech")))
-                .thenReturn(ImmutableList.of("Translated:The mysterious diary records the voice. "));
+                .thenReturn(ImmutableList.of("Translated:I am never at home on Sundays. "));
 
         when(persistentTranslationService.translate(document,
-                strings.subList(3, 4), fromLocale, toLocale, BackendID.MS,
+                strings.subList(2, 3), fromLocale, toLocale, BackendID.MS,
                 StringType.TEXT_PLAIN, Optional.of("tech")))
-                .thenReturn(ImmutableList.of("Translated:She was too short to see over the fence. "));
+                .thenReturn(ImmutableList.of("Translated:The mysterious diary records the voice. "));
 
         when(persistentTranslationService.translate(document,
                 strings.subList(4, 5), fromLocale, toLocale, BackendID.MS,
@@ -430,6 +497,10 @@ public class DocumentContentTranslatorServiceTest {
         assertThat(translatedDocContent.getContents()).hasSize(1);
         assertThat(StringUtils.countMatches(getContentAt(translatedDocContent),
                 "Translated")).isEqualTo(5);
+        assertThat(getContentAt(translatedDocContent)).startsWith(
+                "Translated:Hurray! Translated:I am never at home on Sundays. " +
+                        "Translated:The mysterious diary records the voice. " +
+                        "Translated:She was too short to see over the fence. ");
     }
 
     @Test
@@ -498,8 +569,8 @@ public class DocumentContentTranslatorServiceTest {
         Document document =
                 new Document("http://localhost", srcLocale, transLocale);
 
-        when(persistentTranslationService.getMaxLength(BackendID.MS))
-                .thenReturn(maxLength);
+        when(persistentTranslationService.getCapabilities(BackendID.MS))
+                .thenReturn(capabilities(maxLength));
 
         when(persistentTranslationService.translate(document, processedHtmls,
                 srcLocale, transLocale, BackendID.MS,
@@ -565,8 +636,8 @@ public class DocumentContentTranslatorServiceTest {
 
         when(persistentTranslationService.translate(any(),
                 any(), any(), any(), any(), any(), any())).thenReturn(response);
-        when(persistentTranslationService.getMaxLength(BackendID.MS))
-                .thenReturn(100);
+        when(persistentTranslationService.getCapabilities(BackendID.MS))
+                .thenReturn(capabilities(100));
 
         DocumentContent translatedDocContent = documentContentTranslatorService
                 .translateDocument(document, plainTextContent, BackendID.MS);
@@ -577,6 +648,120 @@ public class DocumentContentTranslatorServiceTest {
         assertThat(getContentAt(translatedDocContent, 2)).isEqualTo("check2");
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testTypesAreTranslatedInOneCallToTranslateBatches() {
+        Locale srcLocale = new Locale(LocaleCode.EN, "English");
+        Locale transLocale = new Locale(LocaleCode.DE, "German");
+        Document document =
+                new Document("http://localhost", srcLocale, transLocale);
+        when(persistentTranslationService.getCapabilities(BackendID.MS))
+                .thenReturn(capabilities(100));
+        when(persistentTranslationService.translate(any(), any(), any(),
+                any(), any(), any(), any())).thenAnswer(invocation ->
+                invocation.getArgument(1));
+
+        DocumentContent docContent = new DocumentContent(Lists.newArrayList(
+                new TypeString("<p>html</p>", MediaType.TEXT_HTML, "meta"),
+                new TypeString("plain", MediaType.TEXT_PLAIN, "meta")),
+                "http://localhost", "en");
+        documentContentTranslatorService.translateDocument(document,
+                docContent, BackendID.MS);
+
+        ArgumentCaptor<List<StringBatch>> batches =
+                ArgumentCaptor.forClass(List.class);
+        verify(persistentTranslationService).translateBatches(eq(document),
+                batches.capture(), eq(srcLocale), eq(transLocale),
+                eq(BackendID.MS), eq(Optional.of("tech")),
+                eq(DocumentContentTranslatorService.DEFAULT_PARALLELISM));
+        assertThat(batches.getValue())
+                .extracting(StringBatch::getStringType)
+                .containsExactly(StringType.TEXT_PLAIN, StringType.HTML);
+    }
+
+    @Test
+    public void testLongStringsAreTranslatedWithShortStrings() {
+        Locale srcLocale = new Locale(LocaleCode.EN, "English");
+        Locale transLocale = new Locale(LocaleCode.DE, "German");
+        Document document =
+                new Document("http://localhost", srcLocale, transLocale);
+        when(persistentTranslationService.getCapabilities(BackendID.MS))
+                .thenReturn(capabilities(20));
+        when(persistentTranslationService.translate(any(), any(), any(),
+                any(), any(), any(), any())).thenAnswer(invocation ->
+                invocation.<List<String>>getArgument(1).stream()
+                        .map(String::toUpperCase)
+                        .collect(Collectors.toList()));
+
+        DocumentContent docContent = new DocumentContent(Lists.newArrayList(
+                new TypeString("One two. Three four. Five six.",
+                        MediaType.TEXT_PLAIN, "meta"),
+                new TypeString("<div><p>alpha beta</p><p>gamma delta</p></div>",
+                        MediaType.TEXT_HTML, "meta"),
+                new TypeString("short", MediaType.TEXT_PLAIN, "meta")),
+                "http://localhost", "en");
+        DocumentContent translatedDocContent = documentContentTranslatorService
+                .translateDocument(document, docContent, BackendID.MS);
+
+        verify(persistentTranslationService).translateBatches(any(), anyList(),
+                any(), any(), any(), any(), anyInt());
+        assertThat(getContentAt(translatedDocContent))
+                .isEqualTo("ONE TWO. THREE FOUR. FIVE SIX.");
+        assertThat(getContentAt(translatedDocContent, 1)).isEqualTo(
+                "<div><p>ALPHA BETA</p><p>GAMMA DELTA</p></div>");
+        assertThat(getContentAt(translatedDocContent, 2)).isEqualTo("SHORT");
+    }
+
+    @Test
+    public void testHTMLOverThresholdIsStreamed() {
+        Locale srcLocale = new Locale(LocaleCode.EN, "English");
+        Locale transLocale = new Locale(LocaleCode.DE, "German");
+        Document document =
+                new Document("http://localhost", srcLocale, transLocale);
+        DocumentContentTranslatorService service =
+                new DocumentContentTranslatorService(
+                        persistentTranslationService, 1, 40);
+        when(persistentTranslationService.getCapabilities(BackendID.MS))
+                .thenReturn(capabilities(100));
+        when(persistentTranslationService.translate(any(), any(), any(),
+                any(), any(), any(), any())).thenAnswer(invocation ->
+                invocation.<List<String>>getArgument(1).stream()
+                        .map(string -> "translated " + string)
+                        .collect(Collectors.toList()));
+
+        String longHTML = "<div><p>one <code>ls</code></p><p>two</p></div>";
+        DocumentContent docContent = new DocumentContent(Lists.newArrayList(
+                new TypeString(longHTML, MediaType.TEXT_HTML, "meta"),
+                new TypeString("<p>short</p>", MediaType.TEXT_HTML, "meta")),
+                "http://localhost", "en");
+        DocumentContent translatedDocContent = service.translateDocument(
+                document, docContent, BackendID.MS);
+
+        // the text between block elements is sent, not the whole element
+        verify(persistentTranslationService).translate(document,
+                ImmutableList.of(
+                        "one <var id=\"ZNTA-0-0\" translate=\"no\"></var>",
+                        "two"),
+                srcLocale, transLocale, BackendID.MS, StringType.HTML,
+                Optional.of("tech"));
+        assertThat(getContentAt(translatedDocContent)).isEqualTo(
+                "<div><p>translated one <code>ls</code></p>" +
+                        "<p>translated two</p></div>");
+        // the short string is sent with the first window of the long one
+        verify(persistentTranslationService).translateBatches(any(), anyList(),
+                any(), any(), any(), any(), anyInt());
+        assertThat(getContentAt(translatedDocContent, 1))
+                .isEqualTo("translated <p>short</p>");
+    }
+
+    @Test
+    public void testParallelismMustBePositive() {
+        assertThatThrownBy(() -> new DocumentContentTranslatorService(
+                persistentTranslationService, 0,
+                DocumentContentTranslatorService.DEFAULT_STREAMING_HTML_THRESHOLD))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
     private String getContentAt(DocumentContent target) {
         return getContentAt(target, 0);
     }
@@ -585,6 +770,11 @@ public class DocumentContentTranslatorServiceTest {
         return target.getContents().get(index).getValue();
     }
 
+    private static BackendCapabilities capabilities(int maxLength) {
+        return new BackendCapabilities(maxLength,
+                BackendCapabilities.UNLIMITED, BackendCapabilities.UNLIMITED);
+    }
+
     private String responseToString(APIResponse r) {
         return r.getTitle() + "\n" + r.getDetails();
     }
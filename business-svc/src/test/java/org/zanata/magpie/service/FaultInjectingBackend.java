@@ -0,0 +1,80 @@
+package org.zanata.magpie.service;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongConsumer;
+import java.util.stream.Collectors;
+
+import org.zanata.magpie.api.dto.LocaleCode;
+import org.zanata.magpie.backend.BackendLocaleCode;
+import org.zanata.magpie.backend.BackendLocaleCodeImpl;
+import org.zanata.magpie.exception.BackendOverloadedException;
+import org.zanata.magpie.exception.MTException;
+import org.zanata.magpie.model.AugmentedTranslation;
+import org.zanata.magpie.model.BackendID;
+import org.zanata.magpie.model.StringType;
+
+/**
+ * Test backend which fails or takes time on demand. Translations are the
+ * upper-cased sources.
+ */
+class FaultInjectingBackend implements TranslatorBackend {
+    private final BackendID backendID;
+    private final LongConsumer sleep;
+    private final AtomicInteger calls = new AtomicInteger();
+    private volatile boolean failing;
+    private volatile long latencyMillis;
+
+    /**
+     * @param sleep
+     *            called with the latency of each call, eg to move a fake
+     *            clock
+     */
+    FaultInjectingBackend(BackendID backendID, LongConsumer sleep) {
+        this.backendID = backendID;
+        this.sleep = sleep;
+    }
+
+    void setFailing(boolean failing) {
+        this.failing = failing;
+    }
+
+    void setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    int getCalls() {
+        return calls.get();
+    }
+
+    @Override
+    public List<AugmentedTranslation> translate(List<String> contents,
+            BackendLocaleCode srcLocale, BackendLocaleCode targetLocale,
+            StringType stringType, Optional<String> category)
+            throws MTException {
+        calls.incrementAndGet();
+        sleep.accept(latencyMillis);
+        if (failing) {
+            throw new BackendOverloadedException("injected fault", 503);
+        }
+        return contents.stream()
+                .map(s -> new AugmentedTranslation(s.toUpperCase(), s))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public BackendLocaleCode getMappedLocale(LocaleCode localeCode) {
+        return new BackendLocaleCodeImpl(localeCode);
+    }
+
+    @Override
+    public int getCharLimitPerRequest() {
+        return 1000;
+    }
+
+    @Override
+    public BackendID getId() {
+        return backendID;
+    }
+}
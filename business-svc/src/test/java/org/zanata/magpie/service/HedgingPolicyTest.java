@@ -0,0 +1,194 @@
+package org.zanata.magpie.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.zanata.magpie.model.BackendID.DEV;
+import static org.zanata.magpie.model.BackendID.GOOGLE;
+import static org.zanata.magpie.model.BackendID.MS;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.zanata.magpie.exception.BackendOverloadedException;
+import org.zanata.magpie.exception.BackendUnavailableException;
+import org.zanata.magpie.exception.MTException;
+import org.zanata.magpie.model.AugmentedTranslation;
+import org.zanata.magpie.model.BackendID;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+public class HedgingPolicyTest {
+    private ScheduledExecutorService scheduler;
+    private HedgingPolicy policy;
+    private final Map<BackendID, CompletableFuture<List<AugmentedTranslation>>>
+            calls = new EnumMap<>(BackendID.class);
+
+    @Before
+    public void setUp() {
+        scheduler = mock(ScheduledExecutorService.class);
+        policy = new HedgingPolicy(95, 50, ImmutableSet.of(MS, GOOGLE, DEV),
+                scheduler);
+    }
+
+    private CompletionStage<List<BackendTranslation>> translate() {
+        return policy.translateAsync(MS, Optional.of(GOOGLE), backendID -> {
+            CompletableFuture<List<AugmentedTranslation>> call =
+                    new CompletableFuture<>();
+            calls.put(backendID, call);
+            return call;
+        });
+    }
+
+    private static List<AugmentedTranslation> translations(String text) {
+        return ImmutableList.of(new AugmentedTranslation(text, text));
+    }
+
+    private void recordLatencies() {
+        for (int i = 0; i < HedgingPolicy.MIN_SAMPLES; i++) {
+            policy.translateAsync(MS, Optional.empty(), backendID ->
+                    CompletableFuture.completedFuture(translations("a")));
+        }
+    }
+
+    @Test
+    public void testEmptyConstructor() {
+        new HedgingPolicy();
+    }
+
+    @Test
+    public void disabledByDefault() {
+        HedgingPolicy disabled = new HedgingPolicy("", "",
+                ImmutableSet.of(MS, GOOGLE));
+        assertThat(disabled.getSecondary(MS)).isEmpty();
+        disabled.shutdown();
+    }
+
+    @Test
+    public void secondaryIsAnotherRealBackend() {
+        assertThat(policy.getSecondary(MS)).contains(GOOGLE);
+        assertThat(policy.getSecondary(GOOGLE)).contains(MS);
+        assertThat(policy.getSecondary(DEV)).isEmpty();
+        assertThat(new HedgingPolicy(95, 50, ImmutableSet.of(MS), scheduler)
+                .getSecondary(MS)).isEmpty();
+    }
+
+    @Test
+    public void noHedgingUntilEnoughLatencies() {
+        assertThat(policy.getDelayMillis(MS)).isEqualTo(-1);
+        translate();
+        verifyZeroInteractions(scheduler);
+        assertThat(calls).containsOnlyKeys(MS);
+
+        recordLatencies();
+        // fast calls, so the minimum delay is used
+        assertThat(policy.getDelayMillis(MS)).isEqualTo(50);
+    }
+
+    @Test
+    public void failsOverWhenPrimaryFails() {
+        CompletionStage<List<BackendTranslation>> result = translate();
+        calls.get(MS).completeExceptionally(
+                new BackendOverloadedException("down", 503));
+        calls.get(GOOGLE).complete(translations("google"));
+
+        List<BackendTranslation> translations =
+                result.toCompletableFuture().join();
+        assertThat(translations).extracting(BackendTranslation::getBackendID)
+                .containsExactly(GOOGLE);
+        assertThat(translations.get(0).getTranslation().getPlainTranslation())
+                .isEqualTo("google");
+    }
+
+    @Test
+    public void passesClientErrorThrough() {
+        recordLatencies();
+        CompletionStage<List<BackendTranslation>> result = translate();
+        ArgumentCaptor<Runnable> hedge = ArgumentCaptor.forClass(Runnable.class);
+        verify(scheduler).schedule(hedge.capture(), any(Long.class), any());
+        hedge.getValue().run();
+        MTException clientError = new MTException("Unsupported locale: xx");
+        calls.get(MS).completeExceptionally(clientError);
+
+        assertThat(result.toCompletableFuture())
+                .hasFailedWithThrowableThat().isSameAs(clientError);
+        assertThat(calls.get(GOOGLE)).isCancelled();
+    }
+
+    @Test
+    public void noFailoverOnClientError() {
+        CompletionStage<List<BackendTranslation>> result = translate();
+        calls.get(MS).completeExceptionally(
+                new IllegalArgumentException("Unsupported locale: xx"));
+
+        assertThat(result.toCompletableFuture()).isCompletedExceptionally();
+        assertThat(calls).containsOnlyKeys(MS);
+    }
+
+    @Test
+    public void hedgesSlowPrimaryAndCancelsLoser() {
+        recordLatencies();
+        CompletionStage<List<BackendTranslation>> result = translate();
+        ArgumentCaptor<Runnable> hedge = ArgumentCaptor.forClass(Runnable.class);
+        verify(scheduler).schedule(hedge.capture(), eq(50L),
+                eq(TimeUnit.MILLISECONDS));
+        assertThat(calls).containsOnlyKeys(MS);
+
+        hedge.getValue().run();
+        assertThat(calls).containsKeys(MS, GOOGLE);
+        calls.get(GOOGLE).complete(translations("google"));
+
+        assertThat(result.toCompletableFuture().join())
+                .extracting(BackendTranslation::getBackendID)
+                .containsExactly(GOOGLE);
+        assertThat(calls.get(MS)).isCancelled();
+    }
+
+    @Test
+    public void primaryWinsBeforeHedge() {
+        recordLatencies();
+        CompletionStage<List<BackendTranslation>> result = translate();
+        ArgumentCaptor<Runnable> hedge = ArgumentCaptor.forClass(Runnable.class);
+        verify(scheduler).schedule(hedge.capture(), any(Long.class), any());
+        calls.get(MS).complete(translations("ms"));
+        hedge.getValue().run();
+
+        assertThat(calls).containsOnlyKeys(MS);
+        assertThat(result.toCompletableFuture().join())
+                .extracting(BackendTranslation::getBackendID)
+                .containsExactly(MS);
+    }
+
+    @Test
+    public void failsWithPrimaryFailureWhenBothFail() {
+        CompletionStage<List<BackendTranslation>> result = translate();
+        MTException msFailure = new BackendUnavailableException("ms down");
+        MTException googleFailure =
+                new BackendUnavailableException("google down");
+        calls.get(MS).completeExceptionally(msFailure);
+        calls.get(GOOGLE).completeExceptionally(googleFailure);
+
+        try {
+            result.toCompletableFuture().join();
+        } catch (CompletionException e) {
+            assertThat(e.getCause()).isSameAs(msFailure);
+            assertThat(msFailure.getSuppressed()).containsExactly(googleFailure);
+            return;
+        }
+        throw new AssertionError("expected failure");
+    }
+}
@@ -3,14 +3,20 @@ package org.zanata.magpie.service;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.Mockito.times;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 import static org.zanata.magpie.model.BackendID.DEV;
 import static org.zanata.magpie.model.BackendID.GOOGLE;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 import javax.enterprise.event.Event;
@@ -20,21 +26,27 @@ import javax.ws.rs.BadRequestException;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.Answers;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.mockito.stubbing.Answer;
 import org.zanata.magpie.api.AuthenticatedAccount;
 import org.zanata.magpie.api.dto.LocaleCode;
+import org.zanata.magpie.backend.BackendCapabilities;
 import org.zanata.magpie.backend.BackendLocaleCode;
 import org.zanata.magpie.backend.BackendLocaleCodeImpl;
 import org.zanata.magpie.dao.DocumentDAO;
 import org.zanata.magpie.dao.TextFlowDAO;
-import org.zanata.magpie.dao.TextFlowTargetDAO;
+import org.zanata.magpie.dao.TextFlowBulkWriter;
 import org.zanata.magpie.event.RequestedMTEvent;
+import org.zanata.magpie.exception.BackendUnavailableException;
 import org.zanata.magpie.exception.MTException;
+import org.zanata.magpie.exception.PartialTranslationException;
 import org.zanata.magpie.model.Account;
 import org.zanata.magpie.model.AugmentedTranslation;
 import org.zanata.magpie.model.BackendID;
+import org.zanata.magpie.model.ContentHash;
 import org.zanata.magpie.model.Document;
 import org.zanata.magpie.model.Locale;
 import org.zanata.magpie.model.StringType;
@@ -43,6 +55,8 @@ import org.zanata.magpie.model.TextFlowTarget;
 import org.zanata.magpie.util.HashUtil;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 
 /**
  * @author Alex Eng <a href="mailto:aeng@redhat.com">aeng@redhat.com</a>
@@ -57,18 +71,20 @@ public class PersistentTranslationServiceTest {
     private TextFlowDAO textFlowDAO;
 
     @Mock
-    private TextFlowTargetDAO textFlowTargetDAO;
+    private TextFlowBulkWriter textFlowBulkWriter;
 
-    @Mock
+    // the default translateAsync calls translate
+    @Mock(answer = Answers.CALLS_REAL_METHODS)
     private TranslatorBackend msBackend;
 
-    @Mock
+    @Mock(answer = Answers.CALLS_REAL_METHODS)
     private TranslatorBackend googleTranslatorBackend;
 
-    @Mock
+    @Mock(answer = Answers.CALLS_REAL_METHODS)
     private TranslatorBackend mockTranslatorBackend;
 
     private PersistentTranslationService persistentTranslationService;
+    private TranslationCache translationCache;
     @Mock private Instance<TranslatorBackend> translators;
     @Mock private Event<RequestedMTEvent> requestedMTEvent;
     private AuthenticatedAccount authenticatedAccount;
@@ -87,10 +103,16 @@ public class PersistentTranslationServiceTest {
         when(googleTranslatorBackend.getCharLimitPerRequest()).thenReturn(MAX_LENGTH);
         authenticatedAccount = new AuthenticatedAccount();
         authenticatedAccount.setAuthenticatedAccount(new Account());
+        translationCache = new TranslationCache(100);
         persistentTranslationService = new PersistentTranslationService(
-                documentDAO,
-                textFlowDAO, textFlowTargetDAO, translators, requestedMTEvent,
-                authenticatedAccount);
+                new TranslationMemoryService(documentDAO, textFlowDAO,
+                        textFlowBulkWriter, translationCache),
+                new TranslationBatcher(0, 1),
+                translators, requestedMTEvent, authenticatedAccount,
+                new BackendLimiters(4),
+                new HedgingPolicy(0, 0, ImmutableSet.of(), null),
+                new CircuitBreakers(50, 100, 10_000, 30_000, false,
+                        ImmutableSet.of(), System::nanoTime));
     }
 
     @Test
@@ -103,7 +125,6 @@ public class PersistentTranslationServiceTest {
         authenticatedAccount.setAuthenticatedAccount(null);
         List<String> source = ImmutableList.of("testing source");
         Locale targetLocale = new Locale(LocaleCode.DE, "German");
-        when(documentDAO.reload(any())).then(answerSame);
         assertThatThrownBy(() -> persistentTranslationService.translate(new Document(), source,
                 new Locale(LocaleCode.EN_US, "English"), targetLocale,
                 BackendID.MS, StringType.TEXT_PLAIN,
@@ -115,7 +136,6 @@ public class PersistentTranslationServiceTest {
         List<String> source = ImmutableList.of("testing source");
         Locale targetLocale = new Locale(LocaleCode.DE, "German");
 
-        when(documentDAO.reload(any())).then(answerSame);
         assertThatThrownBy(() -> persistentTranslationService
                 .translate(new Document(), source,
                         null, targetLocale,
@@ -129,7 +149,6 @@ public class PersistentTranslationServiceTest {
         List<String> source = ImmutableList.of("testing source");
         Locale sourceLocale = new Locale(LocaleCode.EN, "English");
 
-        when(documentDAO.reload(any())).then(answerSame);
         assertThatThrownBy(
                 () -> persistentTranslationService.translate(new Document(),
                         source,
@@ -145,7 +164,6 @@ public class PersistentTranslationServiceTest {
         Locale sourceLocale = new Locale(LocaleCode.EN, "English");
         Locale targetLocale = new Locale(LocaleCode.DE, "German");
 
-        when(documentDAO.reload(any())).then(answerSame);
         assertThatThrownBy(() -> persistentTranslationService
                 .translate(new Document(), source,
                         sourceLocale, targetLocale, null,
@@ -164,20 +182,18 @@ public class PersistentTranslationServiceTest {
         Document doc = new Document();
         Locale fromLocale = new Locale(LocaleCode.EN, "English");
         Locale toLocale = new Locale(LocaleCode.DE, "German");
-        TextFlow expectedTf = new TextFlow(doc, sources.get(0), fromLocale);
+        TextFlow expectedTf = new TextFlow(sources.get(0), fromLocale);
         TextFlowTarget expectedTft =
                 new TextFlowTarget(
                         expectedTranslations.get(0).getPlainTranslation(),
                         expectedTranslations.get(0).getRawTranslation(),
                         expectedTf, toLocale, BackendID.MS);
 
-        String hash = HashUtil.generateHash(sources.get(0));
+        ContentHash hash = HashUtil.hash(sources.get(0));
 
         when(documentDAO.reload(any())).then(answerSame);
-        when(textFlowDAO.getLatestByContentHash(fromLocale.getLocaleCode(), hash))
-                .thenReturn(Optional.empty());
-        when(textFlowDAO.persist(expectedTf)).thenReturn(expectedTf);
-        when(textFlowTargetDAO.persist(expectedTft)).thenReturn(expectedTft);
+        when(textFlowDAO.getByContentHashes(fromLocale.getLocaleCode(),
+                ImmutableSet.of(hash))).thenReturn(ImmutableMap.of());
 
         BackendLocaleCode fromLocaleCode = new BackendLocaleCodeImpl(fromLocale.getLocaleCode());
         BackendLocaleCode toLocaleCode = new BackendLocaleCodeImpl(toLocale.getLocaleCode());
@@ -197,8 +213,10 @@ public class PersistentTranslationServiceTest {
 
         verify(msBackend).translate(sources, fromLocaleCode, toLocaleCode,
                 StringType.TEXT_PLAIN, Optional.of("tech"));
-        verify(textFlowDAO).getLatestByContentHash(fromLocale.getLocaleCode(), hash);
-        verify(textFlowTargetDAO).persist(expectedTft);
+        verify(textFlowDAO).getByContentHashes(fromLocale.getLocaleCode(),
+                ImmutableSet.of(hash));
+        verify(textFlowBulkWriter).write(doc, fromLocale,
+                ImmutableList.of(expectedTf), ImmutableList.of(expectedTft));
         assertThat(translations).isEqualTo(
                 expectedTranslations
                         .stream()
@@ -206,6 +224,185 @@ public class PersistentTranslationServiceTest {
                         .collect(Collectors.toList()));
     }
 
+    @Test
+    public void testTranslateBatchesConcurrently() {
+        Document doc = new Document();
+        Locale fromLocale = new Locale(LocaleCode.EN, "English");
+        Locale toLocale = new Locale(LocaleCode.DE, "German");
+        when(documentDAO.reload(any())).then(answerSame);
+        List<CompletableFuture<List<AugmentedTranslation>>> calls =
+                new ArrayList<>();
+        doAnswer(invocation -> {
+            CompletableFuture<List<AugmentedTranslation>> call =
+                    new CompletableFuture<>();
+            calls.add(call);
+            if (calls.size() == 2) {
+                // both calls are in progress; the second one finishes first
+                calls.get(1).complete(ImmutableList.of(
+                        new AugmentedTranslation("<p>zwei</p>", "raw")));
+                calls.get(0).complete(ImmutableList.of(
+                        new AugmentedTranslation("eins", "raw")));
+            }
+            return call;
+        }).when(msBackend).translateAsync(any(), any(), any(), any(), any());
+
+        List<List<String>> translations = persistentTranslationService
+                .translateBatches(doc, ImmutableList.of(
+                        new StringBatch(ImmutableList.of("one"),
+                                StringType.TEXT_PLAIN),
+                        new StringBatch(ImmutableList.of("<p>two</p>"),
+                                StringType.HTML)),
+                        fromLocale, toLocale, BackendID.MS,
+                        Optional.of("tech"), 2);
+
+        assertThat(translations).containsExactly(ImmutableList.of("eins"),
+                ImmutableList.of("<p>zwei</p>"));
+        verify(msBackend).translateAsync(eq(ImmutableList.of("<p>two</p>")),
+                any(), any(), eq(StringType.HTML), any());
+    }
+
+    @Test
+    public void testFailoverStoresTranslationUnderProducingBackend() {
+        when(translators.iterator()).thenReturn(ImmutableList
+                .of(googleTranslatorBackend, msBackend).iterator());
+        persistentTranslationService = new PersistentTranslationService(
+                new TranslationMemoryService(documentDAO, textFlowDAO,
+                        textFlowBulkWriter, translationCache),
+                new TranslationBatcher(0, 1),
+                translators, requestedMTEvent, authenticatedAccount,
+                new BackendLimiters(4),
+                new HedgingPolicy(95, 0, ImmutableSet.of(BackendID.MS, GOOGLE),
+                        null),
+                new CircuitBreakers(50, 100, 10_000, 30_000, false,
+                        ImmutableSet.of(), System::nanoTime));
+        List<String> sources = ImmutableList.of("string to translate");
+        AugmentedTranslation googleTranslation = new AugmentedTranslation(
+                "Google translation", "Google translation");
+        Document doc = new Document();
+        Locale fromLocale = new Locale(LocaleCode.EN, "English");
+        Locale toLocale = new Locale(LocaleCode.DE, "German");
+        TextFlow expectedTf = new TextFlow(sources.get(0), fromLocale);
+        TextFlowTarget expectedTft = new TextFlowTarget(
+                googleTranslation.getPlainTranslation(),
+                googleTranslation.getRawTranslation(), expectedTf, toLocale,
+                GOOGLE);
+        ContentHash hash = HashUtil.hash(sources.get(0));
+        BackendLocaleCode fromLocaleCode =
+                new BackendLocaleCodeImpl(fromLocale.getLocaleCode());
+        BackendLocaleCode toLocaleCode =
+                new BackendLocaleCodeImpl(toLocale.getLocaleCode());
+
+        when(documentDAO.reload(any())).then(answerSame);
+        when(textFlowDAO.getByContentHashes(fromLocale.getLocaleCode(),
+                ImmutableSet.of(hash))).thenReturn(ImmutableMap.of());
+        when(msBackend.getMappedLocale(any())).thenReturn(fromLocaleCode,
+                toLocaleCode);
+        when(googleTranslatorBackend.getMappedLocale(any()))
+                .thenReturn(fromLocaleCode, toLocaleCode);
+        when(msBackend.translate(sources, fromLocaleCode, toLocaleCode,
+                StringType.TEXT_PLAIN, Optional.empty()))
+                .thenThrow(new BackendUnavailableException("MS is down"));
+        when(googleTranslatorBackend.translate(sources, fromLocaleCode,
+                toLocaleCode, StringType.TEXT_PLAIN, Optional.empty()))
+                .thenReturn(ImmutableList.of(googleTranslation));
+
+        List<String> translations =
+                persistentTranslationService.translate(doc, sources,
+                        fromLocale, toLocale, BackendID.MS,
+                        StringType.TEXT_PLAIN, Optional.empty());
+
+        assertThat(translations).containsExactly("Google translation");
+        verify(textFlowBulkWriter).write(doc, fromLocale,
+                ImmutableList.of(expectedTf), ImmutableList.of(expectedTft));
+        ArgumentCaptor<RequestedMTEvent> event =
+                ArgumentCaptor.forClass(RequestedMTEvent.class);
+        verify(requestedMTEvent).fire(event.capture());
+        assertThat(event.getValue().getBackendID()).isEqualTo(GOOGLE);
+        assertThat(translationCache.get(new TranslationCacheKey(
+                fromLocale.getLocaleCode(), toLocale.getLocaleCode(), GOOGLE,
+                hash))).contains(googleTranslation);
+    }
+
+    @Test
+    public void testMissingTranslationsAreSentAgain() {
+        List<String> sources = ImmutableList.of("one", "two");
+        Locale fromLocale = new Locale(LocaleCode.EN, "English");
+        Locale toLocale = new Locale(LocaleCode.DE, "German");
+        when(documentDAO.reload(any())).then(answerSame);
+        when(textFlowDAO.getByContentHashes(any(), any()))
+                .thenReturn(ImmutableMap.of());
+        when(msBackend.getMappedLocale(any())).thenAnswer(
+                invocation -> new BackendLocaleCodeImpl(
+                        invocation.<LocaleCode>getArgument(0)));
+        // "two" is not translated by the first call
+        when(msBackend.translate(any(), any(), any(), any(), any()))
+                .thenAnswer(invocation -> {
+                    List<String> contents = invocation.getArgument(0);
+                    List<AugmentedTranslation> translations = contents
+                            .stream()
+                            .map(s -> contents.size() > 1 && s.equals("two") ?
+                                    null : new AugmentedTranslation(
+                                    s.toUpperCase(), s))
+                            .collect(Collectors.toList());
+                    if (translations.contains(null)) {
+                        throw new PartialTranslationException("failed",
+                                new MTException("sub-batch failed"),
+                                translations);
+                    }
+                    return translations;
+                });
+
+        List<String> translations =
+                persistentTranslationService.translate(new Document(),
+                        sources, fromLocale, toLocale, BackendID.MS,
+                        StringType.TEXT_PLAIN, Optional.empty());
+
+        assertThat(translations).containsExactly("ONE", "TWO");
+        verify(msBackend).translate(eq(ImmutableList.of("two")), any(),
+                any(), any(), any());
+    }
+
+    @Test
+    public void testPartialTranslationIsStoredBeforeFailing() {
+        List<String> sources = ImmutableList.of("one", "two");
+        Document doc = new Document();
+        Locale fromLocale = new Locale(LocaleCode.EN, "English");
+        Locale toLocale = new Locale(LocaleCode.DE, "German");
+        ContentHash hash = HashUtil.hash("one");
+        AugmentedTranslation one = new AugmentedTranslation("ONE", "one");
+        when(documentDAO.reload(any())).then(answerSame);
+        when(textFlowDAO.getByContentHashes(any(), any()))
+                .thenReturn(ImmutableMap.of());
+        when(msBackend.getMappedLocale(any())).thenAnswer(
+                invocation -> new BackendLocaleCodeImpl(
+                        invocation.<LocaleCode>getArgument(0)));
+        // "two" is never translated
+        when(msBackend.translate(any(), any(), any(), any(), any()))
+                .thenAnswer(invocation -> {
+                    List<String> contents = invocation.getArgument(0);
+                    throw new PartialTranslationException("failed",
+                            new MTException("sub-batch failed"),
+                            contents.stream()
+                                    .map(s -> s.equals("one") ? one : null)
+                                    .collect(Collectors.toList()));
+                });
+
+        assertThatThrownBy(() -> persistentTranslationService.translate(doc,
+                sources, fromLocale, toLocale, BackendID.MS,
+                StringType.TEXT_PLAIN, Optional.empty()))
+                .isInstanceOf(PartialTranslationException.class);
+
+        TextFlow expectedTf = new TextFlow("one", fromLocale);
+        verify(textFlowBulkWriter).write(doc, fromLocale,
+                ImmutableList.of(expectedTf), ImmutableList.of(
+                        new TextFlowTarget("ONE", "one", expectedTf,
+                                toLocale, BackendID.MS)));
+        assertThat(translationCache.get(new TranslationCacheKey(
+                fromLocale.getLocaleCode(), toLocale.getLocaleCode(),
+                BackendID.MS, hash))).contains(one);
+        verify(requestedMTEvent).fire(any());
+    }
+
     @Test
     public void testNewTranslationDuplicateString()
             throws BadRequestException {
@@ -219,20 +416,18 @@ public class PersistentTranslationServiceTest {
         Document doc = new Document();
         Locale fromLocale = new Locale(LocaleCode.EN, "English");
         Locale toLocale = new Locale(LocaleCode.DE, "German");
-        TextFlow expectedTf = new TextFlow(doc, sources.get(0), fromLocale);
+        TextFlow expectedTf = new TextFlow(sources.get(0), fromLocale);
         TextFlowTarget expectedTft =
                 new TextFlowTarget(
                         expectedTranslations.get(0).getPlainTranslation(),
                         expectedTranslations.get(0).getRawTranslation(),
                         expectedTf, toLocale, BackendID.MS);
 
-        String hash = HashUtil.generateHash(sources.get(0));
+        ContentHash hash = HashUtil.hash(sources.get(0));
 
         when(documentDAO.reload(any())).then(answerSame);
-        when(textFlowDAO.getLatestByContentHash(fromLocale.getLocaleCode(), hash))
-                .thenReturn(Optional.empty());
-        when(textFlowDAO.persist(expectedTf)).thenReturn(expectedTf);
-        when(textFlowTargetDAO.persist(expectedTft)).thenReturn(expectedTft);
+        when(textFlowDAO.getByContentHashes(fromLocale.getLocaleCode(),
+                ImmutableSet.of(hash))).thenReturn(ImmutableMap.of());
 
         BackendLocaleCode fromLocaleCode = new BackendLocaleCodeImpl(fromLocale.getLocaleCode());
         BackendLocaleCode toLocaleCode = new BackendLocaleCodeImpl(toLocale.getLocaleCode());
@@ -255,8 +450,10 @@ public class PersistentTranslationServiceTest {
         verify(msBackend)
                 .translate(sources.subList(0, 1), fromLocaleCode, toLocaleCode,
                         StringType.TEXT_PLAIN, Optional.of("tech"));
-        verify(textFlowDAO, times(2)).getLatestByContentHash(fromLocale.getLocaleCode(), hash);
-        verify(textFlowTargetDAO).persist(expectedTft);
+        verify(textFlowDAO).getByContentHashes(fromLocale.getLocaleCode(),
+                ImmutableSet.of(hash));
+        verify(textFlowBulkWriter).write(doc, fromLocale,
+                ImmutableList.of(expectedTf), ImmutableList.of(expectedTft));
         assertThat(translations).isEqualTo(
                 expectedTranslations
                         .stream()
@@ -275,18 +472,17 @@ public class PersistentTranslationServiceTest {
 
         Document doc = new Document();
 
-        TextFlow expectedTf = new TextFlow(doc, sources.get(0), fromLocale);
+        TextFlow expectedTf = new TextFlow(sources.get(0), fromLocale);
         TextFlowTarget expectedTft = new TextFlowTarget(expectedTranslation,
                 expectedRawContent, expectedTf, toLocale, BackendID.MS);
         expectedTf.getTargets().add(expectedTft);
 
-        String hash = HashUtil.generateHash(sources.get(0));
+        ContentHash hash = HashUtil.hash(sources.get(0));
 
         when(documentDAO.reload(any())).then(answerSame);
-        when(textFlowDAO.getLatestByContentHash(fromLocale.getLocaleCode(), hash))
-                .thenReturn(Optional.of(expectedTf));
-        when(msBackend.getMappedLocale(toLocale.getLocaleCode()))
-                .thenReturn(new BackendLocaleCodeImpl(toLocale.getLocaleCode()));
+        when(textFlowDAO.getByContentHashes(fromLocale.getLocaleCode(),
+                ImmutableSet.of(hash)))
+                .thenReturn(ImmutableMap.of(hash, expectedTf));
 
         List<String> translations =
                 persistentTranslationService
@@ -294,13 +490,166 @@ public class PersistentTranslationServiceTest {
                                 BackendID.MS, StringType.TEXT_PLAIN,
                                 Optional.of("tech"));
 
-        verify(textFlowDAO).getLatestByContentHash(fromLocale.getLocaleCode(), hash);
+        verify(textFlowDAO).getByContentHashes(fromLocale.getLocaleCode(),
+                ImmutableSet.of(hash));
         assertThat(translations.get(0)).isEqualTo(expectedTranslation);
     }
 
+    @Test
+    public void testTranslationSharedWithOtherDocument() {
+        List<String> sources = ImmutableList.of("string to translate");
+        String expectedTranslation = "translation of:" + sources.get(0);
+        Locale fromLocale = new Locale(LocaleCode.EN, "English");
+        Locale toLocale = new Locale(LocaleCode.DE, "German");
+
+        // persisted text flow of another document
+        TextFlow sharedTf = spy(new TextFlow(sources.get(0), fromLocale));
+        when(sharedTf.getId()).thenReturn(1L);
+        sharedTf.getTargets().add(new TextFlowTarget(expectedTranslation,
+                expectedTranslation, sharedTf, toLocale, BackendID.MS));
+        Document doc = new Document();
+
+        ContentHash hash = HashUtil.hash(sources.get(0));
+
+        when(documentDAO.reload(any())).then(answerSame);
+        when(textFlowDAO.getByContentHashes(fromLocale.getLocaleCode(),
+                ImmutableSet.of(hash)))
+                .thenReturn(ImmutableMap.of(hash, sharedTf));
+
+        List<String> translations =
+                persistentTranslationService
+                        .translate(doc, sources, fromLocale, toLocale,
+                                BackendID.MS, StringType.TEXT_PLAIN,
+                                Optional.of("tech"));
+
+        assertThat(translations).containsExactly(expectedTranslation);
+        // the existing text flow is linked to the document, not copied
+        verify(textFlowBulkWriter).write(doc, fromLocale,
+                ImmutableList.of(sharedTf), ImmutableList.of());
+        verifyNoMoreInteractions(textFlowBulkWriter);
+    }
+
+    @Test
+    public void testTranslationFromCache() {
+        List<String> sources = ImmutableList.of("string to translate");
+        AugmentedTranslation translation = new AugmentedTranslation(
+                "translation of:" + sources.get(0),
+                "<MSString>translation of:" + sources.get(0) + "</MSString>");
+        Locale fromLocale = new Locale(LocaleCode.EN, "English");
+        Locale toLocale = new Locale(LocaleCode.DE, "German");
+        ContentHash hash = HashUtil.hash(sources.get(0));
+        translationCache.put(new TranslationCacheKey(fromLocale.getLocaleCode(),
+                toLocale.getLocaleCode(), BackendID.MS, hash), translation);
+
+        Document doc = new Document();
+
+        List<String> translations =
+                persistentTranslationService
+                        .translate(doc, sources, fromLocale, toLocale,
+                                BackendID.MS, StringType.TEXT_PLAIN,
+                                Optional.of("tech"));
+
+        assertThat(translations)
+                .containsExactly(translation.getPlainTranslation());
+        // all hits come from the cache so nothing is read from database
+        verifyZeroInteractions(documentDAO, textFlowDAO);
+        // and the cached translation is only linked, not written back
+        verify(textFlowBulkWriter).link(doc, fromLocale,
+                ImmutableSet.of(hash));
+        verifyNoMoreInteractions(textFlowBulkWriter);
+        assertThat(translationCache.getHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testRepeatTranslationFromCacheWritesNoTarget() {
+        List<String> sources = ImmutableList.of("string to translate");
+        List<AugmentedTranslation> expectedTranslations =
+                ImmutableList.of(new AugmentedTranslation(
+                        "translation of:" + sources.get(0), "raw"));
+        Locale fromLocale = new Locale(LocaleCode.EN, "English");
+        Locale toLocale = new Locale(LocaleCode.DE, "German");
+        ContentHash hash = HashUtil.hash(sources.get(0));
+        Document doc = new Document();
+
+        when(documentDAO.reload(any())).then(answerSame);
+        when(textFlowDAO.getByContentHashes(fromLocale.getLocaleCode(),
+                ImmutableSet.of(hash))).thenReturn(ImmutableMap.of());
+        BackendLocaleCode fromLocaleCode = new BackendLocaleCodeImpl(fromLocale.getLocaleCode());
+        BackendLocaleCode toLocaleCode = new BackendLocaleCodeImpl(toLocale.getLocaleCode());
+        when(msBackend.getMappedLocale(fromLocale.getLocaleCode()))
+                .thenReturn(fromLocaleCode);
+        when(msBackend.getMappedLocale(toLocale.getLocaleCode()))
+                .thenReturn(toLocaleCode);
+        when(msBackend.translate(sources, fromLocaleCode, toLocaleCode,
+                StringType.TEXT_PLAIN, Optional.empty()))
+                .thenReturn(expectedTranslations);
+
+        for (int i = 0; i < 2; i++) {
+            assertThat(persistentTranslationService.translate(doc, sources,
+                    fromLocale, toLocale, BackendID.MS, StringType.TEXT_PLAIN,
+                    Optional.empty()))
+                    .containsExactly(
+                            expectedTranslations.get(0).getPlainTranslation());
+        }
+
+        verify(msBackend).translate(sources, fromLocaleCode, toLocaleCode,
+                StringType.TEXT_PLAIN, Optional.empty());
+        // the target is written by the engine call only
+        verify(textFlowBulkWriter).write(eq(doc), eq(fromLocale), any(),
+                any());
+        verify(textFlowBulkWriter).link(doc, fromLocale,
+                ImmutableSet.of(hash));
+        verifyNoMoreInteractions(textFlowBulkWriter);
+    }
+
+    @Test
+    public void testNewTranslationIsCached() {
+        List<String> sources = ImmutableList.of("string to translate");
+        List<AugmentedTranslation> expectedTranslations =
+                ImmutableList.of(new AugmentedTranslation(
+                        "translation of:" + sources.get(0), "raw"));
+        Locale fromLocale = new Locale(LocaleCode.EN, "English");
+        Locale toLocale = new Locale(LocaleCode.DE, "German");
+        ContentHash hash = HashUtil.hash(sources.get(0));
+
+        when(documentDAO.reload(any())).then(answerSame);
+        when(textFlowDAO.getByContentHashes(fromLocale.getLocaleCode(),
+                ImmutableSet.of(hash))).thenReturn(ImmutableMap.of());
+        BackendLocaleCode fromLocaleCode = new BackendLocaleCodeImpl(fromLocale.getLocaleCode());
+        BackendLocaleCode toLocaleCode = new BackendLocaleCodeImpl(toLocale.getLocaleCode());
+        when(msBackend.getMappedLocale(fromLocale.getLocaleCode()))
+                .thenReturn(fromLocaleCode);
+        when(msBackend.getMappedLocale(toLocale.getLocaleCode()))
+                .thenReturn(toLocaleCode);
+        when(msBackend.translate(sources, fromLocaleCode, toLocaleCode,
+                StringType.TEXT_PLAIN, Optional.empty()))
+                .thenReturn(expectedTranslations);
+
+        persistentTranslationService.translate(new Document(), sources,
+                fromLocale, toLocale, BackendID.MS, StringType.TEXT_PLAIN,
+                Optional.empty());
+
+        assertThat(translationCache.get(new TranslationCacheKey(
+                fromLocale.getLocaleCode(), toLocale.getLocaleCode(),
+                BackendID.MS, hash))).contains(expectedTranslations.get(0));
+        assertThat(translationCache.get(new TranslationCacheKey(
+                fromLocale.getLocaleCode(), toLocale.getLocaleCode(),
+                BackendID.GOOGLE, hash))).isEmpty();
+    }
+
     @Test
     public void testGetMaxLength() {
         assertThat(persistentTranslationService.getMaxLength(BackendID.GOOGLE))
             .isEqualTo(MAX_LENGTH);
     }
+
+    @Test
+    public void testGetCapabilities() {
+        BackendCapabilities capabilities =
+                new BackendCapabilities(MAX_LENGTH, 100, 204800);
+        when(googleTranslatorBackend.getCapabilities())
+                .thenReturn(capabilities);
+        assertThat(persistentTranslationService.getCapabilities(
+                BackendID.GOOGLE)).isSameAs(capabilities);
+    }
 }
@@ -0,0 +1,146 @@
+package org.zanata.magpie.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+import org.zanata.magpie.backend.BackendCapabilities;
+import org.zanata.magpie.model.StringType;
+
+import com.google.common.collect.ImmutableList;
+
+public class StreamingHtmlTranslatorTest {
+    // all the strings sent, by batch
+    private final List<List<String>> sent = new ArrayList<>();
+    private final List<String> sentTexts = new ArrayList<>();
+
+    private StringTranslationResult translate(String html, int maxChars,
+            int parallelism) {
+        return new StreamingHtmlTranslator(html, 0,
+                new BackendCapabilities(maxChars, 100,
+                        BackendCapabilities.UNLIMITED), parallelism,
+                batches -> batches.stream().map(batch -> {
+                    assertThat(batch.getStringType())
+                            .isEqualTo(StringType.HTML);
+                    sent.add(batch.getStrings());
+                    return batch.getStrings().stream()
+                            .map(String::toUpperCase)
+                            .collect(Collectors.toList());
+                }).collect(Collectors.toList()),
+                text -> {
+                    sentTexts.add(text);
+                    return new StringTranslationResult(text.toUpperCase(),
+                            ImmutableList.of());
+                }).translate();
+    }
+
+    private List<String> allSent() {
+        return sent.stream().flatMap(List::stream)
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    public void translateTextBetweenBlockElements() {
+        String html = "<div>\n  <h1>Title</h1>\n  <p>Hello <b>world</b>" +
+                "</p>\n  <ul><li>one</li><li>two</li></ul></div>";
+        StringTranslationResult result = translate(html, 1000, 1);
+        assertThat(allSent()).containsExactly("Title",
+                "Hello <b>world</b>", "one", "two");
+        assertThat(result.getTranslation()).isEqualTo(
+                "<div>\n  <h1>TITLE</h1>\n  <p>HELLO <B>WORLD</B>" +
+                        "</p>\n  <ul><li>ONE</li><li>TWO</li></ul></div>");
+        assertThat(result.getWarnings()).isEmpty();
+    }
+
+    @Test
+    public void nonTranslatableElementsArePlaceholdersOrCopied() {
+        String html = "<p>Run <code>ls <b>-l</b></code> or " +
+                "<span translate=\"no\">top</span><!-- c --></p>" +
+                "<div class=\"x notranslate\"><p>a</p><div>b</div></div>" +
+                "<p id=\"private-notes-1\">secret</p>" +
+                "<script>var p = '<p>x</p>';</script>" +
+                "<style>p { color: red }</style>";
+        StringTranslationResult result = translate(html, 1000, 1);
+        assertThat(allSent()).containsExactly(
+                "Run <var id=\"ZNTA-0-0\" translate=\"no\"></var> or " +
+                        "<var id=\"ZNTA-0-1\" translate=\"no\"></var>" +
+                        "<var id=\"ZNTA-0-2\" translate=\"no\"></var>");
+        assertThat(result.getTranslation()).isEqualTo(
+                "<p>RUN <code>ls <b>-l</b></code> OR " +
+                        "<span translate=\"no\">top</span><!-- c --></p>" +
+                        "<div class=\"x notranslate\"><p>a</p><div>b</div>" +
+                        "</div><p id=\"private-notes-1\">secret</p>" +
+                        "<script>var p = '<p>x</p>';</script>" +
+                        "<style>p { color: red }</style>");
+    }
+
+    @Test
+    public void nonTranslatableElementWithoutEndTag() {
+        String html = "<ul><li translate=\"no\">a<li>b</ul>" +
+                "<p class=\"notranslate\">c<p>d";
+        StringTranslationResult result = translate(html, 1000, 1);
+        assertThat(allSent()).containsExactly("b", "d");
+        assertThat(result.getTranslation()).isEqualTo(
+                "<ul><li translate=\"no\">a<li>B</ul>" +
+                        "<p class=\"notranslate\">c<p>D");
+    }
+
+    @Test
+    public void tagsWithoutMatchingTagAreNotSent() {
+        String html = "<p><span>one <b>two</p><p>three</span> four</p>";
+        StringTranslationResult result = translate(html, 1000, 1);
+        assertThat(allSent()).containsExactly("one", "two", "three",
+                "four");
+        assertThat(result.getTranslation()).isEqualTo(
+                "<p><span>ONE <b>TWO</p><p>THREE</span> FOUR</p>");
+    }
+
+    @Test
+    public void largeRunIsSplitAtTags() {
+        String html = "<p>First sentence. <b>Bold</b> Second sentence " +
+                "which is long.</p>";
+        StringTranslationResult result = translate(html, 20, 1);
+        assertThat(allSent()).containsExactly("First sentence.", "Bold");
+        assertThat(sentTexts)
+                .containsExactly("Second sentence which is long.");
+        assertThat(result.getTranslation()).isEqualTo(
+                "<p>FIRST SENTENCE. <b>BOLD</b> SECOND SENTENCE " +
+                        "WHICH IS LONG.</p>");
+    }
+
+    @Test
+    public void largeTextIsUnescapedForSentences() {
+        String html = "<p>Tom &amp; Jerry &lt;3 a very long text</p>";
+        StringTranslationResult result = translate(html, 10, 1);
+        assertThat(sentTexts)
+                .containsExactly("Tom & Jerry <3 a very long text");
+        assertThat(result.getTranslation()).isEqualTo(
+                "<p>TOM &amp; JERRY &lt;3 A VERY LONG TEXT</p>");
+    }
+
+    @Test
+    public void segmentsAreTranslatedInWindows() {
+        String html = "<p>aaaa</p><p>bbbb</p><p>cccc</p><p>dddd</p><p>ee</p>";
+        StringTranslationResult result = translate(html, 8, 1);
+        assertThat(sent).containsExactly(ImmutableList.of("aaaa", "bbbb"),
+                ImmutableList.of("cccc", "dddd"), ImmutableList.of("ee"));
+        assertThat(result.getTranslation()).isEqualTo(
+                "<p>AAAA</p><p>BBBB</p><p>CCCC</p><p>DDDD</p><p>EE</p>");
+    }
+
+    @Test
+    public void placeholdersChangedByTheEngineAreRestored() {
+        String html = "<p>Run <code>ls</code></p>";
+        StringTranslationResult result = new StreamingHtmlTranslator(html, 3,
+                new BackendCapabilities(1000, 100,
+                        BackendCapabilities.UNLIMITED), 1,
+                batches -> ImmutableList.of(ImmutableList.of(
+                        "Starte <VAR translate=no id='ZNTA-3-0'/>")),
+                text -> null).translate();
+        assertThat(result.getTranslation())
+                .isEqualTo("<p>Starte <code>ls</code></p>");
+    }
+}
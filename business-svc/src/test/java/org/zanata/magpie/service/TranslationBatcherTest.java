@@ -0,0 +1,259 @@
+package org.zanata.magpie.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.zanata.magpie.api.dto.LocaleCode;
+import org.zanata.magpie.backend.BackendLocaleCode;
+import org.zanata.magpie.backend.BackendLocaleCodeImpl;
+import org.zanata.magpie.exception.MTException;
+import org.zanata.magpie.exception.PartialTranslationException;
+import org.zanata.magpie.model.AugmentedTranslation;
+import org.zanata.magpie.model.BackendID;
+import org.zanata.magpie.model.StringType;
+
+import com.google.common.collect.ImmutableList;
+
+public class TranslationBatcherTest {
+    private static final BackendLocaleCode EN =
+            new BackendLocaleCodeImpl(LocaleCode.EN);
+    private static final BackendLocaleCode DE =
+            new BackendLocaleCodeImpl(LocaleCode.DE);
+
+    private final RecordingBackend backend = new RecordingBackend(100);
+
+    private static List<String> translated(List<AugmentedTranslation> list) {
+        return list.stream().map(AugmentedTranslation::getPlainTranslation)
+                .collect(Collectors.toList());
+    }
+
+    private CompletableFuture<List<String>> translateAsync(
+            TranslationBatcher batcher, List<String> contents,
+            StringType stringType) {
+        return CompletableFuture.supplyAsync(() -> translated(
+                batcher.translate(backend, contents, EN, DE, stringType,
+                        Optional.empty())));
+    }
+
+    @Test
+    public void testEmptyConstructor() {
+        new TranslationBatcher();
+    }
+
+    @Test
+    public void testDisabled() {
+        TranslationBatcher batcher = new TranslationBatcher("0", "");
+        List<String> result = translated(batcher.translate(backend,
+                ImmutableList.of("a"), EN, DE, StringType.TEXT_PLAIN,
+                Optional.empty()));
+        assertThat(result).containsExactly("A");
+        assertThat(backend.calls).containsExactly(ImmutableList.of("a"));
+    }
+
+    @Test
+    public void testConcurrentRequestsAreBatched() throws Exception {
+        // long enough for all the requests to join the batch
+        TranslationBatcher batcher = new TranslationBatcher(5000, 3);
+        CompletableFuture<List<String>> first = translateAsync(batcher,
+                ImmutableList.of("a"), StringType.TEXT_PLAIN);
+        CompletableFuture<List<String>> second = translateAsync(batcher,
+                ImmutableList.of("b", "c"), StringType.TEXT_PLAIN);
+
+        // the batch is dispatched as soon as it reaches the segment cap
+        assertThat(first.get(2, TimeUnit.SECONDS)).containsExactly("A");
+        assertThat(second.get(2, TimeUnit.SECONDS)).containsExactly("B", "C");
+        assertThat(backend.calls).hasSize(1);
+        assertThat(backend.calls.get(0)).containsExactlyInAnyOrder("a", "b",
+                "c");
+    }
+
+    @Test
+    public void testDifferentStringTypesAreNotBatched() throws Exception {
+        TranslationBatcher batcher = new TranslationBatcher(50, 100);
+        CompletableFuture<List<String>> first = translateAsync(batcher,
+                ImmutableList.of("a"), StringType.TEXT_PLAIN);
+        CompletableFuture<List<String>> second = translateAsync(batcher,
+                ImmutableList.of("b"), StringType.HTML);
+
+        assertThat(first.get(2, TimeUnit.SECONDS)).containsExactly("A");
+        assertThat(second.get(2, TimeUnit.SECONDS)).containsExactly("B");
+        assertThat(backend.calls).containsExactlyInAnyOrder(
+                ImmutableList.of("a"), ImmutableList.of("b"));
+    }
+
+    @Test
+    public void testBatchIsLimitedByChars() throws Exception {
+        TranslationBatcher batcher = new TranslationBatcher(50, 100);
+        RecordingBackend smallBackend = new RecordingBackend(5);
+        CompletableFuture<List<String>> first = CompletableFuture.supplyAsync(
+                () -> translated(batcher.translate(smallBackend,
+                        ImmutableList.of("abc"), EN, DE,
+                        StringType.TEXT_PLAIN, Optional.empty())));
+        List<String> second = translated(batcher.translate(smallBackend,
+                ImmutableList.of("def"), EN, DE, StringType.TEXT_PLAIN,
+                Optional.empty()));
+
+        assertThat(first.get(2, TimeUnit.SECONDS)).containsExactly("ABC");
+        assertThat(second).containsExactly("DEF");
+        assertThat(smallBackend.calls).hasSize(2);
+    }
+
+    @Test
+    public void testFailureIsSharedWithBatch() throws Exception {
+        TranslationBatcher batcher = new TranslationBatcher(5000, 2);
+        backend.failure = new MTException("engine down");
+        CompletableFuture<List<String>> first = translateAsync(batcher,
+                ImmutableList.of("a"), StringType.TEXT_PLAIN);
+        CompletableFuture<List<String>> second = translateAsync(batcher,
+                ImmutableList.of("b"), StringType.TEXT_PLAIN);
+
+        assertThatThrownBy(() -> first.get(2, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(MTException.class);
+        assertThatThrownBy(() -> second.get(2, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(MTException.class);
+        assertThat(backend.calls).hasSize(1);
+    }
+
+    @Test
+    public void testLeaderDoesNotWaitForTheDelay() throws Exception {
+        ScheduledExecutorService scheduler =
+                mock(ScheduledExecutorService.class);
+        when(scheduler.schedule(any(Runnable.class), anyLong(), any()))
+                .thenAnswer(invocation -> mock(ScheduledFuture.class));
+        TranslationBatcher batcher =
+                new TranslationBatcher(5000, 100, scheduler);
+        CompletableFuture<List<AugmentedTranslation>> first = batcher
+                .translateAsync(backend, ImmutableList.of("a"), EN, DE,
+                        StringType.TEXT_PLAIN, Optional.empty())
+                .toCompletableFuture();
+        CompletableFuture<List<AugmentedTranslation>> second = batcher
+                .translateAsync(backend, ImmutableList.of("b"), EN, DE,
+                        StringType.TEXT_PLAIN, Optional.empty())
+                .toCompletableFuture();
+        assertThat(first).isNotDone();
+        assertThat(backend.calls).isEmpty();
+
+        // the timer closes the batch
+        ArgumentCaptor<Runnable> close =
+                ArgumentCaptor.forClass(Runnable.class);
+        verify(scheduler).schedule(close.capture(), eq(5000L),
+                eq(TimeUnit.MILLISECONDS));
+        close.getValue().run();
+        assertThat(translated(first.get(2, TimeUnit.SECONDS)))
+                .containsExactly("A");
+        assertThat(translated(second.get(2, TimeUnit.SECONDS)))
+                .containsExactly("B");
+        assertThat(backend.calls).containsExactly(ImmutableList.of("a", "b"));
+    }
+
+    @Test
+    public void testMissingTranslationsFailTheBatch() throws Exception {
+        TranslationBatcher batcher = new TranslationBatcher(5000, 2);
+        backend.dropLast = true;
+        CompletableFuture<List<String>> first = translateAsync(batcher,
+                ImmutableList.of("a"), StringType.TEXT_PLAIN);
+        CompletableFuture<List<String>> second = translateAsync(batcher,
+                ImmutableList.of("b"), StringType.TEXT_PLAIN);
+
+        assertThatThrownBy(() -> first.get(2, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(MTException.class);
+        assertThatThrownBy(() -> second.get(2, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(MTException.class);
+    }
+
+    @Test
+    public void testPartialTranslationIsSplitBetweenRequests()
+            throws Exception {
+        TranslationBatcher batcher = new TranslationBatcher(5000, 3);
+        backend.untranslated = "c";
+        CompletableFuture<List<String>> first = translateAsync(batcher,
+                ImmutableList.of("a"), StringType.TEXT_PLAIN);
+        CompletableFuture<List<String>> second = translateAsync(batcher,
+                ImmutableList.of("b", "c"), StringType.TEXT_PLAIN);
+
+        assertThat(first.get(2, TimeUnit.SECONDS)).containsExactly("A");
+        try {
+            second.get(2, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            assertThat(e.getCause())
+                    .isInstanceOf(PartialTranslationException.class);
+            assertThat(translated(((PartialTranslationException) e
+                    .getCause()).getTranslations().subList(0, 1)))
+                    .containsExactly("B");
+            assertThat(((PartialTranslationException) e.getCause())
+                    .getTranslations().get(1)).isNull();
+            return;
+        }
+        throw new AssertionError("expected failure");
+    }
+
+    private static class RecordingBackend implements TranslatorBackend {
+        private final int charLimit;
+        private final List<List<String>> calls = new CopyOnWriteArrayList<>();
+        private volatile MTException failure;
+        // returns one translation less than asked
+        private volatile boolean dropLast;
+        // fails to translate this string, but not the others
+        private volatile String untranslated;
+
+        private RecordingBackend(int charLimit) {
+            this.charLimit = charLimit;
+        }
+
+        @Override
+        public List<AugmentedTranslation> translate(List<String> contents,
+                BackendLocaleCode srcLocale, BackendLocaleCode targetLocale,
+                StringType stringType, Optional<String> category) {
+            calls.add(ImmutableList.copyOf(contents));
+            if (failure != null) {
+                throw failure;
+            }
+            if (contents.contains(untranslated)) {
+                throw new PartialTranslationException("failed",
+                        new MTException("sub-batch failed"),
+                        contents.stream().map(s -> s.equals(untranslated) ?
+                                null : new AugmentedTranslation(
+                                s.toUpperCase(), s))
+                                .collect(Collectors.toList()));
+            }
+            return contents.stream()
+                    .limit(dropLast ? contents.size() - 1 : contents.size())
+                    .map(s -> new AugmentedTranslation(s.toUpperCase(), s))
+                    .collect(Collectors.toList());
+        }
+
+        @Override
+        public BackendLocaleCode getMappedLocale(LocaleCode localeCode) {
+            return new BackendLocaleCodeImpl(localeCode);
+        }
+
+        @Override
+        public int getCharLimitPerRequest() {
+            return charLimit;
+        }
+
+        @Override
+        public BackendID getId() {
+            return BackendID.DEV;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package org.zanata.magpie.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+import org.zanata.magpie.api.dto.LocaleCode;
+import org.zanata.magpie.model.AugmentedTranslation;
+import org.zanata.magpie.model.BackendID;
+import org.zanata.magpie.util.HashUtil;
+
+public class TranslationCacheTest {
+
+    private static TranslationCacheKey key(String content) {
+        return new TranslationCacheKey(LocaleCode.EN, LocaleCode.DE,
+                BackendID.MS, HashUtil.hash(content));
+    }
+
+    @Test
+    public void testEmptyConstructor() {
+        new TranslationCache();
+    }
+
+    @Test
+    public void testParseMaxSize() {
+        assertThat(TranslationCache.parseMaxSize(""))
+                .isEqualTo(TranslationCache.DEFAULT_MAX_SIZE);
+        assertThat(TranslationCache.parseMaxSize(" 10 ")).isEqualTo(10);
+        assertThatThrownBy(() -> TranslationCache.parseMaxSize("-1"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void testHitAndMiss() {
+        TranslationCache cache = new TranslationCache(10);
+        AugmentedTranslation translation = new AugmentedTranslation("A", "A");
+        cache.put(key("a"), translation);
+
+        assertThat(cache.get(key("a"))).contains(translation);
+        assertThat(cache.get(key("b"))).isEmpty();
+        assertThat(cache.get(new TranslationCacheKey(LocaleCode.EN,
+                LocaleCode.DE, BackendID.GOOGLE, HashUtil.hash("a")))).isEmpty();
+        assertThat(cache.getHitCount()).isEqualTo(1);
+        assertThat(cache.getMissCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void testEviction() {
+        TranslationCache cache = new TranslationCache(2);
+        cache.put(key("a"), new AugmentedTranslation("A", "A"));
+        cache.put(key("b"), new AugmentedTranslation("B", "B"));
+        cache.put(key("c"), new AugmentedTranslation("C", "C"));
+
+        assertThat(cache.getSize()).isEqualTo(2);
+        assertThat(cache.getEvictionCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testDisabled() {
+        TranslationCache cache = new TranslationCache(0);
+        cache.put(key("a"), new AugmentedTranslation("A", "A"));
+        assertThat(cache.get(key("a"))).isEmpty();
+    }
+
+    @Test
+    public void testDisabledIgnoresClusteredCache() {
+        ConcurrentMap<TranslationCacheKey, AugmentedTranslation> clustered =
+                new ConcurrentHashMap<>();
+        clustered.put(key("a"), new AugmentedTranslation("A", "A"));
+        TranslationCache cache = new TranslationCache(0, clustered);
+
+        assertThat(cache.get(key("a"))).isEmpty();
+        cache.put(key("b"), new AugmentedTranslation("B", "B"));
+        assertThat(clustered).containsOnlyKeys(key("a"));
+    }
+
+    @Test
+    public void testClusteredCache() {
+        ConcurrentMap<TranslationCacheKey, AugmentedTranslation> clustered =
+                new ConcurrentHashMap<>();
+        TranslationCache node1 = new TranslationCache(10, clustered);
+        TranslationCache node2 = new TranslationCache(10, clustered);
+        AugmentedTranslation translation = new AugmentedTranslation("A", "A");
+        node1.put(key("a"), translation);
+
+        assertThat(clustered).containsEntry(key("a"), translation);
+        assertThat(node2.get(key("a"))).contains(translation);
+        assertThat(node2.get(key("a"))).contains(translation);
+        assertThat(node2.getClusteredHitCount()).isEqualTo(1);
+        assertThat(node2.getHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testClusteredCacheFailureIsAMiss() {
+        @SuppressWarnings("unchecked")
+        ConcurrentMap<TranslationCacheKey, AugmentedTranslation> clustered =
+                mock(ConcurrentMap.class);
+        when(clustered.get(any())).thenThrow(new IllegalStateException());
+        when(clustered.put(any(), any())).thenThrow(new IllegalStateException());
+        TranslationCache cache = new TranslationCache(0, clustered);
+
+        cache.put(key("a"), new AugmentedTranslation("A", "A"));
+        assertThat(cache.get(key("a"))).isEmpty();
+    }
+
+    @Test
+    public void testRegisterMBean() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(TranslationCache.OBJECT_NAME);
+        TranslationCache cache = new TranslationCache(10);
+        cache.registerMBean();
+        try {
+            cache.put(key("a"), new AugmentedTranslation("A", "A"));
+            assertThat(server.getAttribute(name, "Size")).isEqualTo(1L);
+        } finally {
+            cache.unregisterMBean();
+        }
+        assertThat(server.isRegistered(name)).isFalse();
+    }
+}
@@ -156,4 +156,33 @@ public class ArticleUtilTest {
             assertThat(results).contains(originalNode.outerHtml());
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void replacePlaceholderWithNodeInParsedNodes() {
+        String html = "<p>Run <code>ls</code> now</p><code>top</code>";
+        TranslatableNodeList nodeList =
+                ArticleUtil.replaceNonTranslatableNodeHTML(0, html);
+        assertThat(nodeList.getHtml()).doesNotContain("<code>");
+
+        ArticleUtil.replacePlaceholderWithNode(
+                nodeList.getPlaceholderIdMap(), nodeList.getNodes());
+        assertThat(nodeList.getNodes().stream().map(Node::outerHtml)
+                .collect(Collectors.joining())).isEqualTo(html);
+    }
+
+    @Test
+    public void nestedNonTranslatableNodesUseOnePlaceholder() {
+        String html = "<div class='notranslate'><code>a</code></div>" +
+                "<p>Run <code>ls</code> <span translate='no'>" +
+                "<code>top</code></span></p>";
+        TranslatableNodeList nodeList =
+                ArticleUtil.replaceNonTranslatableNodeHTML(1, html);
+        assertThat(nodeList.getPlaceholderIdMap()).containsOnlyKeys(
+                "ZNTA-1-0", "ZNTA-1-1", "ZNTA-1-2");
+        assertThat(nodeList.getHtml()).doesNotContain("<code>");
+
+        String results = ArticleUtil.replacePlaceholderWithNodeHTML(
+                nodeList.getPlaceholderIdMap(), nodeList.getHtml());
+        assertThat(results).isEqualTo(html.replace('\'', '"'));
+    }
+}
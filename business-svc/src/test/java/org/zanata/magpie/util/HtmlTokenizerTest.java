@@ -0,0 +1,86 @@
+package org.zanata.magpie.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.zanata.magpie.util.HtmlTokenizer.TokenType;
+
+public class HtmlTokenizerTest {
+
+    private static List<String> tokens(String html) {
+        List<String> tokens = new ArrayList<>();
+        HtmlTokenizer tokenizer = new HtmlTokenizer(html);
+        while (tokenizer.next()) {
+            tokens.add(tokenizer.getType() + ":" +
+                    html.substring(tokenizer.getStart(), tokenizer.getEnd()));
+        }
+        return tokens;
+    }
+
+    @Test
+    public void tokenizeTagsAndText() {
+        assertThat(tokens("<P class='a'>Hello <b>world</b><!-- x --></P>"))
+                .containsExactly("START_TAG:<P class='a'>", "TEXT:Hello ",
+                        "START_TAG:<b>", "TEXT:world", "END_TAG:</b>",
+                        "OTHER:<!-- x -->", "END_TAG:</P>");
+    }
+
+    @Test
+    public void lessThanWhichIsNotMarkupIsText() {
+        assertThat(tokens("1 < 2 <3 <a"))
+                .containsExactly("TEXT:1 < 2 <3 ", "TEXT:<a");
+    }
+
+    @Test
+    public void scriptContentIsOneText() {
+        assertThat(tokens("<script>if (a<b) x='</p>';</script><style></style>"))
+                .containsExactly("START_TAG:<script>",
+                        "TEXT:if (a<b) x='</p>';", "END_TAG:</script>",
+                        "START_TAG:<style>", "END_TAG:</style>");
+    }
+
+    @Test
+    public void readAttributes() {
+        HtmlTokenizer tokenizer = new HtmlTokenizer(
+                "<DIV Class=\"x notranslate\" data-a='1 &amp; 2' hidden " +
+                        "id=main>");
+        assertThat(tokenizer.next()).isTrue();
+        assertThat(tokenizer.getTagName()).isEqualTo("div");
+        assertThat(tokenizer.getAttribute("class"))
+                .isEqualTo("x notranslate");
+        assertThat(tokenizer.getAttribute("data-a")).isEqualTo("1 & 2");
+        assertThat(tokenizer.getAttribute("hidden")).isEmpty();
+        assertThat(tokenizer.getAttribute("id")).isEqualTo("main");
+        assertThat(tokenizer.getAttribute("title")).isEmpty();
+        assertThat(tokenizer.isSelfClosing()).isFalse();
+        assertThat(tokenizer.next()).isFalse();
+    }
+
+    @Test
+    public void selfClosingAndVoidElements() {
+        HtmlTokenizer tokenizer = new HtmlTokenizer("<x/><br><span>");
+        tokenizer.next();
+        assertThat(tokenizer.isSelfClosing()).isTrue();
+        tokenizer.next();
+        assertThat(tokenizer.isSelfClosing()).isTrue();
+        tokenizer.next();
+        assertThat(tokenizer.isSelfClosing()).isFalse();
+    }
+
+    @Test
+    public void pushBackReturnsTheSameToken() {
+        HtmlTokenizer tokenizer = new HtmlTokenizer("<b>a</b>");
+        tokenizer.next();
+        tokenizer.next();
+        tokenizer.pushBack();
+        assertThat(tokenizer.next()).isTrue();
+        assertThat(tokenizer.getType()).isEqualTo(TokenType.TEXT);
+        assertThat(tokenizer.getStart()).isEqualTo(3);
+        tokenizer.next();
+        assertThat(tokenizer.getType()).isEqualTo(TokenType.END_TAG);
+        assertThat(tokenizer.next()).isFalse();
+    }
+}
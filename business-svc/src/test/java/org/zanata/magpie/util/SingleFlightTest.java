@@ -0,0 +1,158 @@
+package org.zanata.magpie.util;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class SingleFlightTest {
+    private final SingleFlight<String, String> singleFlight =
+            new SingleFlight<>();
+
+    private static List<String> upperCase(List<String> keys) {
+        return keys.stream().map(String::toUpperCase)
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    public void testLoad() {
+        Map<String, String> result = singleFlight.load(ImmutableList.of("a", "b"),
+                SingleFlightTest::upperCase);
+        assertThat(result).containsEntry("a", "A").containsEntry("b", "B")
+                .hasSize(2);
+        assertThat(singleFlight.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void testConcurrentLoadsAreCoalesced() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<List<String>> loadedKeys = new CopyOnWriteArrayList<>();
+
+        CompletableFuture<Map<String, String>> first =
+                CompletableFuture.supplyAsync(() -> singleFlight
+                        .load(ImmutableList.of("a", "b"), keys -> {
+                            loadedKeys.add(keys);
+                            loading.countDown();
+                            await(release);
+                            return upperCase(keys);
+                        }));
+        assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<Map<String, String>> second =
+                CompletableFuture.supplyAsync(() -> singleFlight
+                        .load(ImmutableList.of("b", "c"), keys -> {
+                            loadedKeys.add(keys);
+                            return upperCase(keys);
+                        }));
+        // "c" is loaded right away, "b" waits for the first load
+        while (loadedKeys.size() < 2) {
+            Thread.sleep(10);
+        }
+        assertThat(second.isDone()).isFalse();
+        release.countDown();
+
+        assertThat(first.get(5, TimeUnit.SECONDS)).containsOnlyKeys("a", "b");
+        assertThat(second.get(5, TimeUnit.SECONDS))
+                .containsEntry("b", "B").containsEntry("c", "C");
+        assertThat(loadedKeys).containsExactly(ImmutableList.of("a", "b"),
+                ImmutableList.of("c"));
+        assertThat(singleFlight.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void testFailureIsSharedWithWaitingCallers() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Map<String, String>> first =
+                CompletableFuture.supplyAsync(() -> singleFlight
+                        .load(ImmutableList.of("a"), keys -> {
+                            loading.countDown();
+                            await(release);
+                            throw new IllegalStateException("engine down");
+                        }));
+        assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+        CountDownLatch secondLoading = new CountDownLatch(1);
+        List<List<String>> loadedKeys = new CopyOnWriteArrayList<>();
+        CompletableFuture<Map<String, String>> second =
+                CompletableFuture.supplyAsync(() -> singleFlight
+                        .load(ImmutableList.of("a", "z"), keys -> {
+                            loadedKeys.add(keys);
+                            secondLoading.countDown();
+                            return upperCase(keys);
+                        }));
+        // "a" is registered as waiting before "z" is loaded
+        assertThat(secondLoading.await(5, TimeUnit.SECONDS)).isTrue();
+        release.countDown();
+
+        assertThatThrownBy(() -> second.get(5, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> first.get(5, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(IllegalStateException.class);
+        assertThat(loadedKeys).containsExactly(ImmutableList.of("z"));
+        assertThat(singleFlight.size()).isEqualTo(0);
+        // a new load is attempted after a failure
+        assertThat(singleFlight.load(ImmutableList.of("a"),
+                SingleFlightTest::upperCase)).containsEntry("a", "A");
+    }
+
+    @Test
+    public void testLoadAsyncDoesNotBlock() throws Exception {
+        CompletableFuture<List<String>> engine = new CompletableFuture<>();
+        List<List<String>> loadedKeys = new CopyOnWriteArrayList<>();
+
+        CompletableFuture<Map<String, String>> first = singleFlight.loadAsync(
+                ImmutableList.of("a", "b"), keys -> {
+                    loadedKeys.add(keys);
+                    return engine;
+                });
+        CompletableFuture<Map<String, String>> second = singleFlight.loadAsync(
+                ImmutableList.of("b", "c"), keys -> {
+                    loadedKeys.add(keys);
+                    return CompletableFuture.completedFuture(upperCase(keys));
+                });
+
+        assertThat(first.isDone()).isFalse();
+        // "b" is still loading for the first caller
+        assertThat(second.isDone()).isFalse();
+        engine.complete(ImmutableList.of("A", "B"));
+
+        assertThat(first.get(5, TimeUnit.SECONDS)).containsEntry("a", "A")
+                .containsEntry("b", "B");
+        assertThat(second.get(5, TimeUnit.SECONDS)).containsEntry("b", "B")
+                .containsEntry("c", "C");
+        assertThat(loadedKeys).containsExactly(ImmutableList.of("a", "b"),
+                ImmutableList.of("c"));
+        assertThat(singleFlight.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void testLoadAsyncFailure() {
+        CompletableFuture<List<String>> engine = new CompletableFuture<>();
+        CompletableFuture<Map<String, String>> result = singleFlight.loadAsync(
+                ImmutableList.of("a"), keys -> engine);
+
+        engine.completeExceptionally(new IllegalStateException("engine down"));
+
+        assertThatThrownBy(result::join)
+                .hasCauseInstanceOf(IllegalStateException.class);
+        assertThat(singleFlight.size()).isEqualTo(0);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
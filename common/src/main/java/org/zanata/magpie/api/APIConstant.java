@@ -37,6 +37,156 @@ public interface APIConstant {
      */
     String DEV_BACKEND = "DEV_BACKEND";
 
+    /**
+     * Maximum number of translated segments kept in the in-memory
+     * translation cache of each node.
+     */
+    String TRANSLATION_CACHE_SIZE = "MT_TRANSLATION_CACHE_SIZE";
+
+    /**
+     * Number of nodes holding a copy of each entry in the cluster-wide
+     * translation cache.
+     */
+    String TRANSLATION_CACHE_OWNERS = "MT_TRANSLATION_CACHE_OWNERS";
+
+    /**
+     * Minutes an entry is kept in the cluster-wide translation cache.
+     */
+    String TRANSLATION_CACHE_EXPIRY = "MT_TRANSLATION_CACHE_EXPIRY";
+
+    /**
+     * Milliseconds to wait for concurrent requests to the same MT engine and
+     * locale pair, so that their strings are sent in one call. 0 disables
+     * batching.
+     */
+    String BATCH_DELAY = "MT_BATCH_DELAY_MS";
+
+    /**
+     * Maximum number of strings sent in one batched MT engine call.
+     */
+    String BATCH_MAX_SEGMENTS = "MT_BATCH_MAX_SEGMENTS";
+
+    /**
+     * Maximum number of concurrent calls to Google Cloud Translation API for
+     * the sub-batches of large requests.
+     */
+    String GOOGLE_PARALLELISM = "MT_GOOGLE_PARALLELISM";
+
+    /**
+     * Maximum number of pooled HTTP connections to each Microsoft Translator
+     * host.
+     */
+    String MS_MAX_CONNECTIONS = "MT_MS_MAX_CONNECTIONS";
+
+    /**
+     * Seconds a pooled connection to Microsoft Translator is kept for reuse.
+     */
+    String MS_KEEP_ALIVE = "MT_MS_KEEP_ALIVE_SECONDS";
+
+    /**
+     * Milliseconds to wait for a connection to Microsoft Translator.
+     */
+    String MS_CONNECT_TIMEOUT = "MT_MS_CONNECT_TIMEOUT_MS";
+
+    /**
+     * Milliseconds to wait for response data from Microsoft Translator.
+     */
+    String MS_READ_TIMEOUT = "MT_MS_READ_TIMEOUT_MS";
+
+    /**
+     * Maximum number of concurrent calls to Microsoft Translator. The limit
+     * in use is lowered while the service is throttling or slow.
+     */
+    String MS_MAX_CONCURRENCY = "MT_MS_MAX_CONCURRENCY";
+
+    /**
+     * Maximum number of calls per second to Microsoft Translator. Not
+     * limited by default.
+     */
+    String MS_REQUESTS_PER_SECOND = "MT_MS_REQUESTS_PER_SECOND";
+
+    /**
+     * Maximum number of characters per second sent to Microsoft Translator.
+     * Not limited by default.
+     */
+    String MS_CHARS_PER_SECOND = "MT_MS_CHARS_PER_SECOND";
+
+    /**
+     * Maximum number of concurrent batches sent to Google Cloud Translation
+     * API, each of them split in sub-batches (see {@link
+     * #GOOGLE_PARALLELISM}). The limit in use is lowered while the service is
+     * throttling or slow.
+     */
+    String GOOGLE_MAX_CONCURRENCY = "MT_GOOGLE_MAX_CONCURRENCY";
+
+    /**
+     * Maximum number of calls per second to Google Cloud Translation API.
+     * Not limited by default.
+     */
+    String GOOGLE_REQUESTS_PER_SECOND = "MT_GOOGLE_REQUESTS_PER_SECOND";
+
+    /**
+     * Maximum number of characters per second sent to Google Cloud
+     * Translation API. Not limited by default.
+     */
+    String GOOGLE_CHARS_PER_SECOND = "MT_GOOGLE_CHARS_PER_SECOND";
+
+    /**
+     * Percentile of the recent latencies of an MT engine after which the
+     * same strings are also sent to another available MT engine, eg 95. Not
+     * set by default, which disables hedging.
+     */
+    String HEDGE_PERCENTILE = "MT_HEDGE_PERCENTILE";
+
+    /**
+     * Minimum milliseconds to wait for an MT engine before sending the same
+     * strings to another one.
+     */
+    String HEDGE_MIN_DELAY = "MT_HEDGE_MIN_DELAY_MS";
+
+    /**
+     * Percentage of failed calls among the latest ones to an MT engine at
+     * which its circuit breaker opens, and the MT engine is not called for a
+     * while.
+     */
+    String CIRCUIT_BREAKER_FAILURE_RATE = "MT_CIRCUIT_BREAKER_FAILURE_RATE";
+
+    /**
+     * Percentage of slow calls among the latest ones to an MT engine at
+     * which its circuit breaker opens.
+     */
+    String CIRCUIT_BREAKER_SLOW_CALL_RATE = "MT_CIRCUIT_BREAKER_SLOW_CALL_RATE";
+
+    /**
+     * Milliseconds after which a call to an MT engine is slow.
+     */
+    String CIRCUIT_BREAKER_SLOW_CALL_DURATION =
+            "MT_CIRCUIT_BREAKER_SLOW_CALL_MS";
+
+    /**
+     * Seconds an open circuit breaker waits before letting trial calls
+     * through.
+     */
+    String CIRCUIT_BREAKER_OPEN_DURATION = "MT_CIRCUIT_BREAKER_OPEN_SECONDS";
+
+    /**
+     * If true, another available MT engine is used while the circuit breaker
+     * of the requested one is open. Otherwise requests fail right away.
+     */
+    String CIRCUIT_BREAKER_FALLBACK = "MT_CIRCUIT_BREAKER_FALLBACK";
+
+    /**
+     * Maximum number of MT engine calls in progress at the same time for
+     * one document translation request.
+     */
+    String DOCUMENT_PARALLELISM = "MT_DOCUMENT_PARALLELISM";
+
+    /**
+     * HTML strings longer than this number of characters are translated from
+     * a stream of tokens, without parsing them into a DOM.
+     */
+    String STREAMING_HTML_THRESHOLD = "MT_STREAMING_HTML_THRESHOLD";
+
     // HTTP header request authentication
     String HEADER_API_KEY = "X-Auth-Token";
     String HEADER_USERNAME = "X-Auth-User";
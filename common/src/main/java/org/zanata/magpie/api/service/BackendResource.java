@@ -35,6 +35,8 @@ public interface BackendResource {
 
     String ATTRIBUTION_KEY = "X-MAGPIE-MT-Attribution";
 
+    String CIRCUIT_STATE_KEY = "X-MAGPIE-MT-Circuit-State";
+
     /**
      * Retrieve backend attribution (image) based on given id
      *
@@ -74,9 +76,17 @@ public interface BackendResource {
 
     /**
      * Available machine translation providers.
+     *
+     * The circuit breaker state of each provider (CLOSED, OPEN or
+     * HALF_OPEN) is returned in a header, eg "MS=OPEN,GOOGLE=CLOSED". Requests
+     * for a provider whose circuit is open fail right away, or are sent to
+     * another provider.
      */
     @GET
     @Produces(MediaType.APPLICATION_JSON)
+    @ResponseHeaders({
+            @ResponseHeader(name = CIRCUIT_STATE_KEY, description = "Circuit breaker state of each provider")
+    })
     @StatusCodes({
             @ResponseCode(code = 200, condition = "Available machine translation providers", type = @TypeHint(String[].class)),
             @ResponseCode(code = 500, condition = "Unexpected error.")
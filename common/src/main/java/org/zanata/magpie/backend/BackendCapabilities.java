@@ -0,0 +1,92 @@
+package org.zanata.magpie.backend;
+
+import java.util.List;
+
+/**
+ * Limits of one request to an MT provider. Strings sent together must fit
+ * all of them.
+ */
+public final class BackendCapabilities {
+    public static final int UNLIMITED = Integer.MAX_VALUE;
+
+    private final int maxChars;
+    private final int maxSegments;
+    private final int maxBytes;
+
+    /**
+     * @param maxChars
+     *            maximum number of characters of all the strings
+     * @param maxSegments
+     *            maximum number of strings, or {@link #UNLIMITED}
+     * @param maxBytes
+     *            maximum UTF-8 size of all the strings, or
+     *            {@link #UNLIMITED}
+     */
+    public BackendCapabilities(int maxChars, int maxSegments, int maxBytes) {
+        this.maxChars = maxChars;
+        this.maxSegments = maxSegments;
+        this.maxBytes = maxBytes;
+    }
+
+    public int getMaxChars() {
+        return maxChars;
+    }
+
+    public int getMaxSegments() {
+        return maxSegments;
+    }
+
+    public int getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * @return whether the strings can be sent in one request
+     */
+    public boolean fits(List<String> strings) {
+        if (strings.size() > maxSegments) {
+            return false;
+        }
+        long chars = 0;
+        long bytes = 0;
+        for (String string : strings) {
+            chars += string.length();
+            if (maxBytes != UNLIMITED) {
+                bytes += utf8Length(string);
+            }
+        }
+        return chars <= maxChars && bytes <= maxBytes;
+    }
+
+    /**
+     * @return size of the string in UTF-8, without encoding it
+     */
+    public static int utf8Length(String string) {
+        int bytes = 0;
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            if (c < 0x80) {
+                bytes += 1;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) &&
+                    i + 1 < string.length() &&
+                    Character.isLowSurrogate(string.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    @Override
+    public String toString() {
+        return "BackendCapabilities{" +
+                "maxChars=" + maxChars +
+                ", maxSegments=" + maxSegments +
+                ", maxBytes=" + maxBytes +
+                '}';
+    }
+}
@@ -0,0 +1,34 @@
+package org.zanata.magpie.exception;
+
+/**
+ * Thrown when an MT provider rejects a request because it is throttling
+ * (HTTP 429) or failing (HTTP 5xx). Callers should send fewer requests for a
+ * while.
+ */
+public class BackendOverloadedException extends MTException {
+    private static final long serialVersionUID = 1L;
+
+    private final int statusCode;
+
+    public BackendOverloadedException(String message, int statusCode,
+            Throwable e) {
+        super(message, e);
+        this.statusCode = statusCode;
+    }
+
+    public BackendOverloadedException(String message, int statusCode) {
+        super(message);
+        this.statusCode = statusCode;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * @return whether the HTTP status means the provider is overloaded
+     */
+    public static boolean isOverloaded(int statusCode) {
+        return statusCode == 429 || statusCode >= 500;
+    }
+}
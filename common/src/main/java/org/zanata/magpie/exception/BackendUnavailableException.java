@@ -0,0 +1,13 @@
+package org.zanata.magpie.exception;
+
+/**
+ * Thrown without calling an MT provider, because it has been failing or too
+ * slow lately and its circuit breaker is open.
+ */
+public class BackendUnavailableException extends MTException {
+    private static final long serialVersionUID = 1L;
+
+    public BackendUnavailableException(String message) {
+        super(message);
+    }
+}
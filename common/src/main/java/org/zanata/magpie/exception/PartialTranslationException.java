@@ -0,0 +1,30 @@
+package org.zanata.magpie.exception;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.zanata.magpie.model.AugmentedTranslation;
+
+/**
+ * Thrown when a backend sends a request in several calls and some of them
+ * fail. Translations of the calls which did succeed are kept.
+ */
+public class PartialTranslationException extends MTException {
+    private static final long serialVersionUID = 1L;
+
+    private final List<AugmentedTranslation> translations;
+
+    public PartialTranslationException(String message, Throwable e,
+            List<AugmentedTranslation> translations) {
+        super(message, e);
+        this.translations = Collections.unmodifiableList(translations);
+    }
+
+    /**
+     * @return translations with the same index as the request, null for the
+     *         strings which were not translated
+     */
+    public List<AugmentedTranslation> getTranslations() {
+        return translations;
+    }
+}
@@ -1,5 +1,7 @@
 package org.zanata.magpie.model;
 
+import java.io.Serializable;
+
 import javax.annotation.Nullable;
 
 /**
@@ -7,7 +9,9 @@ import javax.annotation.Nullable;
  *
  * @author Alex Eng <a href="mailto:aeng@redhat.com">aeng@redhat.com</a>
  */
-public class AugmentedTranslation {
+public class AugmentedTranslation implements Serializable {
+    private static final long serialVersionUID = -2397862516354401624L;
+
     private String plainTranslation;
     private String rawTranslation;
 
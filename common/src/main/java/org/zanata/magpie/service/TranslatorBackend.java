@@ -2,10 +2,13 @@ package org.zanata.magpie.service;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 import javax.validation.constraints.NotNull;
 
 import org.zanata.magpie.api.dto.LocaleCode;
+import org.zanata.magpie.backend.BackendCapabilities;
 import org.zanata.magpie.backend.BackendLocaleCode;
 import org.zanata.magpie.exception.MTException;
 import org.zanata.magpie.model.AugmentedTranslation;
@@ -33,6 +36,32 @@ public interface TranslatorBackend {
             Optional<String> category)
             throws MTException;
 
+    /**
+     * Same as
+     * {@link #translate(List, BackendLocaleCode, BackendLocaleCode, StringType, Optional)}
+     * without holding the calling thread while the MT provider is working.
+     * Failures complete the stage exceptionally, with the same exceptions as
+     * the blocking method.
+     *
+     * The default implementation is for blocking backends: it calls
+     * {@link #translate(List, BackendLocaleCode, BackendLocaleCode, StringType, Optional)}
+     * on the calling thread and returns a completed stage.
+     */
+    default CompletionStage<List<AugmentedTranslation>> translateAsync(
+            List<String> contents, BackendLocaleCode srcLocale,
+            BackendLocaleCode targetLocale, StringType stringType,
+            Optional<String> category) {
+        CompletableFuture<List<AugmentedTranslation>> result =
+                new CompletableFuture<>();
+        try {
+            result.complete(translate(contents, srcLocale, targetLocale,
+                    stringType, category));
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
     /**
      * Return mapped locale for the backend
      * @param localeCode
@@ -46,5 +75,14 @@ public interface TranslatorBackend {
      */
     int getCharLimitPerRequest();
 
+    /**
+     * @return limits of one request to this backend. The default only has
+     *         the {@link #getCharLimitPerRequest()} limit.
+     */
+    default BackendCapabilities getCapabilities() {
+        return new BackendCapabilities(getCharLimitPerRequest(),
+                BackendCapabilities.UNLIMITED, BackendCapabilities.UNLIMITED);
+    }
+
     BackendID getId();
 }
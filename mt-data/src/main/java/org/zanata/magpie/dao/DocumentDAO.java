@@ -1,6 +1,7 @@
 package org.zanata.magpie.dao;
 
 import org.zanata.magpie.api.dto.LocaleCode;
+import org.zanata.magpie.model.ContentHash;
 import org.zanata.magpie.model.Document;
 import org.zanata.magpie.model.Locale;
 
@@ -39,7 +40,7 @@ public class DocumentDAO extends AbstractDAO<Document> {
     public List<Document> getByUrl(@NotNull String url,
             Optional<LocaleCode> fromLocaleCode, Optional<LocaleCode> toLocaleCode,
             Optional<DateRange> dateParam) {
-        String urlHash = HashUtil.generateHash(url);
+        ContentHash urlHash = HashUtil.hash(url);
         StringBuilder queryBuilder = new StringBuilder();
         queryBuilder.append("from Document where urlHash =:urlHash");
         if (fromLocaleCode.isPresent()) {
@@ -0,0 +1,355 @@
+package org.zanata.magpie.dao;
+
+import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import javax.enterprise.context.RequestScoped;
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+
+import org.hibernate.Session;
+import org.hibernate.dialect.PostgreSQL95Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.zanata.magpie.model.ContentHash;
+import org.zanata.magpie.model.Document;
+import org.zanata.magpie.model.Locale;
+import org.zanata.magpie.model.TextFlow;
+import org.zanata.magpie.model.TextFlowTarget;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Collections2;
+import com.google.common.collect.Iterables;
+
+/**
+ * Writes all the text flows, document links and targets of a translation
+ * request with a few batched JDBC statements, instead of one find and persist
+ * per text flow.
+ *
+ * On PostgreSQL, rows which already exist (eg inserted by a concurrent request)
+ * are handled with INSERT ... ON CONFLICT, so they don't fail the transaction
+ * with a duplicate key error. Other databases use a portable
+ * select-or-update-then-insert.
+ *
+ * Rows are written directly to the database, so entities already loaded in
+ * the persistence context are not refreshed.
+ */
+@RequestScoped
+public class TextFlowBulkWriter implements Serializable {
+    private static final long serialVersionUID = 2914536719512850413L;
+    private static final int MAX_HASHES_PER_QUERY = 500;
+
+    private static final String INSERT_TEXT_FLOW =
+            "INSERT INTO TextFlow (contentHash, localeId, content, wordCount, charCount, creationDate, lastChanged) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final String ON_CONFLICT_TEXT_FLOW =
+            " ON CONFLICT (contentHash, localeId) DO NOTHING";
+    private static final String SELECT_TEXT_FLOW_IDS =
+            "SELECT id, contentHash FROM TextFlow WHERE localeId = ? AND contentHash IN (%s)";
+
+    private static final String INSERT_LINK =
+            "INSERT INTO Document_TextFlow (documentId, textFlowId) VALUES (?, ?)";
+    private static final String ON_CONFLICT_LINK = " ON CONFLICT DO NOTHING";
+    private static final String SELECT_LINKED_TEXT_FLOW_IDS =
+            "SELECT textFlowId FROM Document_TextFlow WHERE documentId = ? AND textFlowId IN (%s)";
+
+    private static final String INSERT_TARGET =
+            "INSERT INTO TextFlowTarget (textFlowId, localeId, content, rawContent, backendId, creationDate, lastChanged) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final String ON_CONFLICT_TARGET =
+            " ON CONFLICT (localeId, textFlowId, backendId) DO UPDATE " +
+                    "SET content = EXCLUDED.content, rawContent = EXCLUDED.rawContent, lastChanged = EXCLUDED.lastChanged";
+    private static final String UPDATE_TARGET =
+            "UPDATE TextFlowTarget SET content = ?, rawContent = ?, lastChanged = ? " +
+                    "WHERE textFlowId = ? AND localeId = ? AND backendId = ?";
+
+    @Inject
+    private EntityManager entityManager;
+
+    @SuppressWarnings("unused")
+    public TextFlowBulkWriter() {
+    }
+
+    @VisibleForTesting
+    public TextFlowBulkWriter(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    /**
+     * Insert text flows which don't exist yet, link them to the document, then
+     * insert or update the given targets (matched on text flow, locale and
+     * backend).
+     *
+     * @param document
+     *            document to link the text flows to
+     * @param locale
+     *            locale of all the text flows
+     * @param textFlows
+     *            text flows to link to the document. Text flows which don't
+     *            exist yet (same content hash and locale) are inserted, and
+     *            existing links are skipped.
+     * @param targets
+     *            targets to insert or update. Their text flows must exist, or
+     *            be in textFlows.
+     */
+    public void write(Document document, Locale locale,
+            Collection<TextFlow> textFlows,
+            Collection<TextFlowTarget> targets) {
+        if (textFlows.isEmpty() && targets.isEmpty()) {
+            return;
+        }
+        // make sure pending changes (eg a new document) are visible to JDBC
+        entityManager.flush();
+        Session session = entityManager.unwrap(Session.class);
+        boolean supportsOnConflict = supportsOnConflict();
+        session.doWork(connection -> {
+            Timestamp now = new Timestamp(System.currentTimeMillis());
+            insertTextFlows(connection, supportsOnConflict, locale,
+                    textFlows, now);
+            Set<ContentHash> hashes = new HashSet<>(
+                    Collections2.transform(textFlows, TextFlow::getContentHash));
+            hashes.addAll(Collections2.transform(targets,
+                    tft -> tft.getTextFlow().getContentHash()));
+            Map<ContentHash, Long> textFlowIds =
+                    findTextFlowIds(connection, locale, hashes);
+            insertLinks(connection, supportsOnConflict, document,
+                    textFlows.stream()
+                            .map(tf -> textFlowIds.get(tf.getContentHash()))
+                            .collect(Collectors.toSet()));
+            if (!targets.isEmpty()) {
+                upsertTargets(connection, supportsOnConflict, textFlowIds,
+                        targets, now);
+            }
+        });
+    }
+
+    /**
+     * Link the document to the existing text flows with the given content
+     * hashes, eg for translations served from a cache. Content hashes without
+     * a text flow are skipped, and no text flow or target is written.
+     *
+     * @param document
+     *            document to link the text flows to
+     * @param locale
+     *            locale of all the text flows
+     * @param contentHashes
+     *            content hashes of the text flows. Existing links are
+     *            skipped.
+     */
+    public void link(Document document, Locale locale,
+            Collection<ContentHash> contentHashes) {
+        if (contentHashes.isEmpty()) {
+            return;
+        }
+        entityManager.flush();
+        Session session = entityManager.unwrap(Session.class);
+        boolean supportsOnConflict = supportsOnConflict();
+        session.doWork(connection -> insertLinks(connection,
+                supportsOnConflict, document, new HashSet<>(
+                        findTextFlowIds(connection, locale, contentHashes)
+                                .values())));
+    }
+
+    private boolean supportsOnConflict() {
+        Session session = entityManager.unwrap(Session.class);
+        return ((SessionFactoryImplementor) session.getSessionFactory())
+                .getJdbcServices()
+                .getDialect() instanceof PostgreSQL95Dialect;
+    }
+
+    private void insertTextFlows(Connection connection,
+            boolean supportsOnConflict, Locale locale,
+            Collection<TextFlow> textFlows, Timestamp now)
+            throws SQLException {
+        Map<ContentHash, TextFlow> byHash = new HashMap<>();
+        // text flows loaded from the database exist already
+        textFlows.stream().filter(tf -> tf.getId() == null)
+                .forEach(tf -> byHash.putIfAbsent(tf.getContentHash(), tf));
+        if (!supportsOnConflict) {
+            byHash.keySet().removeAll(findTextFlowIds(connection, locale,
+                    byHash.keySet()).keySet());
+        }
+        if (byHash.isEmpty()) {
+            return;
+        }
+        String sql = supportsOnConflict ?
+                INSERT_TEXT_FLOW + ON_CONFLICT_TEXT_FLOW : INSERT_TEXT_FLOW;
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (TextFlow tf : byHash.values()) {
+                statement.setBytes(1, tf.getContentHash().toBytes());
+                statement.setLong(2, locale.getId());
+                statement.setString(3, tf.getContent());
+                if (tf.getWordCount() == null) {
+                    statement.setNull(4, Types.BIGINT);
+                } else {
+                    statement.setLong(4, tf.getWordCount());
+                }
+                statement.setLong(5, tf.getCharCount());
+                statement.setTimestamp(6, now);
+                statement.setTimestamp(7, now);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+    }
+
+    private Map<ContentHash, Long> findTextFlowIds(Connection connection,
+            Locale locale, Collection<ContentHash> contentHashes)
+            throws SQLException {
+        Set<ContentHash> hashes = new HashSet<>(contentHashes);
+        Map<ContentHash, Long> ids = new HashMap<>();
+        for (List<ContentHash> chunk : Iterables.partition(hashes,
+                MAX_HASHES_PER_QUERY)) {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    String.format(SELECT_TEXT_FLOW_IDS,
+                            placeholders(chunk.size())))) {
+                statement.setLong(1, locale.getId());
+                for (int i = 0; i < chunk.size(); i++) {
+                    statement.setBytes(i + 2, chunk.get(i).toBytes());
+                }
+                try (ResultSet rs = statement.executeQuery()) {
+                    while (rs.next()) {
+                        ids.put(ContentHash.fromBytes(rs.getBytes(2)), rs.getLong(1));
+                    }
+                }
+            }
+        }
+        return ids;
+    }
+
+    private void insertLinks(Connection connection,
+            boolean supportsOnConflict, Document document,
+            Set<Long> textFlowIds) throws SQLException {
+        Set<Long> toLink = new HashSet<>(textFlowIds);
+        if (toLink.contains(null)) {
+            throw new IllegalStateException(
+                    "missing text flow for document " + document);
+        }
+        if (!supportsOnConflict) {
+            toLink.removeAll(
+                    findLinkedTextFlowIds(connection, document, toLink));
+        }
+        if (toLink.isEmpty()) {
+            return;
+        }
+        String sql = supportsOnConflict ?
+                INSERT_LINK + ON_CONFLICT_LINK : INSERT_LINK;
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (Long textFlowId : toLink) {
+                statement.setLong(1, document.getId());
+                statement.setLong(2, textFlowId);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+    }
+
+    private Set<Long> findLinkedTextFlowIds(Connection connection,
+            Document document, Collection<Long> textFlowIds)
+            throws SQLException {
+        Set<Long> linked = new HashSet<>();
+        for (List<Long> chunk : Iterables.partition(textFlowIds,
+                MAX_HASHES_PER_QUERY)) {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    String.format(SELECT_LINKED_TEXT_FLOW_IDS,
+                            placeholders(chunk.size())))) {
+                statement.setLong(1, document.getId());
+                for (int i = 0; i < chunk.size(); i++) {
+                    statement.setLong(i + 2, chunk.get(i));
+                }
+                try (ResultSet rs = statement.executeQuery()) {
+                    while (rs.next()) {
+                        linked.add(rs.getLong(1));
+                    }
+                }
+            }
+        }
+        return linked;
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    private void upsertTargets(Connection connection,
+            boolean supportsOnConflict, Map<ContentHash, Long> textFlowIds,
+            Collection<TextFlowTarget> targets, Timestamp now)
+            throws SQLException {
+        List<TextFlowTarget> toInsert = new ArrayList<>(targets);
+        if (!supportsOnConflict) {
+            toInsert = updateTargets(connection, textFlowIds, targets, now);
+        }
+        if (toInsert.isEmpty()) {
+            return;
+        }
+        String sql = supportsOnConflict ?
+                INSERT_TARGET + ON_CONFLICT_TARGET : INSERT_TARGET;
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (TextFlowTarget tft : toInsert) {
+                statement.setLong(1, getTextFlowId(textFlowIds, tft));
+                statement.setLong(2, tft.getLocale().getId());
+                statement.setString(3, tft.getContent());
+                statement.setString(4, tft.getRawContent());
+                statement.setString(5, tft.getBackendId().name());
+                statement.setTimestamp(6, now);
+                statement.setTimestamp(7, now);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+    }
+
+    /**
+     * @return targets which did not exist and still need to be inserted
+     */
+    private List<TextFlowTarget> updateTargets(Connection connection,
+            Map<ContentHash, Long> textFlowIds,
+            Collection<TextFlowTarget> targets, Timestamp now)
+            throws SQLException {
+        List<TextFlowTarget> batch = new ArrayList<>(targets);
+        int[] updateCounts;
+        try (PreparedStatement statement = connection
+                .prepareStatement(UPDATE_TARGET)) {
+            for (TextFlowTarget tft : batch) {
+                statement.setString(1, tft.getContent());
+                statement.setString(2, tft.getRawContent());
+                statement.setTimestamp(3, now);
+                statement.setLong(4, getTextFlowId(textFlowIds, tft));
+                statement.setLong(5, tft.getLocale().getId());
+                statement.setString(6, tft.getBackendId().name());
+                statement.addBatch();
+            }
+            updateCounts = statement.executeBatch();
+        }
+        List<TextFlowTarget> notUpdated = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            if (updateCounts[i] == 0) {
+                notUpdated.add(batch.get(i));
+            }
+        }
+        return notUpdated;
+    }
+
+    private static long getTextFlowId(Map<ContentHash, Long> textFlowIds,
+            TextFlowTarget tft) {
+        Long id = textFlowIds.get(tft.getTextFlow().getContentHash());
+        if (id == null) {
+            throw new IllegalStateException(
+                    "missing text flow for target " + tft);
+        }
+        return id;
+    }
+}
@@ -1,14 +1,25 @@
 package org.zanata.magpie.dao;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import javax.enterprise.context.RequestScoped;
 import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
 
+import org.hibernate.LockOptions;
 import org.zanata.magpie.api.dto.LocaleCode;
+import org.zanata.magpie.model.ContentHash;
+import org.zanata.magpie.model.Locale;
 import org.zanata.magpie.model.TextFlow;
+import org.zanata.magpie.util.CountUtil;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
 
 /**
  * @author Alex Eng <a href="mailto:aeng@redhat.com">aeng@redhat.com</a>
@@ -16,6 +27,10 @@ import com.google.common.annotations.VisibleForTesting;
 @RequestScoped
 public class TextFlowDAO extends AbstractDAO<TextFlow> {
     private static final long serialVersionUID = -4593105065135284822L;
+    // keep the IN list well below the bind parameter limit of the database
+    private static final int MAX_HASHES_PER_QUERY = 500;
+    private static final String LOCK_TIMEOUT_HINT =
+            "javax.persistence.lock.timeout";
 
     @SuppressWarnings("unused")
     public TextFlowDAO() {
@@ -26,17 +41,130 @@ public class TextFlowDAO extends AbstractDAO<TextFlow> {
         setEntityManager(entityManager);
     }
 
-    @SuppressWarnings("unchecked")
-    public Optional<TextFlow> getLatestByContentHash(LocaleCode localeCode,
-            String contentHash) {
+    public Optional<TextFlow> getByContentHash(LocaleCode localeCode,
+            ContentHash contentHash) {
+        return Optional.ofNullable(
+                getByContentHashes(localeCode, ImmutableList.of(contentHash))
+                        .get(contentHash));
+    }
+
+    /**
+     * Set-based variant of {@link #getByContentHash(LocaleCode, ContentHash)}.
+     * Finds the text flow for each of the given content hashes, with targets
+     * fetched in the same query.
+     *
+     * @param localeCode
+     *            source locale of the text flows
+     * @param contentHashes
+     *            content hashes to look up
+     * @return map of content hash to matching text flow. Hashes without a
+     *         match are absent from the map.
+     */
+    public Map<ContentHash, TextFlow> getByContentHashes(
+            LocaleCode localeCode, Collection<ContentHash> contentHashes) {
+        Map<ContentHash, TextFlow> result = new HashMap<>();
+        if (contentHashes.isEmpty()) {
+            return result;
+        }
         String query =
-                "FROM TextFlow WHERE contentHash =:contentHash AND locale.localeCode =:localeCode ORDER BY lastChanged DESC";
-        List<TextFlow> tfs = getEntityManager()
-                .createQuery(query)
-                .setParameter("contentHash", contentHash)
-                .setParameter("localeCode", localeCode)
+                "SELECT DISTINCT tf FROM TextFlow tf LEFT JOIN FETCH tf.targets " +
+                        "WHERE tf.contentHash IN (:contentHashes) AND tf.locale.localeCode =:localeCode";
+        for (List<ContentHash> hashes : Iterables
+                .partition(contentHashes, MAX_HASHES_PER_QUERY)) {
+            getEntityManager()
+                    .createQuery(query, TextFlow.class)
+                    .setParameter("contentHashes", hashes)
+                    .setParameter("localeCode", localeCode)
+                    .getResultList()
+                    .forEach(tf -> result.put(tf.getContentHash(), tf));
+        }
+        return result;
+    }
+
+    /**
+     * Claim a batch of text flows which words are not counted yet. The rows
+     * stay locked until the transaction ends, and rows already locked by
+     * another transaction are skipped (FOR UPDATE SKIP LOCKED), so concurrent
+     * callers don't count the same text flows.
+     *
+     * @param maxResults
+     *            maximum number of text flows to return
+     * @return text flows which words are not counted yet, oldest first
+     */
+    public List<TextFlow> getWordCountPending(int maxResults) {
+        return getEntityManager()
+                .createQuery("from TextFlow where wordCount is null order by id",
+                        TextFlow.class)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .setHint(LOCK_TIMEOUT_HINT, LockOptions.SKIP_LOCKED)
+                .setMaxResults(maxResults)
                 .getResultList();
-        return (tfs == null || tfs.isEmpty()) ? Optional.empty() :
-                Optional.of(tfs.get(0));
+    }
+
+    /**
+     * Same as {@link #getWordCountPending(int)}, for the text flows with the
+     * given content hashes only.
+     *
+     * @param locale
+     *            source locale of the text flows, compared by id so that its
+     *            row is not locked as well
+     * @param contentHashes
+     *            content hashes of the text flows
+     * @return text flows which words are not counted yet
+     */
+    public List<TextFlow> getWordCountPending(Locale locale,
+            Collection<ContentHash> contentHashes) {
+        List<TextFlow> result = new ArrayList<>();
+        for (List<ContentHash> hashes : Iterables
+                .partition(contentHashes, MAX_HASHES_PER_QUERY)) {
+            result.addAll(getEntityManager()
+                    .createQuery("from TextFlow where wordCount is null " +
+                                    "and locale = :locale " +
+                                    "and contentHash in (:contentHashes)",
+                            TextFlow.class)
+                    .setParameter("locale", locale)
+                    .setParameter("contentHashes", hashes)
+                    .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                    .setHint(LOCK_TIMEOUT_HINT, LockOptions.SKIP_LOCKED)
+                    .getResultList());
+        }
+        return result;
+    }
+
+    /**
+     * Find the word count of the text flows with the given content hashes,
+     * without loading the entities or their targets, and without locking.
+     * Text flows which words are not counted yet are counted from their
+     * content, but the count is not stored: that is left to
+     * {@link #getWordCountPending}.
+     *
+     * @param locale
+     *            source locale of the text flows
+     * @param contentHashes
+     *            content hashes to look up
+     * @return map of content hash to word count. Hashes without a match are
+     *         absent from the map.
+     */
+    public Map<ContentHash, Long> getWordCounts(Locale locale,
+            Collection<ContentHash> contentHashes) {
+        Map<ContentHash, Long> result = new HashMap<>();
+        for (List<ContentHash> hashes : Iterables
+                .partition(contentHashes, MAX_HASHES_PER_QUERY)) {
+            List<Object[]> rows = getEntityManager()
+                    .createQuery("select contentHash, wordCount, content " +
+                                    "from TextFlow where locale = :locale " +
+                                    "and contentHash in (:contentHashes)",
+                            Object[].class)
+                    .setParameter("locale", locale)
+                    .setParameter("contentHashes", hashes)
+                    .getResultList();
+            for (Object[] row : rows) {
+                Long wordCount = (Long) row[1];
+                result.put((ContentHash) row[0], wordCount != null ?
+                        wordCount : CountUtil.countWords((String) row[2],
+                                locale.getLocaleCode().getId()));
+            }
+        }
+        return result;
     }
 }
@@ -1,6 +1,9 @@
 package org.zanata.magpie.dao;
 
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import javax.enterprise.context.RequestScoped;
@@ -12,6 +15,7 @@ import org.zanata.magpie.model.TextFlow;
 import org.zanata.magpie.model.TextFlowTarget;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Iterables;
 
 /**
  * @author Alex Eng <a href="mailto:aeng@redhat.com">aeng@redhat.com</a>
@@ -19,6 +23,7 @@ import com.google.common.annotations.VisibleForTesting;
 @RequestScoped
 public class TextFlowTargetDAO extends AbstractDAO<TextFlowTarget> {
     private static final long serialVersionUID = -318395870569312481L;
+    private static final int MAX_TEXT_FLOWS_PER_QUERY = 500;
 
     @SuppressWarnings("unused")
     public TextFlowTargetDAO() {
@@ -40,4 +45,32 @@ public class TextFlowTargetDAO extends AbstractDAO<TextFlowTarget> {
         return resultList.isEmpty() ? Optional.empty()
                 : Optional.of(resultList.get(0));
     }
+
+    /**
+     * Set-based variant of {@link #findTarget(TextFlow, Locale, BackendID)}.
+     *
+     * @return map of text flow to its target in the given locale from the
+     *         given backend. Text flows without such a target are absent from
+     *         the map.
+     */
+    public Map<TextFlow, TextFlowTarget> findTargets(
+            Collection<TextFlow> textFlows, Locale locale,
+            BackendID backendID) {
+        Map<TextFlow, TextFlowTarget> result = new HashMap<>();
+        if (textFlows.isEmpty()) {
+            return result;
+        }
+        for (List<TextFlow> tfs : Iterables
+                .partition(textFlows, MAX_TEXT_FLOWS_PER_QUERY)) {
+            getEntityManager()
+                    .createNamedQuery(
+                            TextFlowTarget.QUERY_FIND_BY_TEXTFLOWS_LOCALE_BACKEND,
+                            TextFlowTarget.class)
+                    .setParameter("textFlows", tfs)
+                    .setParameter("locale", locale)
+                    .setParameter("backendId", backendID).getResultList()
+                    .forEach(tft -> result.put(tft.getTextFlow(), tft));
+        }
+        return result;
+    }
 }
@@ -46,20 +46,18 @@ public class RequestedMTEvent implements Serializable {
     private final BackendID backendID;
     private final Date engineInvokeTime;
     private final Account triggeredBy;
-    private final long wordCount;
     private final long charCount;
 
     public RequestedMTEvent(
             @Nonnull Document document,
             List<String> textFlows,
             BackendID backendID, Date engineInvokeTime,
-            Account account, long wordCount, long charCount) {
+            Account account, long charCount) {
         this.document = document;
         this.textFlows = textFlows;
         this.backendID = backendID;
         this.engineInvokeTime = new Date(engineInvokeTime.getTime());
         triggeredBy = account;
-        this.wordCount = wordCount;
         this.charCount = charCount;
     }
 
@@ -83,10 +81,6 @@ public class RequestedMTEvent implements Serializable {
         return triggeredBy;
     }
 
-    public long getWordCount() {
-        return wordCount;
-    }
-
     public long getCharCount() {
         return charCount;
     }
@@ -100,7 +94,6 @@ public class RequestedMTEvent implements Serializable {
                 .add("backendID", backendID)
                 .add("engineInvokeTime", engineInvokeTime)
                 .add("triggeredBy", triggeredBy)
-                .add("wordCount", wordCount)
                 .add("charCount", charCount)
                 .toString();
     }
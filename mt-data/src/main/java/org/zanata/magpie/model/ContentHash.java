@@ -0,0 +1,96 @@
+package org.zanata.magpie.model;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+
+import javax.annotation.Nullable;
+
+import org.zanata.magpie.util.HashUtil;
+
+/**
+ * 128-bit hash of a string (eg text flow content or document url), see
+ * {@link HashUtil#hash(String)}. Stored as 16 bytes instead of 32 hex
+ * characters, which keeps the hash indexes and map keys small.
+ *
+ * {@link #toString()} returns the same lower case hex string as
+ * {@link HashUtil#generateHash(String)}.
+ */
+public final class ContentHash implements Serializable, Comparable<ContentHash> {
+    private static final long serialVersionUID = -1698563728291476613L;
+    public static final int BYTES = 16;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final long high;
+    private final long low;
+
+    public ContentHash(long high, long low) {
+        this.high = high;
+        this.low = low;
+    }
+
+    public static ContentHash fromBytes(byte[] bytes) {
+        if (bytes.length != BYTES) {
+            throw new IllegalArgumentException(
+                    "expected " + BYTES + " bytes but got " + bytes.length);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new ContentHash(buffer.getLong(), buffer.getLong());
+    }
+
+    public static ContentHash fromHex(String hex) {
+        if (hex.length() != BYTES * 2) {
+            throw new IllegalArgumentException("invalid hash: " + hex);
+        }
+        return new ContentHash(parseHexLong(hex, 0), parseHexLong(hex, 16));
+    }
+
+    private static long parseHexLong(String hex, int start) {
+        long value = 0;
+        for (int i = start; i < start + 16; i++) {
+            int digit = Character.digit(hex.charAt(i), 16);
+            if (digit < 0) {
+                throw new IllegalArgumentException("invalid hash: " + hex);
+            }
+            value = (value << 4) | digit;
+        }
+        return value;
+    }
+
+    public byte[] toBytes() {
+        return ByteBuffer.allocate(BYTES).putLong(high).putLong(low).array();
+    }
+
+    public String toHex() {
+        char[] chars = new char[BYTES * 2];
+        for (int i = 0; i < 16; i++) {
+            chars[i] = HEX_DIGITS[(int) (high >>> (60 - 4 * i)) & 0xf];
+            chars[i + 16] = HEX_DIGITS[(int) (low >>> (60 - 4 * i)) & 0xf];
+        }
+        return new String(chars);
+    }
+
+    @Override
+    public int compareTo(ContentHash o) {
+        int result = Long.compareUnsigned(high, o.high);
+        return result != 0 ? result : Long.compareUnsigned(low, o.low);
+    }
+
+    @Override
+    public boolean equals(@Nullable Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ContentHash that = (ContentHash) o;
+        return high == that.high && low == that.low;
+    }
+
+    @Override
+    public int hashCode() {
+        // the bits are already uniformly distributed
+        return (int) high;
+    }
+
+    @Override
+    public String toString() {
+        return toHex();
+    }
+}
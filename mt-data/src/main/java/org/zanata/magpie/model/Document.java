@@ -1,20 +1,23 @@
 package org.zanata.magpie.model;
 
 import org.hibernate.annotations.NaturalId;
-import org.hibernate.validator.constraints.NotEmpty;
+import org.hibernate.annotations.Type;
+import org.hibernate.annotations.TypeDef;
 import org.hibernate.validator.constraints.URL;
+import org.zanata.magpie.model.type.ContentHashType;
 import org.zanata.magpie.util.HashUtil;
 
 import javax.annotation.Nullable;
 import javax.persistence.Access;
 import javax.persistence.AccessType;
+import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.JoinColumn;
+import javax.persistence.JoinTable;
+import javax.persistence.ManyToMany;
 import javax.persistence.ManyToOne;
 import javax.persistence.MapKey;
-import javax.persistence.OneToMany;
 import javax.validation.constraints.NotNull;
-import javax.validation.constraints.Size;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -23,6 +26,7 @@ import java.util.Map;
  */
 @Entity
 @Access(AccessType.FIELD)
+@TypeDef(name = "contentHash", typeClass = ContentHashType.class)
 public class Document extends ModelEntity {
 
     private static final long serialVersionUID = -3394088546058798299L;
@@ -45,15 +49,19 @@ public class Document extends ModelEntity {
 
     private int count;
 
-    @NotEmpty
-    @Size(max = 255)
+    @NotNull
     @NaturalId
-    private String urlHash;
-
-    @OneToMany
-    @JoinColumn(name = "documentId", insertable = false, updatable = false)
+    @Type(type = "contentHash")
+    @Column(length = ContentHash.BYTES)
+    private ContentHash urlHash;
+
+    // text flows are shared by all the documents containing the same string
+    @ManyToMany
+    @JoinTable(name = "Document_TextFlow",
+            joinColumns = @JoinColumn(name = "documentId"),
+            inverseJoinColumns = @JoinColumn(name = "textFlowId"))
     @MapKey(name = "contentHash")
-    private Map<String, TextFlow> textFlows;
+    private Map<ContentHash, TextFlow> textFlows;
 
     public Document() {
     }
@@ -66,13 +74,13 @@ public class Document extends ModelEntity {
     }
 
     public Document(String url, Locale fromLocale, Locale toLocale,
-            Map<String, TextFlow> textFlows) {
+            Map<ContentHash, TextFlow> textFlows) {
         this(url, fromLocale, toLocale);
         this.textFlows = textFlows;
     }
 
     private void updateUrlHash() {
-        this.urlHash = HashUtil.generateHash(url);
+        this.urlHash = HashUtil.hash(url);
     }
 
     public String getUrl() {
@@ -91,11 +99,11 @@ public class Document extends ModelEntity {
         return count;
     }
 
-    public String getUrlHash() {
+    public ContentHash getUrlHash() {
         return urlHash;
     }
 
-    public Map<String, TextFlow> getTextFlows() {
+    public Map<ContentHash, TextFlow> getTextFlows() {
         if (textFlows == null) {
             textFlows = new HashMap<>();
         }
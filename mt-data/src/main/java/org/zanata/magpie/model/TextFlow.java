@@ -6,38 +6,43 @@ import javax.annotation.Nullable;
 import javax.persistence.Access;
 import javax.persistence.AccessType;
 import javax.persistence.CascadeType;
+import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.FetchType;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.OneToMany;
 import javax.validation.constraints.NotNull;
-import javax.validation.constraints.Size;
 
+import org.hibernate.annotations.Fetch;
+import org.hibernate.annotations.FetchMode;
 import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.Type;
+import org.hibernate.annotations.TypeDef;
 import org.hibernate.validator.constraints.NotEmpty;
 import org.zanata.magpie.api.dto.LocaleCode;
+import org.zanata.magpie.model.type.ContentHashType;
 import org.zanata.magpie.util.HashUtil;
 import org.zanata.magpie.util.CountUtil;
 
 /**
+ * A source string, stored once per content and locale. Documents containing
+ * the string refer to it through the Document_TextFlow link table, and share
+ * its targets.
+ *
  * @author Alex Eng <a href="mailto:aeng@redhat.com">aeng@redhat.com</a>
  */
 @Entity
 @Access(AccessType.FIELD)
+@TypeDef(name = "contentHash", typeClass = ContentHashType.class)
 public class TextFlow extends ModelEntity {
     private static final long serialVersionUID = -4550040877568062431L;
 
-    @NaturalId
-    @ManyToOne
-    @JoinColumn(name = "documentId", updatable = false, nullable = false)
     @NotNull
-    private Document document;
-
-    @NotEmpty
-    @Size(max = 255)
     @NaturalId
-    private String contentHash;
+    @Type(type = "contentHash")
+    @Column(length = ContentHash.BYTES)
+    private ContentHash contentHash;
 
     @NaturalId
     @ManyToOne(optional = false)
@@ -48,42 +53,57 @@ public class TextFlow extends ModelEntity {
     @NotEmpty
     private String content;
 
-    @NotNull
+    // null until counted, see countWords()
+    @Nullable
     private Long wordCount;
     @NotNull
     private Long charCount;
 
+    // SUBSELECT loads the targets of all text flows of a document in one
+    // query, instead of one query per text flow
     @OneToMany(cascade = CascadeType.ALL, mappedBy = "textFlow",
         fetch = FetchType.EAGER)
+    @Fetch(FetchMode.SUBSELECT)
     private List<TextFlowTarget> targets = new ArrayList<>();
 
     public TextFlow() {
     }
 
-    public TextFlow(Document document, String content, Locale locale) {
+    public TextFlow(String content, Locale locale) {
         this.content = content;
         this.locale = locale;
-        this.document = document;
-        updateContentHashAndWordAndCharCount();
+        updateContentHashAndCharCount();
     }
 
     public void setContent(String content) {
         this.content = content;
-        updateContentHashAndWordAndCharCount();
+        updateContentHashAndCharCount();
     }
 
-    private void updateContentHashAndWordAndCharCount() {
-        this.contentHash = HashUtil.generateHash(content);
-        String localeCode = LocaleCode.EN.getId();
-        if (locale != null) {
-            localeCode = locale.getLocaleCode().getId();
-        }
-        this.wordCount = CountUtil.countWords(content, localeCode);
+    // word count needs tokenization, which is left to countWords()
+    private void updateContentHashAndCharCount() {
+        this.contentHash = HashUtil.hash(content);
+        this.wordCount = null;
         this.charCount = CountUtil.countCharacters(content);
+    }
 
+    /**
+     * Count the words of the content if not counted yet.
+     *
+     * @return word count
+     */
+    public long countWords() {
+        if (wordCount == null) {
+            String localeCode = LocaleCode.EN.getId();
+            if (locale != null) {
+                localeCode = locale.getLocaleCode().getId();
+            }
+            wordCount = CountUtil.countWords(content, localeCode);
+        }
+        return wordCount;
     }
 
-    public String getContentHash() {
+    public ContentHash getContentHash() {
         return contentHash;
     }
 
@@ -99,11 +119,10 @@ public class TextFlow extends ModelEntity {
         return targets;
     }
 
-    public Document getDocument() {
-        return document;
-    }
-
-    public Long getWordCount() {
+    /**
+     * @return word count, or null if the words are not counted yet
+     */
+    public @Nullable Long getWordCount() {
         return wordCount;
     }
 
@@ -118,31 +137,23 @@ public class TextFlow extends ModelEntity {
 
         TextFlow textFlow = (TextFlow) o;
 
-        if (document != null ? !document.equals(textFlow.document) :
-                textFlow.document != null) return false;
         if (contentHash != null ? !contentHash.equals(textFlow.contentHash) :
                 textFlow.contentHash != null) return false;
-        if (locale != null ? !locale.equals(textFlow.locale) :
-                textFlow.locale != null) return false;
-        return wordCount != null ? wordCount.equals(textFlow.wordCount) :
-                textFlow.wordCount == null;
+        return locale != null ? locale.equals(textFlow.locale) :
+                textFlow.locale == null;
     }
 
     @Override
     public int hashCode() {
-        int result = document != null ? document.hashCode() : 0;
-        result = 31 * result +
-                (contentHash != null ? contentHash.hashCode() : 0);
+        int result = contentHash != null ? contentHash.hashCode() : 0;
         result = 31 * result + (locale != null ? locale.hashCode() : 0);
-        result = 31 * result + (wordCount != null ? wordCount.hashCode() : 0);
         return result;
     }
 
     @Override
     public String toString() {
         return "TextFlow{" +
-                "document=" + document +
-                ", contentHash='" + contentHash + '\'' +
+                "contentHash='" + contentHash + '\'' +
                 ", locale=" + locale +
                 ", content='" + content + '\'' +
                 ", wordCount=" + wordCount +
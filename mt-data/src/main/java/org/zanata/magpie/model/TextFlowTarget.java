@@ -23,11 +23,14 @@ import org.hibernate.validator.constraints.NotEmpty;
 @Access(AccessType.FIELD)
 @NamedQueries({
         @NamedQuery(name = TextFlowTarget.QUERY_FIND_BY_LOCALE_BACKEND,
-                query = "from TextFlowTarget where textFlow = :textFlow and locale = :locale and backendId = :backendId")
+                query = "from TextFlowTarget where textFlow = :textFlow and locale = :locale and backendId = :backendId"),
+        @NamedQuery(name = TextFlowTarget.QUERY_FIND_BY_TEXTFLOWS_LOCALE_BACKEND,
+                query = "from TextFlowTarget where textFlow in (:textFlows) and locale = :locale and backendId = :backendId")
 })
 public class TextFlowTarget extends ModelEntity {
     private static final long serialVersionUID = -64231181018123191L;
     public static final String QUERY_FIND_BY_LOCALE_BACKEND = "findByLocaleAndBackEnd";
+    public static final String QUERY_FIND_BY_TEXTFLOWS_LOCALE_BACKEND = "findByTextFlowsLocaleAndBackEnd";
 
     @NaturalId
     @ManyToOne(optional = false)
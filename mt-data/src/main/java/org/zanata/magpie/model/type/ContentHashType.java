@@ -0,0 +1,24 @@
+package org.zanata.magpie.model.type;
+
+import org.hibernate.type.AbstractSingleColumnStandardBasicType;
+import org.hibernate.type.descriptor.sql.VarbinaryTypeDescriptor;
+import org.zanata.magpie.model.ContentHash;
+
+/**
+ * Maps {@link ContentHash} to a binary column (bytea in PostgreSQL).
+ */
+public class ContentHashType
+        extends AbstractSingleColumnStandardBasicType<ContentHash> {
+
+    private static final long serialVersionUID = -2471650372528741237L;
+
+    public ContentHashType() {
+        super(VarbinaryTypeDescriptor.INSTANCE,
+                ContentHashTypeDescriptor.INSTANCE);
+    }
+
+    @Override
+    public String getName() {
+        return "contentHash";
+    }
+}
@@ -0,0 +1,62 @@
+package org.zanata.magpie.model.type;
+
+import javax.annotation.Nullable;
+
+import org.hibernate.type.descriptor.WrapperOptions;
+import org.hibernate.type.descriptor.java.AbstractTypeDescriptor;
+import org.zanata.magpie.model.ContentHash;
+
+public class ContentHashTypeDescriptor
+        extends AbstractTypeDescriptor<ContentHash> {
+    private static final long serialVersionUID = 1L;
+    public static final ContentHashTypeDescriptor INSTANCE =
+            new ContentHashTypeDescriptor();
+
+    protected ContentHashTypeDescriptor() {
+        super(ContentHash.class);
+    }
+
+    @Override
+    public @Nullable ContentHash fromString(String string) {
+        if (string == null) {
+            return null;
+        } else {
+            return ContentHash.fromHex(string);
+        }
+    }
+
+    @Override
+    public String toString(ContentHash value) {
+        return value.toHex();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public @Nullable <X> X unwrap(ContentHash value, Class<X> type,
+            WrapperOptions options) {
+        if (value == null) {
+            return null;
+        }
+        if (byte[].class.isAssignableFrom(type)) {
+            return (X) value.toBytes();
+        }
+        if (String.class.isAssignableFrom(type)) {
+            return (X) value.toHex();
+        }
+        throw unknownUnwrap(type);
+    }
+
+    @Override
+    public @Nullable <X> ContentHash wrap(X value, WrapperOptions options) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof byte[]) {
+            return ContentHash.fromBytes((byte[]) value);
+        }
+        if (value instanceof String) {
+            return ContentHash.fromHex((String) value);
+        }
+        throw unknownWrap(value.getClass());
+    }
+}
@@ -32,8 +32,16 @@ import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import net.sf.okapi.common.Event;
+import net.sf.okapi.common.EventType;
+import net.sf.okapi.common.LocaleFilter;
 import net.sf.okapi.common.LocaleId;
-import net.sf.okapi.steps.tokenization.Tokenizer;
+import net.sf.okapi.common.resource.ITextUnit;
+import net.sf.okapi.common.resource.StartDocument;
+import net.sf.okapi.common.resource.TextUnitUtil;
+import net.sf.okapi.steps.tokenization.Parameters;
+import net.sf.okapi.steps.tokenization.TokenizationStep;
+import net.sf.okapi.steps.tokenization.common.TokensAnnotation;
 import net.sf.okapi.steps.tokenization.tokens.Tokens;
 
 public class CountUtil {
@@ -82,12 +90,42 @@ public class CountUtil {
         return locale;
     }
 
-    private static class StringTokenizer extends Tokenizer {
+    /**
+     * Same as Tokenizer.tokenizeString, but with a TokenizationStep per thread.
+     * Tokenizer shares a single static step, so all the callers are
+     * serialized on the Tokenizer class lock.
+     */
+    private static class StringTokenizer {
+        private static final ThreadLocal<TokenizationStep> STEP =
+                ThreadLocal.withInitial(TokenizationStep::new);
+
         public static Tokens tokenizeString(String text, LocaleId language,
                 String... tokenNames) {
-            synchronized (Tokenizer.class) {
-                return Tokenizer.tokenizeString(text, language, tokenNames);
+            TokenizationStep step = STEP.get();
+            Parameters params = (Parameters) step.getParameters();
+            params.reset();
+            params.tokenizeSource = true;
+            params.tokenizeTargets = false;
+            params.setLocaleFilter(LocaleFilter.anyOf(language));
+            params.setTokenNames(tokenNames);
+
+            step.handleEvent(new Event(EventType.START_BATCH));
+            StartDocument startDocument = new StartDocument("tokenization");
+            startDocument.setLocale(language);
+            startDocument.setMultilingual(false);
+            step.handleEvent(
+                    new Event(EventType.START_DOCUMENT, startDocument));
+            ITextUnit textUnit = TextUnitUtil.buildTU(text);
+            step.handleEvent(new Event(EventType.TEXT_UNIT, textUnit));
+
+            Tokens tokens = new Tokens();
+            TokensAnnotation annotation = TextUnitUtil
+                    .getSourceAnnotation(textUnit, TokensAnnotation.class);
+            if (annotation != null) {
+                tokens.addAll(annotation.getTokens());
             }
+            step.handleEvent(new Event(EventType.END_BATCH));
+            return tokens;
         }
     }
 
@@ -1,29 +1,87 @@
 package org.zanata.magpie.util;
 
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
 import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
-import org.apache.commons.codec.CharEncoding;
-import org.apache.commons.codec.binary.Hex;
+import org.zanata.magpie.model.ContentHash;
 
 /**
  * @author Alex Eng <a href="mailto:aeng@redhat.com">aeng@redhat.com</a>
  */
 public final class HashUtil {
+    // MessageDigest and CharsetEncoder are not thread safe, but are expensive
+    // to create for every string
+    private static final ThreadLocal<Hasher> HASHER =
+            ThreadLocal.withInitial(Hasher::new);
+
     @SuppressWarnings("unused")
     private HashUtil() {
     }
 
-    public static String generateHash(String hashContent)
-        throws RuntimeException {
-        try {
-            MessageDigest exc = MessageDigest.getInstance("MD5");
-            exc.reset();
-            return new String(
-                Hex.encodeHex(
-                    exc.digest(
-                        hashContent.getBytes(CharEncoding.UTF_8))));
-        } catch (Exception e) {
-            throw new RuntimeException(e);
+    /**
+     * @return hex encoded MD5 hash of the UTF-8 bytes of hashContent
+     */
+    public static String generateHash(String hashContent) {
+        return hash(hashContent).toHex();
+    }
+
+    /**
+     * @return MD5 hash of the UTF-8 bytes of hashContent
+     */
+    public static ContentHash hash(String hashContent) {
+        return HASHER.get().hash(hashContent);
+    }
+
+    private static final class Hasher {
+        private final MessageDigest digest;
+        // same replacement of malformed input as String.getBytes
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8
+                .newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private final ByteBuffer buffer = ByteBuffer.allocate(8192);
+        private final byte[] result = new byte[ContentHash.BYTES];
+
+        private Hasher() {
+            try {
+                digest = MessageDigest.getInstance("MD5");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private ContentHash hash(String content) {
+            digest.reset();
+            encoder.reset();
+            CharBuffer chars = CharBuffer.wrap(content);
+            CoderResult coderResult;
+            do {
+                coderResult = encoder.encode(chars, buffer, true);
+                update();
+            } while (coderResult.isOverflow());
+            while (encoder.flush(buffer).isOverflow()) {
+                update();
+            }
+            update();
+            try {
+                digest.digest(result, 0, result.length);
+            } catch (DigestException e) {
+                throw new IllegalStateException(e);
+            }
+            return ContentHash.fromBytes(result);
+        }
+
+        private void update() {
+            buffer.flip();
+            digest.update(buffer);
+            buffer.clear();
         }
     }
 }
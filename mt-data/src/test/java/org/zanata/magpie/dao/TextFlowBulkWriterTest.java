@@ -0,0 +1,148 @@
+package org.zanata.magpie.dao;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.zanata.magpie.JPATest;
+import org.zanata.magpie.api.dto.LocaleCode;
+import org.zanata.magpie.model.BackendID;
+import org.zanata.magpie.model.Document;
+import org.zanata.magpie.model.Locale;
+import org.zanata.magpie.model.TextFlow;
+import org.zanata.magpie.model.TextFlowTarget;
+import org.zanata.magpie.util.HashUtil;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import com.google.common.collect.ImmutableList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TextFlowBulkWriterTest extends JPATest {
+    private TextFlowBulkWriter writer;
+    private Locale fromLocale;
+    private Locale toLocale;
+    private Document doc;
+    private TextFlow existing;
+
+    @Before
+    public void setup() {
+        writer = new TextFlowBulkWriter(getEm());
+    }
+
+    @Test
+    public void testEmptyConstructor() {
+        TextFlowBulkWriter writer = new TextFlowBulkWriter();
+    }
+
+    @Test
+    public void testInsertTextFlowsAndTargets() {
+        TextFlow tf1 = new TextFlow("first", fromLocale);
+        TextFlow tf2 = new TextFlow("second", fromLocale);
+        writer.write(doc, fromLocale, ImmutableList.of(tf1, tf2),
+                ImmutableList.of(
+                        new TextFlowTarget("erste", "erste", tf1, toLocale,
+                                BackendID.MS),
+                        new TextFlowTarget("zweite", "zweite", tf2, toLocale,
+                                BackendID.MS)));
+
+        assertThat(getAllTextFlows()).extracting(TextFlow::getContent)
+                .containsOnly("content", "first", "second");
+        assertThat(getAllTargets()).extracting(TextFlowTarget::getContent)
+                .containsOnly("Inhalt", "erste", "zweite");
+        assertThat(getLinkedContents(doc))
+                .containsOnly("content", "first", "second");
+    }
+
+    @Test
+    public void testSkipExistingTextFlowAndUpdateTarget() {
+        TextFlow copy = new TextFlow(existing.getContent(), fromLocale);
+        writer.write(doc, fromLocale, ImmutableList.of(copy),
+                ImmutableList.of(new TextFlowTarget("neuer Inhalt", "raw",
+                        copy, toLocale, BackendID.MS)));
+
+        assertThat(getAllTextFlows()).hasSize(1);
+        List<TextFlowTarget> targets = getAllTargets();
+        assertThat(targets).hasSize(1);
+        getEm().refresh(targets.get(0));
+        assertThat(targets.get(0).getContent()).isEqualTo("neuer Inhalt");
+        assertThat(targets.get(0).getRawContent()).isEqualTo("raw");
+    }
+
+    @Test
+    public void testLinkExistingTextFlowToOtherDocument() {
+        Document otherDoc =
+                new Document("http://localhost/other", fromLocale, toLocale);
+        getEm().persist(otherDoc);
+        writer.write(otherDoc, fromLocale, ImmutableList.of(existing),
+                ImmutableList.of());
+        // linking twice is fine
+        writer.write(otherDoc, fromLocale, ImmutableList.of(existing),
+                ImmutableList.of());
+
+        assertThat(getAllTextFlows()).hasSize(1);
+        assertThat(getLinkedContents(otherDoc)).containsExactly("content");
+        assertThat(getLinkedContents(doc)).containsExactly("content");
+    }
+
+    @Test
+    public void testLinkByContentHashOnly() {
+        Document otherDoc =
+                new Document("http://localhost/other", fromLocale, toLocale);
+        getEm().persist(otherDoc);
+        writer.link(otherDoc, fromLocale, ImmutableList.of(
+                existing.getContentHash(), HashUtil.hash("missing")));
+        // linking twice is fine
+        writer.link(otherDoc, fromLocale,
+                ImmutableList.of(existing.getContentHash()));
+
+        assertThat(getAllTextFlows()).hasSize(1);
+        assertThat(getLinkedContents(otherDoc)).containsExactly("content");
+        List<TextFlowTarget> targets = getAllTargets();
+        assertThat(targets).extracting(TextFlowTarget::getContent)
+                .containsExactly("Inhalt");
+    }
+
+    @Test
+    public void testInsertTargetForOtherBackend() {
+        writer.write(doc, fromLocale, ImmutableList.of(),
+                ImmutableList.of(new TextFlowTarget("Inhalt", "Inhalt",
+                        existing, toLocale, BackendID.GOOGLE)));
+
+        assertThat(getAllTargets()).extracting(TextFlowTarget::getBackendId)
+                .containsOnly(BackendID.MS, BackendID.GOOGLE);
+    }
+
+    private List<TextFlow> getAllTextFlows() {
+        return getEm().createQuery("from TextFlow", TextFlow.class)
+                .getResultList();
+    }
+
+    private List<String> getLinkedContents(Document document) {
+        getEm().clear();
+        return ImmutableList.copyOf(getEm().find(Document.class,
+                document.getId()).getTextFlows().values()).stream()
+                .map(TextFlow::getContent).collect(Collectors.toList());
+    }
+
+    private List<TextFlowTarget> getAllTargets() {
+        return getEm().createQuery("from TextFlowTarget", TextFlowTarget.class)
+                .getResultList();
+    }
+
+    @Override
+    protected void setupTestData() {
+        fromLocale = new Locale(LocaleCode.EN_US, "English US");
+        getEm().persist(fromLocale);
+        toLocale = new Locale(LocaleCode.DE, "German");
+        getEm().persist(toLocale);
+        doc = new Document("http://localhost", fromLocale, toLocale);
+        getEm().persist(doc);
+
+        existing = new TextFlow("content", fromLocale);
+        getEm().persist(existing);
+        doc.getTextFlows().put(existing.getContentHash(), existing);
+        getEm().persist(new TextFlowTarget("Inhalt", "Inhalt", existing,
+                toLocale, BackendID.MS));
+    }
+}
@@ -6,13 +6,18 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.zanata.magpie.JPATest;
 import org.zanata.magpie.api.dto.LocaleCode;
-import org.zanata.magpie.model.Document;
+import org.zanata.magpie.model.ContentHash;
 import org.zanata.magpie.model.Locale;
 import org.zanata.magpie.model.TextFlow;
+import org.zanata.magpie.util.HashUtil;
 
+import java.util.Map;
 import java.util.Optional;
 
+import com.google.common.collect.ImmutableList;
+
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
 
 /**
  * @author Alex Eng<a href="mailto:aeng@redhat.com">aeng@redhat.com</a>
@@ -21,7 +26,8 @@ import static org.assertj.core.api.Assertions.assertThat;
 public class TextFlowDAOTest extends JPATest {
 
     private TextFlowDAO dao;
-    private String hash;
+    private ContentHash hash;
+    private Locale fromLocale;
 
     @Before
     public void setup() {
@@ -36,28 +42,76 @@ public class TextFlowDAOTest extends JPATest {
     @Test
     public void testGetByHashNull() {
         Optional<TextFlow>
-                tf = dao.getLatestByContentHash(LocaleCode.EN_US, "hash");
+                tf = dao.getByContentHash(LocaleCode.EN_US,
+                        HashUtil.hash("missing"));
         assertThat(tf.isPresent()).isFalse();
     }
 
     @Test
     public void testGetByHash() {
-        Optional<TextFlow> tf = dao.getLatestByContentHash(LocaleCode.EN_US, hash);
+        Optional<TextFlow> tf = dao.getByContentHash(LocaleCode.EN_US, hash);
         assertThat(tf.isPresent()).isTrue();
         assertThat(tf.get().getContent()).isEqualTo("content");
         assertThat(tf.get().getContentHash()).isEqualTo(hash);
     }
 
+    @Test
+    public void testGetByHashesEmpty() {
+        assertThat(dao.getByContentHashes(LocaleCode.EN_US,
+                ImmutableList.of())).isEmpty();
+    }
+
+    @Test
+    public void testGetByHashes() {
+        Map<ContentHash, TextFlow> tfs = dao.getByContentHashes(
+                LocaleCode.EN_US,
+                ImmutableList.of(hash, HashUtil.hash("missing")));
+        assertThat(tfs).containsOnlyKeys(hash);
+        assertThat(tfs.get(hash).getContent()).isEqualTo("content");
+    }
+
+    @Test
+    public void testGetByHashesWrongLocale() {
+        assertThat(dao.getByContentHashes(LocaleCode.DE,
+                ImmutableList.of(hash))).isEmpty();
+    }
+
+    @Test
+    public void testGetWordCountPending() {
+        assertThat(dao.getWordCountPending(10)).extracting(TextFlow::getContent)
+                .containsExactly("content");
+        dao.getWordCountPending(10).forEach(TextFlow::countWords);
+        getEm().flush();
+        assertThat(dao.getWordCountPending(10)).isEmpty();
+    }
+
+    @Test
+    public void testGetWordCountPendingByHashes() {
+        assertThat(dao.getWordCountPending(fromLocale,
+                ImmutableList.of(hash, HashUtil.hash("missing"))))
+                .extracting(TextFlow::getContent).containsExactly("content");
+        dao.getWordCountPending(fromLocale, ImmutableList.of(hash))
+                .forEach(TextFlow::countWords);
+        getEm().flush();
+        assertThat(dao.getWordCountPending(fromLocale, ImmutableList.of(hash)))
+                .isEmpty();
+    }
+
+    @Test
+    public void testGetWordCountsDoesNotStoreCount() {
+        assertThat(dao.getWordCounts(fromLocale,
+                ImmutableList.of(hash, HashUtil.hash("missing"))))
+                .containsOnly(entry(hash, 1L));
+        assertThat(dao.getWordCountPending(10)).hasSize(1);
+    }
+
     @Override
     protected void setupTestData() {
-        Locale fromLocale = new Locale(LocaleCode.EN_US, "English US");
+        fromLocale = new Locale(LocaleCode.EN_US, "English US");
         getEm().persist(fromLocale);
         Locale toLocale = new Locale(LocaleCode.DE, "German");
         getEm().persist(toLocale);
-        Document doc = new Document("http://localhost", fromLocale, toLocale);
-        getEm().persist(doc);
-
-        TextFlow tf = new TextFlow(doc, "content", fromLocale);
+        TextFlow tf = new TextFlow("content", fromLocale);
         getEm().persist(tf);
         hash = tf.getContentHash();
     }
@@ -3,12 +3,26 @@ package org.zanata.magpie.dao;
 import org.junit.Before;
 import org.junit.Test;
 import org.zanata.magpie.JPATest;
+import org.zanata.magpie.api.dto.LocaleCode;
+import org.zanata.magpie.model.BackendID;
+import org.zanata.magpie.model.Locale;
+import org.zanata.magpie.model.TextFlow;
+import org.zanata.magpie.model.TextFlowTarget;
+
+import java.util.Map;
+
+import com.google.common.collect.ImmutableList;
+
+import static org.assertj.core.api.Assertions.assertThat;
 
 /**
  * @author Alex Eng<a href="mailto:aeng@redhat.com">aeng@redhat.com</a>
  */
 public class TextFlowTargetDAOTest extends JPATest {
     private TextFlowTargetDAO dao;
+    private Locale toLocale;
+    private TextFlow textFlow;
+    private TextFlow untranslated;
 
     @Before
     public void setup() {
@@ -20,7 +34,34 @@ public class TextFlowTargetDAOTest extends JPATest {
         TextFlowTargetDAO dao = new TextFlowTargetDAO();
     }
 
+    @Test
+    public void testFindTargetsEmpty() {
+        assertThat(dao.findTargets(ImmutableList.of(), toLocale, BackendID.MS))
+                .isEmpty();
+    }
+
+    @Test
+    public void testFindTargets() {
+        Map<TextFlow, TextFlowTarget> targets = dao.findTargets(
+                ImmutableList.of(textFlow, untranslated), toLocale,
+                BackendID.MS);
+        assertThat(targets).containsOnlyKeys(textFlow);
+        assertThat(targets.get(textFlow).getContent()).isEqualTo("Inhalt");
+        assertThat(dao.findTargets(ImmutableList.of(textFlow), toLocale,
+                BackendID.GOOGLE)).isEmpty();
+    }
+
     @Override
     protected void setupTestData() {
+        Locale fromLocale = new Locale(LocaleCode.EN_US, "English US");
+        getEm().persist(fromLocale);
+        toLocale = new Locale(LocaleCode.DE, "German");
+        getEm().persist(toLocale);
+        textFlow = new TextFlow("content", fromLocale);
+        getEm().persist(textFlow);
+        untranslated = new TextFlow("other content", fromLocale);
+        getEm().persist(untranslated);
+        getEm().persist(new TextFlowTarget("Inhalt", "Inhalt", textFlow,
+                toLocale, BackendID.MS));
     }
 }
@@ -0,0 +1,51 @@
+package org.zanata.magpie.model;
+
+import org.junit.Test;
+import org.zanata.magpie.util.HashUtil;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ContentHashTest {
+
+    @Test
+    public void testHexRoundTrip() {
+        String hex = "ae2b1fca515949e5d54fb22b8ed95575";
+        ContentHash hash = ContentHash.fromHex(hex);
+        assertThat(hash.toHex()).isEqualTo(hex);
+        assertThat(hash.toString()).isEqualTo(hex);
+        assertThat(ContentHash.fromHex(hex.toUpperCase())).isEqualTo(hash);
+    }
+
+    @Test
+    public void testBytesRoundTrip() {
+        ContentHash hash = HashUtil.hash("testing");
+        byte[] bytes = hash.toBytes();
+        assertThat(bytes).hasSize(ContentHash.BYTES);
+        assertThat(bytes[0]).isEqualTo((byte) 0xae);
+        assertThat(ContentHash.fromBytes(bytes)).isEqualTo(hash);
+    }
+
+    @Test
+    public void testInvalidInput() {
+        assertThatThrownBy(() -> ContentHash.fromHex("ae2b"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> ContentHash.fromHex(
+                "xe2b1fca515949e5d54fb22b8ed95575"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> ContentHash.fromBytes(new byte[4]))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void testEqualsAndCompareTo() {
+        ContentHash a = new ContentHash(1L, 2L);
+        assertThat(a).isEqualTo(new ContentHash(1L, 2L))
+                .isNotEqualTo(new ContentHash(2L, 1L));
+        assertThat(a.hashCode()).isEqualTo(new ContentHash(1L, 2L).hashCode());
+        // compared as unsigned, same order as the hex strings
+        assertThat(a.compareTo(new ContentHash(-1L, 0L))).isNegative();
+        assertThat(a.compareTo(new ContentHash(1L, 3L))).isNegative();
+        assertThat(a.compareTo(new ContentHash(1L, 2L))).isZero();
+    }
+}
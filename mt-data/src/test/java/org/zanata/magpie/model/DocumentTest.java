@@ -2,6 +2,7 @@ package org.zanata.magpie.model;
 
 import org.junit.Test;
 import org.zanata.magpie.api.dto.LocaleCode;
+import org.zanata.magpie.util.HashUtil;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -27,14 +28,14 @@ public class DocumentTest {
         assertThat(doc.getUrl()).isEqualTo("http://localhost");
         assertThat(doc.getFromLocale()).isEqualTo(srcLocale);
         assertThat(doc.getToLocale()).isEqualTo(targetLocale);
-        assertThat(doc.getUrlHash()).isNotEmpty();
+        assertThat(doc.getUrlHash()).isEqualTo(HashUtil.hash("http://localhost"));
     }
 
     @Test
     public void testConstructor2() {
         Locale srcLocale = new Locale(LocaleCode.EN, "English");
         Locale targetLocale = new Locale(LocaleCode.DE, "German");
-        Map<String, TextFlow> textFlows = new HashMap<>();
+        Map<ContentHash, TextFlow> textFlows = new HashMap<>();
         TextFlow tf = new TextFlow();
         tf.setContent("testing");
         textFlows.put(tf.getContentHash(), tf);
@@ -44,7 +45,7 @@ public class DocumentTest {
         assertThat(doc.getUrl()).isEqualTo("http://localhost");
         assertThat(doc.getFromLocale()).isEqualTo(srcLocale);
         assertThat(doc.getToLocale()).isEqualTo(targetLocale);
-        assertThat(doc.getUrlHash()).isNotEmpty();
+        assertThat(doc.getUrlHash()).isEqualTo(HashUtil.hash("http://localhost"));
         assertThat(doc.getTextFlows()).isEqualTo(textFlows);
     }
 
@@ -50,7 +50,7 @@ public class TextFlowTargetTest {
     public void testEqualsAndHashcode() {
         Locale fromLocale = new Locale(LocaleCode.EN_US, "English US");
         Locale toLocale = new Locale(LocaleCode.DE, "German");
-        TextFlow textFlow = new TextFlow(new Document(), "content", fromLocale);
+        TextFlow textFlow = new TextFlow("content", fromLocale);
 
         TextFlowTarget target1 =
                 new TextFlowTarget("content", "raw content", textFlow, toLocale,
@@ -64,7 +64,7 @@ public class TextFlowTargetTest {
         assertThat(target1.equals(target2)).isTrue();
 
         // diff text flow
-        TextFlow newTextFlow = new TextFlow(new Document(), "new content", fromLocale);
+        TextFlow newTextFlow = new TextFlow("new content", fromLocale);
         target2 =
                 new TextFlowTarget("content", "raw content", newTextFlow, toLocale,
                         BackendID.MS);
@@ -20,7 +20,7 @@ public class TextFlowTest {
     @Test
     public void testConstructor() {
         Locale fromLang = new Locale(LocaleCode.EN_US, "English US");
-        TextFlow tf = new TextFlow(new Document(), "content", fromLang);
+        TextFlow tf = new TextFlow("content", fromLang);
         assertThat(tf.getContent()).isEqualTo("content");
         assertThat(tf.getLocale()).isEqualTo(fromLang);
     }
@@ -28,8 +28,8 @@ public class TextFlowTest {
     @Test
     public void testContent() {
         Locale fromLocale = new Locale(LocaleCode.EN_US, "English US");
-        TextFlow tf = new TextFlow(new Document(), "old content", fromLocale);
-        String oldHash = tf.getContentHash();
+        TextFlow tf = new TextFlow("old content", fromLocale);
+        ContentHash oldHash = tf.getContentHash();
         tf.setContent("content");
         assertThat(tf.getContent()).isEqualTo("content");
         assertThat(tf.getContentHash()).isNotEqualTo(oldHash);
@@ -39,41 +39,33 @@ public class TextFlowTest {
     public void testWordCount() {
         Locale fromLocale = new Locale(LocaleCode.EN_US, "English US");
         TextFlow tf =
-                new TextFlow(new Document(), "longer old content", fromLocale);
-        Long oldCount = tf.getWordCount();
+                new TextFlow("longer old content", fromLocale);
+        // counted on demand only
+        assertThat(tf.getWordCount()).isNull();
+        assertThat(tf.countWords()).isEqualTo(3);
+        assertThat(tf.getWordCount()).isEqualTo(3);
         tf.setContent("content");
-        assertThat(tf.getWordCount()).isNotEqualTo(oldCount);
-    }
-
-    @Test
-    public void testDocuments() {
-        Locale fromLocale = new Locale(LocaleCode.EN_US, "English US");
-        Locale toLocale = new Locale(LocaleCode.DE, "German");
-
-        Document doc = new Document("http://localhost",
-                fromLocale, toLocale);
-
-        TextFlow tf = new TextFlow(doc, "old content", fromLocale);
-        assertThat(tf.getDocument()).isEqualTo(doc);
+        assertThat(tf.getWordCount()).isNull();
+        assertThat(tf.countWords()).isEqualTo(1);
     }
 
     @Test
     public void testEqualsAndHashcode() {
         Locale fromLocale = new Locale(LocaleCode.EN_US, "English US");
-        TextFlow tf1 = new TextFlow(new Document(),"content", fromLocale);
-        TextFlow tf2 = new TextFlow(new Document(),"content", fromLocale);
+        TextFlow tf1 = new TextFlow("content", fromLocale);
+        TextFlow tf2 = new TextFlow("content", fromLocale);
 
         assertThat(tf1.hashCode()).isEqualTo(tf2.hashCode());
         assertThat(tf1.equals(tf2)).isTrue();
 
         // diff locale
         Locale newfromLocale = new Locale(LocaleCode.EN, "English");
-        tf2 = new TextFlow(new Document(), "content", newfromLocale);
+        tf2 = new TextFlow("content", newfromLocale);
         assertThat(tf1.hashCode()).isNotEqualTo(tf2);
         assertThat(tf1.equals(tf2)).isFalse();
 
         // diff content
-        tf2 = new TextFlow(new Document(), "new content", fromLocale);
+        tf2 = new TextFlow("new content", fromLocale);
         assertThat(tf1.hashCode()).isNotEqualTo(tf2);
         assertThat(tf1.equals(tf2)).isFalse();
 
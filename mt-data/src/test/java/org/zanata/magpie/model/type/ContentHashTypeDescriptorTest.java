@@ -0,0 +1,61 @@
+package org.zanata.magpie.model.type;
+
+import org.hibernate.HibernateException;
+import org.junit.Test;
+import org.zanata.magpie.model.ContentHash;
+import org.zanata.magpie.util.HashUtil;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ContentHashTypeDescriptorTest {
+    private static final String HEX = "ae2b1fca515949e5d54fb22b8ed95575";
+    private final ContentHash hash = HashUtil.hash("testing");
+
+    @Test
+    public void testConstructor() {
+        ContentHashTypeDescriptor descriptor = new ContentHashTypeDescriptor();
+        assertThat(descriptor.getJavaTypeClass()).isEqualTo(ContentHash.class);
+    }
+
+    @Test
+    public void testFromString() {
+        ContentHashTypeDescriptor descriptor = new ContentHashTypeDescriptor();
+        assertThat(descriptor.fromString(null)).isNull();
+        assertThat(descriptor.fromString(HEX)).isEqualTo(hash);
+    }
+
+    @Test
+    public void testToString() {
+        ContentHashTypeDescriptor descriptor = new ContentHashTypeDescriptor();
+        assertThat(descriptor.toString(hash)).isEqualTo(HEX);
+    }
+
+    @Test
+    public void testUnwrap() {
+        ContentHashTypeDescriptor descriptor = new ContentHashTypeDescriptor();
+        assertThat(descriptor.unwrap(null, byte[].class, null)).isNull();
+
+        assertThat(descriptor.unwrap(hash, byte[].class, null))
+                .isEqualTo(hash.toBytes());
+        assertThat(descriptor.unwrap(hash, String.class, null))
+                .isEqualTo(HEX);
+
+        assertThatThrownBy(
+                () -> descriptor.unwrap(hash, Integer.class, null))
+                .isInstanceOf(HibernateException.class);
+    }
+
+    @Test
+    public void testWrap() {
+        ContentHashTypeDescriptor descriptor = new ContentHashTypeDescriptor();
+        assertThat(descriptor.wrap(null, null)).isNull();
+
+        assertThat(descriptor.wrap(hash.toBytes(), null)).isEqualTo(hash);
+        assertThat(descriptor.wrap(HEX, null)).isEqualTo(hash);
+
+        assertThatThrownBy(
+                () -> descriptor.wrap(1, null))
+                .isInstanceOf(HibernateException.class);
+    }
+}
@@ -1,8 +1,18 @@
 package org.zanata.magpie.util;
 
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
 import org.junit.Test;
 import org.zanata.magpie.api.dto.LocaleCode;
 
+import com.google.common.collect.ImmutableList;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 /**
@@ -40,4 +50,34 @@ public class CountUtilTest {
         assertThat(CountUtil.countCharacters(test1)).isEqualTo(21);
 
     }
+
+    @Test
+    public void countWordsConcurrently() throws Exception {
+        List<String> texts = ImmutableList.of("Long long long time ago",
+                "3 words sentence", "Ceci n'est pas une pipe",
+                "Das ist ein Satz mit sieben Wörtern");
+        List<String> locales = ImmutableList.of(LocaleCode.EN.getId(),
+                LocaleCode.EN.getId(), "fr", LocaleCode.DE.getId());
+        List<Long> expected = IntStream.range(0, texts.size())
+                .mapToObj(i -> CountUtil.countWords(texts.get(i),
+                        locales.get(i)))
+                .collect(Collectors.toList());
+        assertThat(expected).containsExactly(5L, 3L, 6L, 7L);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Callable<List<Long>>> tasks = IntStream.range(0, 16)
+                    .mapToObj(n -> (Callable<List<Long>>) () -> IntStream
+                            .range(0, texts.size())
+                            .mapToObj(i -> CountUtil.countWords(texts.get(i),
+                                    locales.get(i)))
+                            .collect(Collectors.toList()))
+                    .collect(Collectors.toList());
+            for (Future<List<Long>> result : executor.invokeAll(tasks)) {
+                assertThat(result.get()).isEqualTo(expected);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 }
@@ -1,7 +1,12 @@
 package org.zanata.magpie.util;
 
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.codec.digest.DigestUtils;
 import org.junit.Test;
 
+import com.google.common.base.Strings;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 /**
@@ -15,5 +20,18 @@ public class HashUtilTest {
 
         String hash = HashUtil.generateHash(test);
         assertThat(hash).isEqualTo(expectedHash);
+        assertThat(HashUtil.hash(test).toHex()).isEqualTo(expectedHash);
+    }
+
+    @Test
+    public void testHashIsSameAsMd5OfUtf8Bytes() {
+        // longer than the encoding buffer, with multi-byte characters
+        String longContent = Strings.repeat("日本語 text ", 2000);
+        // unpaired surrogate is replaced like String.getBytes does
+        String malformed = "abc\ud800def";
+        for (String content : new String[] { "", longContent, malformed }) {
+            assertThat(HashUtil.generateHash(content)).isEqualTo(DigestUtils
+                    .md5Hex(content.getBytes(StandardCharsets.UTF_8)));
+        }
     }
 }
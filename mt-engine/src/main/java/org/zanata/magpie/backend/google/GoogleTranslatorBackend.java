@@ -21,43 +21,77 @@
 package org.zanata.magpie.backend.google;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
+import javax.annotation.PreDestroy;
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 import javax.ws.rs.BadRequestException;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.zanata.magpie.annotation.Credentials;
+import org.zanata.magpie.annotation.EnvVariable;
 import org.zanata.magpie.api.dto.LocaleCode;
+import org.zanata.magpie.backend.BackendCapabilities;
 import org.zanata.magpie.backend.BackendLocaleCode;
 import org.zanata.magpie.backend.BackendLocaleCodeImpl;
+import org.zanata.magpie.exception.BackendOverloadedException;
 import org.zanata.magpie.exception.MTException;
+import org.zanata.magpie.exception.PartialTranslationException;
 import org.zanata.magpie.model.AugmentedTranslation;
 import org.zanata.magpie.model.BackendID;
 import org.zanata.magpie.model.StringType;
 import org.zanata.magpie.service.TranslatorBackend;
 import org.zanata.magpie.util.DTOUtil;
 
+import com.google.cloud.BaseServiceException;
 import com.google.cloud.translate.Translate;
 import com.google.cloud.translate.TranslateOptions;
 import com.google.cloud.translate.Translation;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+import static org.zanata.magpie.api.APIConstant.GOOGLE_PARALLELISM;
 
 /**
+ * Service for Google Cloud Translation API.
+ * {@link org.zanata.magpie.model.BackendID#GOOGLE}
+ *
+ * Requests with more than {@link #BATCH_SIZE} strings are split into
+ * sub-batches, which are sent concurrently on a thread pool of
+ * {@link org.zanata.magpie.api.APIConstant#GOOGLE_PARALLELISM} threads.
+ *
  * @author Alex Eng <a href="mailto:aeng@redhat.com">aeng@redhat.com</a>
  * @author Patrick Huang <a href="mailto:pahuang@redhat.com">pahuang@redhat.com</a>
  */
 @ApplicationScoped
 public class GoogleTranslatorBackend implements TranslatorBackend {
+    private static final Logger LOG =
+            LoggerFactory.getLogger(GoogleTranslatorBackend.class);
 
     // Max length per request for Google Cloud Translation API
     private final static int MAX_LENGTH = 5000;
     // Max number of "text segments" that can be sent in a request
     private final static int BATCH_SIZE = 100;
+    // Max size of the request body, recommended by Google
+    private final static int MAX_BYTES = 204800;
+    static final int DEFAULT_PARALLELISM = 4;
+    private static final String ERROR_MESSAGE =
+            "Unable to get translations from Google API";
 
     private Translate translate;
 
@@ -74,12 +108,14 @@ public class GoogleTranslatorBackend implements TranslatorBackend {
             );
     private DTOUtil dtoUtil;
     private GoogleCredential googleCredential;
+    private ExecutorService executor;
 
     @Inject
     public GoogleTranslatorBackend(DTOUtil dtoUtil,
-            @Credentials(BackendID.GOOGLE) GoogleCredential googleCredential) {
-        this.dtoUtil = dtoUtil;
-        this.googleCredential = googleCredential;
+            @Credentials(BackendID.GOOGLE) GoogleCredential googleCredential,
+            @EnvVariable(GOOGLE_PARALLELISM) String parallelism) {
+        this(dtoUtil, googleCredential, isBlank(parallelism) ?
+                DEFAULT_PARALLELISM : Integer.parseInt(parallelism.trim()));
         if (googleCredential.exists()) {
             translate = TranslateOptions.getDefaultInstance().getService();
         }
@@ -87,15 +123,88 @@ public class GoogleTranslatorBackend implements TranslatorBackend {
 
     @VisibleForTesting
     protected GoogleTranslatorBackend(Translate translate,
-            DTOUtil dtoUtil, GoogleCredential googleCredential) {
-        this(dtoUtil, googleCredential);
+            DTOUtil dtoUtil, GoogleCredential googleCredential,
+            int parallelism) {
+        this(dtoUtil, googleCredential, parallelism);
         this.translate = translate;
     }
 
+    @VisibleForTesting
+    protected GoogleTranslatorBackend(Translate translate,
+            DTOUtil dtoUtil, GoogleCredential googleCredential) {
+        this(translate, dtoUtil, googleCredential, DEFAULT_PARALLELISM);
+    }
+
+    private GoogleTranslatorBackend(DTOUtil dtoUtil,
+            GoogleCredential googleCredential, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException(
+                    GOOGLE_PARALLELISM + " must be at least 1");
+        }
+        this.dtoUtil = dtoUtil;
+        this.googleCredential = googleCredential;
+        // threads are only started once a request needs more than one call
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(parallelism,
+                parallelism, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                new ThreadFactoryBuilder().setDaemon(true)
+                        .setNameFormat("google-translate-%d").build());
+        pool.allowCoreThreadTimeOut(true);
+        this.executor = pool;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
     @Override
     public List<AugmentedTranslation> translate(List<String> contents,
             BackendLocaleCode srcLocale, BackendLocaleCode targetLocale,
             StringType stringType, Optional<String> category) throws MTException {
+        Translate.TranslateOption[] translateOptions =
+                getTranslateOptions(targetLocale, stringType);
+        if (contents.size() <= BATCH_SIZE) {
+            // one call, no need to hand it over to the thread pool
+            try {
+                return toAugmentedTranslations(
+                        translate.translate(contents, translateOptions));
+            } catch (Exception e) {
+                throw toMTException(e);
+            }
+        }
+        try {
+            return translateSubBatches(contents, translateOptions).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Google API client is blocking, so the calls are made on the thread
+     * pool of this backend instead of the calling thread.
+     */
+    @Override
+    public CompletionStage<List<AugmentedTranslation>> translateAsync(
+            List<String> contents, BackendLocaleCode srcLocale,
+            BackendLocaleCode targetLocale, StringType stringType,
+            Optional<String> category) {
+        try {
+            return translateSubBatches(contents,
+                    getTranslateOptions(targetLocale, stringType));
+        } catch (RuntimeException e) {
+            CompletableFuture<List<AugmentedTranslation>> failed =
+                    new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+    }
+
+    private Translate.TranslateOption[] getTranslateOptions(
+            BackendLocaleCode targetLocale, StringType stringType) {
         // treat XML as HTML for Google
         String format;
         switch (stringType) {
@@ -114,8 +223,6 @@ public class GoogleTranslatorBackend implements TranslatorBackend {
                 .targetLanguage(
                         targetLocale.getLocaleCode()));
         options.add(Translate.TranslateOption.format(format));
-        Translate.TranslateOption[] translateOptions = options
-                .toArray(new Translate.TranslateOption[0]);
         if (!googleCredential.exists()) {
             throw new BadRequestException("Google Default Credential file is not setup");
         }
@@ -123,24 +230,94 @@ public class GoogleTranslatorBackend implements TranslatorBackend {
         // TODO we should probably retrieve and cache a google supported language list and check if the given locale code is supported or not
 //        srcLocale.ifPresent(l -> options.add(
 //                Translate.TranslateOption.sourceLanguage(l.getLocaleCode())));
-        try {
-            List<Translation> translations = new ArrayList<>();
-            int batchStart = 0;
-            while (batchStart < contents.size()) {
-                int batchEnd = Math.min(batchStart + BATCH_SIZE, contents.size());
-                translations.addAll(translate.translate(
-                        contents.subList(batchStart, batchEnd), translateOptions));
-                batchStart = batchEnd;
+        return options.toArray(new Translate.TranslateOption[0]);
+    }
+
+    private CompletableFuture<List<AugmentedTranslation>> translateSubBatches(
+            List<String> contents,
+            Translate.TranslateOption[] translateOptions) {
+        List<CompletableFuture<List<Translation>>> subBatches =
+                new ArrayList<>();
+        for (int batchStart = 0; batchStart < contents.size();
+                batchStart += BATCH_SIZE) {
+            List<String> subList = contents.subList(batchStart,
+                    Math.min(batchStart + BATCH_SIZE, contents.size()));
+            subBatches.add(CompletableFuture.supplyAsync(
+                    () -> translate.translate(subList, translateOptions),
+                    executor));
+        }
+        return CompletableFuture
+                .allOf(subBatches.toArray(new CompletableFuture<?>[0]))
+                .handle((ignored, e) -> collectSubBatches(subBatches,
+                        contents.size()));
+    }
+
+    /**
+     * Collect the results of the sub-batches, which are all done, in order.
+     * If any of them failed, the translations of the others are kept in a
+     * {@link PartialTranslationException}.
+     */
+    private List<AugmentedTranslation> collectSubBatches(
+            List<CompletableFuture<List<Translation>>> subBatches, int size) {
+        AugmentedTranslation[] results = new AugmentedTranslation[size];
+        List<Throwable> failures = new ArrayList<>();
+        for (int i = 0; i < subBatches.size(); i++) {
+            try {
+                List<AugmentedTranslation> translations =
+                        toAugmentedTranslations(subBatches.get(i).join());
+                for (int j = 0; j < translations.size(); j++) {
+                    results[i * BATCH_SIZE + j] = translations.get(j);
+                }
+            } catch (CompletionException e) {
+                failures.add(markOverloaded(e.getCause()));
+            } catch (Exception e) {
+                failures.add(markOverloaded(e));
             }
-            return translations.stream()
-                    .map(translation -> new AugmentedTranslation(
-                            translation.getTranslatedText(),
-                            dtoUtil.toJSON(translation))).collect(
-                            Collectors.toList());
-        } catch (Exception e) {
-            throw new MTException(
-                    "Unable to get translations from Google API", e);
         }
+        if (failures.isEmpty()) {
+            return Arrays.asList(results);
+        }
+        if (subBatches.size() == 1) {
+            throw toMTException(failures.get(0));
+        }
+        String message = String.format(
+                "Unable to get translations from Google API for %d of %d sub-batches",
+                failures.size(), subBatches.size());
+        LOG.warn(message);
+        PartialTranslationException e = new PartialTranslationException(
+                message, failures.get(0), Arrays.asList(results));
+        failures.stream().skip(1).forEach(e::addSuppressed);
+        throw e;
+    }
+
+    private static MTException toMTException(Throwable e) {
+        Throwable failure = markOverloaded(e);
+        return failure instanceof BackendOverloadedException ?
+                (BackendOverloadedException) failure :
+                new MTException(ERROR_MESSAGE, e);
+    }
+
+    /**
+     * @return a {@link BackendOverloadedException} if Google is throttling
+     *         or failing, otherwise the same exception
+     */
+    private static Throwable markOverloaded(Throwable e) {
+        if (e instanceof BaseServiceException &&
+                BackendOverloadedException.isOverloaded(
+                        ((BaseServiceException) e).getCode())) {
+            return new BackendOverloadedException(ERROR_MESSAGE,
+                    ((BaseServiceException) e).getCode(), e);
+        }
+        return e;
+    }
+
+    private List<AugmentedTranslation> toAugmentedTranslations(
+            List<Translation> translations) {
+        return translations.stream()
+                .map(translation -> new AugmentedTranslation(
+                        translation.getTranslatedText(),
+                        dtoUtil.toJSON(translation))).collect(
+                        Collectors.toList());
     }
 
     @Override
@@ -154,6 +331,11 @@ public class GoogleTranslatorBackend implements TranslatorBackend {
         return MAX_LENGTH;
     }
 
+    @Override
+    public BackendCapabilities getCapabilities() {
+        return new BackendCapabilities(MAX_LENGTH, BATCH_SIZE, MAX_BYTES);
+    }
+
     @Override
     public BackendID getId() {
         return BackendID.GOOGLE;
@@ -14,6 +14,8 @@ import javax.validation.constraints.NotNull;
 import javax.ws.rs.core.MediaType;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.stream.Collectors;
 
 /**
@@ -56,6 +58,19 @@ public class MockTranslatorBackend implements TranslatorBackend {
         return translations;
     }
 
+    /**
+     * Translations are made up on the calling thread, so the result is
+     * already complete.
+     */
+    @Override
+    public CompletionStage<List<AugmentedTranslation>> translateAsync(
+            List<String> contents, BackendLocaleCode srcLocale,
+            BackendLocaleCode targetLocale, StringType stringType,
+            Optional<String> category) {
+        return CompletableFuture.completedFuture(translate(contents,
+                srcLocale, targetLocale, stringType, category));
+    }
+
     /**
      * Return same localeCode as parsed in
      */
@@ -1,29 +1,82 @@
 package org.zanata.magpie.backend.ms;
 
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.resteasy.client.jaxrs.ResteasyClient;
 import org.jboss.resteasy.client.jaxrs.ResteasyClientBuilder;
 import org.jboss.resteasy.client.jaxrs.ResteasyWebTarget;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 import javax.ws.rs.client.Invocation;
 import javax.ws.rs.core.MediaType;
 
 /**
- * Resteasy client builder for MS service
+ * Resteasy client for MS service.
+ *
+ * One client with a pool of keep-alive connections is shared by all the
+ * requests, so that connections and TLS sessions are reused. Responses must
+ * be closed to return their connection to the pool. Asynchronous requests
+ * run on a pool with one thread per connection.
  *
  * @author Alex Eng <a href="mailto:aeng@redhat.com">aeng@redhat.com</a>
  */
-class MicrosoftRestEasyClient {
+class MicrosoftRestEasyClient implements AutoCloseable {
+    static final int DEFAULT_MAX_CONNECTIONS = 20;
+    static final long DEFAULT_KEEP_ALIVE_SECONDS = 60;
+    static final long DEFAULT_CONNECT_TIMEOUT_MILLIS = 5000;
+    static final long DEFAULT_READ_TIMEOUT_MILLIS = 30000;
+
+    private final ResteasyClient client;
+
+    MicrosoftRestEasyClient() {
+        this(DEFAULT_MAX_CONNECTIONS, DEFAULT_KEEP_ALIVE_SECONDS,
+                DEFAULT_CONNECT_TIMEOUT_MILLIS, DEFAULT_READ_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * @param maxConnections
+     *            maximum number of connections to each host
+     * @param keepAliveSeconds
+     *            maximum time a connection is kept for reuse
+     * @param connectTimeoutMillis
+     *            timeout to establish a connection
+     * @param readTimeoutMillis
+     *            timeout waiting for response data
+     */
+    MicrosoftRestEasyClient(int maxConnections, long keepAliveSeconds,
+            long connectTimeoutMillis, long readTimeoutMillis) {
+        // token and translation requests go to different hosts
+        client = new ResteasyClientBuilder()
+                .connectionPoolSize(maxConnections * 2)
+                .maxPooledPerRoute(maxConnections)
+                .connectionTTL(keepAliveSeconds, TimeUnit.SECONDS)
+                .establishConnectionTimeout(connectTimeoutMillis,
+                        TimeUnit.MILLISECONDS)
+                .socketTimeout(readTimeoutMillis, TimeUnit.MILLISECONDS)
+                // shut down with the client
+                .asyncExecutor(Executors.newFixedThreadPool(maxConnections,
+                        new ThreadFactoryBuilder().setDaemon(true)
+                                .setNameFormat("ms-translate-%d").build()),
+                        true)
+                .build();
+    }
 
     protected ResteasyWebTarget getWebTarget(String url) {
-        return new ResteasyClientBuilder().build()
-                .target(url);
+        return client.target(url);
     }
 
     protected Invocation.Builder getBuilder(String uri, String encoding) {
-        return new ResteasyClientBuilder()
-                .build()
+        return client
                 .target(uri)
                 .request()
                 .header("Content-Type", MediaType.APPLICATION_FORM_URLENCODED)
                 .header("Accept-Charset", encoding);
     }
+
+    @Override
+    public void close() {
+        client.close();
+    }
 }
@@ -0,0 +1,154 @@
+package org.zanata.magpie.backend.ms;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Keeps the access token for Microsoft Translator API.
+ *
+ * The current token is read without locking. Once a token has been used, a
+ * new one is fetched in the background before it expires, so that
+ * translation requests only wait for a token on the first request, or after
+ * the backend has been idle. At most one token request runs at a time.
+ */
+class MicrosoftTokenManager implements AutoCloseable {
+    private static final Logger LOG =
+            LoggerFactory.getLogger(MicrosoftTokenManager.class);
+
+    // Cache token for 5 minutes
+    static final long TOKEN_LIFETIME_MILLIS = 5 * 60 * 1000;
+    // Fetch the next token 1 minute before the current one expires
+    static final long REFRESH_AHEAD_MILLIS = 60 * 1000;
+    // Retry a failed background refresh after 10 seconds
+    static final long RETRY_DELAY_MILLIS = 10 * 1000;
+
+    private final Supplier<String> tokenFetcher;
+    private final LongSupplier clock;
+    private final ScheduledExecutorService scheduler;
+    private final Object refreshLock = new Object();
+
+    private volatile @Nullable Token current;
+    private volatile boolean usedSinceRefresh;
+    // guarded by refreshLock
+    private @Nullable ScheduledFuture<?> nextRefresh;
+
+    /**
+     * @param tokenFetcher
+     *            requests a new token from Microsoft
+     */
+    MicrosoftTokenManager(Supplier<String> tokenFetcher) {
+        this(tokenFetcher, System::currentTimeMillis,
+                Executors.newSingleThreadScheduledExecutor(
+                        new ThreadFactoryBuilder().setDaemon(true)
+                                .setNameFormat("ms-token-refresh-%d")
+                                .build()));
+    }
+
+    @VisibleForTesting
+    MicrosoftTokenManager(Supplier<String> tokenFetcher, LongSupplier clock,
+            ScheduledExecutorService scheduler) {
+        this.tokenFetcher = tokenFetcher;
+        this.clock = clock;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * @return value for the Authorization header
+     */
+    String getToken() {
+        if (!usedSinceRefresh) {
+            usedSinceRefresh = true;
+        }
+        Token token = current;
+        if (token != null && clock.getAsLong() < token.expiresAt) {
+            return token.value;
+        }
+        // no token yet, or it has expired while idle
+        return refresh(token).value;
+    }
+
+    /**
+     * Fetch a new token unless another thread has replaced the stale one in
+     * the meantime.
+     */
+    private Token refresh(@Nullable Token stale) {
+        synchronized (refreshLock) {
+            Token token = current;
+            if (token != null && token != stale) {
+                return token;
+            }
+            String value = tokenFetcher.get();
+            token = new Token("Bearer " + value,
+                    clock.getAsLong() + TOKEN_LIFETIME_MILLIS);
+            current = token;
+            usedSinceRefresh = false;
+            scheduleRefresh(TOKEN_LIFETIME_MILLIS - REFRESH_AHEAD_MILLIS);
+            LOG.debug("New token for Microsoft Engine, expires at {}",
+                    token.expiresAt);
+            return token;
+        }
+    }
+
+    private void refreshInBackground() {
+        Token token = current;
+        if (!usedSinceRefresh) {
+            // let it expire, the next request will fetch a new one
+            LOG.debug("Microsoft Engine token not used, skip refresh");
+            return;
+        }
+        try {
+            refresh(token);
+        } catch (RuntimeException e) {
+            if (token != null && clock.getAsLong() < token.expiresAt) {
+                LOG.warn("Unable to refresh token for Microsoft Engine, retry in {} ms",
+                        RETRY_DELAY_MILLIS, e);
+                synchronized (refreshLock) {
+                    scheduleRefresh(RETRY_DELAY_MILLIS);
+                }
+            } else {
+                LOG.warn("Unable to refresh token for Microsoft Engine", e);
+            }
+        }
+    }
+
+    private void scheduleRefresh(long delayMillis) {
+        if (nextRefresh != null) {
+            nextRefresh.cancel(false);
+        }
+        nextRefresh = scheduler.schedule(this::refreshInBackground,
+                delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @VisibleForTesting
+    @Nullable String getCurrentToken() {
+        Token token = current;
+        return token == null ? null : token.value;
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private static final class Token {
+        private final String value;
+        private final long expiresAt;
+
+        private Token(String value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -2,8 +2,11 @@ package org.zanata.magpie.backend.ms;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.stream.Collectors;
 
+import javax.annotation.PreDestroy;
 import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.context.Initialized;
 import javax.enterprise.event.Observes;
@@ -15,7 +18,9 @@ import javax.xml.bind.JAXBException;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableMap;
 import org.zanata.magpie.annotation.Credentials;
+import org.zanata.magpie.annotation.EnvVariable;
 import org.zanata.magpie.api.dto.LocaleCode;
+import org.zanata.magpie.backend.BackendCapabilities;
 import org.zanata.magpie.backend.BackendLocaleCodeImpl;
 import org.zanata.magpie.backend.BackendLocaleCode;
 import org.zanata.magpie.backend.ms.internal.dto.MSString;
@@ -29,6 +34,12 @@ import org.zanata.magpie.model.StringType;
 import org.zanata.magpie.service.TranslatorBackend;
 import org.zanata.magpie.util.DTOUtil;
 
+import static org.apache.commons.lang3.StringUtils.isBlank;
+import static org.zanata.magpie.api.APIConstant.MS_CONNECT_TIMEOUT;
+import static org.zanata.magpie.api.APIConstant.MS_KEEP_ALIVE;
+import static org.zanata.magpie.api.APIConstant.MS_MAX_CONNECTIONS;
+import static org.zanata.magpie.api.APIConstant.MS_READ_TIMEOUT;
+
 /**
  * Service for Microsoft translator. {@link org.zanata.magpie.model.BackendID#MS}
  *
@@ -38,6 +49,8 @@ import org.zanata.magpie.util.DTOUtil;
  * {@link #translate(List, BackendLocaleCode, BackendLocaleCode, MediaType, Optional)}
  *
  * See {@link MicrosoftTranslatorClient} for MS translator configuration.
+ * All requests share one pooled HTTP client, see
+ * {@link org.zanata.magpie.api.APIConstant#MS_MAX_CONNECTIONS}.
  *
  * @author Alex Eng <a href="mailto:aeng@redhat.com">aeng@redhat.com</a>
  */
@@ -46,6 +59,8 @@ public class MicrosoftTranslatorBackend implements TranslatorBackend {
 
     // Max length per request for MS service
     private final static int MAX_LENGTH = 10000;
+    // Max number of strings in a TranslateArray request
+    private final static int MAX_SEGMENTS = 2000;
 
     /**
      * Map from request locale to MS supported locale code
@@ -65,17 +80,38 @@ public class MicrosoftTranslatorBackend implements TranslatorBackend {
 
     private MicrosoftTranslatorClient api;
 
-    private final MicrosoftRestEasyClient
-            restClient = new MicrosoftRestEasyClient();
+    private MicrosoftRestEasyClient restClient;
 
     @SuppressWarnings("unused")
     public MicrosoftTranslatorBackend() {
     }
 
     @Inject
-    public MicrosoftTranslatorBackend(@Credentials(BackendID.MS) String msAPIKey, DTOUtil dtoUtil) {
+    public MicrosoftTranslatorBackend(@Credentials(BackendID.MS) String msAPIKey, DTOUtil dtoUtil,
+            @EnvVariable(MS_MAX_CONNECTIONS) String maxConnections,
+            @EnvVariable(MS_KEEP_ALIVE) String keepAliveSeconds,
+            @EnvVariable(MS_CONNECT_TIMEOUT) String connectTimeoutMillis,
+            @EnvVariable(MS_READ_TIMEOUT) String readTimeoutMillis) {
         this.clientSubscriptionKey = msAPIKey;
         this.dtoUtil = dtoUtil;
+        this.restClient = new MicrosoftRestEasyClient(
+                isBlank(maxConnections) ?
+                        MicrosoftRestEasyClient.DEFAULT_MAX_CONNECTIONS :
+                        Integer.parseInt(maxConnections.trim()),
+                isBlank(keepAliveSeconds) ?
+                        MicrosoftRestEasyClient.DEFAULT_KEEP_ALIVE_SECONDS :
+                        Long.parseLong(keepAliveSeconds.trim()),
+                isBlank(connectTimeoutMillis) ?
+                        MicrosoftRestEasyClient.DEFAULT_CONNECT_TIMEOUT_MILLIS :
+                        Long.parseLong(connectTimeoutMillis.trim()),
+                isBlank(readTimeoutMillis) ?
+                        MicrosoftRestEasyClient.DEFAULT_READ_TIMEOUT_MILLIS :
+                        Long.parseLong(readTimeoutMillis.trim()));
+    }
+
+    @VisibleForTesting
+    MicrosoftTranslatorBackend(String msAPIKey, DTOUtil dtoUtil) {
+        this(msAPIKey, dtoUtil, "", "", "", "");
     }
 
     public void onInit(
@@ -84,6 +120,16 @@ public class MicrosoftTranslatorBackend implements TranslatorBackend {
         api = new MicrosoftTranslatorClient(clientSubscriptionKey, restClient, dtoUtil);
     }
 
+    @PreDestroy
+    public void shutdown() {
+        if (api != null) {
+            api.close();
+        }
+        if (restClient != null) {
+            restClient.close();
+        }
+    }
+
     @Override
     public List<AugmentedTranslation> translate(List<String> contents,
             BackendLocaleCode fromLocale,
@@ -91,42 +137,68 @@ public class MicrosoftTranslatorBackend implements TranslatorBackend {
             Optional<String> category)
             throws MTException {
         try {
-            MSTranslateArrayReq req = new MSTranslateArrayReq();
-            req.setSrcLanguage(fromLocale.getLocaleCode());
-            req.setTransLanguage(toLocale.getLocaleCode());
-            for (String content: contents) {
-                req.getTexts().add(new MSString(content));
-            }
-            MSTranslateArrayReqOptions options = new MSTranslateArrayReqOptions();
-            // treat XML as HTML for MS
-            String format;
-            switch (stringType) {
-                case HTML:
-                case XML:
-                    format = MediaType.TEXT_HTML;
-                    break;
-                case TEXT_PLAIN:
-                    format = MediaType.TEXT_PLAIN;
-                    break;
-                default:
-                    throw new IllegalArgumentException(stringType.name());
-            }
-            options.setContentType(format);
-            category.ifPresent(options::setCategory);
-            req.setOptions(options);
-
-            String rawResponse = api.requestTranslations(req);
-            MSTranslateArrayResp resp =
-                    dtoUtil.toObject(rawResponse, MSTranslateArrayResp.class);
-            return resp.getResponse().stream().map(
-                    res -> new AugmentedTranslation(res.getTranslatedText().getValue(),
-                            dtoUtil.toXML(res)))
-                    .collect(Collectors.toList());
+            MSTranslateArrayResp resp = api.requestTranslations(
+                    buildRequest(contents, fromLocale, toLocale, stringType,
+                            category));
+            return toAugmentedTranslations(resp);
         } catch (JAXBException e) {
             throw new MTException("Unable to get translations from MS API", e);
         }
     }
 
+    @Override
+    public CompletionStage<List<AugmentedTranslation>> translateAsync(
+            List<String> contents, BackendLocaleCode fromLocale,
+            BackendLocaleCode toLocale, StringType stringType,
+            Optional<String> category) {
+        CompletableFuture<MSTranslateArrayResp> response;
+        try {
+            response = api.requestTranslationsAsync(buildRequest(contents,
+                    fromLocale, toLocale, stringType, category));
+        } catch (RuntimeException e) {
+            response = new CompletableFuture<>();
+            response.completeExceptionally(e);
+        }
+        return response.thenApply(this::toAugmentedTranslations);
+    }
+
+    private MSTranslateArrayReq buildRequest(List<String> contents,
+            BackendLocaleCode fromLocale, BackendLocaleCode toLocale,
+            StringType stringType, Optional<String> category) {
+        MSTranslateArrayReq req = new MSTranslateArrayReq();
+        req.setSrcLanguage(fromLocale.getLocaleCode());
+        req.setTransLanguage(toLocale.getLocaleCode());
+        for (String content: contents) {
+            req.getTexts().add(new MSString(content));
+        }
+        MSTranslateArrayReqOptions options = new MSTranslateArrayReqOptions();
+        // treat XML as HTML for MS
+        String format;
+        switch (stringType) {
+            case HTML:
+            case XML:
+                format = MediaType.TEXT_HTML;
+                break;
+            case TEXT_PLAIN:
+                format = MediaType.TEXT_PLAIN;
+                break;
+            default:
+                throw new IllegalArgumentException(stringType.name());
+        }
+        options.setContentType(format);
+        category.ifPresent(options::setCategory);
+        req.setOptions(options);
+        return req;
+    }
+
+    private List<AugmentedTranslation> toAugmentedTranslations(
+            MSTranslateArrayResp resp) {
+        return resp.getResponse().stream().map(
+                res -> new AugmentedTranslation(res.getTranslatedText().getValue(),
+                        dtoUtil.toXML(res)))
+                .collect(Collectors.toList());
+    }
+
     @Override
     public BackendLocaleCode getMappedLocale(@NotNull LocaleCode localeCode) {
         BackendLocaleCode from = new BackendLocaleCodeImpl(localeCode);
@@ -138,6 +210,12 @@ public class MicrosoftTranslatorBackend implements TranslatorBackend {
         return MAX_LENGTH;
     }
 
+    @Override
+    public BackendCapabilities getCapabilities() {
+        return new BackendCapabilities(MAX_LENGTH, MAX_SEGMENTS,
+                BackendCapabilities.UNLIMITED);
+    }
+
     @Override
     public BackendID getId() {
         return BackendID.MS;
@@ -1,18 +1,24 @@
 package org.zanata.magpie.backend.ms;
 
-import com.google.common.annotations.VisibleForTesting;
 import org.apache.commons.codec.CharEncoding;
 import org.jboss.resteasy.client.jaxrs.ResteasyWebTarget;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.zanata.magpie.backend.ms.internal.dto.MSTranslateArrayReq;
+import org.zanata.magpie.backend.ms.internal.dto.MSTranslateArrayResp;
+import org.zanata.magpie.exception.BackendOverloadedException;
 import org.zanata.magpie.exception.MTException;
 import org.zanata.magpie.util.DTOUtil;
 
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.client.Invocation;
+import javax.ws.rs.client.InvocationCallback;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.xml.bind.JAXBException;
+
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
 
 /**
  *
@@ -32,66 +38,106 @@ class MicrosoftTranslatorClient {
     private static final String OCP_APIM_SUBSCRIPTION_KEY_HEADER = "Ocp-Apim-Subscription-Key";
     private static final String ENCODING = CharEncoding.UTF_8;
 
-    // Cache token for 5 minutes
-    private static final long TOKEN_CACHE_EXPIRATION = 5 * 60 * 1000;
-
-    private long tokenExpiration = 0;
-    private String token;
-
     private final String clientSubscriptionKey;
 
     private final MicrosoftRestEasyClient restClient;
     private final DTOUtil dtoUtil;
+    private final MicrosoftTokenManager tokenManager;
 
     protected MicrosoftTranslatorClient(String clientSubscriptionKey,
             MicrosoftRestEasyClient restClient, DTOUtil dtoUtil) {
         this.clientSubscriptionKey = clientSubscriptionKey;
         this.restClient = restClient;
         this.dtoUtil = dtoUtil;
+        this.tokenManager = new MicrosoftTokenManager(this::getToken);
     }
 
     /**
-     * Get access token from MS API if token is expired.
-     * 10 minutes by default
+     * Return response from Microsoft API, parsed while it is read
      */
-    protected void getTokenIfNeeded() {
-        if (System.currentTimeMillis() > tokenExpiration) {
-            String tokenKey = getToken();
-            tokenExpiration = System.currentTimeMillis() +
-                    TOKEN_CACHE_EXPIRATION;
-            token = "Bearer " + tokenKey;
-            if (LOG.isDebugEnabled()) {
-                LOG.debug("New token:{}", token);
-            }
-        }
+    protected MSTranslateArrayResp requestTranslations(MSTranslateArrayReq req)
+            throws MTException, JAXBException {
+        return readResponse(buildRequest(req).post(buildEntity(req)));
     }
 
     /**
-     * Return raw response from Microsoft API
+     * Same as {@link #requestTranslations(MSTranslateArrayReq)}, without
+     * holding the calling thread while waiting for the response. Failures
+     * complete the result exceptionally, with an {@link MTException} if the
+     * response can't be parsed.
      */
-    protected String requestTranslations(MSTranslateArrayReq req)
-            throws MTException {
-        getTokenIfNeeded();
+    protected CompletableFuture<MSTranslateArrayResp> requestTranslationsAsync(
+            MSTranslateArrayReq req) {
+        CompletableFuture<MSTranslateArrayResp> result =
+                new CompletableFuture<>();
+        try {
+            buildRequest(req).async().post(buildEntity(req),
+                    new InvocationCallback<Response>() {
+                        @Override
+                        public void completed(Response response) {
+                            try {
+                                result.complete(readResponse(response));
+                            } catch (JAXBException e) {
+                                result.completeExceptionally(new MTException(
+                                        "Unable to get translations from MS API",
+                                        e));
+                            } catch (RuntimeException e) {
+                                result.completeExceptionally(e);
+                            }
+                        }
+
+                        @Override
+                        public void failed(Throwable throwable) {
+                            result.completeExceptionally(throwable);
+                        }
+                    });
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    private Invocation.Builder buildRequest(MSTranslateArrayReq req) {
+        String token = tokenManager.getToken();
         if (LOG.isDebugEnabled()) {
             LOG.debug("Source sending:{}", dtoUtil.toXML(req));
         }
         ResteasyWebTarget webTarget =
                 restClient.getWebTarget(TRANSLATIONS_BASE_URL);
-        Response response = webTarget.request(MediaType.TEXT_XML)
+        return webTarget.request(MediaType.TEXT_XML)
                 .header("Content-Type",
                         MediaType.TEXT_XML + "; charset=" + ENCODING)
-                .header("Authorization", token)
-                .post(Entity.xml(dtoUtil.toXML(req)));
+                .header("Authorization", token);
+    }
 
-        if (response.getStatusInfo() != Response.Status.OK) {
-            throw new MTException(
-                    "Error from Microsoft Translator API: "
-                            + response.getStatusInfo().getReasonPhrase());
+    private Entity<String> buildEntity(MSTranslateArrayReq req) {
+        return Entity.xml(dtoUtil.toXML(req));
+    }
+
+    private MSTranslateArrayResp readResponse(Response response)
+            throws JAXBException {
+        try {
+            if (response.getStatusInfo() != Response.Status.OK) {
+                String message = "Error from Microsoft Translator API: "
+                        + response.getStatusInfo().getReasonPhrase();
+                int status = response.getStatusInfo().getStatusCode();
+                if (BackendOverloadedException.isOverloaded(status)) {
+                    throw new BackendOverloadedException(message, status);
+                }
+                throw new MTException(message);
+            }
+            MSTranslateArrayResp resp = dtoUtil.toObject(
+                    response.readEntity(InputStream.class),
+                    MSTranslateArrayResp.class);
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Translation from Microsoft Engine:{}",
+                        dtoUtil.toXML(resp));
+            }
+            return resp;
+        } finally {
+            // returns the connection to the pool
+            response.close();
         }
-        String xml = response.readEntity(String.class);
-        response.close();
-        LOG.debug("Translation from Microsoft Engine:{}", xml);
-        return xml;
     }
 
     /**
@@ -121,13 +167,10 @@ class MicrosoftTranslatorClient {
         }
     }
 
-    @VisibleForTesting
-    protected String getCurrentToken() {
-        return token;
-    }
-
-    @VisibleForTesting
-    protected Long getTokenExpiration() {
-        return tokenExpiration;
+    /**
+     * Stop refreshing the access token.
+     */
+    protected void close() {
+        tokenManager.close();
     }
 }
@@ -9,41 +9,66 @@ import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBElement;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
+import javax.xml.bind.UnmarshalException;
 import javax.xml.bind.Unmarshaller;
 import javax.xml.bind.annotation.XmlRootElement;
 import javax.xml.namespace.QName;
-import javax.xml.transform.stream.StreamSource;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+/**
+ * Converts DTOs from and to XML and JSON.
+ *
+ * JAXB contexts are created once per class and shared, together with pooled
+ * marshallers and unmarshallers. XML is read with a StAX stream reader, so
+ * that it can be parsed directly from a response stream.
+ */
 @ApplicationScoped
 public class DTOUtil {
     private final static Logger LOG = LoggerFactory.getLogger(DTOUtil.class);
 
+    // ObjectMapper and XMLInputFactory are thread safe once configured
+    private final static ObjectMapper MAPPER = new ObjectMapper();
+    private final static XMLInputFactory XML_INPUT_FACTORY =
+            createXMLInputFactory();
+    private final static ConcurrentMap<Class<?>, JAXBPool> JAXB_POOLS =
+            new ConcurrentHashMap<>();
+
     @SuppressWarnings({ "unchecked", "known.nonnull" })
     public <T> String toXML(@Nonnull T obj) {
         try {
-            JAXBContext jc = JAXBContext.newInstance(obj.getClass());
-            Marshaller m = jc.createMarshaller();
-            m.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
-            m.setProperty(Marshaller.JAXB_FRAGMENT, true);
-            StringWriter writer = new StringWriter();
-
-            /*
-             * Marshal objects into a string differently depending on whether
-             * they are root elements or not
-             */
-            if (obj.getClass().getAnnotation(XmlRootElement.class) != null) {
-                m.marshal(obj, writer);
-            } else {
-                m.marshal(new JAXBElement<T>(new QName("", obj.getClass()
-                        .getSimpleName()), (Class<T>) obj.getClass(), obj),
-                        writer);
+            JAXBPool pool = getJAXBPool(obj.getClass());
+            Marshaller m = pool.borrowMarshaller();
+            try {
+                StringWriter writer = new StringWriter();
+
+                /*
+                 * Marshal objects into a string differently depending on
+                 * whether they are root elements or not
+                 */
+                if (obj.getClass().getAnnotation(XmlRootElement.class) != null) {
+                    m.marshal(obj, writer);
+                } else {
+                    m.marshal(new JAXBElement<T>(new QName("", obj.getClass()
+                            .getSimpleName()), (Class<T>) obj.getClass(), obj),
+                            writer);
+                }
+                return writer.toString();
+            } finally {
+                pool.release(m);
             }
-            return writer.toString();
         } catch (Exception e) {
             LOG.error("toXML failed", e);
             return obj.getClass().getName() + "@"
@@ -53,18 +78,53 @@ public class DTOUtil {
 
     public <T> T toObject(String xml, Class<T> clazz)
             throws JAXBException {
-        JAXBContext jc = JAXBContext.newInstance(clazz);
-        Unmarshaller um = jc.createUnmarshaller();
-        StringReader reader = new StringReader(xml);
-        StreamSource source = new StreamSource(reader);
-        JAXBElement<T> elem = um.unmarshal(source, clazz);
-        return elem.getValue();
+        return toObject(new StringReader(xml), clazz);
+    }
+
+    /**
+     * Unmarshal from a stream, without reading it into a string first. The
+     * stream is not closed.
+     */
+    public <T> T toObject(InputStream xml, Class<T> clazz)
+            throws JAXBException {
+        try {
+            return unmarshal(XML_INPUT_FACTORY.createXMLStreamReader(xml),
+                    clazz);
+        } catch (XMLStreamException e) {
+            throw new UnmarshalException(e);
+        }
+    }
+
+    public <T> T toObject(Reader xml, Class<T> clazz)
+            throws JAXBException {
+        try {
+            return unmarshal(XML_INPUT_FACTORY.createXMLStreamReader(xml),
+                    clazz);
+        } catch (XMLStreamException e) {
+            throw new UnmarshalException(e);
+        }
+    }
+
+    private <T> T unmarshal(XMLStreamReader reader, Class<T> clazz)
+            throws JAXBException {
+        JAXBPool pool = getJAXBPool(clazz);
+        Unmarshaller um = pool.borrowUnmarshaller();
+        try {
+            JAXBElement<T> elem = um.unmarshal(reader, clazz);
+            return elem.getValue();
+        } finally {
+            pool.release(um);
+            try {
+                reader.close();
+            } catch (XMLStreamException e) {
+                LOG.debug("Unable to close XML reader", e);
+            }
+        }
     }
 
     public String toJSON(Object obj) {
-        ObjectMapper mapper = new ObjectMapper();
         try {
-            return mapper.writeValueAsString(obj);
+            return MAPPER.writeValueAsString(obj);
         } catch (IOException e) {
             LOG.error("toJSON failed", e);
             return obj.getClass().getName() + "@"
@@ -74,7 +134,66 @@ public class DTOUtil {
 
     public static <T> T fromJSONToObject(String json, Class<T> clazz)
         throws IOException {
-        ObjectMapper mapper = new ObjectMapper();
-        return mapper.readValue(json, clazz);
+        return MAPPER.readValue(json, clazz);
+    }
+
+    private static JAXBPool getJAXBPool(Class<?> clazz) throws JAXBException {
+        JAXBPool pool = JAXB_POOLS.get(clazz);
+        if (pool == null) {
+            // creating a context twice in a race is harmless
+            pool = new JAXBPool(JAXBContext.newInstance(clazz));
+            JAXBPool existing = JAXB_POOLS.putIfAbsent(clazz, pool);
+            if (existing != null) {
+                pool = existing;
+            }
+        }
+        return pool;
+    }
+
+    private static XMLInputFactory createXMLInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES,
+                false);
+        return factory;
+    }
+
+    /**
+     * JAXB context of a class, with the marshallers and unmarshallers not in
+     * use. A context is thread safe, marshallers and unmarshallers are not.
+     */
+    private static class JAXBPool {
+        private final JAXBContext context;
+        private final Queue<Marshaller> marshallers =
+                new ConcurrentLinkedQueue<>();
+        private final Queue<Unmarshaller> unmarshallers =
+                new ConcurrentLinkedQueue<>();
+
+        private JAXBPool(JAXBContext context) {
+            this.context = context;
+        }
+
+        private Marshaller borrowMarshaller() throws JAXBException {
+            Marshaller m = marshallers.poll();
+            if (m == null) {
+                m = context.createMarshaller();
+                m.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
+                m.setProperty(Marshaller.JAXB_FRAGMENT, true);
+            }
+            return m;
+        }
+
+        private void release(Marshaller m) {
+            marshallers.offer(m);
+        }
+
+        private Unmarshaller borrowUnmarshaller() throws JAXBException {
+            Unmarshaller um = unmarshallers.poll();
+            return um != null ? um : context.createUnmarshaller();
+        }
+
+        private void release(Unmarshaller um) {
+            unmarshallers.offer(um);
+        }
     }
 }
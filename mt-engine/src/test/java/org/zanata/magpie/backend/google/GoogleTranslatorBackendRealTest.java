@@ -37,7 +37,7 @@ public class GoogleTranslatorBackendRealTest {
 
     @Before
     public void setUp() {
-        translatorBackend = new GoogleTranslatorBackend(new DTOUtil(), new GoogleCredential(credentialFile));
+        translatorBackend = new GoogleTranslatorBackend(new DTOUtil(), new GoogleCredential(credentialFile), "");
     }
 
     @Test
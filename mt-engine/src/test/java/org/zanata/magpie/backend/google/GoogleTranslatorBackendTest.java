@@ -1,23 +1,35 @@
 package org.zanata.magpie.backend.google;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 import java.io.File;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.zanata.magpie.api.dto.LocaleCode;
 import org.zanata.magpie.backend.BackendLocaleCodeImpl;
+import org.zanata.magpie.exception.BackendOverloadedException;
+import org.zanata.magpie.exception.PartialTranslationException;
 import org.zanata.magpie.model.AugmentedTranslation;
 import org.zanata.magpie.model.StringType;
 import org.zanata.magpie.util.DTOUtil;
 
 import com.google.cloud.translate.Translate;
+import com.google.cloud.translate.TranslateException;
 import com.google.cloud.translate.Translation;
 import com.google.common.collect.ImmutableList;
 
@@ -40,6 +52,11 @@ public class GoogleTranslatorBackendTest {
         when(translation.getTranslatedText()).thenReturn("你好");
     }
 
+    @After
+    public void tearDown() {
+        backend.shutdown();
+    }
+
     @Test
     public void canGetGoogleMappedLocales() {
         assertThat(backend.getMappedLocale(LocaleCode.EN_US))
@@ -88,4 +105,100 @@ public class GoogleTranslatorBackendTest {
         assertThat(augmentedTranslation.getPlainTranslation()).isEqualTo(translation.getTranslatedText());
     }
 
+    @Test
+    public void canTranslateSubBatchesConcurrentlyInOrder() {
+        List<String> source = IntStream.range(0, 250)
+                .mapToObj(i -> "hello " + i).collect(Collectors.toList());
+        when(translate.translate(anyList(), any(), any()))
+                .thenAnswer(invocation -> {
+                    List<String> strings = invocation.getArgument(0);
+                    // finish the sub-batches in reverse order
+                    int first = source.indexOf(strings.get(0));
+                    Thread.sleep(300 - first);
+                    return toTranslations(strings);
+                });
+
+        List<AugmentedTranslation> translations = backend.translate(source,
+                new BackendLocaleCodeImpl("en"), new BackendLocaleCodeImpl("zh"),
+                StringType.TEXT_PLAIN, Optional.empty());
+
+        assertThat(translations).extracting(
+                AugmentedTranslation::getPlainTranslation).containsExactlyElementsOf(
+                source.stream().map(s -> "translated " + s)
+                        .collect(Collectors.toList()));
+    }
+
+    @Test
+    public void throttledRequestThrowsBackendOverloadedException() {
+        TranslateException quota = mock(TranslateException.class);
+        when(quota.getCode()).thenReturn(429);
+        when(translate.translate(anyList(), any(), any())).thenThrow(quota);
+
+        assertThatThrownBy(() -> backend.translate(ImmutableList.of("hello"),
+                new BackendLocaleCodeImpl("en"),
+                new BackendLocaleCodeImpl("zh"), StringType.TEXT_PLAIN,
+                Optional.empty()))
+                .isInstanceOf(BackendOverloadedException.class)
+                .hasCause(quota);
+    }
+
+    @Test
+    public void keepsCompletedSubBatchesWhenOneFails() {
+        List<String> source = IntStream.range(0, 250)
+                .mapToObj(i -> "hello " + i).collect(Collectors.toList());
+        when(translate.translate(anyList(), any(), any()))
+                .thenAnswer(invocation -> {
+                    List<String> strings = invocation.getArgument(0);
+                    if (strings.get(0).equals("hello 100")) {
+                        throw new IllegalStateException("quota exceeded");
+                    }
+                    return toTranslations(strings);
+                });
+
+        try {
+            backend.translate(source, new BackendLocaleCodeImpl("en"),
+                    new BackendLocaleCodeImpl("zh"), StringType.TEXT_PLAIN,
+                    Optional.empty());
+            fail("expected PartialTranslationException");
+        } catch (PartialTranslationException e) {
+            assertThat(e).hasMessageContaining("1 of 3 sub-batches")
+                    .hasCauseInstanceOf(IllegalStateException.class);
+            List<AugmentedTranslation> translations = e.getTranslations();
+            assertThat(translations).hasSize(250);
+            assertThat(translations.get(99).getPlainTranslation())
+                    .isEqualTo("translated hello 99");
+            assertThat(translations.subList(100, 200)).containsOnly((AugmentedTranslation) null);
+            assertThat(translations.get(200).getPlainTranslation())
+                    .isEqualTo("translated hello 200");
+        }
+    }
+
+    @Test
+    public void canTranslateAsyncOnBackendThreads() throws Exception {
+        List<String> source = ImmutableList.of("hello");
+        Thread caller = Thread.currentThread();
+        when(translate.translate(anyList(), any(), any()))
+                .thenAnswer(invocation -> {
+                    assertThat(Thread.currentThread()).isNotSameAs(caller);
+                    return toTranslations(invocation.getArgument(0));
+                });
+
+        List<AugmentedTranslation> translations = backend.translateAsync(
+                source, new BackendLocaleCodeImpl("en"),
+                new BackendLocaleCodeImpl("zh"), StringType.HTML,
+                Optional.empty()).toCompletableFuture()
+                .get(5, TimeUnit.SECONDS);
+
+        assertThat(translations).extracting(
+                AugmentedTranslation::getPlainTranslation)
+                .containsExactly("translated hello");
+    }
+
+    private static List<Translation> toTranslations(List<String> strings) {
+        return strings.stream().map(s -> {
+            Translation t = mock(Translation.class);
+            when(t.getTranslatedText()).thenReturn("translated " + s);
+            return t;
+        }).collect(Collectors.toList());
+    }
 }
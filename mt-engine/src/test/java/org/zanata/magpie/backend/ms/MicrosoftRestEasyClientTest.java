@@ -3,9 +3,29 @@ package org.zanata.magpie.backend.ms;
 import org.jboss.resteasy.client.jaxrs.ResteasyWebTarget;
 import org.jboss.resteasy.client.jaxrs.internal.ClientInvocationBuilder;
 import org.jboss.resteasy.client.jaxrs.internal.ClientRequestHeaders;
+import org.junit.After;
+import org.junit.Before;
 import org.junit.Test;
 
+import com.sun.net.httpserver.HttpServer;
+
+import javax.ws.rs.client.Entity;
 import javax.ws.rs.client.Invocation;
+import javax.ws.rs.core.Response;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -13,6 +33,40 @@ import static org.assertj.core.api.Assertions.assertThat;
  * @author Alex Eng <a href="mailto:aeng@redhat.com">aeng@redhat.com</a>
  */
 public class MicrosoftRestEasyClientTest {
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private String url;
+    // one client port per TCP connection
+    private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            // hold the connection while concurrent requests come in
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = "ok".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        serverExecutor = Executors.newFixedThreadPool(10);
+        server.setExecutor(serverExecutor);
+        server.start();
+        url = "http://localhost:" + server.getAddress().getPort() + "/";
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
 
     @Test
     public void testGetBuilder() {
@@ -23,6 +77,7 @@ public class MicrosoftRestEasyClientTest {
         ClientRequestHeaders headers = ((ClientInvocationBuilder) builder).getHeaders();
         assertThat(headers.getHeader("Accept-Charset")).isEqualTo("UTF-8");
         assertThat(headers.getHeader("Content-Type")).isEqualTo("application/x-www-form-urlencoded");
+        client.close();
     }
 
     @Test
@@ -32,6 +87,52 @@ public class MicrosoftRestEasyClientTest {
         ResteasyWebTarget webTarget = client.getWebTarget("http://url");
         assertThat(webTarget.getUri().toString())
                 .isEqualTo("http://url");
+        client.close();
+    }
+
+    @Test
+    public void reusesConnectionForSequentialRequests() {
+        MicrosoftRestEasyClient client = new MicrosoftRestEasyClient();
+        try {
+            for (int i = 0; i < 5; i++) {
+                // token request, then translation request
+                assertThat(readAndClose(client.getBuilder(url, "UTF-8")
+                        .build("POST").invoke())).isEqualTo("ok");
+                assertThat(readAndClose(client.getWebTarget(url).request()
+                        .post(Entity.xml("<req/>")))).isEqualTo("ok");
+            }
+        } finally {
+            client.close();
+        }
+        assertThat(clientPorts).hasSize(1);
     }
 
+    @Test
+    public void limitsConnectionsForConcurrentRequests() throws Exception {
+        MicrosoftRestEasyClient client =
+                new MicrosoftRestEasyClient(2, 60, 5000, 5000);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Callable<String>> requests = IntStream.range(0, 16)
+                    .mapToObj(i -> (Callable<String>) () -> readAndClose(
+                            client.getWebTarget(url).request()
+                                    .post(Entity.xml("<req/>"))))
+                    .collect(Collectors.toList());
+            for (Future<String> result : executor.invokeAll(requests)) {
+                assertThat(result.get()).isEqualTo("ok");
+            }
+        } finally {
+            executor.shutdownNow();
+            client.close();
+        }
+        assertThat(clientPorts).hasSize(2);
+    }
+
+    private static String readAndClose(Response response) {
+        try {
+            return response.readEntity(String.class);
+        } finally {
+            response.close();
+        }
+    }
 }
@@ -0,0 +1,155 @@
+package org.zanata.magpie.backend.ms;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.zanata.magpie.exception.MTException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.zanata.magpie.backend.ms.MicrosoftTokenManager.REFRESH_AHEAD_MILLIS;
+import static org.zanata.magpie.backend.ms.MicrosoftTokenManager.RETRY_DELAY_MILLIS;
+import static org.zanata.magpie.backend.ms.MicrosoftTokenManager.TOKEN_LIFETIME_MILLIS;
+
+public class MicrosoftTokenManagerTest {
+    private final AtomicLong clock = new AtomicLong(1000);
+    private final AtomicInteger fetchCount = new AtomicInteger();
+    private ScheduledExecutorService scheduler;
+    private Supplier<String> fetcher =
+            () -> "token" + fetchCount.incrementAndGet();
+    private MicrosoftTokenManager manager;
+
+    @Before
+    public void setUp() {
+        scheduler = mock(ScheduledExecutorService.class);
+        when(scheduler.schedule(any(Runnable.class), anyLong(), any()))
+                .thenAnswer(invocation -> mock(ScheduledFuture.class));
+        manager = new MicrosoftTokenManager(() -> fetcher.get(), clock::get,
+                scheduler);
+    }
+
+    @Test
+    public void fetchesTokenOnFirstUseOnly() {
+        assertThat(manager.getCurrentToken()).isNull();
+
+        assertThat(manager.getToken()).isEqualTo("Bearer token1");
+        assertThat(manager.getToken()).isEqualTo("Bearer token1");
+
+        assertThat(fetchCount.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void refreshesInBackgroundBeforeExpiry() {
+        manager.getToken();
+        Runnable refresh = captureScheduledRefresh(
+                TOKEN_LIFETIME_MILLIS - REFRESH_AHEAD_MILLIS, 1);
+        manager.getToken();
+
+        clock.addAndGet(TOKEN_LIFETIME_MILLIS - REFRESH_AHEAD_MILLIS);
+        refresh.run();
+
+        assertThat(fetchCount.get()).isEqualTo(2);
+        clock.addAndGet(REFRESH_AHEAD_MILLIS);
+        // the first token would have expired by now
+        assertThat(manager.getToken()).isEqualTo("Bearer token2");
+        assertThat(fetchCount.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void skipsBackgroundRefreshWhenIdle() {
+        manager.getToken();
+        Runnable refresh = captureScheduledRefresh(
+                TOKEN_LIFETIME_MILLIS - REFRESH_AHEAD_MILLIS, 1);
+
+        refresh.run();
+        assertThat(fetchCount.get()).isEqualTo(1);
+
+        clock.addAndGet(TOKEN_LIFETIME_MILLIS);
+        assertThat(manager.getToken()).isEqualTo("Bearer token2");
+    }
+
+    @Test
+    public void keepsTokenAndRetriesWhenBackgroundRefreshFails() {
+        manager.getToken();
+        Runnable refresh = captureScheduledRefresh(
+                TOKEN_LIFETIME_MILLIS - REFRESH_AHEAD_MILLIS, 1);
+        manager.getToken();
+        fetcher = () -> {
+            throw new MTException("Error getting token");
+        };
+
+        refresh.run();
+
+        assertThat(manager.getToken()).isEqualTo("Bearer token1");
+        captureScheduledRefresh(RETRY_DELAY_MILLIS, 1);
+    }
+
+    @Test
+    public void throwsWhenTokenCannotBeFetched() {
+        fetcher = () -> {
+            throw new MTException("Error getting token");
+        };
+
+        assertThatThrownBy(() -> manager.getToken())
+                .isInstanceOf(MTException.class);
+        assertThat(manager.getCurrentToken()).isNull();
+    }
+
+    @Test
+    public void concurrentRequestsFetchOneToken() throws Exception {
+        CountDownLatch fetching = new CountDownLatch(1);
+        fetcher = () -> {
+            try {
+                fetching.await(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "token" + fetchCount.incrementAndGet();
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Callable<String>> requests = IntStream.range(0, 8)
+                    .mapToObj(i -> (Callable<String>) manager::getToken)
+                    .collect(Collectors.toList());
+            List<Future<String>> tokens = requests.stream()
+                    .map(executor::submit).collect(Collectors.toList());
+            fetching.countDown();
+            for (Future<String> token : tokens) {
+                assertThat(token.get()).isEqualTo("Bearer token1");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(fetchCount.get()).isEqualTo(1);
+    }
+
+    private Runnable captureScheduledRefresh(long delayMillis, int times) {
+        ArgumentCaptor<Runnable> captor =
+                ArgumentCaptor.forClass(Runnable.class);
+        verify(scheduler, times(times)).schedule(captor.capture(),
+                eq(delayMillis), eq(TimeUnit.MILLISECONDS));
+        return captor.getValue();
+    }
+}
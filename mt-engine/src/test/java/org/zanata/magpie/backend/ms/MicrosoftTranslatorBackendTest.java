@@ -49,7 +49,7 @@ public class MicrosoftTranslatorBackendTest {
     }
 
     @Test
-    public void testTranslate() {
+    public void testTranslate() throws Exception {
         String content = "content";
         BackendLocaleCode srcLocale = new BackendLocaleCodeImpl(LocaleCode.EN);
         BackendLocaleCode transLocale = new BackendLocaleCodeImpl(LocaleCode.DE);
@@ -58,11 +58,10 @@ public class MicrosoftTranslatorBackendTest {
         respList.add(buildMSResponse("translation1"));
 
         resp.setResponse(respList);
-        String responseString = dtoUtil.toXML(resp);
 
         MicrosoftTranslatorClient api =
                 Mockito.mock(MicrosoftTranslatorClient.class);
-        when(api.requestTranslations(any())).thenReturn(responseString);
+        when(api.requestTranslations(any())).thenReturn(resp);
 
         msBackend = new MicrosoftTranslatorBackend("subscriptionKey", dtoUtil);
         msBackend.setApi(api);
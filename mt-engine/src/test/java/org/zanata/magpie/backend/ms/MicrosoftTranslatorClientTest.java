@@ -1,19 +1,32 @@
 package org.zanata.magpie.backend.ms;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import java.util.concurrent.CompletableFuture;
+
+import javax.ws.rs.client.AsyncInvoker;
 import javax.ws.rs.client.Invocation;
+import javax.ws.rs.client.InvocationCallback;
 import javax.ws.rs.core.Response;
 
 import org.jboss.resteasy.client.jaxrs.ResteasyWebTarget;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.zanata.magpie.backend.ms.internal.dto.MSTranslateArrayReq;
+import org.zanata.magpie.backend.ms.internal.dto.MSTranslateArrayResp;
+import org.zanata.magpie.exception.BackendOverloadedException;
 import org.zanata.magpie.exception.MTException;
 import org.zanata.magpie.util.DTOUtil;
 
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -40,22 +53,9 @@ public class MicrosoftTranslatorClientTest {
         when(restClient.getBuilder(any(), any())).thenReturn(builder);
     }
 
-    @Test
-    public void testGetTokenIfNeeded() {
-        String responseKey = "randomKeyThatReturnsFromMS";
-
-        Response response = Mockito.mock(Response.class);
-        when(response.getStatusInfo()).thenReturn(Response.Status.OK);
-        when(response.readEntity(String.class)).thenReturn(responseKey);
-        when(invocation.invoke()).thenReturn(response);
-
-        String token = api.getCurrentToken();
-        Long tokenExpiry = api.getTokenExpiration();
-
-        api.getTokenIfNeeded();
-
-        assertThat(api.getCurrentToken()).isNotEqualTo(token);
-        assertThat(api.getTokenExpiration()).isNotEqualTo(tokenExpiry);
+    @After
+    public void tearDown() {
+        api.close();
     }
 
     @Test
@@ -86,9 +86,40 @@ public class MicrosoftTranslatorClientTest {
     }
 
     @Test
-    public void testRequestTranslations() {
+    public void testRequestTranslationsThrottled() {
+        Response builderResp = Mockito.mock(Response.class);
+        when(builderResp.getStatusInfo()).thenReturn(Response.Status.OK);
+        when(builderResp.readEntity(String.class)).thenReturn("token");
+
+        Response webResp = Mockito.mock(Response.class);
+        when(webResp.getStatusInfo())
+                .thenReturn(Response.Status.SERVICE_UNAVAILABLE);
+
+        ResteasyWebTarget webTarget = Mockito.mock(ResteasyWebTarget.class);
+        Invocation.Builder webBuilder = Mockito.mock(Invocation.Builder.class);
+
+        when(webTarget.request(any(String.class))).thenReturn(webBuilder);
+        when(webBuilder.header(any(), any())).thenReturn(webBuilder);
+        when(webBuilder.post(any())).thenReturn(webResp);
+
+        when(invocation.invoke()).thenReturn(builderResp);
+        when(restClient.getWebTarget(any())).thenReturn(webTarget);
+
+        assertThatThrownBy(
+                () -> api.requestTranslations(new MSTranslateArrayReq()))
+                .isInstanceOf(BackendOverloadedException.class)
+                .extracting("statusCode").containsExactly(503);
+        verify(webResp).close();
+    }
+
+    @Test
+    public void testRequestTranslations() throws Exception {
         String responseKey = "randomKeyThatReturnsFromMS";
-        String responseXml = "response";
+        String responseXml = "<ArrayOfTranslateArray2Response>" +
+                "<TranslateArray2Response>" +
+                "<TranslatedText>Hallo</TranslatedText>" +
+                "</TranslateArray2Response>" +
+                "</ArrayOfTranslateArray2Response>";
 
         Response builderResp = Mockito.mock(Response.class);
         when(builderResp.getStatusInfo()).thenReturn(Response.Status.OK);
@@ -96,7 +127,9 @@ public class MicrosoftTranslatorClientTest {
 
         Response webResp = Mockito.mock(Response.class);
         when(webResp.getStatusInfo()).thenReturn(Response.Status.OK);
-        when(webResp.readEntity(String.class)).thenReturn(responseXml);
+        when(webResp.readEntity(InputStream.class)).thenAnswer(
+                invocation -> new ByteArrayInputStream(
+                        responseXml.getBytes(StandardCharsets.UTF_8)));
         ResteasyWebTarget webTarget = Mockito.mock(ResteasyWebTarget.class);
         Invocation.Builder webBuilder = Mockito.mock(Invocation.Builder.class);
 
@@ -108,10 +141,17 @@ public class MicrosoftTranslatorClientTest {
         when(restClient.getWebTarget(any())).thenReturn(webTarget);
 
         MSTranslateArrayReq req = new MSTranslateArrayReq();
-        String xml = api.requestTranslations(req);
-
-        assertThat(xml).isEqualTo(responseXml);
-        verify(webResp).close();
+        MSTranslateArrayResp resp = api.requestTranslations(req);
+        api.requestTranslations(req);
+
+        assertThat(resp.getResponse()).hasSize(1);
+        assertThat(resp.getResponse().get(0).getTranslatedText().getValue())
+                .isEqualTo("Hallo");
+        verify(webResp, times(2)).close();
+        // the token is fetched once and reused
+        verify(invocation).invoke();
+        verify(webBuilder, times(2))
+                .header("Authorization", "Bearer " + responseKey);
     }
 
     @Test
@@ -138,4 +178,71 @@ public class MicrosoftTranslatorClientTest {
         MSTranslateArrayReq req = new MSTranslateArrayReq();
         assertThatThrownBy(() -> api.requestTranslations(req));
     }
+
+    @Test
+    public void testRequestTranslationsAsync() throws Exception {
+        String responseXml = "<ArrayOfTranslateArray2Response>" +
+                "<TranslateArray2Response>" +
+                "<TranslatedText>Hallo</TranslatedText>" +
+                "</TranslateArray2Response>" +
+                "</ArrayOfTranslateArray2Response>";
+        Response builderResp = Mockito.mock(Response.class);
+        when(builderResp.getStatusInfo()).thenReturn(Response.Status.OK);
+        when(builderResp.readEntity(String.class)).thenReturn("key");
+        when(invocation.invoke()).thenReturn(builderResp);
+
+        Response webResp = Mockito.mock(Response.class);
+        when(webResp.getStatusInfo()).thenReturn(Response.Status.OK);
+        when(webResp.readEntity(InputStream.class)).thenReturn(
+                new ByteArrayInputStream(
+                        responseXml.getBytes(StandardCharsets.UTF_8)));
+        ResteasyWebTarget webTarget = Mockito.mock(ResteasyWebTarget.class);
+        Invocation.Builder webBuilder = Mockito.mock(Invocation.Builder.class);
+        AsyncInvoker asyncInvoker = Mockito.mock(AsyncInvoker.class);
+        when(restClient.getWebTarget(any())).thenReturn(webTarget);
+        when(webTarget.request(any(String.class))).thenReturn(webBuilder);
+        when(webBuilder.header(any(), any())).thenReturn(webBuilder);
+        when(webBuilder.async()).thenReturn(asyncInvoker);
+        ArgumentCaptor<InvocationCallback<Response>> callback =
+                ArgumentCaptor.forClass(InvocationCallback.class);
+        when(asyncInvoker.post(any(), callback.capture())).thenReturn(null);
+
+        CompletableFuture<MSTranslateArrayResp> result =
+                api.requestTranslationsAsync(new MSTranslateArrayReq());
+        assertThat(result.isDone()).isFalse();
+        callback.getValue().completed(webResp);
+
+        assertThat(result.get().getResponse().get(0).getTranslatedText()
+                .getValue()).isEqualTo("Hallo");
+        verify(webResp).close();
+    }
+
+    @Test
+    public void testRequestTranslationsAsyncFailure() {
+        Response builderResp = Mockito.mock(Response.class);
+        when(builderResp.getStatusInfo()).thenReturn(Response.Status.OK);
+        when(builderResp.readEntity(String.class)).thenReturn("key");
+        when(invocation.invoke()).thenReturn(builderResp);
+
+        Response webResp = Mockito.mock(Response.class);
+        when(webResp.getStatusInfo()).thenReturn(Response.Status.BAD_REQUEST);
+        ResteasyWebTarget webTarget = Mockito.mock(ResteasyWebTarget.class);
+        Invocation.Builder webBuilder = Mockito.mock(Invocation.Builder.class);
+        AsyncInvoker asyncInvoker = Mockito.mock(AsyncInvoker.class);
+        when(restClient.getWebTarget(any())).thenReturn(webTarget);
+        when(webTarget.request(any(String.class))).thenReturn(webBuilder);
+        when(webBuilder.header(any(), any())).thenReturn(webBuilder);
+        when(webBuilder.async()).thenReturn(asyncInvoker);
+        ArgumentCaptor<InvocationCallback<Response>> callback =
+                ArgumentCaptor.forClass(InvocationCallback.class);
+        when(asyncInvoker.post(any(), callback.capture())).thenReturn(null);
+
+        CompletableFuture<MSTranslateArrayResp> result =
+                api.requestTranslationsAsync(new MSTranslateArrayReq());
+        callback.getValue().completed(webResp);
+
+        assertThatThrownBy(result::join)
+                .hasCauseInstanceOf(MTException.class);
+        verify(webResp).close();
+    }
 }
@@ -1,12 +1,22 @@
 package org.zanata.magpie.util;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.UnmarshalException;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.zanata.magpie.backend.ms.internal.dto.MSString;
+import org.zanata.magpie.backend.ms.internal.dto.MSTranslateArrayResp;
+import org.zanata.magpie.backend.ms.internal.dto.MSTranslateArrayResponse;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -46,6 +56,49 @@ public class DTOUtilTest {
             .isInstanceOf(UnmarshalException.class);
     }
 
+    @Test
+    public void testToObjectFromStream() throws JAXBException {
+        MSTranslateArrayResp expected = new MSTranslateArrayResp();
+        for (int i = 0; i < 3; i++) {
+            MSTranslateArrayResponse response = new MSTranslateArrayResponse();
+            response.setTranslatedText(new MSString("translation " + i));
+            expected.getResponse().add(response);
+        }
+        InputStream xml = new ByteArrayInputStream(
+                dtoUtil.toXML(expected).getBytes(StandardCharsets.UTF_8));
+
+        assertThat(dtoUtil.toObject(xml, MSTranslateArrayResp.class))
+                .isEqualTo(expected);
+    }
+
+    @Test
+    public void testToObjectRejectsDTD() {
+        String xml = "<?xml version=\"1.0\"?>" +
+                "<!DOCTYPE MSString [<!ENTITY xxe SYSTEM \"file:///etc/passwd\">]>" +
+                "<MSString>&xxe;</MSString>";
+        assertThatThrownBy(() -> dtoUtil.toObject(xml, MSString.class))
+            .isInstanceOf(JAXBException.class);
+    }
+
+    @Test
+    public void testToXMLConcurrently() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                String value = "testing " + i;
+                results.add(executor.submit(
+                        () -> dtoUtil.toXML(new MSString(value))));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                assertThat(results.get(i).get())
+                        .isEqualTo("<MSString>testing " + i + "</MSString>");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
     @Test
     public void testToJson() {
         MSString obj = new MSString("testing 123");
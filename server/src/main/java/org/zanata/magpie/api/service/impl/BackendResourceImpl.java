@@ -43,6 +43,7 @@ import org.zanata.magpie.api.InputStreamStreamingOutput;
 import org.zanata.magpie.api.dto.APIResponse;
 import org.zanata.magpie.api.service.BackendResource;
 import org.zanata.magpie.model.BackendID;
+import org.zanata.magpie.service.CircuitBreakers;
 import com.google.common.annotations.VisibleForTesting;
 
 /**
@@ -52,14 +53,17 @@ import com.google.common.annotations.VisibleForTesting;
 public class BackendResourceImpl implements BackendResource {
 
     private Set<BackendID> availableProviders;
+    private CircuitBreakers circuitBreakers;
 
     @SuppressWarnings("unused")
     public BackendResourceImpl() {
     }
 
     @Inject
-    public BackendResourceImpl(@BackEndProviders Set<BackendID> availableProviders) {
+    public BackendResourceImpl(@BackEndProviders Set<BackendID> availableProviders,
+            CircuitBreakers circuitBreakers) {
         this.availableProviders = availableProviders;
+        this.circuitBreakers = circuitBreakers;
     }
 
     @Override
@@ -125,7 +129,11 @@ public class BackendResourceImpl implements BackendResource {
     public Response getAvailableBackends() {
         Set<String> providers = availableProviders.stream().map(BackendID::getId)
                 .collect(Collectors.toSet());
+        String circuitStates = availableProviders.stream().sorted()
+                .map(id -> id.getId() + "=" + circuitBreakers.getState(id))
+                .collect(Collectors.joining(","));
         return Response.ok()
+                .header(CIRCUIT_STATE_KEY, circuitStates)
                 .entity(new GenericEntity<Set<String>>(providers) {}).build();
     }
 
@@ -133,12 +133,13 @@ public class DocumentResourceImpl implements DocumentResource {
         return Response.ok().entity(statistics).build();
     }
 
-    // lazily loads the text flows in doc
+    // lazily loads the text flows in doc. Text flows not counted yet by
+    // EventRecordingService are counted here.
     private int getTotalWordCount(Document doc, LocaleCode localeCode) {
         return doc.getTextFlows().values().stream()
                 .filter(tf -> tf.getLocale().getLocaleCode()
                         .equals(localeCode))
-                .mapToInt(tf -> tf.getWordCount().intValue())
+                .mapToInt(tf -> (int) tf.countWords())
                 .sum();
     }
 
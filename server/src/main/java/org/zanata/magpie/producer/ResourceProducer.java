@@ -20,6 +20,9 @@
  */
 package org.zanata.magpie.producer;
 
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
 import javax.annotation.Resource;
 import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.context.RequestScoped;
@@ -29,8 +32,23 @@ import javax.persistence.PersistenceContext;
 
 import com.google.common.annotations.VisibleForTesting;
 import org.infinispan.Cache;
+import org.infinispan.configuration.cache.CacheMode;
+import org.infinispan.configuration.cache.Configuration;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.context.Flag;
+import org.infinispan.eviction.EvictionStrategy;
 import org.infinispan.manager.CacheContainer;
+import org.infinispan.manager.EmbeddedCacheManager;
 import org.zanata.magpie.annotation.ClusteredCache;
+import org.zanata.magpie.annotation.EnvVariable;
+import org.zanata.magpie.model.AugmentedTranslation;
+import org.zanata.magpie.service.TranslationCache;
+import org.zanata.magpie.service.TranslationCacheKey;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+import static org.zanata.magpie.api.APIConstant.TRANSLATION_CACHE_EXPIRY;
+import static org.zanata.magpie.api.APIConstant.TRANSLATION_CACHE_OWNERS;
+import static org.zanata.magpie.api.APIConstant.TRANSLATION_CACHE_SIZE;
 
 /**
  * @author Patrick Huang <a href="mailto:pahuang@redhat.com">pahuang@redhat.com</a>
@@ -44,6 +62,9 @@ public class ResourceProducer {
     private EntityManager em;
 
     public static final String REPLICATE_CACHE = "repl";
+    static final int DEFAULT_TRANSLATION_CACHE_OWNERS = 2;
+    static final long DEFAULT_TRANSLATION_CACHE_EXPIRY_MINUTES =
+            TimeUnit.DAYS.toMinutes(1);
 
 
     @Produces
@@ -53,6 +74,68 @@ public class ResourceProducer {
         return webCacheManager.getCache(REPLICATE_CACHE);
     }
 
+    /**
+     * Distributed cache of translated segments, shared by all the nodes. Each
+     * entry is held by a configurable number of owners, and expires after a
+     * configurable number of minutes.
+     *
+     * @return null if the translation cache is disabled, ie its size is 0
+     * @see TranslationCache
+     */
+    @Produces
+    @ClusteredCache(TranslationCache.CLUSTERED_CACHE)
+    public ConcurrentMap<TranslationCacheKey, AugmentedTranslation> translationCache(
+            @EnvVariable(TRANSLATION_CACHE_SIZE) String maxSize,
+            @EnvVariable(TRANSLATION_CACHE_OWNERS) String owners,
+            @EnvVariable(TRANSLATION_CACHE_EXPIRY) String expiry) {
+        long maxEntries = TranslationCache.parseMaxSize(maxSize);
+        if (maxEntries == 0) {
+            // Infinispan would take 0 as unbounded
+            return null;
+        }
+        if (webCacheManager instanceof EmbeddedCacheManager) {
+            EmbeddedCacheManager cacheManager =
+                    (EmbeddedCacheManager) webCacheManager;
+            if (cacheManager.getCacheConfiguration(
+                    TranslationCache.CLUSTERED_CACHE) == null) {
+                cacheManager.defineConfiguration(
+                        TranslationCache.CLUSTERED_CACHE,
+                        translationCacheConfiguration(
+                                cacheManager.getCacheManagerConfiguration()
+                                        .isClustered(),
+                                isBlank(owners) ?
+                                        DEFAULT_TRANSLATION_CACHE_OWNERS :
+                                        Integer.parseInt(owners.trim()),
+                                maxEntries,
+                                isBlank(expiry) ?
+                                        DEFAULT_TRANSLATION_CACHE_EXPIRY_MINUTES :
+                                        Long.parseLong(expiry.trim())));
+            }
+        }
+        Cache<TranslationCacheKey, AugmentedTranslation> cache =
+                webCacheManager.getCache(TranslationCache.CLUSTERED_CACHE);
+        // callers never use the previous value, so don't fetch it remotely
+        return cache.getAdvancedCache()
+                .withFlags(Flag.IGNORE_RETURN_VALUES);
+    }
+
+    @VisibleForTesting
+    static Configuration translationCacheConfiguration(boolean clustered,
+            int owners, long maxEntries, long expiryMinutes) {
+        ConfigurationBuilder builder = new ConfigurationBuilder();
+        if (clustered) {
+            // puts are replicated asynchronously, a missing entry only
+            // means another call to the database or MT engine
+            builder.clustering().cacheMode(CacheMode.DIST_ASYNC)
+                    .hash().numOwners(owners);
+        } else {
+            builder.clustering().cacheMode(CacheMode.LOCAL);
+        }
+        builder.eviction().strategy(EvictionStrategy.LRU).size(maxEntries);
+        builder.expiration().lifespan(expiryMinutes, TimeUnit.MINUTES);
+        return builder.build();
+    }
+
     @PersistenceContext
     protected void setEntityManager(EntityManager em) {
         this.em = em;
@@ -21,6 +21,8 @@
 package org.zanata.magpie.service;
 
 import java.io.Serializable;
+import java.util.List;
+import java.util.stream.Collectors;
 
 import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.event.Observes;
@@ -32,9 +34,13 @@ import org.apache.deltaspike.core.api.future.Futureable;
 import org.apache.deltaspike.jpa.api.transaction.Transactional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.zanata.magpie.dao.TextFlowDAO;
 import org.zanata.magpie.event.RequestedMTEvent;
 import org.zanata.magpie.model.Account;
+import org.zanata.magpie.model.ContentHash;
 import org.zanata.magpie.model.Document;
+import org.zanata.magpie.model.Locale;
+import org.zanata.magpie.model.TextFlow;
 import org.zanata.magpie.model.TextFlowMTRequest;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
@@ -48,18 +54,30 @@ public class EventRecordingService implements Serializable {
     private static final Logger log =
             LoggerFactory.getLogger(EventRecordingService.class);
     private static final long serialVersionUID = 2744223109728759370L;
+    static final int WORD_COUNT_BATCH_SIZE = 100;
 
     @SuppressFBWarnings(value = "SE_BAD_FIELD")
     private EntityManager entityManager;
+    private TextFlowDAO textFlowDAO;
 
     public EventRecordingService() {
     }
 
     @Inject
-    public EventRecordingService(EntityManager entityManager) {
+    public EventRecordingService(EntityManager entityManager,
+            TextFlowDAO textFlowDAO) {
         this.entityManager = entityManager;
+        this.textFlowDAO = textFlowDAO;
     }
 
+    /**
+     * Record the MT engine call. New text flows are persisted without word
+     * count, so that tokenization is not part of the translate request. The
+     * ones of this request are claimed and counted here, then the words of
+     * the request are summed without locking, see
+     * {@link TextFlowDAO#getWordCounts}. A batch of other text flows still
+     * waiting for their word count is counted as well.
+     */
     @Futureable
     @Transactional
     public void onMTRequest(@Observes(
@@ -71,12 +89,36 @@ public class EventRecordingService implements Serializable {
 
         Account account = entityManager.find(Account.class,
                 event.getTriggeredBy().getId());
+        Locale fromLocale = document.getFromLocale();
+        List<ContentHash> contentHashes = event.getTextFlows().stream()
+                .map(ContentHash::fromHex).collect(Collectors.toList());
+        // text flows locked by another observer are counted by it
+        textFlowDAO.getWordCountPending(fromLocale, contentHashes)
+                .forEach(TextFlow::countWords);
+        long wordCount = textFlowDAO.getWordCounts(fromLocale, contentHashes)
+                .values().stream().mapToLong(Long::longValue).sum();
         TextFlowMTRequest textFlowMTRequest = new TextFlowMTRequest(
                 event.getBackendID(), event.getEngineInvokeTime(),
                 document, account, event.getTextFlows(),
-                event.getWordCount(), event.getCharCount());
+                wordCount, event.getCharCount());
 
         entityManager.persist(textFlowMTRequest);
         log.debug("recorded MT engine invocation {}", event);
+        countPendingWords();
+    }
+
+    /**
+     * Count the words of text flows created without a MT engine call (eg
+     * from a cached translation). Each call claims its own batch of rows,
+     * so concurrent observers don't count the same text flows, see
+     * {@link TextFlowDAO#getWordCountPending(int)}.
+     */
+    private void countPendingWords() {
+        List<TextFlow> pending =
+                textFlowDAO.getWordCountPending(WORD_COUNT_BATCH_SIZE);
+        pending.forEach(TextFlow::countWords);
+        if (!pending.isEmpty()) {
+            log.debug("counted words of {} text flows", pending.size());
+        }
     }
 }
@@ -29,11 +29,17 @@ import org.junit.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.zanata.magpie.api.service.BackendResource;
+import org.zanata.magpie.model.BackendID;
+import org.zanata.magpie.service.CircuitBreakers;
+import org.zanata.magpie.service.CircuitState;
+
+import com.google.common.collect.ImmutableSet;
 
 import javax.annotation.Nullable;
 import javax.ws.rs.core.Response;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
 import static org.zanata.magpie.api.service.BackendResource.DEV_ATTRIBUTION_STRING;
 import static org.zanata.magpie.api.service.BackendResource.GOOGLE_ATTRIBUTION_STRING;
 import static org.zanata.magpie.api.service.BackendResource.MS_ATTRIBUTION_STRING;
@@ -45,6 +51,7 @@ public class BackendResourceImplTest {
 
     private BackendResource backendResource;
     @Mock private InputStream inputStream;
+    @Mock private CircuitBreakers circuitBreakers;
 
     @Before
     public void setup() {
@@ -137,4 +144,21 @@ public class BackendResourceImplTest {
             .isEqualTo(Response.Status.OK.getStatusCode());
         assertThat(response.getEntity().toString()).isEqualTo(GOOGLE_ATTRIBUTION_STRING);
     }
+
+    @Test
+    public void testGetAvailableBackendsWithCircuitStates() {
+        backendResource = new BackendResourceImpl(
+                ImmutableSet.of(BackendID.MS, BackendID.GOOGLE),
+                circuitBreakers);
+        when(circuitBreakers.getState(BackendID.MS))
+                .thenReturn(CircuitState.OPEN);
+        when(circuitBreakers.getState(BackendID.GOOGLE))
+                .thenReturn(CircuitState.CLOSED);
+
+        Response response = backendResource.getAvailableBackends();
+        assertThat(response.getStatus())
+            .isEqualTo(Response.Status.OK.getStatusCode());
+        assertThat(response.getHeaderString(BackendResource.CIRCUIT_STATE_KEY))
+                .isEqualTo("MS=OPEN,GOOGLE=CLOSED");
+    }
 }
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2019, Red Hat, Inc. and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.zanata.magpie.producer;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.infinispan.configuration.cache.CacheMode;
+import org.infinispan.configuration.cache.Configuration;
+import org.junit.Rule;
+import org.junit.Test;
+import org.zanata.magpie.api.dto.LocaleCode;
+import org.zanata.magpie.model.AugmentedTranslation;
+import org.zanata.magpie.model.BackendID;
+import org.zanata.magpie.service.TranslationCache;
+import org.zanata.magpie.service.TranslationCacheKey;
+import org.zanata.magpie.util.HashUtil;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ClusteredTranslationCacheTest {
+    private static final TranslationCacheKey KEY =
+            new TranslationCacheKey(LocaleCode.EN, LocaleCode.DE,
+                    BackendID.MS, HashUtil.hash("hello"));
+
+    @Rule
+    public EmbeddedInfinispan infinispan = new EmbeddedInfinispan(2);
+
+    private TranslationCache createTranslationCache(int node) {
+        ResourceProducer producer = new ResourceProducer();
+        producer.setWebCacheManager(infinispan.getCacheManager(node));
+        return new TranslationCache("10", producer.translationCache("10", "2", ""));
+    }
+
+    @Test
+    public void translationIsSharedAcrossNodes() throws Exception {
+        TranslationCache node0 = createTranslationCache(0);
+        TranslationCache node1 = createTranslationCache(1);
+        AugmentedTranslation translation =
+                new AugmentedTranslation("Inhalt", "<b>Inhalt</b>");
+
+        node0.put(KEY, translation);
+
+        // puts are replicated asynchronously
+        Optional<AugmentedTranslation> result = Optional.empty();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!result.isPresent() && System.currentTimeMillis() < deadline) {
+            result = node1.get(KEY);
+            Thread.sleep(50);
+        }
+        assertThat(result).contains(translation);
+        assertThat(node1.getClusteredHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void configurationIsDistributed() {
+        createTranslationCache(0);
+        Configuration configuration = infinispan.getCacheManager(0)
+                .getCacheConfiguration(TranslationCache.CLUSTERED_CACHE);
+
+        assertThat(configuration.clustering().cacheMode())
+                .isEqualTo(CacheMode.DIST_ASYNC);
+        assertThat(configuration.clustering().hash().numOwners()).isEqualTo(2);
+        assertThat(configuration.eviction().size()).isEqualTo(10);
+        assertThat(configuration.expiration().lifespan()).isEqualTo(
+                TimeUnit.MINUTES.toMillis(
+                        ResourceProducer.DEFAULT_TRANSLATION_CACHE_EXPIRY_MINUTES));
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2019, Red Hat, Inc. and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.zanata.magpie.producer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.infinispan.configuration.global.GlobalConfigurationBuilder;
+import org.infinispan.manager.DefaultCacheManager;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.infinispan.remoting.transport.jgroups.JGroupsTransport;
+import org.junit.rules.ExternalResource;
+
+/**
+ * Starts a cluster of embedded Infinispan cache managers in the same JVM, to
+ * stand in for the web cache container of the application server in tests.
+ * The nodes talk to each other over TCP on the loopback interface.
+ */
+public class EmbeddedInfinispan extends ExternalResource {
+    private static final String JGROUPS_CONFIG = "jgroups-test-tcp.xml";
+
+    private final int numberOfNodes;
+    private final List<EmbeddedCacheManager> cacheManagers = new ArrayList<>();
+
+    public EmbeddedInfinispan(int numberOfNodes) {
+        this.numberOfNodes = numberOfNodes;
+    }
+
+    @Override
+    protected void before() {
+        String clusterName = "mt-test-" + System.nanoTime();
+        for (int i = 0; i < numberOfNodes; i++) {
+            GlobalConfigurationBuilder builder =
+                    GlobalConfigurationBuilder.defaultClusteredBuilder();
+            builder.globalJmxStatistics().allowDuplicateDomains(true);
+            builder.transport().clusterName(clusterName)
+                    .nodeName("node" + i)
+                    .addProperty(JGroupsTransport.CONFIGURATION_FILE,
+                            JGROUPS_CONFIG);
+            DefaultCacheManager cacheManager =
+                    new DefaultCacheManager(builder.build());
+            cacheManagers.add(cacheManager);
+            // start the transport
+            cacheManager.getCache();
+        }
+    }
+
+    @Override
+    protected void after() {
+        cacheManagers.forEach(EmbeddedCacheManager::stop);
+        cacheManagers.clear();
+    }
+
+    public EmbeddedCacheManager getCacheManager(int node) {
+        return cacheManagers.get(node);
+    }
+}
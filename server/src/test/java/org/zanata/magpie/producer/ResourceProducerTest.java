@@ -21,6 +21,10 @@
 
 package org.zanata.magpie.producer;
 
+import java.util.concurrent.TimeUnit;
+
+import org.infinispan.configuration.cache.CacheMode;
+import org.infinispan.configuration.cache.Configuration;
 import org.infinispan.manager.CacheContainer;
 import org.junit.Test;
 import org.mockito.Mockito;
@@ -29,6 +33,7 @@ import javax.persistence.EntityManager;
 
 import static org.assertj.core.api.Java6Assertions.assertThat;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.zanata.magpie.producer.ResourceProducer.REPLICATE_CACHE;
 
 /**
@@ -45,6 +50,26 @@ public class ResourceProducerTest {
         verify(container).getCache(REPLICATE_CACHE);
     }
 
+    @Test
+    public void testNoClusteredTranslationCacheWhenDisabled() {
+        CacheContainer container = Mockito.mock(CacheContainer.class);
+        ResourceProducer producer = new ResourceProducer();
+        producer.setWebCacheManager(container);
+        assertThat(producer.translationCache("0", "", "")).isNull();
+        verifyZeroInteractions(container);
+    }
+
+    @Test
+    public void testLocalTranslationCacheConfiguration() {
+        Configuration configuration =
+                ResourceProducer.translationCacheConfiguration(false, 2, 100,
+                        60);
+        assertThat(configuration.clustering().cacheMode())
+                .isEqualTo(CacheMode.LOCAL);
+        assertThat(configuration.expiration().lifespan())
+                .isEqualTo(TimeUnit.HOURS.toMillis(1));
+    }
+
     @Test
     public void testEntityManager() {
         EntityManager entityManager = Mockito.mock(EntityManager.class);
@@ -12,6 +12,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.zanata.magpie.JPATest;
 import org.zanata.magpie.api.dto.LocaleCode;
+import org.zanata.magpie.dao.TextFlowDAO;
 import org.zanata.magpie.event.RequestedMTEvent;
 import org.zanata.magpie.model.Account;
 import org.zanata.magpie.model.AccountType;
@@ -39,7 +40,7 @@ public class EventRecordingServiceJpaTest extends JPATest {
         getEm().persist(en);
         getEm().persist(ja);
         document = new Document("https://example.com", en, ja);
-        textFlow = new TextFlow(document, "hello world", en);
+        textFlow = new TextFlow("hello world", en);
         account = new Account("Joe", "joe@example.com", "username",
             passwordUtil.hash("password".toCharArray()),
             AccountType.Normal, Sets.newHashSet());
@@ -50,14 +51,14 @@ public class EventRecordingServiceJpaTest extends JPATest {
 
     @Before
     public void setUp() {
-        service = new EventRecordingService(getEm());
+        service = new EventRecordingService(getEm(), new TextFlowDAO(getEm()));
     }
 
     @Test
     public void canRecordMTRequest() {
         service.onMTRequest(new RequestedMTEvent(document,
-                ImmutableList.of(textFlow.getContentHash()), BackendID.DEV,
-                new Date(), account, textFlow.getWordCount(), textFlow.getCharCount()));
+                ImmutableList.of(textFlow.getContentHash().toHex()), BackendID.DEV,
+                new Date(), account, textFlow.getCharCount()));
         getEm().flush();
 
         List<TextFlowMTRequest> requests =
@@ -65,6 +66,20 @@ public class EventRecordingServiceJpaTest extends JPATest {
                         TextFlowMTRequest.class).getResultList();
         assertThat(requests).hasSize(1);
         assertThat(requests.get(0).getTextFlowContentHashes())
-                .contains(textFlow.getContentHash());
+                .contains(textFlow.getContentHash().toHex());
+        // words are counted after the translate request
+        assertThat(requests.get(0).getWordCount()).isEqualTo(2);
+        assertThat(textFlow.getWordCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void countsPendingWordsOfOtherTextFlows() {
+        TextFlow other = new TextFlow("not requested", en);
+        getEm().persist(other);
+        service.onMTRequest(new RequestedMTEvent(document,
+                ImmutableList.of(textFlow.getContentHash().toHex()), BackendID.DEV,
+                new Date(), account, textFlow.getCharCount()));
+
+        assertThat(other.getWordCount()).isEqualTo(2);
     }
 }
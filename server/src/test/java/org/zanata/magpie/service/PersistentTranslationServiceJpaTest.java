@@ -1,12 +1,15 @@
 package org.zanata.magpie.service;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.zanata.magpie.model.BackendID.DEV;
 import static org.zanata.magpie.model.BackendID.GOOGLE;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 import javax.enterprise.event.Event;
 import javax.enterprise.inject.Instance;
@@ -25,7 +28,7 @@ import org.zanata.magpie.backend.mock.MockTranslatorBackend;
 import org.zanata.magpie.backend.ms.MicrosoftTranslatorBackend;
 import org.zanata.magpie.dao.DocumentDAO;
 import org.zanata.magpie.dao.TextFlowDAO;
-import org.zanata.magpie.dao.TextFlowTargetDAO;
+import org.zanata.magpie.dao.TextFlowBulkWriter;
 import org.zanata.magpie.event.RequestedMTEvent;
 import org.zanata.magpie.model.Account;
 import org.zanata.magpie.model.AugmentedTranslation;
@@ -34,7 +37,9 @@ import org.zanata.magpie.model.Document;
 import org.zanata.magpie.model.Locale;
 import org.zanata.magpie.model.StringType;
 import org.zanata.magpie.model.TextFlowTarget;
+import org.zanata.magpie.util.HashUtil;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 
 public class PersistentTranslationServiceJpaTest extends JPATest {
     @Mock
@@ -70,10 +75,17 @@ public class PersistentTranslationServiceJpaTest extends JPATest {
                 ImmutableList.of(msBackend, googleBackend, devBackend).iterator());
         AuthenticatedAccount authenticatedAccount = new AuthenticatedAccount();
         authenticatedAccount.setAuthenticatedAccount(new Account());
-        service = new PersistentTranslationService(new DocumentDAO(getEm()),
-                new TextFlowDAO(getEm()),
-                new TextFlowTargetDAO(getEm()),
-                backendInstances, requestedMTEvent, authenticatedAccount);
+        service = new PersistentTranslationService(
+                new TranslationMemoryService(new DocumentDAO(getEm()),
+                        new TextFlowDAO(getEm()),
+                        new TextFlowBulkWriter(getEm()),
+                        new TranslationCache(TranslationCache.DEFAULT_MAX_SIZE)),
+                new TranslationBatcher(0, 1),
+                backendInstances, requestedMTEvent, authenticatedAccount,
+                new BackendLimiters(4),
+                new HedgingPolicy(0, 0, ImmutableSet.of(), null),
+                new CircuitBreakers(50, 100, 10_000, 30_000, false,
+                        ImmutableSet.of(), System::nanoTime));
     }
 
     @Test
@@ -92,10 +104,11 @@ public class PersistentTranslationServiceJpaTest extends JPATest {
                 .thenReturn(devFromLocale);
         when(devBackend.getMappedLocale(toLocale.getLocaleCode()))
                 .thenReturn(devToLocale);
-        when(devBackend.translate(sourceString, devFromLocale,
+        when(devBackend.translateAsync(sourceString, devFromLocale,
                 devToLocale, stringType, category))
-                        .thenReturn(ImmutableList.of(
-                                new AugmentedTranslation("hola", "hola")));
+                        .thenReturn(CompletableFuture.completedFuture(
+                        ImmutableList.of(
+                                new AugmentedTranslation("hola", "hola"))));
 
         service.translate(document, sourceString, fromLocale, toLocale,
                 BackendID.DEV, stringType, category);
@@ -108,10 +121,11 @@ public class PersistentTranslationServiceJpaTest extends JPATest {
                 .thenReturn(devFromLocale);
         when(msBackend.getMappedLocale(toLocale.getLocaleCode()))
                 .thenReturn(devToLocale);
-        when(msBackend.translate(sourceString, devFromLocale,
+        when(msBackend.translateAsync(sourceString, devFromLocale,
                 devToLocale, stringType, category))
-                .thenReturn(ImmutableList.of(
-                        new AugmentedTranslation("hola", "hola")));
+                .thenReturn(CompletableFuture.completedFuture(
+                        ImmutableList.of(
+                        new AugmentedTranslation("hola", "hola"))));
 
         service.translate(document, sourceString, fromLocale, toLocale,
                 BackendID.MS, stringType, category);
@@ -121,6 +135,45 @@ public class PersistentTranslationServiceJpaTest extends JPATest {
 
     }
 
+    @Test
+    public void canShareTranslationWithOtherDocument() {
+        List<String> sourceString = ImmutableList.of("hello");
+        Optional<String> category = Optional.empty();
+        StringType stringType = StringType.TEXT_PLAIN;
+
+        BackendLocaleCode devFromLocale =
+                new BackendLocaleCodeImpl(fromLocale.getLocaleCode());
+        BackendLocaleCode devToLocale =
+                new BackendLocaleCodeImpl(toLocale.getLocaleCode());
+        when(devBackend.getMappedLocale(fromLocale.getLocaleCode()))
+                .thenReturn(devFromLocale);
+        when(devBackend.getMappedLocale(toLocale.getLocaleCode()))
+                .thenReturn(devToLocale);
+        when(devBackend.translateAsync(sourceString, devFromLocale,
+                devToLocale, stringType, category))
+                .thenReturn(CompletableFuture.completedFuture(
+                        ImmutableList.of(
+                        new AugmentedTranslation("hola", "hola"))));
+
+        service.translate(document, sourceString, fromLocale, toLocale,
+                BackendID.DEV, stringType, category);
+
+        Document otherDocument =
+                new Document("http://example.com/other", fromLocale, toLocale);
+        getEm().persist(otherDocument);
+        List<String> translations = service.translate(otherDocument,
+                sourceString, fromLocale, toLocale, BackendID.DEV, stringType,
+                category);
+
+        assertThat(translations).containsExactly("hola");
+        verify(devBackend, times(1)).translateAsync(sourceString, devFromLocale,
+                devToLocale, stringType, category);
+        assertThat(getAllTextFlowTargets()).hasSize(1);
+        getEm().clear();
+        assertThat(getEm().find(Document.class, otherDocument.getId())
+                .getTextFlows()).containsOnlyKeys(HashUtil.hash("hello"));
+    }
+
     private List<TextFlowTarget> getAllTextFlowTargets() {
         return getEm().createQuery("from TextFlowTarget", TextFlowTarget.class)
                 .getResultList();